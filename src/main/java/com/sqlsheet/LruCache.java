@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * The common part of the driver wide caches: a map bounded by {@link #getMaximumSize()} which
+ * evicts the least recently used entries first, and counts its hits and misses to help sizing it.
+ * All methods lock the cache itself, so subclasses can extend them in {@code synchronized}
+ * blocks.
+ *
+ * @param <K> the type of the keys
+ * @param <V> the type of the cached values
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public class LruCache<K, V> {
+
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private int maximumSize;
+
+    protected LruCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public synchronized int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @param maximumSize the number of entries to keep, {@code 0} disables caching
+     */
+    public synchronized void setMaximumSize(int maximumSize) {
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Negative cache size: " + maximumSize);
+        }
+        this.maximumSize = maximumSize;
+        evictExceeding();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Evicts all entries and resets the counters.
+     */
+    public synchronized void clear() {
+        evictIf(value -> true);
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * @param key the key
+     * @return the value cached for the key, or {@code null} on a miss
+     */
+    public synchronized V get(K key) {
+        V value = entries.get(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Caches a value, evicting the least recently used entries beyond the maximum size.
+     *
+     * @param key the key
+     * @param value the value
+     * @return whether the value is cached, i.e. caching is enabled
+     */
+    public synchronized boolean put(K key, V value) {
+        if (maximumSize == 0) {
+            return false;
+        }
+        V previous = entries.put(key, value);
+        if (previous != null && previous != value) {
+            evicted(previous);
+        }
+        evictExceeding();
+        return entries.containsKey(key);
+    }
+
+    /**
+     * Removes an entry without evicting it, e.g. a value which turned out to be unusable.
+     *
+     * @return whether the key was mapped to the value
+     */
+    protected synchronized boolean remove(K key, V value) {
+        return entries.remove(key, value);
+    }
+
+    /**
+     * Evicts the entries whose value matches.
+     *
+     * @param filter selects the values to evict
+     */
+    protected synchronized void evictIf(Predicate<? super V> filter) {
+        Iterator<V> it = entries.values().iterator();
+        while (it.hasNext()) {
+            V value = it.next();
+            if (filter.test(value)) {
+                it.remove();
+                evicted(value);
+            }
+        }
+    }
+
+    /**
+     * Called with the cache locked for every value dropped by the cache, to release what it holds.
+     *
+     * @param value the evicted value
+     */
+    protected void evicted(V value) {
+    }
+
+    private void evictExceeding() {
+        Iterator<V> it = entries.values().iterator();
+        while (entries.size() > maximumSize && it.hasNext()) {
+            V eldest = it.next();
+            it.remove();
+            evicted(eldest);
+        }
+    }
+}
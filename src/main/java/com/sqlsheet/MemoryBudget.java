@@ -0,0 +1,261 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.openxml4j.opc.ZipPackage;
+import org.apache.poi.openxml4j.util.ZipInputStreamZipEntrySource;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.IOUtils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Properties;
+
+/**
+ * Memory settings of a single connection.
+ *
+ * <p>
+ * POI only knows process wide settings for spilling zip entries to temporary files and for the
+ * largest byte array it allocates. Instead of changing them for every connection in the JVM, a
+ * budget applies its settings only while its workbook is being opened: opens with equal settings
+ * run concurrently, opens with different settings wait for each other, and the previous values
+ * are restored once no open is running anymore. POI has no getter for the byte array limit, so
+ * it is reset to POI's default afterwards.
+ *
+ * <p>
+ * After opening, {@link #check(Workbook)} rejects workbooks whose estimated heap usage exceeds
+ * {@value XlsDriver#MAX_WORKBOOK_MEMORY}.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class MemoryBudget {
+
+    /** Rough heap cost of a cell, XSSF keeps an XmlBean per cell. */
+    static final long XSSF_CELL_BYTES = 500;
+    static final long XSSF_ROW_BYTES = 300;
+    static final long HSSF_CELL_BYTES = 100;
+    static final long HSSF_ROW_BYTES = 100;
+    /** Rough heap cost of a row held by a streaming reader. */
+    static final long STREAMING_ROW_BYTES = 2048;
+
+    private static final Object LOCK = new Object();
+    private static MemoryBudget active;
+    private static int activeOpens;
+    private static int savedThreshold;
+    private static boolean savedTempFileParts;
+
+    private final long maxWorkbookMemory;
+    private final int tempFileThreshold;
+    private final boolean tempFilePackageParts;
+    private final int byteArrayMaxOverride;
+
+    private MemoryBudget(long maxWorkbookMemory, int tempFileThreshold,
+            boolean tempFilePackageParts, int byteArrayMaxOverride) {
+        this.maxWorkbookMemory = maxWorkbookMemory;
+        this.tempFileThreshold = tempFileThreshold;
+        this.tempFilePackageParts = tempFilePackageParts;
+        this.byteArrayMaxOverride = byteArrayMaxOverride;
+    }
+
+    /**
+     * @param info the connection properties
+     * @return the budget of a connection holding the whole workbook in memory
+     */
+    public static MemoryBudget inMemory(Properties info) {
+        return of(info, 100_000_000, false, 500_000_000);
+    }
+
+    /**
+     * @param info the connection properties
+     * @return the budget of a streaming connection, spilling zip entries early
+     */
+    public static MemoryBudget streaming(Properties info) {
+        return of(info, 16384, true, -1);
+    }
+
+    private static MemoryBudget of(Properties info, int defaultThreshold,
+            boolean defaultTempFileParts, int defaultByteArrayMaxOverride) {
+        Object tempFileParts = info.get(XlsDriver.TEMP_FILE_PACKAGE_PARTS);
+        return new MemoryBudget(
+                getLong(info, XlsDriver.MAX_WORKBOOK_MEMORY, 0L),
+                (int) getLong(info, XlsDriver.TEMP_FILE_THRESHOLD, defaultThreshold),
+                tempFileParts != null
+                        ? Boolean.parseBoolean(tempFileParts.toString())
+                        : defaultTempFileParts,
+                (int) getLong(info, XlsDriver.BYTE_ARRAY_MAX_OVERRIDE,
+                        defaultByteArrayMaxOverride));
+    }
+
+    private static long getLong(Properties info, String key, long defaultValue) {
+        Object value = info.get(key);
+        return value != null ? Long.parseLong(value.toString()) : defaultValue;
+    }
+
+    /**
+     * @return the most heap a workbook may be estimated to use, {@code 0} for no limit
+     */
+    public long getMaxWorkbookMemory() {
+        return maxWorkbookMemory;
+    }
+
+    public int getTempFileThreshold() {
+        return tempFileThreshold;
+    }
+
+    public boolean isTempFilePackageParts() {
+        return tempFilePackageParts;
+    }
+
+    public int getByteArrayMaxOverride() {
+        return byteArrayMaxOverride;
+    }
+
+    /**
+     * Opens a workbook with the POI settings of this budget in effect.
+     *
+     * @param opener opens the workbook
+     * @param <T> the type opened
+     * @return what the opener returned
+     * @throws IOException if opening failed
+     */
+    public <T> T open(Opener<T> opener) throws IOException {
+        enter();
+        try {
+            return opener.open();
+        } finally {
+            exit();
+        }
+    }
+
+    private void enter() throws IOException {
+        synchronized (LOCK) {
+            while (activeOpens > 0 && !sameSettings(active)) {
+                try {
+                    LOCK.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting to open.");
+                }
+            }
+            if (activeOpens == 0) {
+                savedThreshold = ZipInputStreamZipEntrySource.getThresholdBytesForTempFiles();
+                savedTempFileParts = ZipPackage.useTempFilePackageParts();
+                ZipInputStreamZipEntrySource.setThresholdBytesForTempFiles(tempFileThreshold);
+                ZipPackage.setUseTempFilePackageParts(tempFilePackageParts);
+                IOUtils.setByteArrayMaxOverride(byteArrayMaxOverride);
+                active = this;
+            }
+            activeOpens++;
+        }
+    }
+
+    private static void exit() {
+        synchronized (LOCK) {
+            activeOpens--;
+            if (activeOpens == 0) {
+                ZipInputStreamZipEntrySource.setThresholdBytesForTempFiles(savedThreshold);
+                ZipPackage.setUseTempFilePackageParts(savedTempFileParts);
+                IOUtils.setByteArrayMaxOverride(-1);
+                active = null;
+                LOCK.notifyAll();
+            }
+        }
+    }
+
+    private boolean sameSettings(MemoryBudget other) {
+        return tempFileThreshold == other.tempFileThreshold
+                && tempFilePackageParts == other.tempFilePackageParts
+                && byteArrayMaxOverride == other.byteArrayMaxOverride;
+    }
+
+    /**
+     * Rejects a freshly opened workbook exceeding the budget, closing it.
+     *
+     * @param workbook the workbook
+     * @param <T> the workbook type
+     * @return the workbook
+     * @throws IOException if the workbook is estimated to use more than the budget allows
+     */
+    public <T extends Workbook> T check(T workbook) throws IOException {
+        try {
+            verify(workbook);
+        } catch (IOException e) {
+            workbook.close();
+            throw e;
+        }
+        return workbook;
+    }
+
+    /**
+     * @param workbook the workbook, which is left open
+     * @throws IOException if the workbook is estimated to use more than the budget allows
+     */
+    public void verify(Workbook workbook) throws IOException {
+        if (maxWorkbookMemory > 0) {
+            verify(estimate(workbook));
+        }
+    }
+
+    /**
+     * @param estimate the heap a workbook is estimated to use, see {@link #estimate(Workbook)}
+     * @throws IOException if the estimate is more than the budget allows
+     */
+    public void verify(long estimate) throws IOException {
+        if (maxWorkbookMemory > 0 && estimate > maxWorkbookMemory) {
+            throw new IOException(String.format(
+                    "Workbook needs about %d bytes, exceeding %s=%d; consider %s.",
+                    estimate, XlsDriver.MAX_WORKBOOK_MEMORY, maxWorkbookMemory,
+                    XlsDriver.READ_STREAMING));
+        }
+    }
+
+    /**
+     * Estimates the heap held by the rows and cells of a workbook, which dominate its footprint.
+     * Only rows resident in memory are counted, e.g. the window of an SXSSF workbook.
+     *
+     * @param workbook the workbook
+     * @return the estimated number of bytes
+     */
+    public static long estimate(Workbook workbook) {
+        long rowBytes = workbook instanceof HSSFWorkbook ? HSSF_ROW_BYTES : XSSF_ROW_BYTES;
+        long cellBytes = workbook instanceof HSSFWorkbook ? HSSF_CELL_BYTES : XSSF_CELL_BYTES;
+        long bytes = 0;
+        for (Sheet sheet : workbook) {
+            for (Row row : sheet) {
+                bytes += rowBytes + row.getPhysicalNumberOfCells() * cellBytes;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @param rowCacheSize the rows a streaming reader keeps
+     * @param bufferSize the read buffer of a streaming reader
+     * @return the estimated number of bytes held by a streaming reader
+     */
+    public static long estimateStreaming(int rowCacheSize, int bufferSize) {
+        return bufferSize + rowCacheSize * STREAMING_ROW_BYTES;
+    }
+
+    /**
+     * Opens a workbook, or anything holding one.
+     */
+    @FunctionalInterface
+    public interface Opener<T> {
+        T open() throws IOException;
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.poi.hssf.usermodel.HSSFEvaluationWorkbook;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.EvaluationWorkbook;
+import org.apache.poi.ss.formula.ExternSheetReferenceToken;
+import org.apache.poi.ss.formula.FormulaParseException;
+import org.apache.poi.ss.formula.FormulaParser;
+import org.apache.poi.ss.formula.FormulaParsingWorkbook;
+import org.apache.poi.ss.formula.FormulaRenderer;
+import org.apache.poi.ss.formula.FormulaRenderingWorkbook;
+import org.apache.poi.ss.formula.FormulaType;
+import org.apache.poi.ss.formula.ptg.AreaErrPtg;
+import org.apache.poi.ss.formula.ptg.AreaPtgBase;
+import org.apache.poi.ss.formula.ptg.Deleted3DPxg;
+import org.apache.poi.ss.formula.ptg.DeletedArea3DPtg;
+import org.apache.poi.ss.formula.ptg.DeletedRef3DPtg;
+import org.apache.poi.ss.formula.ptg.Ptg;
+import org.apache.poi.ss.formula.ptg.Pxg;
+import org.apache.poi.ss.formula.ptg.RefErrorPtg;
+import org.apache.poi.ss.formula.ptg.RefPtgBase;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellAddress;
+import org.apache.poi.xssf.usermodel.XSSFEvaluationWorkbook;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Removes rows of a sheet and moves the rows below them up, for DELETE. Each remaining row is
+ * moved once, straight to its final position, and each formula and defined name of the workbook
+ * referring to the sheet is rewritten once with the resulting row mapping. {@link Sheet#shiftRows}
+ * would instead rewrite all of them again for every run of remaining rows.
+ *
+ * <p>
+ * Merged regions, hyperlinks, comments, conditional formats, data validations, tables and array
+ * formulas are anchored to rows in ways only {@link Sheet#shiftRows} keeps consistent, so sheets
+ * with any of them, or with formulas POI cannot parse, are compacted by shifting each run of
+ * remaining rows instead.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class RowCompaction {
+
+    private final Workbook workbook;
+    private final Sheet sheet;
+    private final int sheetIndex;
+    private final BitSet deleted;
+    private final int[] rank;
+    private final int lastRowIndex;
+    /** Whether removing a formula cell changes the calculation chain, a part of its own. */
+    private final boolean calculationChain;
+    private FormulaParsingWorkbook parsing;
+    private FormulaRenderingWorkbook rendering;
+    private EvaluationWorkbook evaluation;
+    /** The rewritten formulas of the sheet, by their address before the compaction. */
+    private final Map<CellAddress, String> sheetFormulas = new HashMap<>();
+    private final Map<Cell, String> otherFormulas = new IdentityHashMap<>();
+    private final Map<Name, String> names = new IdentityHashMap<>();
+    private boolean formulasRemoved;
+
+    private RowCompaction(Sheet sheet, BitSet deleted) {
+        this.workbook = sheet.getWorkbook();
+        this.sheet = sheet;
+        this.sheetIndex = workbook.getSheetIndex(sheet);
+        this.deleted = deleted;
+        this.lastRowIndex = workbook.getSpreadsheetVersion().getLastRowIndex();
+        this.calculationChain = workbook instanceof XSSFWorkbook
+                && ((XSSFWorkbook) workbook).getCalculationChain() != null;
+        rank = new int[sheet.getLastRowNum() + 2];
+        for (int r = 1; r < rank.length; r++) {
+            rank[r] = rank[r - 1] + (deleted.get(r - 1) ? 1 : 0);
+        }
+    }
+
+    /**
+     * @param sheet the sheet
+     * @param deleted the rows to remove, all existing
+     * @return whether parts of the workbook beyond the sheet changed as well: formulas of other
+     *         sheets or names referring to the rows, the calculation chain or the comments
+     */
+    static boolean removeRows(Sheet sheet, BitSet deleted) {
+        RowCompaction compaction = new RowCompaction(sheet, deleted);
+        return compaction.plan() ? compaction.compact() : compaction.shiftRuns();
+    }
+
+    /**
+     * Rewrites the formulas and names referring to the rows without changing the workbook yet.
+     *
+     * @return whether the rows can be moved in a single pass
+     */
+    private boolean plan() {
+        if (sheet.getNumMergedRegions() > 0 || !sheet.getHyperlinkList().isEmpty()
+                || !sheet.getCellComments().isEmpty() || !sheet.getDataValidations().isEmpty()
+                || sheet.getSheetConditionalFormatting().getNumConditionalFormattings() > 0
+                || sheet instanceof XSSFSheet && !((XSSFSheet) sheet).getTables().isEmpty()) {
+            return false;
+        }
+        if (workbook instanceof XSSFWorkbook) {
+            XSSFEvaluationWorkbook xssf = XSSFEvaluationWorkbook.create((XSSFWorkbook) workbook);
+            parsing = xssf;
+            rendering = xssf;
+            evaluation = xssf;
+        } else if (workbook instanceof HSSFWorkbook) {
+            HSSFEvaluationWorkbook hssf = HSSFEvaluationWorkbook.create((HSSFWorkbook) workbook);
+            parsing = hssf;
+            rendering = hssf;
+            evaluation = hssf;
+        } else {
+            return false;
+        }
+        int firstDeleted = deleted.nextSetBit(0);
+        try {
+            for (Sheet formulas : workbook) {
+                boolean local = formulas == sheet;
+                int index = workbook.getSheetIndex(formulas);
+                for (Row row : formulas) {
+                    for (Cell cell : row) {
+                        if (cell.getCellType() != CellType.FORMULA) {
+                            continue;
+                        }
+                        if (local && deleted.get(row.getRowNum())) {
+                            formulasRemoved = true;
+                            continue;
+                        }
+                        if (local && row.getRowNum() > firstDeleted) {
+                            // the cell is moved, i.e. removed and created again
+                            formulasRemoved = true;
+                        }
+                        Ptg[] ptgs = FormulaParser.parse(cell.getCellFormula(), parsing,
+                                FormulaType.CELL, index);
+                        if (!remap(ptgs, local)) {
+                            continue;
+                        }
+                        if (cell.isPartOfArrayFormulaGroup()) {
+                            return false;
+                        }
+                        String formula = FormulaRenderer.toFormulaString(rendering, ptgs);
+                        if (local) {
+                            sheetFormulas.put(new CellAddress(cell), formula);
+                        } else {
+                            otherFormulas.put(cell, formula);
+                        }
+                    }
+                }
+            }
+            for (Name name : workbook.getAllNames()) {
+                String formula = name.getRefersToFormula();
+                if (formula == null) {
+                    continue;
+                }
+                Ptg[] ptgs = FormulaParser.parse(formula, parsing, FormulaType.NAMEDRANGE,
+                        name.getSheetIndex());
+                if (remap(ptgs, false)) {
+                    names.put(name, FormulaRenderer.toFormulaString(rendering, ptgs));
+                }
+            }
+        } catch (FormulaParseException e) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moves the rows and stores the planned formulas.
+     */
+    private boolean compact() {
+        for (int r = deleted.nextSetBit(0); r >= 0; r = deleted.nextSetBit(r + 1)) {
+            sheet.removeRow(sheet.getRow(r));
+        }
+        int last = rank.length - 2;
+        for (int r = deleted.nextSetBit(0) + 1; r <= last; r++) {
+            Row row = sheet.getRow(r);
+            if (row != null && !deleted.get(r)) {
+                move(row, r - rank[r]);
+            }
+        }
+        // formulas above the removed rows
+        for (Map.Entry<CellAddress, String> formula : sheetFormulas.entrySet()) {
+            CellAddress address = formula.getKey();
+            setFormula(sheet.getRow(address.getRow()).getCell(address.getColumn()),
+                    formula.getValue());
+        }
+        for (Map.Entry<Cell, String> formula : otherFormulas.entrySet()) {
+            setFormula(formula.getKey(), formula.getValue());
+        }
+        for (Map.Entry<Name, String> name : names.entrySet()) {
+            name.getKey().setRefersToFormula(name.getValue());
+        }
+        return formulasRemoved && calculationChain || !otherFormulas.isEmpty()
+                || !names.isEmpty();
+    }
+
+    private void move(Row source, int index) {
+        Row target = sheet.createRow(index);
+        if (source.isFormatted()) {
+            target.setRowStyle(source.getRowStyle());
+        }
+        if (source.getHeight() != sheet.getDefaultRowHeight()) {
+            target.setHeight(source.getHeight());
+        }
+        target.setZeroHeight(source.getZeroHeight());
+        for (Cell cell : source) {
+            Cell copy = target.createCell(cell.getColumnIndex());
+            copy.setCellStyle(cell.getCellStyle());
+            CellType type = cell.getCellType();
+            if (type == CellType.FORMULA) {
+                String formula = sheetFormulas.remove(new CellAddress(cell));
+                copy.setCellFormula(formula != null ? formula : cell.getCellFormula());
+                type = cell.getCachedFormulaResultType();
+            }
+            valueOf(cell, type).accept(copy);
+        }
+        sheet.removeRow(source);
+    }
+
+    /**
+     * Replaces the formula of a cell, keeping its cached result.
+     */
+    private static void setFormula(Cell cell, String formula) {
+        Consumer<Cell> cached = valueOf(cell, cell.getCachedFormulaResultType());
+        cell.setCellFormula(formula);
+        cached.accept(cell);
+    }
+
+    /**
+     * @return sets the value of the cell, of the given type, to another cell
+     */
+    private static Consumer<Cell> valueOf(Cell cell, CellType type) {
+        if (type == CellType.NUMERIC) {
+            double number = cell.getNumericCellValue();
+            return copy -> copy.setCellValue(number);
+        } else if (type == CellType.STRING) {
+            RichTextString text = cell.getRichStringCellValue();
+            return copy -> copy.setCellValue(text);
+        } else if (type == CellType.BOOLEAN) {
+            boolean bool = cell.getBooleanCellValue();
+            return copy -> copy.setCellValue(bool);
+        } else if (type == CellType.ERROR) {
+            byte error = cell.getErrorCellValue();
+            return copy -> copy.setCellErrorValue(error);
+        }
+        return copy -> {
+        };
+    }
+
+    /**
+     * Maps the row references of a parsed formula to the rows after the compaction.
+     *
+     * @param ptgs the parsed formula, updated in place
+     * @param local whether the formula is in the compacted sheet, so that references without a
+     *        sheet refer to it
+     * @return whether a reference changed
+     */
+    private boolean remap(Ptg[] ptgs, boolean local) {
+        boolean changed = false;
+        for (int i = 0; i < ptgs.length; i++) {
+            Ptg ptg = ptgs[i];
+            boolean external = ptg instanceof Pxg || ptg instanceof ExternSheetReferenceToken;
+            if (external ? !refersToSheet(ptg) : !local) {
+                continue;
+            }
+            if (ptg instanceof RefPtgBase) {
+                RefPtgBase ref = (RefPtgBase) ptg;
+                int row = ref.getRow();
+                if (deleted.get(row)) {
+                    ptgs[i] = deletedRef(ptg);
+                    changed = true;
+                } else if (rank(row) > 0) {
+                    ref.setRow(row - rank(row));
+                    changed = true;
+                }
+            } else if (ptg instanceof AreaPtgBase) {
+                AreaPtgBase area = (AreaPtgBase) ptg;
+                int first = area.getFirstRow();
+                int last = area.getLastRow();
+                // whole columns and ranges to the end of the sheet keep their end
+                int end = last == lastRowIndex ? last : last - rank(last + 1);
+                if (end < first - rank(first)) {
+                    ptgs[i] = deletedArea(ptg);
+                    changed = true;
+                } else if (end != last || rank(first) > 0) {
+                    area.setFirstRow(first - rank(first));
+                    area.setLastRow(end);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * @return the number of removed rows above a row
+     */
+    private int rank(int row) {
+        return row < rank.length ? rank[row] : rank[rank.length - 1];
+    }
+
+    private boolean refersToSheet(Ptg ptg) {
+        if (ptg instanceof Pxg) {
+            Pxg pxg = (Pxg) ptg;
+            return pxg.getExternalWorkbookNumber() < 1
+                    && sheet.getSheetName().equalsIgnoreCase(pxg.getSheetName());
+        }
+        return evaluation.convertFromExternSheetIndex(
+                ((ExternSheetReferenceToken) ptg).getExternSheetIndex()) == sheetIndex;
+    }
+
+    private static Ptg deletedRef(Ptg ptg) {
+        if (ptg instanceof Pxg) {
+            Pxg pxg = (Pxg) ptg;
+            return new Deleted3DPxg(pxg.getExternalWorkbookNumber(), pxg.getSheetName());
+        } else if (ptg instanceof ExternSheetReferenceToken) {
+            return new DeletedRef3DPtg(((ExternSheetReferenceToken) ptg).getExternSheetIndex());
+        }
+        return new RefErrorPtg();
+    }
+
+    private static Ptg deletedArea(Ptg ptg) {
+        if (ptg instanceof Pxg) {
+            Pxg pxg = (Pxg) ptg;
+            return new Deleted3DPxg(pxg.getExternalWorkbookNumber(), pxg.getSheetName());
+        } else if (ptg instanceof ExternSheetReferenceToken) {
+            return new DeletedArea3DPtg(((ExternSheetReferenceToken) ptg).getExternSheetIndex());
+        }
+        return new AreaErrPtg();
+    }
+
+    /**
+     * Compacts the rows with {@link Sheet#shiftRows}, one call for each run of remaining rows.
+     */
+    private boolean shiftRuns() {
+        boolean structural = !sheet.getCellComments().isEmpty() || removesFormulas();
+        for (int r = deleted.nextSetBit(0); r >= 0; r = deleted.nextSetBit(r + 1)) {
+            sheet.removeRow(sheet.getRow(r));
+        }
+        int last = sheet.getLastRowNum();
+        int shift = 0;
+        boolean shifted = false;
+        for (int r = deleted.nextSetBit(0); r >= 0 && r <= last;) {
+            if (deleted.get(r)) {
+                shift++;
+                r++;
+                continue;
+            }
+            int end = deleted.nextSetBit(r);
+            if (end < 0 || end > last) {
+                end = last + 1;
+            }
+            sheet.shiftRows(r, end - 1, -shift);
+            shifted = true;
+            r = end;
+        }
+        // HSSF leaves empty rows behind at the shifted positions
+        for (int r = last - shift + 1; r <= last; r++) {
+            Row row = sheet.getRow(r);
+            if (row != null) {
+                sheet.removeRow(row);
+            }
+        }
+        return structural || shifted && mayBeReferredTo();
+    }
+
+    private boolean removesFormulas() {
+        for (int r = deleted.nextSetBit(0); r >= 0; r = deleted.nextSetBit(r + 1)) {
+            for (Cell cell : sheet.getRow(r)) {
+                if (cell.getCellType() == CellType.FORMULA) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether a defined name or a formula of another sheet may refer to the rows of the
+     *         sheet, i.e. refers to any sheet at all
+     */
+    private boolean mayBeReferredTo() {
+        for (Name name : workbook.getAllNames()) {
+            String formula = name.getRefersToFormula();
+            if (formula != null && formula.indexOf('!') >= 0) {
+                return true;
+            }
+        }
+        for (Sheet other : workbook) {
+            if (other == sheet) {
+                continue;
+            }
+            for (Row row : other) {
+                for (Cell cell : row) {
+                    if (cell.getCellType() == CellType.FORMULA
+                            && cell.getCellFormula().indexOf('!') >= 0) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
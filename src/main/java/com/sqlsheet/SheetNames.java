@@ -0,0 +1,128 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.POIFSFileSystem;
+import org.apache.poi.util.XMLHelper;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads the sheet names of a workbook file without parsing any sheet data: the {@code sheet}
+ * elements of {@code xl/workbook.xml} for xlsx, the bound sheet records of the workbook globals for
+ * xls.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class SheetNames {
+
+    static final String XLSX_WORKBOOK_PART = "xl/workbook.xml";
+
+    private SheetNames() {}
+
+    /**
+     * @param file an xls or xlsx file
+     * @return the sheet names in workbook order
+     * @throws IOException if the file could not be read
+     */
+    static List<String> read(FileObject file) throws IOException {
+        if ("xlsx".equalsIgnoreCase(file.getName().getExtension())) {
+            return readXlsx(file);
+        }
+        return readXls(file);
+    }
+
+    private static List<String> readXlsx(FileObject file) throws IOException {
+        File localFile = XlsDriver.toLocalFile(file);
+        if (localFile != null) {
+            try (ZipFile zip = new ZipFile(localFile)) {
+                ZipEntry entry = zip.getEntry(XLSX_WORKBOOK_PART);
+                if (entry == null) {
+                    throw new IOException("No " + XLSX_WORKBOOK_PART + " in " + file);
+                }
+                try (InputStream in = zip.getInputStream(entry)) {
+                    return parseWorkbookXml(in);
+                }
+            }
+        }
+        try (ZipInputStream zip = new ZipInputStream(file.getContent().getInputStream())) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (XLSX_WORKBOOK_PART.equals(entry.getName())) {
+                    return parseWorkbookXml(zip);
+                }
+            }
+        }
+        throw new IOException("No " + XLSX_WORKBOOK_PART + " in " + file);
+    }
+
+    private static List<String> parseWorkbookXml(InputStream in) throws IOException {
+        List<String> names = new ArrayList<>();
+        try {
+            XMLStreamReader reader = XMLHelper.newXMLInputFactory().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "sheet".equals(reader.getLocalName())) {
+                        names.add(reader.getAttributeValue(null, "name"));
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return names;
+    }
+
+    private static List<String> readXls(FileObject file) throws IOException {
+        File localFile = XlsDriver.toLocalFile(file);
+        try (POIFSFileSystem fs = localFile != null
+                ? new POIFSFileSystem(localFile, true)
+                : new POIFSFileSystem(file.getContent().getInputStream())) {
+            DirectoryNode root = fs.getRoot();
+            try (InputStream in =
+                    root.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(root))) {
+                List<String> names = new ArrayList<>();
+                RecordFactoryInputStream records = new RecordFactoryInputStream(in, false);
+                // the bound sheets are part of the workbook globals, which end with the first EOF
+                for (Record record = records.nextRecord();
+                        record != null && !(record instanceof EOFRecord);
+                        record = records.nextRecord()) {
+                    if (record instanceof BoundSheetRecord) {
+                        names.add(((BoundSheetRecord) record).getSheetname());
+                    }
+                }
+                return names;
+            }
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Logger;
+
+/**
+ * Driver wide cache of parsed workbooks, shared between read-only connections.
+ *
+ * <p>
+ * Entries are keyed by the resolved URL of the file together with its last modified time and
+ * size, so a changed file is parsed again while an unchanged one is handed out directly. Each
+ * entry is reference counted: a workbook is only closed once it has been evicted <em>and</em>
+ * released by every connection using it. Eviction follows the least recently used order and is
+ * bounded by {@link #getMaximumSize()}.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class WorkbookCache extends LruCache<WorkbookCache.Key, WorkbookCache.Entry> {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 8;
+
+    private static final Logger LOGGER = Logger.getLogger(WorkbookCache.class.getName());
+    private static final WorkbookCache INSTANCE = new WorkbookCache(DEFAULT_MAXIMUM_SIZE);
+
+    WorkbookCache(int maximumSize) {
+        super(maximumSize);
+    }
+
+    static WorkbookCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the workbook cached for the given file version, loading it when absent. The caller
+     * owns one reference of the returned entry and must hand it back via {@link #release(Entry)}.
+     *
+     * @param url the resolved URL of the workbook file
+     * @param lastModified the last modified time of the file
+     * @param size the size of the file in bytes
+     * @param loader parses the workbook on a cache miss
+     * @return the referenced entry
+     * @throws IOException if the workbook could not be loaded
+     */
+    Entry acquire(String url, long lastModified, long size, Loader loader) throws IOException {
+        Key key = new Key(url, lastModified, size);
+        Entry entry;
+        boolean load = false;
+        synchronized (this) {
+            entry = get(key);
+            if (entry == null) {
+                entry = new Entry(key);
+                load = true;
+                evictIf(cached -> cached.key.url.equals(url));
+                if (!put(key, entry)) {
+                    entry.evicted = true;
+                }
+            }
+            entry.references++;
+        }
+        if (load) {
+            try {
+                Workbook workbook = loader.load();
+                entry.estimatedMemory = MemoryBudget.estimate(workbook);
+                entry.workbook.complete(workbook);
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    remove(key, entry);
+                    entry.evicted = true;
+                }
+                entry.workbook.completeExceptionally(e);
+            }
+        }
+        try {
+            entry.workbook.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(entry);
+            throw new IOException("Interrupted while waiting for " + url, e);
+        } catch (ExecutionException e) {
+            release(entry);
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause.getMessage(), cause);
+        }
+        return entry;
+    }
+
+    /**
+     * Gives back one reference obtained from {@link #acquire}. The workbook is closed when it is no
+     * longer cached and nobody references it anymore.
+     *
+     * @param entry the entry to release
+     */
+    void release(Entry entry) {
+        boolean close;
+        synchronized (this) {
+            entry.references--;
+            close = entry.evicted && entry.references == 0;
+        }
+        if (close) {
+            closeQuietly(entry);
+        }
+    }
+
+    /**
+     * Closes an evicted workbook right away if no connection uses it, see {@link #release}.
+     */
+    @Override
+    protected void evicted(Entry entry) {
+        entry.evicted = true;
+        if (entry.references == 0) {
+            LOGGER.fine("Evicting cached workbook " + entry.key.url);
+            closeQuietly(entry);
+        }
+    }
+
+    private static void closeQuietly(Entry entry) {
+        entry.workbook.thenAccept(IOUtils::closeQuietly);
+    }
+
+    /**
+     * Parses a workbook on a cache miss.
+     */
+    @FunctionalInterface
+    interface Loader {
+        Workbook load() throws IOException;
+    }
+
+    /**
+     * A reference counted slot of the cache.
+     */
+    static final class Entry {
+        private final Key key;
+        private final CompletableFuture<Workbook> workbook = new CompletableFuture<>();
+        private long estimatedMemory;
+        private int references;
+        private boolean evicted;
+
+        private Entry(Key key) {
+            this.key = key;
+        }
+
+        Workbook getWorkbook() {
+            return workbook.join();
+        }
+
+        /**
+         * @return the heap held by the workbook as estimated by {@link MemoryBudget} once loaded,
+         *         so that cache hits do not visit every cell again
+         */
+        long getEstimatedMemory() {
+            workbook.join();
+            return estimatedMemory;
+        }
+    }
+
+    static final class Key {
+        private final String url;
+        private final long lastModified;
+        private final long size;
+
+        private Key(String url, long lastModified, long size) {
+            this.url = url;
+            this.lastModified = lastModified;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return lastModified == key.lastModified && size == key.size && url.equals(key.url);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, lastModified, size);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes a workbook back to its file without ever leaving a half written file behind.
+ *
+ * <p>
+ * Local files are written to a temporary sibling through a large buffer, forced to disk and then
+ * atomically renamed over the target, so a crash leaves either the old or the new file. Other file
+ * systems get the same write-then-rename sequence through VFS, atomic as far as the file system's
+ * rename is.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class WorkbookSaver {
+
+    static final int BUFFER_SIZE = 1 << 20;
+
+    private static final Logger LOGGER = Logger.getLogger(WorkbookSaver.class.getName());
+
+    private WorkbookSaver() {}
+
+    /**
+     * @param workbook the workbook to write, left open
+     * @param target the file to replace
+     * @throws IOException if the workbook could not be written, the target is unchanged then
+     */
+    static void save(Workbook workbook, URL target) throws IOException {
+        save(workbook, target, null);
+    }
+
+    /**
+     * @param workbook the workbook to write, left open
+     * @param target the file to replace
+     * @param changes the changes since the workbook was read from the target, to copy unchanged
+     *        parts from it, or {@code null} to write the whole workbook
+     * @throws IOException if the workbook could not be written, the target is unchanged then
+     */
+    static void save(Workbook workbook, URL target, XlsxChanges changes) throws IOException {
+        try (FileObject file = VFS.getManager().resolveFile(target)) {
+            File localFile = XlsDriver.toLocalFile(file);
+            if (localFile != null) {
+                saveLocal(workbook, changes, localFile.toPath());
+            } else {
+                saveVfs(workbook, file);
+            }
+        }
+    }
+
+    private static void saveLocal(Workbook workbook, XlsxChanges changes, Path target)
+            throws IOException {
+        Path directory = target.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(directory, "." + target.getFileName(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                    OutputStream out = new BufferedOutputStream(
+                            Channels.newOutputStream(channel), BUFFER_SIZE)) {
+                if (changes != null) {
+                    changes.write(out);
+                } else {
+                    workbook.write(out);
+                }
+                out.flush();
+                channel.force(true);
+            }
+            copyAttributes(target, temp);
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                LOGGER.warning("Atomic rename not supported, replacing " + target + " in place.");
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * The temporary file is created readable by its owner only, give it the permissions, owner
+     * and group of the file it replaces where the file system has them.
+     */
+    private static void copyAttributes(Path target, Path temp) throws IOException {
+        PosixFileAttributeView targetView =
+                Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (targetView == null || !Files.exists(target)) {
+            return;
+        }
+        PosixFileAttributes attributes = targetView.readAttributes();
+        PosixFileAttributeView tempView =
+                Files.getFileAttributeView(temp, PosixFileAttributeView.class);
+        tempView.setPermissions(attributes.permissions());
+        try {
+            PosixFileAttributes tempAttributes = tempView.readAttributes();
+            if (!attributes.group().equals(tempAttributes.group())) {
+                tempView.setGroup(attributes.group());
+            }
+            if (!attributes.owner().equals(tempAttributes.owner())) {
+                tempView.setOwner(attributes.owner());
+            }
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Cannot keep the owner of " + target, e);
+        }
+    }
+
+    private static void saveVfs(Workbook workbook, FileObject target) throws IOException {
+        try (FileObject temp = target.getParent()
+                .resolveFile("." + target.getName().getBaseName() + ".tmp")) {
+            try {
+                try (OutputStream out = new BufferedOutputStream(
+                        temp.getContent().getOutputStream(), BUFFER_SIZE)) {
+                    workbook.write(out);
+                }
+                // replaces an existing target
+                temp.moveTo(target);
+            } finally {
+                if (temp.exists()) {
+                    temp.delete();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipFile;
+
+/**
+ * Notices when the file behind a connection has changed.
+ *
+ * <p>
+ * Local files are watched with a {@link WatchService} on their directory, other file systems are
+ * polled for a new modification time or size at most every {@value XlsDriver#WATCH_INTERVAL}
+ * milliseconds. Either way only a hint: the file is reported as changed only if its content
+ * fingerprint differs, which for xlsx files are the CRCs of the zip entries, read from the central
+ * directory without inflating anything, and for other files the CRC of the whole content. Merely
+ * touching or re-copying a file thus never triggers a reload.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class WorkbookWatcher implements Closeable {
+
+    static final long DEFAULT_WATCH_INTERVAL = 2000;
+
+    private static final Logger LOGGER = Logger.getLogger(WorkbookWatcher.class.getName());
+    private static final Object LOCK = new Object();
+    private static WatchService watchService;
+    private static final Map<Path, WatchKey> KEYS = new HashMap<>();
+    private static final Set<WorkbookWatcher> LOCAL_WATCHERS = new CopyOnWriteArraySet<>();
+
+    private final URL url;
+    private final Path localPath;
+    private final long interval;
+    private volatile boolean hint;
+    private long lastPoll;
+    private long lastModified;
+    private long size;
+    private Map<String, Long> fingerprint;
+
+    private WorkbookWatcher(FileObject file, long interval) throws IOException {
+        this.url = file.getURL();
+        File localFile = XlsDriver.toLocalFile(file);
+        this.localPath =
+                localFile != null ? localFile.toPath().toAbsolutePath().normalize() : null;
+        this.interval = interval;
+        this.lastPoll = System.currentTimeMillis();
+        this.lastModified = file.getContent().getLastModifiedTime();
+        this.size = file.getContent().getSize();
+        this.fingerprint = fingerprint(file);
+    }
+
+    /**
+     * Starts watching a file.
+     *
+     * @param file the workbook file
+     * @param interval the milliseconds between two polls of a file which cannot be watched
+     * @return the watcher, to be closed when done
+     * @throws IOException if the file could not be read
+     */
+    static WorkbookWatcher watch(FileObject file, long interval) throws IOException {
+        WorkbookWatcher watcher = new WorkbookWatcher(file, interval);
+        if (watcher.localPath != null) {
+            register(watcher);
+        }
+        return watcher;
+    }
+
+    /**
+     * @return whether the content of the file changed since the last call
+     * @throws IOException if the file could not be read
+     */
+    synchronized boolean hasChanged() throws IOException {
+        if (localPath != null) {
+            if (!hint) {
+                return false;
+            }
+            hint = false;
+        }
+        try (FileObject file = VFS.getManager().resolveFile(url)) {
+            if (!file.exists()) {
+                // replaced non-atomically, look again once the new file is in place
+                hint = localPath != null;
+                return false;
+            }
+            if (localPath == null) {
+                long now = System.currentTimeMillis();
+                if (now - lastPoll < interval) {
+                    return false;
+                }
+                lastPoll = now;
+                long currentLastModified = file.getContent().getLastModifiedTime();
+                long currentSize = file.getContent().getSize();
+                if (currentLastModified == lastModified && currentSize == size) {
+                    return false;
+                }
+                lastModified = currentLastModified;
+                size = currentSize;
+            }
+            Map<String, Long> current = fingerprint(file);
+            if (current.equals(fingerprint)) {
+                return false;
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine("Changed parts of " + url + ": " + changedParts(fingerprint, current));
+            }
+            fingerprint = current;
+            return true;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (localPath == null) {
+            return;
+        }
+        synchronized (LOCK) {
+            LOCAL_WATCHERS.remove(this);
+            Path directory = localPath.getParent();
+            boolean used = false;
+            for (WorkbookWatcher watcher : LOCAL_WATCHERS) {
+                used |= watcher.localPath.getParent().equals(directory);
+            }
+            if (!used) {
+                WatchKey key = KEYS.remove(directory);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        }
+    }
+
+    /**
+     * @param file the file
+     * @return the CRC by zip entry name, or the CRC of the whole content for other files
+     */
+    static Map<String, Long> fingerprint(FileObject file) throws IOException {
+        Map<String, Long> crcs = new TreeMap<>();
+        File localFile = XlsDriver.toLocalFile(file);
+        if (localFile != null) {
+            try (ZipFile zip = new ZipFile(localFile)) {
+                for (Enumeration<? extends ZipEntry> e = zip.entries(); e.hasMoreElements();) {
+                    ZipEntry entry = e.nextElement();
+                    crcs.put(entry.getName(), entry.getCrc());
+                }
+                return crcs;
+            } catch (ZipException e) {
+                // not a zip, e.g. xls
+            }
+        }
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = file.getContent().getInputStream()) {
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                crc.update(buffer, 0, n);
+            }
+        }
+        crcs.put("", crc.getValue());
+        return crcs;
+    }
+
+    private static Set<String> changedParts(Map<String, Long> before, Map<String, Long> after) {
+        Set<String> changed = new TreeSet<>();
+        Set<String> names = new TreeSet<>(before.keySet());
+        names.addAll(after.keySet());
+        for (String name : names) {
+            if (!Objects.equals(before.get(name), after.get(name))) {
+                changed.add(name);
+            }
+        }
+        return changed;
+    }
+
+    private static void register(WorkbookWatcher watcher) throws IOException {
+        synchronized (LOCK) {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(WorkbookWatcher::dispatch, "sqlsheet-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            Path directory = watcher.localPath.getParent();
+            if (!KEYS.containsKey(directory)) {
+                KEYS.put(directory, directory.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY));
+            }
+            LOCAL_WATCHERS.add(watcher);
+        }
+    }
+
+    private static void dispatch() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path directory = (Path) key.watchable();
+            for (WatchEvent<?> event : key.pollEvents()) {
+                Object context = event.context();
+                for (WorkbookWatcher watcher : LOCAL_WATCHERS) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            ? watcher.localPath.getParent().equals(directory)
+                            : watcher.localPath.equals(directory.resolve((Path) context))) {
+                        watcher.hint = true;
+                    }
+                }
+            }
+            key.reset();
+        }
+    }
+}
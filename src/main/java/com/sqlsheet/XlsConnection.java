@@ -13,13 +13,14 @@
  */
 package com.sqlsheet;
 
+import com.sqlsheet.query.QuerySettings;
+import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.vfs2.FileObject;
-import org.apache.commons.vfs2.VFS;
+import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.sql.Array;
 import java.sql.Blob;
@@ -37,9 +38,17 @@ import java.sql.SQLXML;
 import java.sql.Savepoint;
 import java.sql.Statement;
 import java.sql.Struct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Logger;
 
 /**
@@ -48,12 +57,31 @@ import java.util.logging.Logger;
  * @author <a href='http://www.pcal.net'>pcal</a>
  * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
  */
-class XlsConnection implements Connection {
+public class XlsConnection implements Connection {
 
     private static final Logger LOGGER = Logger.getLogger(XlsConnection.class.getName());
+    private static final ExecutorService BACKGROUND_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "sqlsheet-background");
+        thread.setDaemon(true);
+        return thread;
+    });
     private final Properties info;
     protected Workbook workbook;
     protected URL saveFile;
+    private URL location;
+    private Opener opener;
+    private CompletableFuture<XlsConnection> prefetched;
+    private WorkbookCache.Entry cachedWorkbook;
+    private WorkbookWatcher watcher;
+    private XlsxChanges changes;
+    private long generation;
+    /** The result sets still open on the workbook of the current generation. */
+    private int openResultSets;
+    /** The workbooks replaced by a reload while result sets were open on them, by generation. */
+    private final Map<Long, RetiredWorkbook> retired = new HashMap<>();
+    private long modifications;
+    private CompletableFuture<Void> saved;
+    private QuerySettings querySettings;
     private boolean closed;
     private boolean writeRequired;
 
@@ -68,6 +96,53 @@ class XlsConnection implements Connection {
         this.workbook = workbook;
         this.saveFile = saveFile;
         this.info = info;
+        this.changes = XlsxChanges.track(workbook, saveFile);
+    }
+
+    /**
+     * Creates a read-only connection over a workbook shared through the {@link WorkbookCache}. The
+     * reference is handed back when the connection is closed.
+     */
+    XlsConnection(WorkbookCache.Entry cachedWorkbook, URL location, Properties info) {
+        this(cachedWorkbook.getWorkbook(), null, info);
+        this.cachedWorkbook = cachedWorkbook;
+        this.location = location;
+    }
+
+    /**
+     * Creates a connection without a workbook of its own, for subclasses resolving workbooks by
+     * schema.
+     */
+    XlsConnection(URL location, Properties info) {
+        this.location = location;
+        this.info = info;
+    }
+
+    /**
+     * Creates a lazy connection which only knows the location of its workbook. The workbook is
+     * opened by the first statement needing it, or right away on a background thread if
+     * {@code prefetch} is set.
+     */
+    XlsConnection(URL location, Opener opener, Properties info, boolean prefetch) {
+        this.location = location;
+        this.opener = opener;
+        this.info = info;
+        if (prefetch) {
+            prefetched = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return opener.open();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }, BACKGROUND_EXECUTOR);
+        }
+    }
+
+    synchronized QuerySettings getQuerySettings() {
+        if (querySettings == null) {
+            querySettings = new QuerySettings(info);
+        }
+        return querySettings;
     }
 
     int getInt(String key, int defaultValue) {
@@ -79,10 +154,234 @@ class XlsConnection implements Connection {
         return Integer.parseInt(value.toString());
     }
 
-    Workbook getWorkBook() {
+    synchronized Workbook getWorkBook() throws SQLException {
+        if (workbook == null) {
+            materialize();
+        } else if (watcher != null) {
+            reloadIfChanged();
+        }
         return workbook;
     }
 
+    /**
+     * Lets the connection reload its workbook when the file changes, see {@link WorkbookWatcher}.
+     * Requires a connection created with an {@link Opener}.
+     */
+    synchronized void setWatcher(WorkbookWatcher watcher) {
+        this.watcher = watcher;
+    }
+
+    /**
+     * @return a number changing whenever the workbook was reloaded, so that statements can drop
+     *         result sets over the previous one
+     */
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Reloads the workbook if its file changed, like {@link #getWorkBook()}, for statements
+     * executing sheets they resolved before.
+     *
+     * @return the generation of the workbook, see {@link #getGeneration()}
+     * @throws SQLException if the changed workbook could not be reloaded
+     */
+    synchronized long checkGeneration() throws SQLException {
+        if (workbook != null && watcher != null) {
+            reloadIfChanged();
+        }
+        return generation;
+    }
+
+    /**
+     * Replaces the workbook by a freshly opened one if the file changed. POI cannot swap single
+     * sheets of a workbook, so a real change reloads the whole workbook; the watcher only rules out
+     * reloads of unchanged content. Unsaved modifications are never discarded.
+     */
+    private void reloadIfChanged() throws SQLException {
+        try {
+            if (!watcher.hasChanged()) {
+                return;
+            }
+        } catch (IOException e) {
+            LOGGER.warning("Could not check " + getLocation() + " for changes: " + e.getMessage());
+            return;
+        }
+        if (writeRequired) {
+            LOGGER.warning(getLocation() + " changed, keeping the unsaved workbook instead.");
+            return;
+        }
+        LOGGER.fine("Reloading " + getLocation());
+        if (openResultSets > 0) {
+            // result sets of other statements may still iterate the workbook
+            retired.put(generation, new RetiredWorkbook(workbook, cachedWorkbook, openResultSets));
+            openResultSets = 0;
+            cachedWorkbook = null;
+            workbook = null;
+        } else {
+            releaseWorkbook();
+        }
+        materialize();
+        generation++;
+    }
+
+    /**
+     * Registers a result set over the current workbook, which then stays open until the result set
+     * is closed even if a reload replaces it meanwhile.
+     *
+     * @return the generation to hand back to {@link #resultSetClosed(long)}
+     */
+    synchronized long resultSetOpened() {
+        openResultSets++;
+        return generation;
+    }
+
+    /**
+     * Releases a workbook replaced by a reload once the last of its result sets is closed.
+     *
+     * @param generation the generation returned by {@link #resultSetOpened()}
+     */
+    synchronized void resultSetClosed(long generation) {
+        if (generation == this.generation) {
+            openResultSets--;
+            return;
+        }
+        RetiredWorkbook workbook = retired.get(generation);
+        if (workbook != null && --workbook.openResultSets == 0) {
+            retired.remove(generation);
+            workbook.release();
+        }
+    }
+
+    /**
+     * @return the number of workbooks replaced by a reload but still read by result sets
+     */
+    synchronized int getRetiredWorkbookCount() {
+        return retired.size();
+    }
+
+    private void releaseRetiredWorkbooks() {
+        for (RetiredWorkbook workbook : retired.values()) {
+            workbook.release();
+        }
+        retired.clear();
+    }
+
+    private void releaseWorkbook() {
+        if (cachedWorkbook != null) {
+            WorkbookCache.getInstance().release(cachedWorkbook);
+            cachedWorkbook = null;
+        } else {
+            IOUtils.closeQuietly(workbook);
+        }
+        workbook = null;
+    }
+
+    /**
+     * Returns the workbook holding the tables of a schema. A single workbook connection has just
+     * one schema, named after the file, and ignores the schema of qualified table names.
+     *
+     * @param schema the schema qualifying a table name, or {@code null}
+     * @return the workbook
+     * @throws SQLException if the workbook could not be opened
+     */
+    Workbook getWorkBook(String schema) throws SQLException {
+        return getWorkBook();
+    }
+
+    /**
+     * @return the names of all schemas, answered without parsing sheet data where possible
+     * @throws SQLException if the schemas could not be listed
+     */
+    List<String> getSchemaNames() throws SQLException {
+        return Collections.singletonList(FilenameUtils.getBaseName(getLocation().getFile()));
+    }
+
+    /**
+     * @param schema the schema
+     * @return the names of the sheets of the schema, answered without parsing sheet data where
+     *         possible
+     * @throws SQLException if the sheets could not be listed
+     */
+    List<String> getTableNames(String schema) throws SQLException {
+        Workbook workbook = getWorkBook(schema);
+        List<String> tableNames = new ArrayList<>();
+        for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+            tableNames.add(workbook.getSheetName(i));
+        }
+        return tableNames;
+    }
+
+    /**
+     * Estimates the heap held by the workbook of this connection, see {@link MemoryBudget}. A
+     * workbook shared by read-only connections is reported by each of them.
+     *
+     * @return the estimated number of bytes
+     * @throws SQLException if the workbook could not be opened
+     */
+    public synchronized long getEstimatedMemory() throws SQLException {
+        Workbook workbook = getWorkBook();
+        return cachedWorkbook != null
+                ? cachedWorkbook.getEstimatedMemory()
+                : MemoryBudget.estimate(workbook);
+    }
+
+    /**
+     * @return the location of the workbook, even if it has not been opened yet
+     */
+    URL getLocation() {
+        return saveFile != null ? saveFile : location;
+    }
+
+    /**
+     * Takes over the workbook of the eagerly opened connection produced by the {@link Opener}.
+     */
+    private void materialize() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection is closed.");
+        }
+        XlsConnection opened;
+        try {
+            opened = prefetched != null ? prefetched.get() : opener.open();
+        } catch (IOException e) {
+            throw new SQLException(e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while opening " + location, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof UncheckedIOException
+                    ? e.getCause().getCause()
+                    : e.getCause();
+            throw new SQLException(cause.getMessage(), cause);
+        }
+        workbook = opened.workbook;
+        saveFile = opened.saveFile;
+        changes = opened.changes;
+        cachedWorkbook = opened.cachedWorkbook;
+        if (watcher == null) {
+            opener = null;
+        }
+        prefetched = null;
+    }
+
+    /**
+     * @throws SQLException if the connection must not modify its workbook
+     */
+    void checkWritable() throws SQLException {
+        getWorkBook();
+        if (cachedWorkbook != null) {
+            throw new SQLException("Connection is read-only, the workbook is shared.");
+        }
+    }
+
+    /**
+     * @return whether the workbook is shared with other connections through the
+     *         {@link WorkbookCache}, so that not even the results of formulas may be stored in it
+     */
+    synchronized boolean isSharedWorkbook() {
+        return cachedWorkbook != null;
+    }
+
     public Statement createStatement() throws SQLException {
         return new XlsStatement(this);
     }
@@ -97,26 +396,96 @@ class XlsConnection implements Connection {
         return prepareStatement(sql);
     }
 
-    public void close() throws SQLException {
+    public synchronized void close() throws SQLException {
         if (closed) {
             return;
         }
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        releaseRetiredWorkbooks();
+        if (workbook == null) {
+            // never materialized, a pending prefetch is discarded once done
+            if (prefetched != null) {
+                prefetched.thenAccept(XlsConnection::closeQuietly);
+                prefetched = null;
+            }
+            opener = null;
+            closed = true;
+            return;
+        }
+        if (cachedWorkbook != null) {
+            WorkbookCache.getInstance().release(cachedWorkbook);
+            cachedWorkbook = null;
+            closed = true;
+            return;
+        }
         if (saveFile == null || !writeRequired) {
             IOUtils.closeQuietly(workbook);
             closed = true;
             return;
         }
-        try (FileObject fileObject = VFS.getManager().resolveFile(saveFile);
-                OutputStream outputStream = fileObject.getContent().getOutputStream()) {
-            workbook.write(outputStream);
+        if (Boolean.parseBoolean(String.valueOf(info.get(XlsDriver.ASYNC_SAVE)))) {
+            closeAsync();
+            return;
+        }
+        closed = true;
+        try {
+            WorkbookSaver.save(workbook, saveFile, changes);
         } catch (IOException exception) {
             throw new SQLException("Error while persisting changes.", exception);
         } finally {
             IOUtils.closeQuietly(workbook);
-            closed = true;
         }
     }
 
+    /**
+     * Closes the connection and persists pending changes on a background thread. The file is
+     * replaced atomically, see {@link WorkbookSaver}, so it is never seen half written.
+     *
+     * @return completes once the changes are persisted, exceptionally if that failed
+     * @throws SQLException if the connection could not be closed
+     */
+    public synchronized CompletableFuture<Void> closeAsync() throws SQLException {
+        if (saved != null) {
+            return saved;
+        }
+        if (closed || saveFile == null || !writeRequired) {
+            close();
+            saved = CompletableFuture.completedFuture(null);
+            return saved;
+        }
+        closed = true;
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+        releaseRetiredWorkbooks();
+        Workbook toSave = workbook;
+        URL target = saveFile;
+        XlsxChanges toWrite = changes;
+        saved = CompletableFuture.runAsync(() -> {
+            try {
+                WorkbookSaver.save(toSave, target, toWrite);
+            } catch (IOException e) {
+                LOGGER.severe("Error while persisting changes to " + target + ": " + e);
+                throw new UncheckedIOException(e);
+            } finally {
+                IOUtils.closeQuietly(toSave);
+            }
+        }, BACKGROUND_EXECUTOR);
+        return saved;
+    }
+
+    /**
+     * @return the pending save of a connection closed with {@value XlsDriver#ASYNC_SAVE}, or
+     *         {@code null} if the connection has not been closed asynchronously
+     */
+    public synchronized CompletableFuture<Void> getSaveFuture() {
+        return saved;
+    }
+
     @Override
     public boolean getAutoCommit() {
         return false;
@@ -268,8 +637,10 @@ class XlsConnection implements Connection {
     }
 
     public boolean isValid(int timeout) throws SQLException {
-        nyi();
-        return false;
+        if (timeout < 0) {
+            throw new SQLException("Negative timeout: " + timeout);
+        }
+        return !isClosed();
     }
 
     public void setClientInfo(String name, String value) throws SQLClientInfoException {
@@ -336,13 +707,58 @@ class XlsConnection implements Connection {
     }
 
     public <T> T unwrap(Class<T> iface) throws SQLException {
-        nyi();
-        return null;
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
     }
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        nyi();
-        return false;
+        return iface.isInstance(this);
+    }
+
+    private static void closeQuietly(XlsConnection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            LOGGER.fine("Could not close prefetched connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return a number changing whenever a sheet of the workbook was modified, so that statements
+     *         can drop the plans resolved against the previous content
+     */
+    synchronized long getModificationCount() {
+        return modifications;
+    }
+
+    /**
+     * Records that rows of a sheet were added, updated or deleted, see {@link XlsxChanges}.
+     */
+    void sheetModified(Sheet sheet) {
+        synchronized (this) {
+            modifications++;
+        }
+        if (changes != null) {
+            changes.sheetModified(sheet);
+        }
+    }
+
+    /**
+     * Records that sheets were created or dropped, or rows other sheets may refer to shifted.
+     */
+    void structureModified() {
+        synchronized (this) {
+            modifications++;
+        }
+        if (changes != null) {
+            changes.structureModified();
+        }
+    }
+
+    XlsxChanges getChanges() {
+        return changes;
     }
 
     public Boolean getWriteRequired() {
@@ -372,4 +788,35 @@ class XlsConnection implements Connection {
     public int getNetworkTimeout() throws SQLException {
         throw new SQLFeatureNotSupportedException("Not supported yet.");
     }
+
+    /**
+     * A workbook replaced by a reload, kept until the result sets reading it are closed.
+     */
+    private static final class RetiredWorkbook {
+        private final Workbook workbook;
+        private final WorkbookCache.Entry cachedWorkbook;
+        private int openResultSets;
+
+        RetiredWorkbook(Workbook workbook, WorkbookCache.Entry cachedWorkbook, int openResultSets) {
+            this.workbook = workbook;
+            this.cachedWorkbook = cachedWorkbook;
+            this.openResultSets = openResultSets;
+        }
+
+        void release() {
+            if (cachedWorkbook != null) {
+                WorkbookCache.getInstance().release(cachedWorkbook);
+            } else {
+                IOUtils.closeQuietly(workbook);
+            }
+        }
+    }
+
+    /**
+     * Opens the workbook of a lazy connection as an ordinary, eager connection.
+     */
+    @FunctionalInterface
+    interface Opener {
+        XlsConnection open() throws IOException;
+    }
 }
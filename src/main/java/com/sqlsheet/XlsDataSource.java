@@ -0,0 +1,273 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.ConnectionPoolDataSource;
+import javax.sql.DataSource;
+import javax.sql.PooledConnection;
+import java.io.PrintWriter;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * SqlSheet implementation of javax.sql.DataSource, pooling read-only connections.
+ *
+ * <p>
+ * All connections are opened with {@value XlsDriver#READ_ONLY}, so every connection to the same
+ * unchanged file is a lightweight view over one shared workbook snapshot. Closed connections go
+ * back to the pool; at most {@link #getMaxPoolSize()} idle connections are kept and idle ones are
+ * evicted after {@link #getIdleTimeout()} milliseconds.
+ *
+ * <pre>
+ * XlsDataSource dataSource = new XlsDataSource("jdbc:xls:file://~/dataSource.xlsx");
+ * dataSource.setMaxPoolSize(16);
+ * try (Connection connection = dataSource.getConnection()) {
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public class XlsDataSource implements DataSource, ConnectionPoolDataSource {
+
+    public static final int DEFAULT_MAX_POOL_SIZE = 8;
+    public static final long DEFAULT_IDLE_TIMEOUT = 60_000L;
+
+    private final XlsDriver driver = new XlsDriver();
+    private final Deque<XlsPooledConnection> idle = new ArrayDeque<>();
+    private final ConnectionEventListener poolListener = new PoolListener();
+    private final Properties properties = new Properties();
+    private String url;
+    private int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+    private long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+    private int loginTimeout;
+    private PrintWriter logWriter;
+    private boolean closed;
+
+    public XlsDataSource() {}
+
+    public XlsDataSource(String url) {
+        this.url = url;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    /**
+     * @return the connection properties, e.g. {@value XlsDriver#HEADLINE}
+     */
+    public Properties getProperties() {
+        return properties;
+    }
+
+    public void setProperties(Properties properties) {
+        this.properties.clear();
+        this.properties.putAll(properties);
+    }
+
+    public synchronized int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    public synchronized void setMaxPoolSize(int maxPoolSize) {
+        if (maxPoolSize < 0) {
+            throw new IllegalArgumentException("Negative pool size: " + maxPoolSize);
+        }
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * @return the milliseconds after which an idle connection is closed
+     */
+    public synchronized long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public synchronized void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * @return the number of idle connections currently pooled
+     */
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        XlsPooledConnection pooledConnection;
+        List<XlsPooledConnection> expired;
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("Data source is closed.");
+            }
+            expired = removeExpired();
+            pooledConnection = idle.pollFirst();
+        }
+        closeAll(expired);
+        if (pooledConnection == null) {
+            pooledConnection = getPooledConnection();
+        }
+        return pooledConnection.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return getConnection();
+    }
+
+    @Override
+    public XlsPooledConnection getPooledConnection() throws SQLException {
+        if (url == null) {
+            throw new SQLException("No url set.");
+        }
+        Properties info = new Properties();
+        info.putAll(properties);
+        info.setProperty(XlsDriver.READ_ONLY, Boolean.TRUE.toString());
+        Connection connection = driver.connect(url, info);
+        if (connection == null) {
+            throw new SQLException("Not a sqlsheet url: " + url);
+        }
+        XlsPooledConnection pooledConnection = new XlsPooledConnection(connection);
+        pooledConnection.addConnectionEventListener(poolListener);
+        return pooledConnection;
+    }
+
+    @Override
+    public PooledConnection getPooledConnection(String user, String password)
+            throws SQLException {
+        return getPooledConnection();
+    }
+
+    /**
+     * Closes all idle connections. Connections in use are closed when handed back.
+     */
+    public void close() throws SQLException {
+        List<XlsPooledConnection> all;
+        synchronized (this) {
+            closed = true;
+            all = new ArrayList<>(idle);
+            idle.clear();
+        }
+        closeAll(all);
+    }
+
+    private List<XlsPooledConnection> removeExpired() {
+        List<XlsPooledConnection> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        Iterator<XlsPooledConnection> it = idle.iterator();
+        while (it.hasNext()) {
+            XlsPooledConnection pooledConnection = it.next();
+            if (now - pooledConnection.getLastUsed() >= idleTimeout) {
+                it.remove();
+                expired.add(pooledConnection);
+            }
+        }
+        return expired;
+    }
+
+    private static void closeAll(List<XlsPooledConnection> pooledConnections) {
+        for (XlsPooledConnection pooledConnection : pooledConnections) {
+            try {
+                pooledConnection.close();
+            } catch (SQLException ex) {
+                XlsDriver.LOGGER.fine("Could not close pooled connection: " + ex.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public PrintWriter getLogWriter() {
+        return logWriter;
+    }
+
+    @Override
+    public void setLogWriter(PrintWriter out) {
+        this.logWriter = out;
+    }
+
+    @Override
+    public int getLoginTimeout() {
+        return loginTimeout;
+    }
+
+    @Override
+    public void setLoginTimeout(int seconds) {
+        this.loginTimeout = seconds;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        return XlsDriver.LOGGER;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) {
+        return iface.isInstance(this);
+    }
+
+    /**
+     * Returns logical connections to the pool when they are closed.
+     */
+    private class PoolListener implements ConnectionEventListener {
+
+        @Override
+        public void connectionClosed(ConnectionEvent event) {
+            XlsPooledConnection pooledConnection = (XlsPooledConnection) event.getSource();
+            List<XlsPooledConnection> discarded = new ArrayList<>();
+            synchronized (XlsDataSource.this) {
+                discarded.addAll(removeExpired());
+                if (!closed && idle.size() < maxPoolSize) {
+                    idle.addFirst(pooledConnection);
+                } else {
+                    discarded.add(pooledConnection);
+                }
+            }
+            closeAll(discarded);
+        }
+
+        @Override
+        public void connectionErrorOccurred(ConnectionEvent event) {
+            XlsPooledConnection pooledConnection = (XlsPooledConnection) event.getSource();
+            synchronized (XlsDataSource.this) {
+                idle.remove(pooledConnection);
+            }
+            closeAll(List.of(pooledConnection));
+        }
+    }
+}
@@ -17,7 +17,6 @@ package com.sqlsheet;
 import com.hrakaroo.glob.GlobPattern;
 import com.hrakaroo.glob.MatchingEngine;
 
-import org.apache.commons.io.FilenameUtils;
 import org.apache.poi.ss.SpreadsheetVersion;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
@@ -25,6 +24,7 @@ import org.apache.poi.ss.usermodel.DataFormatter;
 import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 import java.sql.Connection;
@@ -100,7 +100,7 @@ public class XlsDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public String getDatabaseProductVersion() throws SQLException {
-        return connection.workbook instanceof XSSFWorkbook ? "2007" : "97";
+        return connection.getWorkBook() instanceof XSSFWorkbook ? "2007" : "97";
     }
 
     @Override
@@ -692,25 +692,25 @@ public class XlsDatabaseMetaData implements DatabaseMetaData {
                         '_',
                         GlobPattern.HANDLE_ESCAPES);
 
-        String fileName = FilenameUtils.getBaseName(connection.saveFile.getFile());
-
-        if ((schemaPattern == null || schemaMatcher.matches(fileName))
-                && (types == null || Arrays.asList(types).contains("TABLE"))) {
-            for (int i = 0; i < connection.workbook.getNumberOfSheets(); i++) {
-                String tableName = connection.workbook.getSheetName(i);
-
-                if (!tableName.startsWith("!") && tableNameMatcher.matches(tableName)) {
-                    resultSet.addRow(
-                            null,
-                            fileName,
-                            connection.workbook.getSheetName(i),
-                            "TABLE",
-                            "",
-                            null,
-                            null,
-                            null,
-                            null,
-                            null);
+        if (types == null || Arrays.asList(types).contains("TABLE")) {
+            for (String schema : connection.getSchemaNames()) {
+                if (schemaPattern != null && !schemaMatcher.matches(schema)) {
+                    continue;
+                }
+                for (String tableName : connection.getTableNames(schema)) {
+                    if (!tableName.startsWith("!") && tableNameMatcher.matches(tableName)) {
+                        resultSet.addRow(
+                                null,
+                                schema,
+                                tableName,
+                                "TABLE",
+                                "",
+                                null,
+                                null,
+                                null,
+                                null,
+                                null);
+                    }
                 }
             }
         }
@@ -724,8 +724,9 @@ public class XlsDatabaseMetaData implements DatabaseMetaData {
                         new Object[] {"TABLE_SCHEM", String.class},
                         new Object[] {"TABLE_CATALOG", String.class});
 
-        String fileName = FilenameUtils.getBaseName(connection.saveFile.getFile());
-        resultSet.addRow(fileName, null);
+        for (String schema : connection.getSchemaNames()) {
+            resultSet.addRow(schema, null);
+        }
 
         return resultSet;
     }
@@ -776,8 +777,6 @@ public class XlsDatabaseMetaData implements DatabaseMetaData {
                         new Object[] {"IS_AUTOINCREMENT", String.class},
                         new Object[] {"IS_GENERATEDCOLUMN", String.class});
 
-        String fileName = FilenameUtils.getBaseName(connection.saveFile.getFile());
-
         int firstSheetRowOffset = connection.getInt(XlsDriver.HEADLINE, DEFAULT_HEADLINE);
         int firstSheetColOffset = connection.getInt(XlsDriver.FIRST_COL, DEFAULT_FIRST_COL);
 
@@ -798,166 +797,170 @@ public class XlsDatabaseMetaData implements DatabaseMetaData {
                         '_',
                         GlobPattern.HANDLE_ESCAPES);
 
-        if (schemaPattern == null || schemaMatcher.matches(fileName)) {
-            for (int i = 0; i < connection.workbook.getNumberOfSheets(); i++) {
-                Sheet sheet = connection.workbook.getSheetAt(i);
-                String tableName = connection.workbook.getSheetName(i);
+        for (String schema : connection.getSchemaNames()) {
+            if (schemaPattern == null || schemaMatcher.matches(schema)) {
+                Workbook workbook = connection.getWorkBook(schema);
+                for (int i = 0; i < workbook.getNumberOfSheets(); i++) {
+                    Sheet sheet = workbook.getSheetAt(i);
+                    String tableName = workbook.getSheetName(i);
 
-                if (tableNameMatcher.matches(tableName)) {
-                    LinkedList<String> columnNames = new LinkedList<>();
-                    LinkedList<Integer> columnTypes = new LinkedList<>();
-                    DataFormatter formatter = new DataFormatter();
+                    if (tableNameMatcher.matches(tableName)) {
+                        LinkedList<String> columnNames = new LinkedList<>();
+                        LinkedList<Integer> columnTypes = new LinkedList<>();
+                        DataFormatter formatter = new DataFormatter();
 
-                    int r = firstSheetRowOffset - 1;
+                        int r = firstSheetRowOffset - 1;
 
-                    Row row = sheet.getRow(r);
-                    if (row == null) {
-                        throw new SQLException("No header row in sheet");
-                    }
-                    for (short c = (short) firstSheetColOffset; c < row.getLastCellNum(); c++) {
-                        Cell cell = row.getCell(c);
-                        String columnName = formatter.formatCellValue(cell);
-
-                        // Is it unique in the column name set
-                        int suffix;
-                        while (columnNames.contains(columnName)) {
-                            suffix = 1;
-                            columnName += "_" + suffix;
+                        Row row = sheet.getRow(r);
+                        if (row == null) {
+                            throw new SQLException("No header row in sheet");
                         }
-                        columnNames.add(columnName);
-                    }
+                        for (short c = (short) firstSheetColOffset; c < row.getLastCellNum(); c++) {
+                            Cell cell = row.getCell(c);
+                            String columnName = formatter.formatCellValue(cell);
 
-                    row = sheet.getRow(++r);
-                    if (row == null) {
-                        for (short c = (short) firstSheetColOffset; c < (short) firstSheetColOffset
-                                + columnNames.size(); c++) {
-                            // @todo: set the actual type based on the formats
-                            columnTypes.add(Types.VARCHAR);
+                            // Is it unique in the column name set
+                            int suffix;
+                            while (columnNames.contains(columnName)) {
+                                suffix = 1;
+                                columnName += "_" + suffix;
+                            }
+                            columnNames.add(columnName);
                         }
-                    } else {
-                        for (short c = (short) firstSheetColOffset; c < (short) firstSheetColOffset
-                                + columnNames.size(); c++) {
-                            Cell cell = row.getCell(c);
-                            if (cell != null) {
-                                int typeCode;
-                                CellType excelCellType = cell.getCellType();
-                                switch (excelCellType) {
-                                    case BOOLEAN:
-                                        typeCode = Types.BOOLEAN;
-                                        break;
-                                    case STRING:
-                                        typeCode = Types.VARCHAR;
-                                        break;
-                                    case NUMERIC:
-                                        if (DateUtil.isCellDateFormatted(cell)) {
-                                            typeCode = Types.DATE;
-                                        } else {
-                                            typeCode = Types.DOUBLE;
-                                        }
-                                        break;
-                                    case BLANK:
-                                        typeCode = Types.NULL;
-                                        break;
-                                    case FORMULA:
-                                        try {
-                                            cell.getStringCellValue();
-                                            typeCode = Types.VARCHAR;
-                                        } catch (Exception e) {
-                                            cell.getNumericCellValue();
-                                            typeCode = Types.DOUBLE;
-                                        }
-                                        break;
-                                    case ERROR:
-                                        throw new RuntimeException(
-                                                "The ExcelType ( ERROR ) is not supported - Cell ("
-                                                        + r + "," + c + ")");
 
-                                    default:
-                                        throw new RuntimeException(
-                                                "The ExcelType ("
-                                                        + excelCellType
-                                                        + ") is not supported - Cell ("
-                                                        + r
-                                                        + ","
-                                                        + c
-                                                        + ")");
-                                }
-                                columnTypes.add(typeCode);
-                            } else {
+                        row = sheet.getRow(++r);
+                        if (row == null) {
+                            for (short c = (short) firstSheetColOffset;
+                                    c < (short) firstSheetColOffset + columnNames.size(); c++) {
                                 // @todo: set the actual type based on the formats
                                 columnTypes.add(Types.VARCHAR);
                             }
+                        } else {
+                            for (short c = (short) firstSheetColOffset;
+                                    c < (short) firstSheetColOffset + columnNames.size(); c++) {
+                                Cell cell = row.getCell(c);
+                                if (cell != null) {
+                                    int typeCode;
+                                    CellType excelCellType = cell.getCellType();
+                                    switch (excelCellType) {
+                                        case BOOLEAN:
+                                            typeCode = Types.BOOLEAN;
+                                            break;
+                                        case STRING:
+                                            typeCode = Types.VARCHAR;
+                                            break;
+                                        case NUMERIC:
+                                            if (DateUtil.isCellDateFormatted(cell)) {
+                                                typeCode = Types.DATE;
+                                            } else {
+                                                typeCode = Types.DOUBLE;
+                                            }
+                                            break;
+                                        case BLANK:
+                                            typeCode = Types.NULL;
+                                            break;
+                                        case FORMULA:
+                                            try {
+                                                cell.getStringCellValue();
+                                                typeCode = Types.VARCHAR;
+                                            } catch (Exception e) {
+                                                cell.getNumericCellValue();
+                                                typeCode = Types.DOUBLE;
+                                            }
+                                            break;
+                                        case ERROR:
+                                            throw new RuntimeException(
+                                                    "The ExcelType ( ERROR ) is not supported"
+                                                            + " - Cell (" + r + "," + c + ")");
+
+                                        default:
+                                            throw new RuntimeException(
+                                                    "The ExcelType ("
+                                                            + excelCellType
+                                                            + ") is not supported - Cell ("
+                                                            + r
+                                                            + ","
+                                                            + c
+                                                            + ")");
+                                    }
+                                    columnTypes.add(typeCode);
+                                } else {
+                                    // @todo: set the actual type based on the formats
+                                    columnTypes.add(Types.VARCHAR);
+                                }
+                            }
                         }
-                    }
 
-                    for (int c = 0; c < columnNames.size(); c++) {
-                        if (columnNameMatcher.matches(columnNames.get(c))) {
-
-                            String typeName;
-                            int columnSize;
-                            int decimalDigits;
-
-                            switch (columnTypes.get(c)) {
-                                case Types.BOOLEAN:
-                                    typeName = Boolean.class.getName();
-                                    // @todo: check if 1 is correct
-                                    columnSize = 1;
-                                    decimalDigits = 0;
-                                    break;
-                                case Types.DATE:
-                                    typeName = java.sql.Date.class.getName();
-                                    // @todo: check if 8 is correct
-                                    columnSize = 8;
-                                    decimalDigits = 0;
-                                    break;
-                                case Types.DOUBLE:
-                                    typeName = Double.class.getName();
-                                    columnSize = Double.BYTES;
-                                    decimalDigits = 15;
-                                    break;
-                                default:
-                                    typeName = String.class.getName();
-                                    columnSize = 4096;
-                                    decimalDigits = 0;
-                                    break;
-                            }
+                        for (int c = 0; c < columnNames.size(); c++) {
+                            if (columnNameMatcher.matches(columnNames.get(c))) {
+
+                                String typeName;
+                                int columnSize;
+                                int decimalDigits;
+
+                                switch (columnTypes.get(c)) {
+                                    case Types.BOOLEAN:
+                                        typeName = Boolean.class.getName();
+                                        // @todo: check if 1 is correct
+                                        columnSize = 1;
+                                        decimalDigits = 0;
+                                        break;
+                                    case Types.DATE:
+                                        typeName = java.sql.Date.class.getName();
+                                        // @todo: check if 8 is correct
+                                        columnSize = 8;
+                                        decimalDigits = 0;
+                                        break;
+                                    case Types.DOUBLE:
+                                        typeName = Double.class.getName();
+                                        columnSize = Double.BYTES;
+                                        decimalDigits = 15;
+                                        break;
+                                    default:
+                                        typeName = String.class.getName();
+                                        columnSize = 4096;
+                                        decimalDigits = 0;
+                                        break;
+                                }
 
-                            resultSet.addRow(
-                                    null, // TABLE_CAT
-                                    fileName, // TABLE_SCHEM
-                                    tableName, // TABLE_NAME
-                                    columnNames.get(c), // COLUMN_NAME
-                                    columnTypes.get(c), // DATA_TYPE
-                                    typeName, // TYPE_NAME
-                                    columnSize, // COLUMN_SIZE
-                                    null, // BUFFER_LENGTH
-                                    decimalDigits, // DECIMAL_DIGITS
-                                    10, // NUM_PREC_RADIX
-                                    DatabaseMetaData.columnNullable, // NULLABLE
-                                    "", // REMARKS
-                                    null, // COLUMN_DEF String => default value for the column,
-                                    // which should be
-                                    // interpreted as a string when the value is enclosed in
-                                    // single quotes (may
-                                    // be null)
-                                    null, // SQL_DATA_TYPE int => unused
-                                    null, // SQL_DATETIME_SUB int => unused
-                                    4096, // CHAR_OCTET_LENGTH int => for char types the maximum
-                                    // number of bytes in
-                                    // the column
-                                    c, // ORDINAL_POSITION
-                                    "YES", // String => ISO rules are used to determine the
-                                    // nullability for a column.
-                                    null, // SCOPE_CATALOG
-                                    null, // SCOPE_SCHEMA
-                                    null, // SCOPE_TABLE
-                                    null, // SOURCE_DATA_TYPE
-                                    "NO", // IS_AUTOINCREMENT String => Indicates whether this
-                                    // column is auto
-                                    // incremented
-                                    "NO" // IS_GENERATEDCOLUMN String => Indicates whether this is a
-                            // generated column
-                            );
+                                resultSet.addRow(
+                                        null, // TABLE_CAT
+                                        schema, // TABLE_SCHEM
+                                        tableName, // TABLE_NAME
+                                        columnNames.get(c), // COLUMN_NAME
+                                        columnTypes.get(c), // DATA_TYPE
+                                        typeName, // TYPE_NAME
+                                        columnSize, // COLUMN_SIZE
+                                        null, // BUFFER_LENGTH
+                                        decimalDigits, // DECIMAL_DIGITS
+                                        10, // NUM_PREC_RADIX
+                                        DatabaseMetaData.columnNullable, // NULLABLE
+                                        "", // REMARKS
+                                        null, // COLUMN_DEF String => default value for the column,
+                                        // which should be
+                                        // interpreted as a string when the value is enclosed in
+                                        // single quotes (may
+                                        // be null)
+                                        null, // SQL_DATA_TYPE int => unused
+                                        null, // SQL_DATETIME_SUB int => unused
+                                        4096, // CHAR_OCTET_LENGTH int => for char types the maximum
+                                        // number of bytes in
+                                        // the column
+                                        c, // ORDINAL_POSITION
+                                        "YES", // String => ISO rules are used to determine the
+                                        // nullability for a column.
+                                        null, // SCOPE_CATALOG
+                                        null, // SCOPE_SCHEMA
+                                        null, // SCOPE_TABLE
+                                        null, // SOURCE_DATA_TYPE
+                                        "NO", // IS_AUTOINCREMENT String => Indicates whether this
+                                        // column is auto
+                                        // incremented
+                                        "NO" // IS_GENERATEDCOLUMN String => Indicates whether this
+                                // is a
+                                // generated column
+                                );
+                            }
                         }
                     }
                 }
@@ -1270,7 +1273,7 @@ public class XlsDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public boolean supportsBatchUpdates() throws SQLException {
-        return false;
+        return true;
     }
 
     @Override
@@ -1334,7 +1337,7 @@ public class XlsDatabaseMetaData implements DatabaseMetaData {
 
     @Override
     public int getDatabaseMajorVersion() throws SQLException {
-        return connection.workbook instanceof XSSFWorkbook ? 2007 : 97;
+        return connection.getWorkBook() instanceof XSSFWorkbook ? 2007 : 97;
     }
 
     @Override
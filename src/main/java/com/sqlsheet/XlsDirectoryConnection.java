@@ -0,0 +1,213 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.FileSystemException;
+import org.apache.commons.vfs2.VFS;
+import org.apache.poi.ss.usermodel.Workbook;
+
+import java.io.IOException;
+import java.net.URL;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+/**
+ * Read-only connection to a directory, in which every xls and xlsx file is a schema named after the
+ * file and every sheet a table.
+ *
+ * <p>
+ * Schemas are listed from the directory and tables from the workbook part of each file, so
+ * browsing the metadata never parses sheet data. A workbook is parsed through the
+ * {@link WorkbookCache} the first time one of its tables is queried; the connection keeps at most
+ * {@value XlsDriver#MAX_RESIDENT_WORKBOOKS} of them referenced and releases the least recently
+ * used one beyond that. Result sets already open on a released workbook stay readable, since POI
+ * keeps the parsed sheets in memory.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+class XlsDirectoryConnection extends XlsConnection {
+
+    static final int DEFAULT_MAX_RESIDENT_WORKBOOKS = 8;
+
+    private static final Pattern WORKBOOK_PATTERN =
+            Pattern.compile("^xlsx?$", Pattern.CASE_INSENSITIVE);
+
+    private final MemoryBudget budget;
+    private final int maxResidentWorkbooks;
+    private final LinkedHashMap<String, WorkbookCache.Entry> resident =
+            new LinkedHashMap<>(16, 0.75f, true);
+    private String schema;
+    private boolean directoryClosed;
+
+    XlsDirectoryConnection(URL directory, Properties info) {
+        super(directory, info);
+        this.budget = MemoryBudget.inMemory(info);
+        this.maxResidentWorkbooks =
+                Math.max(1, getInt(XlsDriver.MAX_RESIDENT_WORKBOOKS,
+                        DEFAULT_MAX_RESIDENT_WORKBOOKS));
+    }
+
+    /**
+     * @return the workbook of the current schema, see {@link #setSchema(String)}
+     */
+    @Override
+    synchronized Workbook getWorkBook() throws SQLException {
+        if (schema == null) {
+            throw new SQLException(
+                    "No schema selected, qualify the table with the name of its workbook file.");
+        }
+        return getWorkBook(schema);
+    }
+
+    @Override
+    synchronized Workbook getWorkBook(String schema) throws SQLException {
+        if (schema == null) {
+            return getWorkBook();
+        }
+        if (directoryClosed) {
+            throw new SQLException("Connection is closed.");
+        }
+        String key = schema.toUpperCase();
+        WorkbookCache.Entry entry = resident.get(key);
+        if (entry == null) {
+            try (FileObject file = findWorkbookFile(schema)) {
+                entry = XlsDriver.acquireCachedWorkbook(file, budget);
+            } catch (IOException e) {
+                throw new SQLException(e.getMessage(), e);
+            }
+            resident.put(key, entry);
+            releaseExceeding();
+        }
+        return entry.getWorkbook();
+    }
+
+    private void releaseExceeding() {
+        Iterator<WorkbookCache.Entry> it = resident.values().iterator();
+        while (resident.size() > maxResidentWorkbooks && it.hasNext()) {
+            WorkbookCache.Entry eldest = it.next();
+            it.remove();
+            WorkbookCache.getInstance().release(eldest);
+        }
+    }
+
+    /**
+     * @return the number of workbooks currently referenced by this connection
+     */
+    synchronized int getResidentWorkbookCount() {
+        return resident.size();
+    }
+
+    /**
+     * @return the estimated heap held by the workbooks referenced by this connection
+     */
+    @Override
+    public synchronized long getEstimatedMemory() {
+        long bytes = 0;
+        for (WorkbookCache.Entry entry : resident.values()) {
+            bytes += entry.getEstimatedMemory();
+        }
+        return bytes;
+    }
+
+    @Override
+    List<String> getSchemaNames() throws SQLException {
+        return new ArrayList<>(listWorkbookFiles().keySet());
+    }
+
+    @Override
+    List<String> getTableNames(String schema) throws SQLException {
+        try (FileObject file = findWorkbookFile(schema)) {
+            return SheetNames.read(file);
+        } catch (IOException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+    }
+
+    private FileObject findWorkbookFile(String schema) throws SQLException {
+        for (Map.Entry<String, FileObject> each : listWorkbookFiles().entrySet()) {
+            if (each.getKey().equalsIgnoreCase(schema)) {
+                return each.getValue();
+            }
+        }
+        throw new SQLException("No workbook named '" + schema + "' in " + getLocation());
+    }
+
+    /**
+     * @return the workbook files of the directory by schema name, sorted
+     */
+    private Map<String, FileObject> listWorkbookFiles() throws SQLException {
+        Map<String, FileObject> files = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        try {
+            FileObject directory = VFS.getManager().resolveFile(getLocation());
+            for (FileObject child : directory.getChildren()) {
+                String baseName = child.getName().getBaseName();
+                // skip the lock files Excel leaves next to open workbooks
+                if (child.isFile()
+                        && !baseName.startsWith("~$")
+                        && WORKBOOK_PATTERN.matcher(child.getName().getExtension()).matches()) {
+                    String schemaName = baseName.substring(0, baseName.lastIndexOf('.'));
+                    files.putIfAbsent(schemaName, child);
+                }
+            }
+        } catch (FileSystemException e) {
+            throw new SQLException(e.getMessage(), e);
+        }
+        return files;
+    }
+
+    @Override
+    void checkWritable() throws SQLException {
+        throw new SQLException("Directory connections are read-only.");
+    }
+
+    @Override
+    boolean isSharedWorkbook() {
+        return true;
+    }
+
+    @Override
+    public synchronized String getSchema() {
+        return schema;
+    }
+
+    @Override
+    public synchronized void setSchema(String schema) {
+        this.schema = schema;
+    }
+
+    @Override
+    public synchronized boolean isClosed() {
+        return directoryClosed;
+    }
+
+    @Override
+    public synchronized void close() throws SQLException {
+        if (directoryClosed) {
+            return;
+        }
+        directoryClosed = true;
+        for (WorkbookCache.Entry entry : resident.values()) {
+            WorkbookCache.getInstance().release(entry);
+        }
+        resident.clear();
+    }
+}
@@ -13,6 +13,8 @@
  */
 package com.sqlsheet;
 
+import com.sqlsheet.parser.StatementCache;
+import com.sqlsheet.query.FilterCache;
 import com.sqlsheet.stream.XlsStreamConnection;
 
 import org.apache.commons.vfs2.FileObject;
@@ -20,7 +22,6 @@ import org.apache.commons.vfs2.VFS;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.ss.usermodel.WorkbookFactory;
-import org.apache.poi.util.IOUtils;
 import org.apache.poi.xssf.streaming.SXSSFWorkbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
@@ -36,6 +37,7 @@ import java.sql.DriverPropertyInfo;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.Properties;
+import java.util.function.IntConsumer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -53,7 +55,33 @@ public class XlsDriver implements java.sql.Driver {
     public static final String WRITE_STREAMING = "writeStreaming";
     public static final String HEADLINE = "headLine";
     public static final String FIRST_COL = "firstColumn";
+    public static final String READ_ONLY = "readOnly";
+    public static final String WORKBOOK_CACHE_SIZE = "workbookCacheSize";
+    public static final String LAZY_CONNECT = "lazyConnect";
+    public static final String PREFETCH = "prefetch";
+    public static final String MAX_WORKBOOK_MEMORY = "maxWorkbookMemory";
+    public static final String TEMP_FILE_THRESHOLD = "tempFileThreshold";
+    public static final String TEMP_FILE_PACKAGE_PARTS = "tempFilePackageParts";
+    public static final String BYTE_ARRAY_MAX_OVERRIDE = "byteArrayMaxOverride";
+    public static final String ROW_CACHE_SIZE = "rowCacheSize";
+    public static final String BUFFER_SIZE = "bufferSize";
+    public static final String SHARED_STRINGS = "sharedStrings";
+    public static final String AVOID_TEMP_FILES = "avoidTempFiles";
+    public static final String ADAPTIVE_ROW_CACHE = "adaptiveRowCache";
+    public static final String MAX_ROW_CACHE_SIZE = "maxRowCacheSize";
+    public static final String MAX_RESIDENT_WORKBOOKS = "maxResidentWorkbooks";
+    public static final String WATCH = "watch";
+    public static final String WATCH_INTERVAL = "watchInterval";
+    public static final String ASYNC_SAVE = "asyncSave";
+    public static final String STATEMENT_CACHE_SIZE = "statementCacheSize";
+    public static final String FILTER_CACHE_SIZE = "filterCacheSize";
+    public static final String QUERY_MEMORY = "queryMemory";
     public static final String URL_SCHEME = "jdbc:xls:";
+    /**
+     * Prefix of the system properties holding the driver wide settings, e.g.
+     * {@code -Dsqlsheet.workbookCacheSize=16}.
+     */
+    public static final String SYSTEM_PROPERTY_PREFIX = "sqlsheet.";
     public static final Logger LOGGER = Logger.getLogger(XlsDriver.class.getName());
     private static final Pattern CLASSPATH_OR_RESOURCE_PATTERN =
             Pattern.compile("^(classpath|resource):", Pattern.CASE_INSENSITIVE);
@@ -66,6 +94,44 @@ public class XlsDriver implements java.sql.Driver {
         } catch (SQLException e) {
             LOGGER.log(Level.SEVERE, "Couldn't register " + XlsDriver.class.getName(), e);
         }
+        configureCache(WORKBOOK_CACHE_SIZE, XlsDriver::setWorkbookCacheSize);
+        configureCache(STATEMENT_CACHE_SIZE, XlsDriver::setStatementCacheSize);
+        configureCache(FILTER_CACHE_SIZE, XlsDriver::setFilterCacheSize);
+    }
+
+    private static void configureCache(String key, IntConsumer setter) {
+        String value = System.getProperty(SYSTEM_PROPERTY_PREFIX + key);
+        if (value == null) {
+            return;
+        }
+        try {
+            setter.accept(Integer.parseInt(value.trim()));
+        } catch (IllegalArgumentException e) {
+            LOGGER.warning("Ignoring " + SYSTEM_PROPERTY_PREFIX + key + "=" + value + ": "
+                    + e.getMessage());
+        }
+    }
+
+    /**
+     * @param maximumSize the number of workbooks shared by {@code readOnly=true} connections to
+     *        keep resident, {@code 0} disables sharing
+     */
+    public static void setWorkbookCacheSize(int maximumSize) {
+        WorkbookCache.getInstance().setMaximumSize(maximumSize);
+    }
+
+    /**
+     * @param maximumSize the number of parsed statements to keep, {@code 0} disables caching
+     */
+    public static void setStatementCacheSize(int maximumSize) {
+        StatementCache.getInstance().setMaximumSize(maximumSize);
+    }
+
+    /**
+     * @param maximumSize the number of compiled conditions to keep, {@code 0} disables caching
+     */
+    public static void setFilterCacheSize(int maximumSize) {
+        FilterCache.getInstance().setMaximumSize(maximumSize);
     }
 
     /**
@@ -117,9 +183,70 @@ public class XlsDriver implements java.sql.Driver {
      * <li>jdbc:xls:file://~/dataSource.xlsx
      * <li>jdbc:xls:classpath:/com/sqlsheet/dataSource.xlsx
      * <li>jdbc:xls:resource:/com/sqlsheet/dataSource.xlsx
+     * <li>jdbc:xls:file://~/dropFolder/
      * </ul>
      *
      * <p>
+     * A URL pointing to a directory opens a read-only connection in which every xls and xlsx file
+     * is a schema named after the file and every sheet a table, e.g.
+     * {@code SELECT * FROM dataSource.sheet1}. Workbooks are parsed when first queried and at
+     * most {@code maxResidentWorkbooks} (default 8) are kept referenced by the connection.
+     *
+     * <p>
+     * With {@code readOnly=true} the connection rejects any modification and shares its parsed
+     * workbook with other read-only connections to the same, unchanged file. The number of shared
+     * workbooks kept resident is bounded by the driver wide {@code workbookCacheSize} (default 8,
+     * 0 disables the cache).
+     *
+     * <p>
+     * With {@code lazyConnect=true} the workbook is not opened before the first statement needs
+     * it, so acquiring the connection does not depend on the size of the file. With
+     * {@code prefetch=true} it is opened right away on a background thread instead.
+     *
+     * <p>
+     * With {@code watch=true} the connection reloads its workbook once the file content changes.
+     * Local files are watched, other files are polled every {@code watchInterval} milliseconds
+     * (default 2000). Statements then drop their result sets over the previous workbook.
+     *
+     * <p>
+     * Modified workbooks are saved on {@code close()} into a temporary sibling file which then
+     * atomically replaces the original. Of an xlsx file only the modified sheets, shared strings
+     * and styles are written again, the other parts are copied as they are. With
+     * {@code asyncSave=true} the save runs in the background; {@code XlsConnection.getSaveFuture()}
+     * tells when it is done.
+     *
+     * <p>
+     * The memory used while opening is governed per connection by {@code tempFileThreshold} (zip
+     * entries larger than this many bytes are spilled to temporary files),
+     * {@code tempFilePackageParts}, {@code byteArrayMaxOverride} and {@code maxWorkbookMemory}
+     * (the estimated heap a parsed workbook may hold, 0 for no limit). See {@link MemoryBudget}.
+     *
+     * <p>
+     * With {@code readStreaming=true} the reader is tuned by {@code rowCacheSize} (default 100),
+     * {@code bufferSize} (default 4096), {@code sharedStrings} (one of {@code POI_DEFAULT},
+     * {@code POI_READ_ONLY}, {@code TEMP_FILE_BACKED}, {@code CUSTOM_MAP_BACKED}) and
+     * {@code avoidTempFiles}. {@code adaptiveRowCache=true} grows the row cache of later
+     * connections to the same file with the observed consumer throughput, up to
+     * {@code maxRowCacheSize} (default 10000).
+     *
+     * <p>
+     * Parsed statements are cached by SQL text for all connections, {@code statementCacheSize}
+     * (default 256, 0 disables the cache) bounds their number. See {@link StatementCache}.
+     * Conditions are compiled once per normalized text, {@code filterCacheSize} (default 256)
+     * bounds the number kept. See {@link FilterCache}.
+     *
+     * <p>
+     * The sizes of these caches shared by all connections are driver wide settings, not
+     * connection properties: they are read from the system properties prefixed with
+     * {@link #SYSTEM_PROPERTY_PREFIX} when the driver is loaded, e.g.
+     * {@code -Dsqlsheet.statementCacheSize=0}, and changed with {@link #setWorkbookCacheSize},
+     * {@link #setStatementCacheSize} and {@link #setFilterCacheSize}.
+     *
+     * <p>
+     * {@code ORDER BY} keeps up to {@code queryMemory} bytes (default 64 MB) of rows on the heap
+     * per query, beyond that sorted runs are spilled to temporary files and merged.
+     *
+     * <p>
      * The {@code Properties} argument can be used to pass arbitrary string tag/value pairs as
      * connection arguments. Normally at least "user" and "password" properties should be included
      * in the {@code Properties} object.
@@ -172,6 +299,13 @@ public class XlsDriver implements java.sql.Driver {
                 }
             }
         }
+        for (String key : new String[] {
+                WORKBOOK_CACHE_SIZE, STATEMENT_CACHE_SIZE, FILTER_CACHE_SIZE}) {
+            if (info.get(key) != null) {
+                LOGGER.warning(key + " is a driver wide setting, ignoring the connection property."
+                        + " Set the system property " + SYSTEM_PROPERTY_PREFIX + key + " instead.");
+            }
+        }
         String strippedUrlStr = questionIndex >= 0
                 ? url.substring(0, questionIndex)
                 : url;
@@ -180,30 +314,69 @@ public class XlsDriver implements java.sql.Driver {
         workbookUriStr =
                 CLASSPATH_OR_RESOURCE_PATTERN.matcher(workbookUriStr).replaceFirst("res:");
         try (FileObject file = VFS.getManager().resolveFile(workbookUriStr)) {
+            if (file.isFolder()) {
+                return new XlsDirectoryConnection(file.getURL(), info);
+            }
             // If streaming requested for read
             if (has(info, READ_STREAMING)) {
                 return new XlsStreamConnection(file.getURL(), info);
-            } else if (file.isWriteable()) {
-                // If streaming requested for write
-                boolean xlsx = XLSX_PATTERN.matcher(file.getName().getExtension()).matches();
-                if (has(info, WRITE_STREAMING)) {
-                    if (xlsx) {
-                        return new XlsConnection(getOrCreateXlsxStream(file), file.getURL(), info);
+            } else if (has(info, LAZY_CONNECT) || has(info, PREFETCH) || has(info, WATCH)) {
+                String lazyUriStr = workbookUriStr;
+                XlsConnection connection = new XlsConnection(
+                        file.getURL(),
+                        () -> {
+                            try (FileObject lazyFile =
+                                    VFS.getManager().resolveFile(lazyUriStr)) {
+                                return open(lazyFile, info, strippedUrlStr);
+                            }
+                        },
+                        info,
+                        has(info, PREFETCH));
+                if (has(info, WATCH)) {
+                    Object interval = info.get(WATCH_INTERVAL);
+                    connection.setWatcher(WorkbookWatcher.watch(file, interval != null
+                            ? Long.parseLong(interval.toString())
+                            : WorkbookWatcher.DEFAULT_WATCH_INTERVAL));
+                    if (!has(info, LAZY_CONNECT) && !has(info, PREFETCH)) {
+                        try {
+                            connection.getWorkBook();
+                        } catch (SQLException e) {
+                            connection.close();
+                            throw e;
+                        }
                     }
-                    LOGGER.warning(WRITE_STREAMING + " is not supported on " + strippedUrlStr);
-                }
-                return new XlsConnection(getOrCreateWorkbook(file, xlsx), file.getURL(), info);
-            } else {
-                try (InputStream in = file.getContent().getInputStream()) {
-                    // If plain url provided
-                    return new XlsConnection(WorkbookFactory.create(in), info);
                 }
+                return connection;
             }
+            return open(file, info, strippedUrlStr);
         } catch (Exception e) {
             throw new SQLException(e.getMessage(), e);
         }
     }
 
+    private XlsConnection open(FileObject file, Properties info, String strippedUrlStr)
+            throws IOException {
+        MemoryBudget budget = MemoryBudget.inMemory(info);
+        if (has(info, READ_ONLY)) {
+            return new XlsConnection(acquireCachedWorkbook(file, budget), file.getURL(), info);
+        } else if (file.isWriteable()) {
+            // If streaming requested for write
+            boolean xlsx = XLSX_PATTERN.matcher(file.getName().getExtension()).matches();
+            if (has(info, WRITE_STREAMING)) {
+                if (xlsx) {
+                    return new XlsConnection(
+                            getOrCreateXlsxStream(file, budget), file.getURL(), info);
+                }
+                LOGGER.warning(WRITE_STREAMING + " is not supported on " + strippedUrlStr);
+            }
+            return new XlsConnection(
+                    getOrCreateWorkbook(file, xlsx, budget), file.getURL(), info);
+        } else {
+            // If plain url provided
+            return new XlsConnection(budget.check(openReadOnlyWorkbook(file, budget)), info);
+        }
+    }
+
     boolean has(Properties info, String key) {
         Object value = info.get(key);
         if (value == null) {
@@ -212,7 +385,54 @@ public class XlsDriver implements java.sql.Driver {
         return value.equals(Boolean.TRUE.toString());
     }
 
-    private SXSSFWorkbook getOrCreateXlsxStream(FileObject file) throws IOException {
+    static WorkbookCache.Entry acquireCachedWorkbook(FileObject file, MemoryBudget budget)
+            throws IOException {
+        WorkbookCache cache = WorkbookCache.getInstance();
+        WorkbookCache.Entry entry = cache.acquire(
+                file.getURL().toString(),
+                file.getContent().getLastModifiedTime(),
+                file.getContent().getSize(),
+                () -> openReadOnlyWorkbook(file, budget));
+        try {
+            budget.verify(entry.getEstimatedMemory());
+        } catch (IOException e) {
+            cache.release(entry);
+            throw e;
+        }
+        return entry;
+    }
+
+    /**
+     * Opens a workbook which is never written back. Local files are opened directly, so POI reads
+     * the zip (xlsx) or the POIFS blocks (xls) with random access instead of buffering the whole
+     * content on the heap. The file stays open until the workbook is closed.
+     */
+    private static Workbook openReadOnlyWorkbook(FileObject file, MemoryBudget budget)
+            throws IOException {
+        File localFile = toLocalFile(file);
+        if (localFile != null) {
+            return budget.open(() -> WorkbookFactory.create(localFile, null, true));
+        }
+        return budget.open(() -> {
+            try (InputStream in = file.getContent().getInputStream()) {
+                return WorkbookFactory.create(in);
+            }
+        });
+    }
+
+    /**
+     * @param file the resolved file
+     * @return the file on the local file system, or {@code null} if it can only be streamed
+     */
+    static File toLocalFile(FileObject file) throws IOException {
+        if (!"file".equalsIgnoreCase(file.getName().getScheme()) || !file.isFile()) {
+            return null;
+        }
+        return file.getPath().toFile();
+    }
+
+    private SXSSFWorkbook getOrCreateXlsxStream(FileObject file, MemoryBudget budget)
+            throws IOException {
         if (!file.exists() && VFS.getManager().canCreateFileSystem(file)
                 || file.getContent().getSize() == 0) {
             try (Workbook workbook = new XSSFWorkbook()) {
@@ -222,24 +442,27 @@ public class XlsDriver implements java.sql.Driver {
             LOGGER.warning(
                     "File " + file.getPath() + " is not empty, and will parsed to memory!");
         }
-        try (InputStream in = file.getContent().getInputStream()) {
-            return new SXSSFWorkbook(new XSSFWorkbook(in), 1000, false);
-        }
+        XSSFWorkbook template = budget.check(budget.open(() -> {
+            try (InputStream in = file.getContent().getInputStream()) {
+                return new XSSFWorkbook(in);
+            }
+        }));
+        return new SXSSFWorkbook(template, 1000, false);
     }
 
-    private Workbook getOrCreateWorkbook(FileObject file, boolean xlsx) throws IOException {
+    private Workbook getOrCreateWorkbook(FileObject file, boolean xlsx, MemoryBudget budget)
+            throws IOException {
         if (!file.exists() && VFS.getManager().canCreateFileSystem(file)
                 || file.getContent().getSize() == 0) {
             try (Workbook workbook = xlsx ? new XSSFWorkbook() : new HSSFWorkbook()) {
                 flushWorkbook(workbook, file);
             }
         }
-        org.apache.poi.openxml4j.util.ZipInputStreamZipEntrySource
-                .setThresholdBytesForTempFiles(100_000_000);
-        IOUtils.setByteArrayMaxOverride(500_000_000);
-        try (InputStream in = file.getContent().getInputStream()) {
-            return WorkbookFactory.create(in);
-        }
+        return budget.check(budget.open(() -> {
+            try (InputStream in = file.getContent().getInputStream()) {
+                return WorkbookFactory.create(in);
+            }
+        }));
     }
 
     private void flushWorkbook(Workbook workbook, FileObject file) throws IOException {
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import javax.sql.ConnectionEvent;
+import javax.sql.ConnectionEventListener;
+import javax.sql.PooledConnection;
+import javax.sql.StatementEvent;
+import javax.sql.StatementEventListener;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * SqlSheet implementation of javax.sql.PooledConnection.
+ *
+ * <p>
+ * Wraps one physical connection and hands out logical connections whose {@code close()} notifies
+ * the registered listeners instead of closing the physical connection. Statements are handed out
+ * wrapped as well: they answer {@code getConnection()} with the logical connection, and those still
+ * open when the logical connection is closed are closed with it, so nothing carries over to the
+ * next borrower. Closing or failing prepared statements notify the statement listeners.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public class XlsPooledConnection implements PooledConnection {
+
+    private final Connection physicalConnection;
+    private final List<ConnectionEventListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<StatementEventListener> statementListeners = new CopyOnWriteArrayList<>();
+    private LogicalConnection logicalConnection;
+    private long lastUsed = System.currentTimeMillis();
+
+    public XlsPooledConnection(Connection physicalConnection) {
+        if (physicalConnection == null) {
+            throw new IllegalArgumentException();
+        }
+        this.physicalConnection = physicalConnection;
+    }
+
+    @Override
+    public synchronized Connection getConnection() throws SQLException {
+        if (physicalConnection.isClosed()) {
+            throw new SQLException("Pooled connection is closed.");
+        }
+        if (logicalConnection != null) {
+            logicalConnection.close();
+        }
+        logicalConnection = new LogicalConnection();
+        logicalConnection.proxy = (Connection) Proxy.newProxyInstance(
+                XlsPooledConnection.class.getClassLoader(),
+                new Class<?>[] {Connection.class},
+                logicalConnection);
+        return logicalConnection.proxy;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        synchronized (this) {
+            if (logicalConnection != null) {
+                logicalConnection.close();
+                logicalConnection = null;
+            }
+        }
+        physicalConnection.close();
+    }
+
+    @Override
+    public void addConnectionEventListener(ConnectionEventListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeConnectionEventListener(ConnectionEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void addStatementEventListener(StatementEventListener listener) {
+        statementListeners.add(listener);
+    }
+
+    @Override
+    public void removeStatementEventListener(StatementEventListener listener) {
+        statementListeners.remove(listener);
+    }
+
+    /**
+     * @return the time the last logical connection was handed back, in milliseconds
+     */
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    private void logicalConnectionClosed() {
+        lastUsed = System.currentTimeMillis();
+        ConnectionEvent event = new ConnectionEvent(this);
+        for (ConnectionEventListener listener : listeners) {
+            listener.connectionClosed(event);
+        }
+    }
+
+    private void statementClosed(PreparedStatement statement) {
+        StatementEvent event = new StatementEvent(this, statement);
+        for (StatementEventListener listener : statementListeners) {
+            listener.statementClosed(event);
+        }
+    }
+
+    private void statementErrorOccurred(PreparedStatement statement, SQLException exception) {
+        StatementEvent event = new StatementEvent(this, statement, exception);
+        for (StatementEventListener listener : statementListeners) {
+            listener.statementErrorOccurred(event);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Delegates everything to the physical connection, except {@code close()}.
+     */
+    private class LogicalConnection implements InvocationHandler {
+        private final List<LogicalStatement> statements = new ArrayList<>();
+        private Connection proxy;
+        private volatile boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                if (!closed) {
+                    try {
+                        close();
+                    } finally {
+                        logicalConnectionClosed();
+                    }
+                }
+                return null;
+            } else if ("isClosed".equals(name) && method.getParameterCount() == 0) {
+                return closed || physicalConnection.isClosed();
+            } else if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name) && method.getParameterCount() == 0) {
+                return "Logical connection of " + physicalConnection;
+            }
+            if (closed) {
+                throw new SQLException("Connection is closed.");
+            }
+            Object result = XlsPooledConnection.invoke(physicalConnection, method, args);
+            if (result instanceof Statement) {
+                return open((Statement) result, method.getReturnType());
+            }
+            return result;
+        }
+
+        private synchronized Statement open(Statement statement, Class<?> type) {
+            LogicalStatement logical = new LogicalStatement(this, statement);
+            logical.proxy = (Statement) Proxy.newProxyInstance(
+                    XlsPooledConnection.class.getClassLoader(),
+                    new Class<?>[] {type},
+                    logical);
+            statements.add(logical);
+            return logical.proxy;
+        }
+
+        /**
+         * Ends the logical connection, closing the statements still open.
+         *
+         * @throws SQLException the first failure to close a statement, after closing the others
+         */
+        void close() throws SQLException {
+            closed = true;
+            List<LogicalStatement> open;
+            synchronized (this) {
+                open = new ArrayList<>(statements);
+                statements.clear();
+            }
+            SQLException failure = null;
+            for (LogicalStatement statement : open) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Delegates everything to a statement of the physical connection, except {@code close()} and
+     * {@code getConnection()}. Result sets answer {@code getStatement()} with this statement.
+     */
+    private class LogicalStatement implements InvocationHandler {
+        private final LogicalConnection connection;
+        private final Statement statement;
+        private Statement proxy;
+
+        LogicalStatement(LogicalConnection connection, Statement statement) {
+            this.connection = connection;
+            this.statement = statement;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name) && method.getParameterCount() == 0) {
+                synchronized (connection) {
+                    connection.statements.remove(this);
+                }
+                close();
+                return null;
+            } else if ("getConnection".equals(name) && method.getParameterCount() == 0) {
+                return connection.proxy;
+            } else if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name) && method.getParameterCount() == 0) {
+                return "Logical statement of " + statement;
+            }
+            Object result;
+            try {
+                result = XlsPooledConnection.invoke(statement, method, args);
+            } catch (SQLException e) {
+                if (proxy instanceof PreparedStatement) {
+                    statementErrorOccurred((PreparedStatement) proxy, e);
+                }
+                throw e;
+            }
+            if (result instanceof ResultSet) {
+                return Proxy.newProxyInstance(
+                        XlsPooledConnection.class.getClassLoader(),
+                        new Class<?>[] {ResultSet.class},
+                        new LogicalResultSet(this, (ResultSet) result));
+            }
+            return result;
+        }
+
+        void close() throws SQLException {
+            if (statement.isClosed()) {
+                return;
+            }
+            try {
+                statement.close();
+            } finally {
+                if (proxy instanceof PreparedStatement) {
+                    statementClosed((PreparedStatement) proxy);
+                }
+            }
+        }
+    }
+
+    /**
+     * Delegates everything to a result set of the physical connection, except
+     * {@code getStatement()}.
+     */
+    private static class LogicalResultSet implements InvocationHandler {
+        private final LogicalStatement statement;
+        private final ResultSet resultSet;
+
+        LogicalResultSet(LogicalStatement statement, ResultSet resultSet) {
+            this.statement = statement;
+            this.resultSet = resultSet;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("getStatement".equals(name) && method.getParameterCount() == 0) {
+                return statement.proxy;
+            } else if ("equals".equals(name) && method.getParameterCount() == 1) {
+                return proxy == args[0];
+            } else if ("hashCode".equals(name) && method.getParameterCount() == 0) {
+                return System.identityHashCode(proxy);
+            } else if ("toString".equals(name) && method.getParameterCount() == 0) {
+                return "Logical result set of " + resultSet;
+            }
+            return XlsPooledConnection.invoke(resultSet, method, args);
+        }
+    }
+}
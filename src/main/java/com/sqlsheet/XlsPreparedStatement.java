@@ -14,10 +14,13 @@
 package com.sqlsheet;
 
 import com.sqlsheet.parser.CreateTableStatement;
+import com.sqlsheet.parser.DeleteStatement;
 import com.sqlsheet.parser.InsertIntoStatement;
 import com.sqlsheet.parser.JdbcParameter;
 import com.sqlsheet.parser.ParsedStatement;
 import com.sqlsheet.parser.SelectStarStatement;
+import com.sqlsheet.parser.UpdateStatement;
+import com.sqlsheet.query.PreparedQuery;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -25,6 +28,7 @@ import java.io.Reader;
 import java.math.BigDecimal;
 import java.net.URL;
 import java.sql.Array;
+import java.sql.BatchUpdateException;
 import java.sql.Blob;
 import java.sql.Clob;
 import java.sql.Date;
@@ -41,10 +45,12 @@ import java.sql.SQLXML;
 import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
  * SqlSheet implementation of java.sql.PreparedStatement.
@@ -56,24 +62,132 @@ public class XlsPreparedStatement extends XlsStatement implements PreparedStatem
 
     private static final Logger LOGGER = Logger.getLogger(XlsPreparedStatement.class.getName());
     private final ParsedStatement statement;
+    /** The values of an INSERT statement, each parameter bound into its slot when executed. */
+    private final Object[] insertValues;
+    /** The position of each JDBC parameter in {@link #insertValues}. */
+    private final int[] insertParameters;
+    /** The INSERT statement of the bound {@link #insertValues}. */
+    private final InsertIntoStatement boundInsert;
+    /**
+     * The SELECT statement resolved against the sheets, prepared again once the workbook of
+     * {@link #selectGeneration} was reloaded or modified after {@link #selectModifications}.
+     */
+    private PreparedQuery select;
+    private long selectGeneration;
+    private long selectModifications;
     private final List<Object> parameters = new ArrayList<>();
+    private final List<List<Object>> batch = new ArrayList<>();
     private boolean closeOnCompletion;
     private ResultSet resultSet = null;
 
     public XlsPreparedStatement(XlsConnection conn, String sql) throws SQLException {
         super(conn);
         this.statement = super.parse(sql);
+        if (statement instanceof InsertIntoStatement) {
+            InsertIntoStatement iis = (InsertIntoStatement) statement;
+            insertValues = iis.getValues().toArray();
+            insertParameters = IntStream.range(0, insertValues.length)
+                    .filter(i -> insertValues[i] instanceof JdbcParameter)
+                    .toArray();
+            boundInsert = insertOf(iis, Arrays.asList(insertValues));
+        } else {
+            insertValues = null;
+            insertParameters = null;
+            boundInsert = null;
+        }
     }
 
+    /**
+     * Buffers the current parameters for {@link #executeBatch()}.
+     */
     public void addBatch() throws SQLException {
-        nyi();
+        batch.add(new ArrayList<>(parameters));
+    }
+
+    @Override
+    public void addBatch(String sql) throws SQLException {
+        throw new SQLException("Cannot add SQL text to the batch of a prepared statement.");
+    }
+
+    @Override
+    public void clearBatch() throws SQLException {
+        batch.clear();
+    }
+
+    /**
+     * Inserts the rows of all parameter sets of the batch in one bulk append, or runs an UPDATE or
+     * DELETE once per parameter set, and clears the batch.
+     *
+     * @return the number of rows each parameter set changed
+     * @throws BatchUpdateException if the statement changes no rows or the rows cannot be written
+     */
+    @Override
+    public int[] executeBatch() throws SQLException {
+        List<List<Object>> sets = new ArrayList<>(batch);
+        batch.clear();
+        if (sets.isEmpty()) {
+            return new int[0];
+        }
+        long start = System.nanoTime();
+        if (statement instanceof UpdateStatement || statement instanceof DeleteStatement) {
+            int[] counts = new int[sets.size()];
+            long rows = 0;
+            for (int i = 0; i < counts.length; i++) {
+                try {
+                    counts[i] = update(sets.get(i));
+                } catch (SQLException | RuntimeException e) {
+                    throw batchFailed(e, Arrays.copyOf(counts, i));
+                }
+                rows += counts[i];
+            }
+            batchExecuted(rows, start);
+            if (closeOnCompletion) {
+                close();
+            }
+            return counts;
+        }
+        if (!(statement instanceof InsertIntoStatement)) {
+            throw new BatchUpdateException(
+                    "Only INSERT, UPDATE and DELETE statements can be batched.", new int[0]);
+        }
+        InsertIntoStatement iis = (InsertIntoStatement) statement;
+        int[] counts = new int[sets.size()];
+        Arrays.fill(counts, iis.getRows().size());
+        List<Object> values = new ArrayList<>(insertValues.length * sets.size());
+        try {
+            for (List<Object> set : sets) {
+                values.addAll(bindInsert(set).getValues());
+            }
+            super.doInsert(insertOf(iis, values));
+        } catch (SQLException | RuntimeException e) {
+            throw batchFailed(e, new int[0]);
+        }
+        batchExecuted((long) counts[0] * counts.length, start);
+        if (closeOnCompletion) {
+            close();
+        }
+        return counts;
     }
 
     public void clearParameters() throws SQLException {
         parameters.clear();
     }
 
+    /**
+     * @return the number of rows the UPDATE or DELETE statement changed with the parameters
+     */
+    private int update(List<Object> values) throws SQLException {
+        if (statement instanceof UpdateStatement) {
+            return super.doUpdate((UpdateStatement) statement, values);
+        }
+        return super.doDelete((DeleteStatement) statement, values);
+    }
+
     public boolean execute() throws SQLException {
+        if (statement instanceof UpdateStatement || statement instanceof DeleteStatement) {
+            executeUpdate();
+            return false;
+        }
         try (ResultSet rs = executeQuery()) {
             return rs != null;
         } finally {
@@ -84,6 +198,26 @@ public class XlsPreparedStatement extends XlsStatement implements PreparedStatem
     }
 
     public int executeUpdate() throws SQLException {
+        if (statement instanceof UpdateStatement || statement instanceof DeleteStatement) {
+            try {
+                return update(parameters);
+            } finally {
+                if (closeOnCompletion) {
+                    close();
+                }
+            }
+        }
+        if (statement instanceof InsertIntoStatement) {
+            try {
+                // the result set stays open, the next INSERT appends from its cursor on
+                executeQuery();
+                return ((InsertIntoStatement) statement).getRows().size();
+            } finally {
+                if (closeOnCompletion) {
+                    close();
+                }
+            }
+        }
         try (ResultSet rs = executeQuery()) {
             return rs != null ? 1 : 0;
         } finally {
@@ -100,41 +234,72 @@ public class XlsPreparedStatement extends XlsStatement implements PreparedStatem
             throw new IllegalStateException("null statement");
         }
         if (statement instanceof SelectStarStatement) {
-            return super.doSelect((SelectStarStatement) statement);
+            return prepared().execute(parameters);
         }
         if (statement instanceof CreateTableStatement) {
             return super.doCreateTable((CreateTableStatement) statement);
         }
         if (statement instanceof InsertIntoStatement) {
-            final InsertIntoStatement iis = (InsertIntoStatement) statement;
-            final List<Object> substitutedValues = new ArrayList<Object>(iis.getValues());
-            int paramIndex = 0;
-            for (int i = 0; i < substitutedValues.size(); i++) {
-                Object val = substitutedValues.get(i);
-                LOGGER.log(Level.FINE,
-                        "execute Insert Into Statement: " + substitutedValues.get(i));
-                if (val instanceof JdbcParameter) {
-                    substitutedValues.set(i, parameters.get(paramIndex++));
-                }
+            return super.doInsert(bindInsert(parameters));
+        }
+        throw new SQLFeatureNotSupportedException(
+                "Execute Query Exception: " + statement.getClass().getName());
+    }
+
+    /**
+     * @return the SELECT statement, resolved again only if the workbook changed since
+     */
+    private PreparedQuery prepared() throws SQLException {
+        XlsConnection owner = (XlsConnection) getConnection();
+        if (select == null || selectGeneration != owner.checkGeneration()
+                || selectModifications != owner.getModificationCount()) {
+            select = prepareSelect((SelectStarStatement) statement);
+            selectGeneration = owner.getGeneration();
+            selectModifications = owner.getModificationCount();
+        }
+        return select;
+    }
+
+    /**
+     * Binds parameter values into the slots of the INSERT statement, which is parsed once.
+     *
+     * @param values the values of the JDBC parameters
+     * @return the statement inserting the bound values, until the next call
+     * @throws SQLException if the value of a parameter is missing
+     */
+    private InsertIntoStatement bindInsert(List<Object> values) throws SQLException {
+        for (int i = 0; i < insertParameters.length; i++) {
+            if (i >= values.size()) {
+                throw new SQLException("No value specified for parameter " + (i + 1));
+            }
+            insertValues[insertParameters[i]] = values.get(i);
+        }
+        LOGGER.log(Level.FINE, "execute Insert Into Statement: {0}", boundInsert.getValues());
+        return boundInsert;
+    }
+
+    /**
+     * @return the statement inserting the values into the table of the statement
+     */
+    private static InsertIntoStatement insertOf(final InsertIntoStatement iis,
+            final List<Object> values) {
+        return new InsertIntoStatement() {
+            public List<String> getColumns() {
+                return iis.getColumns();
             }
 
-            return super.doInsert(
-                    new InsertIntoStatement() {
-                        public List<String> getColumns() {
-                            return iis.getColumns();
-                        }
+            public String getTable() {
+                return iis.getTable();
+            }
 
-                        public String getTable() {
-                            return iis.getTable();
-                        }
+            public String getSchema() {
+                return iis.getSchema();
+            }
 
-                        public List<Object> getValues() {
-                            return substitutedValues;
-                        }
-                    });
-        }
-        throw new SQLFeatureNotSupportedException(
-                "Execute Query Exception: " + statement.getClass().getName());
+            public List<Object> getValues() {
+                return values;
+            }
+        };
     }
 
     private void setParameter(int p, Object val) {
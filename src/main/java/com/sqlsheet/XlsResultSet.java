@@ -13,6 +13,11 @@
  */
 package com.sqlsheet;
 
+import com.sqlsheet.parser.ParsedExpression;
+import com.sqlsheet.query.CountableRows;
+import com.sqlsheet.query.PreparedFilter;
+import com.sqlsheet.query.RowFilters;
+import com.sqlsheet.query.SheetRowValues;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
 import org.apache.poi.ss.usermodel.CellType;
@@ -21,6 +26,7 @@ import org.apache.poi.ss.usermodel.FormulaEvaluator;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
 
 import java.io.InputStream;
 import java.io.Reader;
@@ -46,7 +52,9 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Calendar;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -55,7 +63,7 @@ import java.util.Map;
  * @author <a href='<a href="http://www.pcal.net">...</a>'>pcal</a>
  * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
  */
-public class XlsResultSet implements ResultSet {
+public class XlsResultSet implements ResultSet, CountableRows {
 
     public static final MathContext CTX_NN_15_EVEN = new MathContext(15, RoundingMode.HALF_EVEN);
 
@@ -69,11 +77,42 @@ public class XlsResultSet implements ResultSet {
     private XlsResultSetMetaData metadata;
     private int cursorSheetRow;
     private CellStyle dateStyle;
+    /** The sheet column of each JDBC column, relative to the first one, or {@code null}. */
+    int[] sheetColumns;
+    private PreparedFilter filter;
+    private SheetRowValues rowValues;
+    private Long limit;
+    private long returned;
     private boolean isClosed;
+    private XlsConnection connection;
+    private long generation;
     private boolean wasNull;
 
     public XlsResultSet(Workbook wb, Sheet s, int firstSheetRowOffset, int firstSheetColOffset)
             throws SQLException {
+        this(wb, s, firstSheetRowOffset, firstSheetColOffset, null, null);
+    }
+
+    /**
+     * Creates a result set over some columns of a sheet only. Other columns are neither profiled
+     * by the metadata nor read.
+     *
+     * @param columns the selected columns, or {@code null} for all of them
+     * @param labels the labels of the selected columns
+     */
+    public XlsResultSet(Workbook wb, Sheet s, int firstSheetRowOffset, int firstSheetColOffset,
+            List<String> columns, List<String> labels) throws SQLException {
+        this(wb, s, firstSheetRowOffset, firstSheetColOffset, columns, labels, true);
+    }
+
+    /**
+     * @param evaluateFormulas whether formula cells are evaluated, instead of reading the results
+     *        cached in the file; evaluating stores the result in the cell, so a workbook shared with
+     *        other connections must not be evaluated
+     */
+    XlsResultSet(Workbook wb, Sheet s, int firstSheetRowOffset, int firstSheetColOffset,
+            List<String> columns, List<String> labels, boolean evaluateFormulas)
+            throws SQLException {
         if (s == null) {
             throw new IllegalArgumentException("null sheet");
         }
@@ -83,16 +122,119 @@ public class XlsResultSet implements ResultSet {
         workbook = wb;
         sheet = s;
 
-        evaluator = wb.getCreationHelper().createFormulaEvaluator();
+        evaluator = evaluateFormulas ? wb.getCreationHelper().createFormulaEvaluator() : null;
 
         this.firstSheetRowOffset = firstSheetRowOffset;
         this.firstSheetColOffset = firstSheetColOffset;
 
         cursorSheetRow = this.firstSheetRowOffset - 1;
-        metadata = new XlsResultSetMetaData(s, this, firstSheetRowOffset, firstSheetColOffset);
-        // set the default date cell format
-        dateStyle = workbook.createCellStyle();
-        dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+        metadata = new XlsResultSetMetaData(s, this, firstSheetRowOffset, firstSheetColOffset,
+                columns, labels);
+    }
+
+    /**
+     * Opens the rows of the same sheet again, with the metadata, columns and WHERE condition
+     * already resolved by an open result set, e.g. when a prepared statement is executed again.
+     * The result sets share the condition, so {@link #bindParameters(List)} on one binds the
+     * other.
+     *
+     * @param plan the result set to take the resolved sheet from
+     */
+    XlsResultSet(XlsResultSet plan) {
+        workbook = plan.workbook;
+        sheet = plan.sheet;
+        evaluator = plan.evaluator;
+        firstSheetRowOffset = plan.firstSheetRowOffset;
+        firstSheetColOffset = plan.firstSheetColOffset;
+        metadata = plan.metadata;
+        sheetColumns = plan.sheetColumns;
+        dateStyle = plan.dateStyle;
+        filter = plan.filter;
+        rowValues = new SheetRowValues(firstSheetColOffset, evaluator);
+        cursorSheetRow = firstSheetRowOffset - 1;
+    }
+
+    /**
+     * Restricts the rows to those meeting a WHERE condition, which {@link #next()} checks on the
+     * raw cell values before any of them is converted for the getters. The positioning methods
+     * still address the rows of the sheet.
+     *
+     * @param where the condition, or {@code null} for all rows
+     * @param parameters the values of the JDBC parameters of the condition
+     * @throws SQLException if the condition refers to a missing column or parameter
+     */
+    public void setWhere(ParsedExpression where, List<Object> parameters) throws SQLException {
+        prepareWhere(where);
+        bindParameters(parameters);
+    }
+
+    /**
+     * Restricts the rows to those meeting a WHERE condition, leaving its JDBC parameters to be
+     * bound by {@link #bindParameters(List)}.
+     *
+     * @param where the condition, or {@code null} for all rows
+     * @throws SQLException if the condition refers to a missing column
+     */
+    void prepareWhere(ParsedExpression where) throws SQLException {
+        filter = where != null ? RowFilters.prepare(where, metadata.sheetColumnNames, null) : null;
+        rowValues = new SheetRowValues(firstSheetColOffset, evaluator);
+    }
+
+    /**
+     * Binds new values to the JDBC parameters of the WHERE condition, which stays compiled and
+     * resolved against the columns of the sheet.
+     *
+     * @param parameters the values of the JDBC parameters of the condition
+     * @throws SQLException if the value of a parameter of the condition is missing
+     */
+    void bindParameters(List<Object> parameters) throws SQLException {
+        if (filter != null) {
+            filter.bind(parameters);
+        }
+    }
+
+    /**
+     * Ends the rows {@link #next()} returns after a number of them, e.g. for a LIMIT, without
+     * visiting the rows of the sheet beyond.
+     *
+     * @param limit the most rows to return after {@link #beforeFirst()}, or {@code null} for all
+     */
+    public void setLimit(Long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Without a WHERE condition or a limit the rows are answered from the row index of the sheet,
+     * which POI built from the row records of an xls file or the row elements of an xlsx file, if
+     * the rows below the header have no gap, since {@link #next()} ends at the first missing row.
+     * Otherwise the rows are walked, still without reading any cell if there is no condition.
+     */
+    @Override
+    public long countRows() throws SQLException {
+        if (filter == null && limit == null && isBeforeFirst()) {
+            int headerRows = 0;
+            for (int i = 0; i < firstSheetRowOffset; i++) {
+                if (sheet.getRow(i) != null) {
+                    headerRows++;
+                }
+            }
+            long rows = Math.max(0, sheet.getLastRowNum() - firstSheetRowOffset + 1);
+            if (sheet.getPhysicalNumberOfRows() - headerRows == rows) {
+                afterLast();
+                returned = rows;
+                return rows;
+            }
+        }
+        long count = 0;
+        while (next()) {
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public long estimateRows() {
+        return Math.max(0, sheet.getLastRowNum() - firstSheetRowOffset + 1);
     }
 
     public static SQLException wrapped(Throwable t) {
@@ -112,7 +254,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return false;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
                 case BOOLEAN:
                     wasNull = false;
                     return cell.getBooleanCellValue();
@@ -164,7 +306,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return 0d;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
                 // @todo: maybe try to parse the Boolean
                 case BOOLEAN:
                     throw new SQLException(
@@ -215,7 +357,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return (byte) 0;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
 
                 // @todo: maybe try to parse the Boolean
                 case BOOLEAN:
@@ -268,7 +410,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return 0f;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
 
                 // @todo: maybe try to parse the Boolean
                 case BOOLEAN:
@@ -321,7 +463,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return 0;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
 
                 // @todo: maybe try to parse the Boolean
                 case BOOLEAN:
@@ -374,7 +516,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return 0;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
 
                 // @todo: maybe try to parse the Boolean
                 case BOOLEAN:
@@ -470,7 +612,7 @@ public class XlsResultSet implements ResultSet {
                                 .doubleValue();
                     }
                 case FORMULA:
-                    switch (evaluator.evaluateFormulaCell(cell)) {
+                    switch (formulaResultType(cell)) {
                         // @todo: maybe try to parse the Boolean
                         case BOOLEAN:
                             wasNull = false;
@@ -557,7 +699,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return 0;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
 
                 // @todo: maybe try to parse the Boolean
                 case BOOLEAN:
@@ -652,7 +794,7 @@ public class XlsResultSet implements ResultSet {
                         return bd.toPlainString();
                     }
                 case FORMULA:
-                    switch (evaluator.evaluateFormulaCell(cell)) {
+                    switch (formulaResultType(cell)) {
                         case BOOLEAN:
                             if (columnType == Types.VARCHAR || columnType == Types.BOOLEAN) {
                                 wasNull = false;
@@ -720,102 +862,74 @@ public class XlsResultSet implements ResultSet {
         return getString(columnIndex);
     }
 
-    public void updateBoolean(int columnIndex, boolean x) {
-        Cell cell = getCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+    public void updateBoolean(int columnIndex, boolean x) throws SQLException {
+        Cell cell = findOrCreateCell(columnIndex);
+        cell.setCellValue(x);
     }
 
     public void updateBoolean(String jdbcColumn, boolean x) throws SQLException {
-        Cell cell = getCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        Cell cell = findOrCreateCell(jdbcColumn);
+        cell.setCellValue(x);
     }
 
-    public void updateByte(int columnIndex, byte x) {
-        Cell cell = getCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+    public void updateByte(int columnIndex, byte x) throws SQLException {
+        Cell cell = findOrCreateCell(columnIndex);
+        cell.setCellValue(x);
     }
 
     public void updateByte(String jdbcColumn, byte x) throws SQLException {
-        Cell cell = getCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        Cell cell = findOrCreateCell(jdbcColumn);
+        cell.setCellValue(x);
     }
 
-    public void updateDouble(int columnIndex, double x) {
-        Cell cell = getCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+    public void updateDouble(int columnIndex, double x) throws SQLException {
+        Cell cell = findOrCreateCell(columnIndex);
+        cell.setCellValue(x);
     }
 
     public void updateDouble(String jdbcColumn, double x) throws SQLException {
-        Cell cell = getCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        Cell cell = findOrCreateCell(jdbcColumn);
+        cell.setCellValue(x);
     }
 
-    public void updateFloat(int columnIndex, float x) {
-        Cell cell = getCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+    public void updateFloat(int columnIndex, float x) throws SQLException {
+        Cell cell = findOrCreateCell(columnIndex);
+        cell.setCellValue(x);
     }
 
     public void updateFloat(String jdbcColumn, float x) throws SQLException {
-        Cell cell = getCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        Cell cell = findOrCreateCell(jdbcColumn);
+        cell.setCellValue(x);
     }
 
-    public void updateInt(int columnIndex, int x) {
-        Cell cell = getCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+    public void updateInt(int columnIndex, int x) throws SQLException {
+        Cell cell = findOrCreateCell(columnIndex);
+        cell.setCellValue(x);
     }
 
     public void updateInt(String jdbcColumn, int x) throws SQLException {
-        Cell cell = getCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        Cell cell = findOrCreateCell(jdbcColumn);
+        cell.setCellValue(x);
     }
 
-    public void updateLong(int columnIndex, long x) {
-        Cell cell = getCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+    public void updateLong(int columnIndex, long x) throws SQLException {
+        Cell cell = findOrCreateCell(columnIndex);
+        cell.setCellValue(x);
     }
 
     public void updateLong(String jdbcColumn, long x) throws SQLException {
-        Cell cell = getCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        Cell cell = findOrCreateCell(jdbcColumn);
+        cell.setCellValue(x);
     }
 
-    public void updateNull(int columnIndex) {
-        Cell cell = getCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue((String) null); // REVIEW
-        }
+    public void updateNull(int columnIndex) throws SQLException {
+        Cell cell = findOrCreateCell(columnIndex);
+        cell.setBlank();
     }
 
     public void updateNull(String jdbcColumn) throws SQLException {
-        Cell cell = getCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue((String) null); // REVIEW
-        }
+        Cell cell = findOrCreateCell(jdbcColumn);
+        cell.setBlank();
     }
 
     public void updateObject(int columnIndex, Object x) throws SQLException {
@@ -826,32 +940,24 @@ public class XlsResultSet implements ResultSet {
         updateObject(findOrCreateCell(jdbcColumn), x);
     }
 
-    public void updateShort(int columnIndex, short x) {
+    public void updateShort(int columnIndex, short x) throws SQLException {
         Cell cell = findOrCreateCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        cell.setCellValue(x);
     }
 
     public void updateShort(String jdbcColumn, short x) throws SQLException {
         Cell cell = findOrCreateCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        cell.setCellValue(x);
     }
 
-    public void updateString(int columnIndex, String x) {
+    public void updateString(int columnIndex, String x) throws SQLException {
         Cell cell = findOrCreateCell(columnIndex);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        cell.setCellValue(x);
     }
 
     public void updateString(String jdbcColumn, String x) throws SQLException {
         Cell cell = findOrCreateCell(jdbcColumn);
-        if (cell != null) {
-            cell.setCellValue(x);
-        }
+        cell.setCellValue(x);
     }
 
     // ResultSet implementation - everything else
@@ -866,6 +972,7 @@ public class XlsResultSet implements ResultSet {
 
     public void beforeFirst() {
         cursorSheetRow = firstSheetRowOffset - 1;
+        returned = 0;
     }
 
     public boolean first() {
@@ -920,11 +1027,22 @@ public class XlsResultSet implements ResultSet {
     }
 
     public boolean next() throws SQLException {
-        if (isAfterLast()) {
+        if (limit != null && returned >= limit) {
+            afterLast();
             return false;
         }
-        cursorSheetRow++;
-        return !isAfterLast() && sheet.getRow(cursorSheetRow) != null;
+        while (!isAfterLast()) {
+            cursorSheetRow++;
+            Row row = sheet.getRow(cursorSheetRow);
+            if (isAfterLast() || row == null) {
+                return false;
+            }
+            if (filter == null || filter.accept(rowValues.of(row))) {
+                returned++;
+                return true;
+            }
+        }
+        return false;
     }
 
     public boolean previous() {
@@ -949,7 +1067,126 @@ public class XlsResultSet implements ResultSet {
         cursorSheetRow++;
     }
 
+    /**
+     * Appends rows in a single pass, creating their rows and cells directly on the sheet, for
+     * INSERT. Rows go where {@link #moveToInsertRow()} would put them one by one, past the rows
+     * written to disk already for the window of a streaming workbook. The cursor is left on the
+     * last row appended.
+     *
+     * @param columns the names of the columns the values of each row are for, the other columns
+     *        are left blank
+     * @param rows the values of each row, in the order of the columns
+     * @throws SQLException if a column does not exist or a value cannot be written to a cell
+     */
+    void appendRows(List<String> columns, List<List<Object>> rows) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+        int[] cells = XlsResultSetMetaData.resolveColumns(metadata.sheetColumnNames, columns);
+        sheetModified();
+        // a DELETE through another result set may have moved the end of the rows below the cursor
+        int sheetRow = sheet instanceof SXSSFSheet
+                ? Math.max(cursorSheetRow, sheet.getLastRowNum() + 1)
+                : Math.min(cursorSheetRow, sheet.getLastRowNum() + 1);
+        for (List<Object> values : rows) {
+            Row row = sheet.getRow(sheetRow);
+            while (row != null && row.getCell(firstSheetColOffset) != null) {
+                row = sheet.getRow(++sheetRow);
+            }
+            if (row == null) {
+                row = sheet.createRow(sheetRow);
+            }
+            for (int i = 0; i < values.size(); i++) {
+                setCellValue(row.createCell(firstSheetColOffset + cells[i]), values.get(i));
+            }
+        }
+        cursorSheetRow = sheetRow;
+    }
+
+    /**
+     * Sets columns of the rows meeting the WHERE condition in place, for UPDATE.
+     *
+     * @param columns the names of the columns to set
+     * @param values the value of each column
+     * @return the number of rows updated
+     * @throws SQLException if a column does not exist or a value cannot be written to a cell
+     */
+    int updateRows(List<String> columns, List<Object> values) throws SQLException {
+        checkModifiable("UPDATE");
+        int[] cells = XlsResultSetMetaData.resolveColumns(metadata.sheetColumnNames, columns);
+        setLimit(null);
+        beforeFirst();
+        int count = 0;
+        while (next()) {
+            Row row = sheet.getRow(cursorSheetRow);
+            for (int i = 0; i < cells.length; i++) {
+                int column = firstSheetColOffset + cells[i];
+                Cell cell = row.getCell(column);
+                setCellValue(cell != null ? cell : row.createCell(column), values.get(i));
+            }
+            count++;
+        }
+        if (count > 0) {
+            sheetModified();
+            // formulas may refer to the cells set
+            evaluator.clearAllCachedResultValues();
+        }
+        beforeFirst();
+        return count;
+    }
+
+    /**
+     * Deletes the rows meeting the WHERE condition, for DELETE. The rows are removed first, then
+     * a single compaction pass moves every row below the first deleted one up by the number of
+     * deleted rows above it, see {@link RowCompaction}. Only the sheet counts as modified unless
+     * other parts of the workbook change too.
+     *
+     * @return the number of rows deleted
+     * @throws SQLException if the rows cannot be read
+     */
+    int deleteRows() throws SQLException {
+        checkModifiable("DELETE");
+        setLimit(null);
+        beforeFirst();
+        BitSet deleted = new BitSet();
+        while (next()) {
+            deleted.set(cursorSheetRow);
+        }
+        beforeFirst();
+        int count = deleted.cardinality();
+        if (count > 0) {
+            removeRows(deleted);
+        }
+        return count;
+    }
+
+    /**
+     * Removes rows of the sheet and moves the rows below them up, see {@link #deleteRows()}.
+     *
+     * @param deleted the sheet rows to remove, all existing
+     */
+    private void removeRows(BitSet deleted) throws SQLException {
+        sheetModified();
+        if (RowCompaction.removeRows(sheet, deleted)) {
+            // the formulas or names referring to the rows changed in other parts too
+            structureModified();
+        }
+        evaluator.clearAllCachedResultValues();
+    }
+
+    private void checkModifiable(String operation) throws SQLException {
+        if (sheet instanceof SXSSFSheet) {
+            throw new SQLFeatureNotSupportedException(operation
+                    + " not supported with " + XlsDriver.WRITE_STREAMING
+                    + ", rows written to disk cannot be changed.");
+        }
+    }
+
     private void updateObject(Cell cell, Object x) throws SQLException {
+        setCellValue(cell, x);
+    }
+
+    private void setCellValue(Cell cell, Object x) throws SQLException {
         if (x instanceof String) {
             cell.setCellValue((String) x);
         } else if (x instanceof char[]) {
@@ -966,9 +1203,7 @@ public class XlsResultSet implements ResultSet {
             cell.setCellValue(((Number) x).doubleValue()); // } else if (x instanceof java.sql.Date)
         } else if (x instanceof java.util.Date) {
             cell.setCellValue(DateUtil.getExcelDate((java.util.Date) x));
-            if (dateStyle != null) {
-                cell.setCellStyle(dateStyle);
-            }
+            cell.setCellStyle(getDateStyle());
         } else if (x instanceof Boolean) {
             cell.setCellValue((Boolean) x);
         } else if (x == null) {
@@ -983,6 +1218,33 @@ public class XlsResultSet implements ResultSet {
         }
     }
 
+    /**
+     * Lets the connection know which sheets it has to save.
+     */
+    private void sheetModified() throws SQLException {
+        if (statement != null && statement.getConnection() instanceof XlsConnection) {
+            ((XlsConnection) statement.getConnection()).sheetModified(sheet);
+        }
+    }
+
+    private void structureModified() throws SQLException {
+        if (statement != null && statement.getConnection() instanceof XlsConnection) {
+            ((XlsConnection) statement.getConnection()).structureModified();
+        }
+    }
+
+    /**
+     * The default date cell format is created on the first date written only, so reading never
+     * modifies the (possibly shared) workbook.
+     */
+    private CellStyle getDateStyle() {
+        if (dateStyle == null) {
+            dateStyle = workbook.createCellStyle();
+            dateStyle.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+        }
+        return dateStyle;
+    }
+
     private Row getCurrentRow() {
         if (sheet.getRow(cursorSheetRow) == null) {
             sheet.createRow(cursorSheetRow);
@@ -990,17 +1252,20 @@ public class XlsResultSet implements ResultSet {
         return sheet.getRow(cursorSheetRow);
     }
 
-    private Cell findOrCreateCell(int jdbcColumn) {
+    /**
+     * Write path of the updaters: unlike {@link #getCell(int)} it records the sheet as modified.
+     */
+    private Cell findOrCreateCell(int jdbcColumn) throws SQLException {
+        sheetModified();
         Cell cell = getCell(jdbcColumn);
         if (cell == null) {
-            cell = getCurrentRow().createCell((short) (jdbcColumn - 1));
+            cell = getCurrentRow().createCell(sheetColumn(jdbcColumn) + firstSheetColOffset);
         }
         return cell;
     }
 
     private Cell findOrCreateCell(String jdbcColumn) throws SQLException {
-        int col = getSheetColumnNamed(jdbcColumn);
-        return findOrCreateCell(col);
+        return findOrCreateCell(getSheetColumnNamed(jdbcColumn) + 1);
     }
 
     /**
@@ -1012,16 +1277,36 @@ public class XlsResultSet implements ResultSet {
     protected Cell getCell(int columnIndex) {
         Row row = sheet.getRow(cursorSheetRow);
 
-        return row != null ? row.getCell((short) (columnIndex + firstSheetColOffset - 1)) : null;
+        return row != null ? row.getCell(sheetColumn(columnIndex) + firstSheetColOffset) : null;
+    }
+
+    /**
+     * @param cell a formula cell
+     * @return the type of the formula result, evaluated unless the result cached in the file is read
+     */
+    private CellType formulaResultType(Cell cell) {
+        return evaluator != null
+                ? evaluator.evaluateFormulaCell(cell)
+                : cell.getCachedFormulaResultType();
     }
 
     private Cell getCell(String columnLabel) throws SQLException {
         Row row = sheet.getRow(cursorSheetRow);
 
-        return row != null ? row.getCell(getSheetColumnNamed(columnLabel) + firstSheetColOffset)
+        return row != null
+                ? row.getCell(sheetColumn(getSheetColumnNamed(columnLabel) + 1)
+                        + firstSheetColOffset)
                 : null;
     }
 
+    /**
+     * @param columnIndex the index of the column, starting at 1
+     * @return the sheet column, relative to the first one
+     */
+    private int sheetColumn(int columnIndex) {
+        return sheetColumns != null ? sheetColumns[columnIndex - 1] : columnIndex - 1;
+    }
+
     private short getSheetColumnNamed(String name) throws SQLException {
         int count = metadata.getColumnCount();
         for (short i = 0; i < count; i++) {
@@ -1057,6 +1342,10 @@ public class XlsResultSet implements ResultSet {
             return;
         }
         isClosed = true;
+        if (connection != null) {
+            connection.resultSetClosed(generation);
+            connection = null;
+        }
 
         // help the GC by nulling all objects
         workbook = null;
@@ -1072,8 +1361,38 @@ public class XlsResultSet implements ResultSet {
         statement = null;
     }
 
+    /**
+     * Keeps the workbook of this result set open until it is closed, even if the connection
+     * reloads the workbook meanwhile.
+     */
+    void trackedBy(XlsConnection connection) {
+        this.connection = connection;
+        generation = connection.resultSetOpened();
+    }
+
+    /**
+     * Deletes the current row from the sheet and moves the rows below it up, as DELETE does. The
+     * cursor is left before the row taking its place, so {@link #next()} goes on with that one.
+     */
     public void deleteRow() throws SQLException {
-        throw nyi();
+        XlsConnection owner = statement != null
+                && statement.getConnection() instanceof XlsConnection
+                        ? (XlsConnection) statement.getConnection()
+                        : null;
+        if (owner != null) {
+            owner.checkWritable();
+        }
+        checkModifiable("DELETE");
+        if (isBeforeFirst() || isAfterLast() || sheet.getRow(cursorSheetRow) == null) {
+            throw new SQLException("No current row to delete.");
+        }
+        BitSet deleted = new BitSet();
+        deleted.set(cursorSheetRow);
+        removeRows(deleted);
+        cursorSheetRow--;
+        if (owner != null) {
+            owner.setWriteRequired(true);
+        }
     }
 
     @Override
@@ -1105,7 +1424,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return null;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
 
                 // @todo: maybe try to parse the Boolean
                 case BOOLEAN:
@@ -1223,7 +1542,7 @@ public class XlsResultSet implements ResultSet {
             wasNull = true;
             return null;
         } else if (cell.getCellType().equals(CellType.FORMULA)) {
-            switch (evaluator.evaluateFormulaCell(cell)) {
+            switch (formulaResultType(cell)) {
                 case BOOLEAN:
                     throw new SQLException(
                             "Found a formula returning a Boolean, when a Numeric was expected.");
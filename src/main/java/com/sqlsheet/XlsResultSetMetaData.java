@@ -53,15 +53,28 @@ public class XlsResultSetMetaData implements ResultSetMetaData {
 
     private final DataFormatter formatter;
     protected List<String> columnNames;
+    /** The names of all columns of the sheet, selected or not. */
+    List<String> sheetColumnNames;
     /**
      * A map to get consistently the same data type
      */
     Map<Integer, Integer> columnTypeMap = new HashMap<>();
 
-    @SuppressWarnings("PMD.NPathComplexity")
     public XlsResultSetMetaData(
             Sheet sheet, XlsResultSet resultset, int firstSheetRowOffset, int firstSheetColOffset)
             throws SQLException {
+        this(sheet, resultset, firstSheetRowOffset, firstSheetColOffset, null, null);
+    }
+
+    /**
+     * @param columns the selected columns, or {@code null} for all of them
+     * @param labels the labels of the selected columns
+     */
+    @SuppressWarnings("PMD.NPathComplexity")
+    XlsResultSetMetaData(
+            Sheet sheet, XlsResultSet resultset, int firstSheetRowOffset, int firstSheetColOffset,
+            List<String> columns, List<String> labels)
+            throws SQLException {
 
         if (sheet == null) {
             throw new IllegalArgumentException();
@@ -85,6 +98,12 @@ public class XlsResultSetMetaData implements ResultSetMetaData {
 
             columnNames.add(columnName);
         }
+        sheetColumnNames = columnNames;
+        if (columns != null) {
+            // only the selected columns are profiled and read
+            resultset.sheetColumns = resolveColumns(columnNames, columns);
+            columnNames = new ArrayList<>(labels);
+        }
 
         // Data Type profiling on the whole excel file
         int currentRowNumber = resultset.getRow();
@@ -200,6 +219,40 @@ public class XlsResultSetMetaData implements ResultSetMetaData {
         resultset.absolute(currentRowNumber);
     }
 
+    /**
+     * Finds the selected columns among the header names, ignoring case. As for INSERT, an
+     * underscore in a selected name also matches a space in the header.
+     *
+     * @param names the header names
+     * @param columns the selected column names
+     * @return the position of each selected column among the header names
+     * @throws SQLException if a selected column is missing
+     */
+    public static int[] resolveColumns(List<String> names, List<String> columns)
+            throws SQLException {
+        int[] positions = new int[columns.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = indexOf(names, columns.get(i));
+            if (positions[i] < 0) {
+                positions[i] = indexOf(names, columns.get(i).replace('_', ' '));
+            }
+            if (positions[i] < 0) {
+                throw new SQLException("Column " + columns.get(i)
+                        + " not found. Available Columns are " + names);
+            }
+        }
+        return positions;
+    }
+
+    private static int indexOf(List<String> names, String column) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     public int getColumnCount() {
         return columnNames.size();
     }
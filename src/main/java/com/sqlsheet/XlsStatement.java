@@ -14,30 +14,46 @@
 package com.sqlsheet;
 
 import com.sqlsheet.parser.CreateTableStatement;
+import com.sqlsheet.parser.DeleteStatement;
 import com.sqlsheet.parser.DropTableStatement;
 import com.sqlsheet.parser.InsertIntoStatement;
+import com.sqlsheet.parser.ParsedExpression;
 import com.sqlsheet.parser.ParsedStatement;
 import com.sqlsheet.parser.SelectStarStatement;
 import com.sqlsheet.parser.SqlSheetParser;
+import com.sqlsheet.parser.UpdateStatement;
+import com.sqlsheet.query.PreparedQuery;
+import com.sqlsheet.query.QueryExecutor;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import java.sql.BatchUpdateException;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * SqlSheet implementation of java.sql.Statement.
  *
+ * <p>
+ * Statements added by {@link #addBatch(String)} run in order on {@link #executeBatch()}, each
+ * INSERT appending from the cursor the previous one left. The number of rows and the time of the
+ * last batch are kept for monitoring, see {@link #getLastBatchRowsPerSecond()}.
+ *
  * @author <a href='http://www.pcal.net'>pcal</a>
  * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
  */
@@ -46,11 +62,24 @@ public class XlsStatement implements Statement {
     public static final int DEFAULT_FIRST_COL = 0;
     public static final Pattern SHEET_INDEX_PATTERN = Pattern.compile("(?i)sheet\\[(\\d+)]");
 
+    private static final Logger LOGGER = Logger.getLogger(XlsStatement.class.getName());
+
     private final XlsConnection connection;
     private final Map<String, XlsResultSet> sheet2rs = new HashMap<>();
+    /**
+     * Never opened result sets keeping the resolved sheet, metadata, columns and WHERE condition
+     * of the keys of {@link #sheet2rs}, to open the same rows again without resolving anything.
+     */
+    private final Map<String, XlsResultSet> plans = new HashMap<>();
+    private long generation;
+    private long modifications;
     private SqlSheetParser parser;
     private boolean isClosed;
     private boolean isCloseOnCompletion;
+    private int maxRows;
+    private final List<String> batch = new ArrayList<>();
+    private long lastBatchRows;
+    private long lastBatchNanos;
 
     public XlsStatement(XlsConnection c) {
         if (c == null) {
@@ -108,10 +137,15 @@ public class XlsStatement implements Statement {
         if (isClosed) {
             return;
         }
+        isClosed = true;
+
+        // the result sets handed out close with the statement
+        for (XlsResultSet rs : sheet2rs.values()) {
+            rs.close();
+        }
         sheet2rs.clear();
+        plans.clear();
         parser = null;
-
-        isClosed = true;
     }
 
     @Override
@@ -120,6 +154,15 @@ public class XlsStatement implements Statement {
         if (parsed instanceof DropTableStatement) {
             doDropTable((DropTableStatement) parsed);
             return true;
+        } else if (parsed instanceof UpdateStatement || parsed instanceof DeleteStatement) {
+            try {
+                executeUpdate(parsed);
+                return false;
+            } finally {
+                if (isCloseOnCompletion) {
+                    close();
+                }
+            }
         } else {
             try (ResultSet rs = executeQuery(parsed)) {
                 return rs != null;
@@ -145,8 +188,8 @@ public class XlsStatement implements Statement {
 
     @Override
     public int executeUpdate(String sql) throws SQLException {
-        try (ResultSet rs = executeQuery(sql)) {
-            return rs != null ? 1 : 0;
+        try {
+            return executeUpdate(parse(sql));
         } finally {
             if (isCloseOnCompletion) {
                 close();
@@ -154,17 +197,41 @@ public class XlsStatement implements Statement {
         }
     }
 
+    private int executeUpdate(ParsedStatement parsed) throws SQLException {
+        if (parsed instanceof UpdateStatement) {
+            return doUpdate((UpdateStatement) parsed, null);
+        } else if (parsed instanceof DeleteStatement) {
+            return doDelete((DeleteStatement) parsed, null);
+        } else if (parsed instanceof InsertIntoStatement) {
+            // the result set stays open, the next INSERT appends from its cursor on
+            doInsert((InsertIntoStatement) parsed);
+            return ((InsertIntoStatement) parsed).getRows().size();
+        } else if (parsed instanceof CreateTableStatement) {
+            doCreateTable((CreateTableStatement) parsed);
+            return 0;
+        } else if (parsed instanceof DropTableStatement) {
+            doDropTable((DropTableStatement) parsed);
+            return 0;
+        }
+        try (ResultSet rs = executeQuery(parsed)) {
+            return rs != null ? 1 : 0;
+        }
+    }
+
     @Override
     public ResultSet executeQuery(String query) throws SQLException {
         ParsedStatement parsed = parse(query);
         return executeQuery(parsed);
     }
 
-    private void doDropTable(DropTableStatement dropTableStatement) {
+    private void doDropTable(DropTableStatement dropTableStatement) throws SQLException {
+        connection.checkWritable();
         connection.setWriteRequired(true);
+        connection.structureModified();
         String tableName = dropTableStatement.getTable();
-        int sheetIndexToRemove = connection.getWorkBook().getSheetIndex(tableName);
-        connection.getWorkBook().removeSheetAt(sheetIndexToRemove);
+        Workbook workbook = connection.getWorkBook(dropTableStatement.getSchema());
+        int sheetIndexToRemove = workbook.getSheetIndex(tableName);
+        workbook.removeSheetAt(sheetIndexToRemove);
     }
 
     protected ParsedStatement parse(String sql) throws SQLException {
@@ -178,48 +245,207 @@ public class XlsStatement implements Statement {
     }
 
     protected ResultSet doSelect(SelectStarStatement sss) throws SQLException {
-        XlsResultSet out = findOrCreateResultSetFor(sss.getTable());
-        out.beforeFirst();
-        out.statement = this;
-        return out;
+        return doSelect(sss, null);
+    }
+
+    /**
+     * @param sss the statement
+     * @param parameters the values of its JDBC parameters, or {@code null} if it has none
+     * @return the result set
+     * @throws SQLException if the statement cannot be executed
+     */
+    protected ResultSet doSelect(SelectStarStatement sss, List<Object> parameters)
+            throws SQLException {
+        return prepareSelect(sss).execute(parameters);
+    }
+
+    /**
+     * Resolves a SELECT statement against the sheets of the connection, to execute it again with
+     * other parameter values until the workbook is reloaded or modified.
+     *
+     * @param sss the statement
+     * @return the statement to execute
+     * @throws SQLException if a sheet or column is missing, or the statement is not supported
+     */
+    protected PreparedQuery prepareSelect(SelectStarStatement sss) throws SQLException {
+        return QueryExecutor.prepare(this, sss, connection.getQuerySettings(), this::prepareScan);
     }
 
     protected ResultSet doCreateTable(CreateTableStatement cts) throws SQLException {
+        connection.checkWritable();
         connection.setWriteRequired(true);
+        connection.structureModified();
         String tableName = cts.getTable().replace("\"", "");
-        Sheet newSheet = connection.getWorkBook().createSheet(tableName);
+        Sheet newSheet = connection.getWorkBook(cts.getSchema()).createSheet(tableName);
         Row row = newSheet.createRow(0);
         for (short i = 0; i < cts.getColumns().size(); i++) {
             Cell cell = row.createCell(i);
             cell.setCellValue(cts.getColumns().get(i));
         }
-        return findOrCreateResultSetFor(cts.getTable()); // REVIEW
+        return findOrCreateResultSetFor(cts.getSchema(), cts.getTable()); // REVIEW
     }
 
     protected ResultSet doInsert(InsertIntoStatement insert) throws SQLException {
+        connection.checkWritable();
         connection.setWriteRequired(true);
-        XlsResultSet rs = findOrCreateResultSetFor(insert.getTable());
-        rs.moveToInsertRow();
-        for (int i = 0; i < insert.getColumns().size(); i++) {
-            rs.updateObject(i + 1, insert.getValues().get(i));
+        XlsResultSet rs = findOrCreateResultSetFor(insert.getSchema(), insert.getTable());
+        rs.appendRows(insert.getColumns(), insert.getRows());
+        return rs;
+    }
+
+    /**
+     * @param update the statement
+     * @param parameters the values of its JDBC parameters, or {@code null} if it has none
+     * @return the number of rows updated
+     * @throws SQLException if the statement cannot be executed
+     */
+    protected int doUpdate(UpdateStatement update, List<Object> parameters)
+            throws SQLException {
+        connection.checkWritable();
+        List<Object> values = new ArrayList<>();
+        for (ParsedExpression value : update.getValues()) {
+            if (value.getOperator() == ParsedExpression.Operator.PARAMETER) {
+                int index = (Integer) value.getValue();
+                if (parameters == null || index >= parameters.size()) {
+                    throw new SQLException("No value set for parameter " + (index + 1) + ".");
+                }
+                values.add(parameters.get(index));
+            } else {
+                values.add(value.getValue());
+            }
+        }
+        XlsResultSet rs = findOrCreateResultSetFor(update.getSchema(), update.getTable(), null,
+                null, update.getWhere(), parameters);
+        int count = rs.updateRows(update.getColumns(), values);
+        if (count > 0) {
+            connection.setWriteRequired(true);
+        }
+        return count;
+    }
+
+    /**
+     * @param delete the statement
+     * @param parameters the values of its JDBC parameters, or {@code null} if it has none
+     * @return the number of rows deleted
+     * @throws SQLException if the statement cannot be executed
+     */
+    protected int doDelete(DeleteStatement delete, List<Object> parameters)
+            throws SQLException {
+        connection.checkWritable();
+        XlsResultSet rs = findOrCreateResultSetFor(delete.getSchema(), delete.getTable(), null,
+                null, delete.getWhere(), parameters);
+        int count = rs.deleteRows();
+        if (count > 0) {
+            connection.setWriteRequired(true);
+        }
+        return count;
+    }
+
+    private XlsResultSet findOrCreateResultSetFor(String schema, String tableName)
+            throws SQLException {
+        return findOrCreateResultSetFor(schema, tableName, null, null, null, null);
+    }
+
+    private XlsResultSet findOrCreateResultSetFor(String schema, String tableName,
+            List<String> columns, List<String> labels, ParsedExpression where,
+            List<Object> parameters) throws SQLException {
+        String key = keyOf(schema, tableName, columns, labels, where);
+        Workbook workbook = connection.getWorkBook(schema);
+        dropStaleResultSets();
+        XlsResultSet rs = sheet2rs.get(key);
+        if (rs == null || rs.isClosed()) {
+            rs = open(key, planFor(key, workbook, tableName, columns, labels, where));
         }
+        rs.bindParameters(parameters);
         return rs;
     }
 
-    private XlsResultSet findOrCreateResultSetFor(String tableName) throws SQLException {
+    /**
+     * Resolves the sheet, columns and WHERE condition of a scan once. Opening the scan only binds
+     * the parameters and rewinds the result set of the scan, which stays open until the next
+     * execution like the result sets of {@link #findOrCreateResultSetFor}.
+     */
+    private QueryExecutor.Scan prepareScan(String schema, String tableName,
+            ParsedExpression where, List<String> columns, List<String> labels)
+            throws SQLException {
+        String key = keyOf(schema, tableName, columns, labels, where);
+        Workbook workbook = connection.getWorkBook(schema);
+        dropStaleResultSets();
+        XlsResultSet plan = planFor(key, workbook, tableName, columns, labels, where);
+        return (parameters, limit) -> {
+            XlsResultSet out = sheet2rs.get(key);
+            if (out == null || out.isClosed()) {
+                out = open(key, plan);
+            }
+            out.bindParameters(parameters);
+            out.setLimit(limit);
+            out.beforeFirst();
+            return out;
+        };
+    }
+
+    private static String keyOf(String schema, String tableName, List<String> columns,
+            List<String> labels, ParsedExpression where) {
         String sanitizedTableName = tableName.trim().toUpperCase();
-        XlsResultSet rs = sheet2rs.get(sanitizedTableName);
-        if (rs != null && !rs.isClosed()) {
-            return rs;
-        }
-        Sheet sheet = getSheetNamed(connection.getWorkBook(), sanitizedTableName);
-        XlsResultSet out = new XlsResultSet(
-                connection.getWorkBook(),
-                sheet,
-                connection.getInt(XlsDriver.HEADLINE, DEFAULT_HEADLINE),
-                connection.getInt(XlsDriver.FIRST_COL, DEFAULT_FIRST_COL));
+        String key = schema == null
+                ? sanitizedTableName
+                : schema.trim().toUpperCase() + "." + sanitizedTableName;
+        if (columns != null) {
+            key += " " + columns + " AS " + labels;
+        }
+        if (where != null) {
+            key += " WHERE " + where;
+        }
+        return key;
+    }
+
+    private void dropStaleResultSets() throws SQLException {
+        if (generation != connection.getGeneration()) {
+            // the workbook was reloaded, the cached result sets show the previous one; closing
+            // them lets the connection release it once other statements are done with it too
+            for (XlsResultSet previous : sheet2rs.values()) {
+                previous.statement = null; // not a completion closing this statement
+                previous.close();
+            }
+            sheet2rs.clear();
+            plans.clear();
+            generation = connection.getGeneration();
+        }
+        if (modifications != connection.getModificationCount()) {
+            // the metadata of the plans may not match the modified sheets any more
+            plans.clear();
+            modifications = connection.getModificationCount();
+        }
+    }
+
+    /**
+     * @return the never opened result set resolving the sheet of a key
+     */
+    private XlsResultSet planFor(String key, Workbook workbook, String tableName,
+            List<String> columns, List<String> labels, ParsedExpression where)
+            throws SQLException {
+        XlsResultSet plan = plans.get(key);
+        if (plan == null) {
+            Sheet sheet = getSheetNamed(workbook, tableName.trim().toUpperCase());
+            plan = new XlsResultSet(
+                    workbook,
+                    sheet,
+                    connection.getInt(XlsDriver.HEADLINE, DEFAULT_HEADLINE),
+                    connection.getInt(XlsDriver.FIRST_COL, DEFAULT_FIRST_COL),
+                    columns,
+                    labels,
+                    !connection.isSharedWorkbook());
+            plan.prepareWhere(where);
+            plans.put(key, plan);
+        }
+        return plan;
+    }
+
+    private XlsResultSet open(String key, XlsResultSet plan) {
+        XlsResultSet out = new XlsResultSet(plan);
         out.statement = this;
-        sheet2rs.put(sanitizedTableName, out);
+        out.trackedBy(connection);
+        sheet2rs.put(key, out);
         return out;
     }
 
@@ -241,12 +467,17 @@ public class XlsStatement implements Statement {
     }
 
     public int getMaxRows() throws SQLException {
-        nyi();
-        return -1;
+        return maxRows;
     }
 
-    public void setMaxRows(int p0) throws SQLException {
-        nyi();
+    /**
+     * Rows beyond the maximum are not read from the sheet.
+     */
+    public void setMaxRows(int max) throws SQLException {
+        if (max < 0) {
+            throw new SQLException("Negative maximum rows: " + max);
+        }
+        maxRows = max;
     }
 
     public int getQueryTimeout() throws SQLException {
@@ -322,17 +553,112 @@ public class XlsStatement implements Statement {
         nyi();
     }
 
-    public void addBatch(String p0) throws SQLException {
-        nyi();
+    public void addBatch(String sql) throws SQLException {
+        if (sql == null) {
+            throw new IllegalArgumentException();
+        }
+        batch.add(sql);
     }
 
     public void clearBatch() throws SQLException {
-        nyi();
+        batch.clear();
     }
 
+    /**
+     * Runs the statements of the batch in order and clears it. Queries cannot be batched, a batch
+     * holding one is rejected before any statement runs.
+     *
+     * @return the number of rows each statement inserted, updated or deleted, zero for CREATE
+     *         TABLE and DROP TABLE
+     * @throws BatchUpdateException with the counts of the statements run, if one fails
+     */
     public int[] executeBatch() throws SQLException {
-        nyi();
-        return null;
+        List<String> sqls = new ArrayList<>(batch);
+        batch.clear();
+        long start = System.nanoTime();
+        // nothing runs unless every statement can be batched
+        List<ParsedStatement> statements = new ArrayList<>(sqls.size());
+        for (String sql : sqls) {
+            ParsedStatement parsed;
+            try {
+                parsed = parse(sql);
+            } catch (SQLException | RuntimeException e) {
+                throw batchFailed(e, new int[0]);
+            }
+            if (!(parsed instanceof InsertIntoStatement || parsed instanceof UpdateStatement
+                    || parsed instanceof DeleteStatement
+                    || parsed instanceof CreateTableStatement
+                    || parsed instanceof DropTableStatement)) {
+                throw new BatchUpdateException("Only INSERT, UPDATE, DELETE, CREATE TABLE and"
+                        + " DROP TABLE statements can be batched: " + sql, new int[0]);
+            }
+            statements.add(parsed);
+        }
+        int[] counts = new int[statements.size()];
+        long rows = 0;
+        for (int i = 0; i < counts.length; i++) {
+            try {
+                counts[i] = executeUpdate(statements.get(i));
+            } catch (SQLException | RuntimeException e) {
+                throw batchFailed(e, Arrays.copyOf(counts, i));
+            }
+            rows += counts[i];
+        }
+        batchExecuted(rows, start);
+        if (isCloseOnCompletion) {
+            close();
+        }
+        return counts;
+    }
+
+    /**
+     * @param e the failure of a batched statement
+     * @param counts the update counts of the statements run before
+     * @return the exception to throw from {@link #executeBatch()}
+     */
+    protected static BatchUpdateException batchFailed(Exception e, int[] counts) {
+        if (e instanceof SQLException) {
+            SQLException sqlException = (SQLException) e;
+            return new BatchUpdateException(sqlException.getMessage(),
+                    sqlException.getSQLState(), sqlException.getErrorCode(), counts, e);
+        }
+        return new BatchUpdateException(e.toString(), null, 0, counts, e);
+    }
+
+    /**
+     * Records the throughput of a batch.
+     *
+     * @param rows the number of rows the batch changed
+     * @param start the {@link System#nanoTime()} the batch started at
+     */
+    protected void batchExecuted(long rows, long start) {
+        lastBatchRows = rows;
+        lastBatchNanos = System.nanoTime() - start;
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Batch of " + rows + " rows in " + lastBatchNanos / 1000000 + " ms, "
+                    + Math.round(getLastBatchRowsPerSecond()) + " rows/s.");
+        }
+    }
+
+    /**
+     * @return the number of rows the last {@link #executeBatch()} changed
+     */
+    public long getLastBatchRows() {
+        return lastBatchRows;
+    }
+
+    /**
+     * @return the time the last {@link #executeBatch()} took, in nanoseconds
+     */
+    public long getLastBatchNanos() {
+        return lastBatchNanos;
+    }
+
+    /**
+     * @return the throughput of the last {@link #executeBatch()}, {@code 0} before the first
+     */
+    public double getLastBatchRowsPerSecond() {
+        return lastBatchNanos > 0 ? lastBatchRows * 1e9 / lastBatchNanos : 0;
     }
 
     @Override
@@ -394,11 +720,14 @@ public class XlsStatement implements Statement {
     }
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        return false;
+        return iface.isInstance(this);
     }
 
     public <T> T unwrap(Class<T> iface) throws SQLException {
-        return null;
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
     }
 
     @Override
@@ -0,0 +1,266 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.commons.vfs2.FileObject;
+import org.apache.commons.vfs2.VFS;
+import org.apache.poi.ooxml.POIXMLDocumentPart;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.model.SharedStringsTable;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCell;
+import org.apache.poi.xssf.usermodel.XSSFRow;
+import org.apache.poi.xssf.usermodel.XSSFSheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.xmlbeans.XmlOptions;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTCell;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorksheet;
+
+import javax.xml.namespace.QName;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+
+import static org.apache.poi.ooxml.POIXMLTypeLoader.DEFAULT_XML_OPTIONS;
+
+/**
+ * Tracks which sheets of an xlsx workbook were modified since it was read, so that saving it only
+ * re-serializes those sheets plus the shared strings and styles, and copies every other zip entry
+ * of the original file as is, without inflating or deflating it.
+ *
+ * <p>
+ * This only holds while the package keeps its structure: creating or dropping a sheet, shifting
+ * rows other sheets or names may refer to, a part POI added on its own, or an original file
+ * changed by someone else since it was read all fall back to
+ * {@link XSSFWorkbook#write(OutputStream)}.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class XlsxChanges {
+
+    private static final Logger LOGGER = Logger.getLogger(XlsxChanges.class.getName());
+
+    private final XSSFWorkbook workbook;
+    private final File source;
+    private final long lastModified;
+    private final long length;
+    private final Set<String> modifiedSheets = new TreeSet<>();
+    private boolean structureModified;
+
+    private XlsxChanges(XSSFWorkbook workbook, File source) {
+        this.workbook = workbook;
+        this.source = source;
+        this.lastModified = source.lastModified();
+        this.length = source.length();
+    }
+
+    /**
+     * @param workbook the workbook just read
+     * @param source the file it was read from
+     * @return the changes of the workbook, or {@code null} if it cannot be saved incrementally
+     */
+    static XlsxChanges track(Workbook workbook, URL source) {
+        if (!(workbook instanceof XSSFWorkbook) || source == null) {
+            return null;
+        }
+        try (FileObject file = VFS.getManager().resolveFile(source)) {
+            File localFile = XlsDriver.toLocalFile(file);
+            return localFile != null && localFile.isFile()
+                    ? new XlsxChanges((XSSFWorkbook) workbook, localFile)
+                    : null;
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Cannot track changes of " + source, e);
+            return null;
+        }
+    }
+
+    synchronized void sheetModified(Sheet sheet) {
+        modifiedSheets.add(sheet.getSheetName());
+    }
+
+    /**
+     * Records a change beyond the cells of single sheets, e.g. a created or dropped sheet.
+     */
+    synchronized void structureModified() {
+        structureModified = true;
+    }
+
+    /**
+     * @return whether saving rewrites the whole workbook because of a structural change
+     */
+    synchronized boolean isStructureModified() {
+        return structureModified;
+    }
+
+    synchronized Set<String> getModifiedSheets() {
+        return new TreeSet<>(modifiedSheets);
+    }
+
+    /**
+     * Writes the workbook, incrementally if possible.
+     *
+     * @param out the stream to write the workbook to, left open
+     * @throws IOException if the workbook could not be written
+     */
+    synchronized void write(OutputStream out) throws IOException {
+        Map<String, POIXMLDocumentPart> regenerated = regeneratedParts();
+        if (regenerated == null) {
+            workbook.write(out);
+            return;
+        }
+        try (ZipFile zip = ZipFile.builder().setFile(source).get();
+                ZipArchiveOutputStream zipOut =
+                        new ZipArchiveOutputStream(CloseShieldOutputStream.wrap(out))) {
+            for (Enumeration<ZipArchiveEntry> e = zip.getEntriesInPhysicalOrder();
+                    e.hasMoreElements();) {
+                ZipArchiveEntry entry = e.nextElement();
+                POIXMLDocumentPart part = regenerated.get(entry.getName());
+                if (part == null) {
+                    zipOut.addRawArchiveEntry(entry, zip.getRawInputStream(entry));
+                    continue;
+                }
+                ZipArchiveEntry copy = new ZipArchiveEntry(entry.getName());
+                copy.setMethod(ZipEntry.DEFLATED);
+                copy.setTime(System.currentTimeMillis());
+                zipOut.putArchiveEntry(copy);
+                writePart(part, CloseShieldOutputStream.wrap(zipOut));
+                zipOut.closeArchiveEntry();
+            }
+            zipOut.finish();
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine("Saved " + regenerated.keySet() + " of " + source + ", copied the rest.");
+        }
+    }
+
+    /**
+     * @return the parts to write by zip entry name, or {@code null} to write the whole workbook
+     */
+    private Map<String, POIXMLDocumentPart> regeneratedParts() throws IOException {
+        if (structureModified
+                || source.lastModified() != lastModified
+                || source.length() != length) {
+            return null;
+        }
+        Map<String, POIXMLDocumentPart> parts = new LinkedHashMap<>();
+        for (String name : modifiedSheets) {
+            XSSFSheet sheet = workbook.getSheet(name);
+            if (sheet == null || !hasOrderedCells(sheet)) {
+                return null;
+            }
+            parts.put(entryName(sheet.getPackagePart()), sheet);
+        }
+        if (workbook.getSharedStringSource() != null) {
+            parts.put(entryName(workbook.getSharedStringSource().getPackagePart()),
+                    workbook.getSharedStringSource());
+        }
+        if (workbook.getStylesSource() != null) {
+            parts.put(entryName(workbook.getStylesSource().getPackagePart()),
+                    workbook.getStylesSource());
+        }
+        try (ZipFile zip = ZipFile.builder().setFile(source).get()) {
+            // a part the original lacks, e.g. shared strings POI added, changes the content types
+            for (PackagePart part : workbook.getPackage().getParts()) {
+                if (zip.getEntry(entryName(part)) == null) {
+                    return null;
+                }
+            }
+        } catch (InvalidFormatException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        return parts;
+    }
+
+    private static String entryName(PackagePart part) {
+        return part.getPartName().getName().substring(1);
+    }
+
+    /**
+     * POI sorts the cells of a row only when writing the whole workbook, so rows with cells added
+     * out of column order need that path.
+     */
+    private static boolean hasOrderedCells(XSSFSheet sheet) {
+        for (Row row : sheet) {
+            CTCell[] cells = ((XSSFRow) row).getCTRow().getCArray();
+            if (cells.length != row.getPhysicalNumberOfCells()) {
+                return false;
+            }
+            Iterator<Cell> it = row.cellIterator();
+            for (CTCell cell : cells) {
+                if (((XSSFCell) it.next()).getCTCell() != cell) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static void writePart(POIXMLDocumentPart part, OutputStream out) throws IOException {
+        if (part instanceof XSSFSheet) {
+            writeSheet((XSSFSheet) part, out);
+        } else if (part instanceof SharedStringsTable) {
+            ((SharedStringsTable) part).writeTo(out);
+        } else {
+            ((StylesTable) part).writeTo(out);
+        }
+    }
+
+    /**
+     * Same as {@code XSSFSheet.write()} for a sheet whose rows were only added or updated.
+     */
+    private static void writeSheet(XSSFSheet sheet, OutputStream out) throws IOException {
+        CTWorksheet worksheet = sheet.getCTWorksheet();
+        int minCell = Integer.MAX_VALUE;
+        int maxCell = Integer.MIN_VALUE;
+        for (Row row : sheet) {
+            if (row.getFirstCellNum() != -1) {
+                minCell = Math.min(minCell, row.getFirstCellNum());
+                maxCell = Math.max(maxCell, row.getLastCellNum() - 1);
+            }
+        }
+        if (minCell != Integer.MAX_VALUE) {
+            String ref = new CellRangeAddress(sheet.getFirstRowNum(), sheet.getLastRowNum(),
+                    minCell, maxCell).formatAsString();
+            if (worksheet.isSetDimension()) {
+                worksheet.getDimension().setRef(ref);
+            } else {
+                worksheet.addNewDimension().setRef(ref);
+            }
+        }
+        XmlOptions options = new XmlOptions(DEFAULT_XML_OPTIONS);
+        options.setSaveSyntheticDocumentElement(
+                new QName(CTWorksheet.type.getName().getNamespaceURI(), "worksheet"));
+        worksheet.save(out, options);
+    }
+}
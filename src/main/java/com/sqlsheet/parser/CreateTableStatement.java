@@ -25,6 +25,13 @@ public interface CreateTableStatement extends ParsedStatement {
 
     String getTable();
 
+    /**
+     * @return the schema qualifying the table, or {@code null}
+     */
+    default String getSchema() {
+        return null;
+    }
+
     List<String> getColumns();
 
     List<String> getTypes();
@@ -22,4 +22,11 @@ package com.sqlsheet.parser;
 public interface DropTableStatement extends ParsedStatement {
 
     String getTable();
+
+    /**
+     * @return the schema qualifying the table, or {@code null}
+     */
+    default String getSchema() {
+        return null;
+    }
 }
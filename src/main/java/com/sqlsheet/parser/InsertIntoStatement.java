@@ -13,10 +13,11 @@
  */
 package com.sqlsheet.parser;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
- * Handle on a parsed SQL statement of the form INSERT INTO xxx (xxx) VALUE (xxx).
+ * Handle on a parsed SQL statement of the form INSERT INTO xxx (xxx) VALUES (xxx), (xxx).
  *
  * @author <a href='http://www.pcal.net'>pcal</a>
  * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
@@ -25,7 +26,30 @@ public interface InsertIntoStatement extends ParsedStatement {
 
     String getTable();
 
+    /**
+     * @return the schema qualifying the table, or {@code null}
+     */
+    default String getSchema() {
+        return null;
+    }
+
     List<String> getColumns();
 
+    /**
+     * @return the values of all rows, row after row
+     */
     List<Object> getValues();
+
+    /**
+     * @return the values of each row, as many as there are {@link #getColumns() columns}
+     */
+    default List<List<Object>> getRows() {
+        List<Object> values = getValues();
+        int width = Math.max(1, getColumns().size());
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += width) {
+            rows.add(values.subList(i, Math.min(i + width, values.size())));
+        }
+        return rows;
+    }
 }
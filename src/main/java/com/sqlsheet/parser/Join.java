@@ -0,0 +1,138 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable JOIN of a table to the tables before it in the FROM clause, on equal columns.
+ *
+ * <p>
+ * The columns of a statement with joins are qualified as {@code alias.column}, the alias being the
+ * one given in the FROM clause or else the table name.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class Join {
+
+    public enum Type {
+        INNER,
+        /** Rows of the tables before without a match get nulls for the joined table. */
+        LEFT
+    }
+
+    private final Type type;
+    private final String schema;
+    private final String table;
+    private final String alias;
+    private final List<String> leftColumns;
+    private final List<String> rightColumns;
+    private final ParsedExpression condition;
+
+    /**
+     * @param leftColumns the qualified key columns of the tables before
+     * @param rightColumns the qualified key columns of the joined table, equal to the left ones
+     * @param condition the rest of the ON condition, or {@code null}
+     */
+    public Join(Type type, String schema, String table, String alias, List<String> leftColumns,
+            List<String> rightColumns, ParsedExpression condition) {
+        if (leftColumns.isEmpty() || leftColumns.size() != rightColumns.size()) {
+            throw new IllegalArgumentException("Key columns missing or differing in number");
+        }
+        this.type = Objects.requireNonNull(type);
+        this.schema = schema;
+        this.table = Objects.requireNonNull(table);
+        this.alias = Objects.requireNonNull(alias);
+        this.leftColumns = Collections.unmodifiableList(new ArrayList<>(leftColumns));
+        this.rightColumns = Collections.unmodifiableList(new ArrayList<>(rightColumns));
+        this.condition = condition;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the schema qualifying the table, or {@code null}
+     */
+    public String getSchema() {
+        return schema;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the alias qualifying the columns of the table
+     */
+    public String getAlias() {
+        return alias;
+    }
+
+    public List<String> getLeftColumns() {
+        return leftColumns;
+    }
+
+    public List<String> getRightColumns() {
+        return rightColumns;
+    }
+
+    /**
+     * @return the part of the ON condition besides the equal key columns, or {@code null}
+     */
+    public ParsedExpression getCondition() {
+        return condition;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Join)) {
+            return false;
+        }
+        Join other = (Join) o;
+        return type == other.type
+                && Objects.equals(schema, other.schema)
+                && table.equals(other.table)
+                && alias.equals(other.alias)
+                && leftColumns.equals(other.leftColumns)
+                && rightColumns.equals(other.rightColumns)
+                && Objects.equals(condition, other.condition);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, schema, table, alias, leftColumns, rightColumns, condition);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder on = new StringBuilder();
+        for (int i = 0; i < leftColumns.size(); i++) {
+            on.append(i > 0 ? " AND " : "").append(leftColumns.get(i)).append(" = ")
+                    .append(rightColumns.get(i));
+        }
+        if (condition != null) {
+            on.append(" AND ").append(condition);
+        }
+        return type + " JOIN " + (schema != null ? schema + "." : "") + table + " " + alias
+                + " ON " + on;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.parser;
+
+import java.util.Objects;
+
+/**
+ * Immutable sort key of an ORDER BY clause.
+ *
+ * <p>
+ * Nulls sort high unless {@code NULLS FIRST} or {@code NULLS LAST} says otherwise, that is last in
+ * ascending and first in descending order.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class OrderBy {
+
+    private final ParsedExpression expression;
+    private final boolean ascending;
+    private final boolean nullsFirst;
+
+    public OrderBy(ParsedExpression expression, boolean ascending, Boolean nullsFirst) {
+        this.expression = Objects.requireNonNull(expression);
+        this.ascending = ascending;
+        this.nullsFirst = nullsFirst != null ? nullsFirst : !ascending;
+    }
+
+    /**
+     * @return a column, or a {@code Long} literal giving the one based position of a selected
+     *         column
+     */
+    public ParsedExpression getExpression() {
+        return expression;
+    }
+
+    /**
+     * @return the one based position of the selected column to sort by, or {@code 0} if the key is
+     *         an expression
+     */
+    public int getPosition() {
+        return expression.getOperator() == ParsedExpression.Operator.LITERAL
+                && expression.getValue() instanceof Long
+                        ? ((Long) expression.getValue()).intValue()
+                        : 0;
+    }
+
+    public boolean isAscending() {
+        return ascending;
+    }
+
+    public boolean isNullsFirst() {
+        return nullsFirst;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof OrderBy)) {
+            return false;
+        }
+        OrderBy other = (OrderBy) o;
+        return ascending == other.ascending
+                && nullsFirst == other.nullsFirst
+                && expression.equals(other.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(expression, ascending, nullsFirst);
+    }
+
+    @Override
+    public String toString() {
+        return expression + (ascending ? " ASC" : " DESC")
+                + (nullsFirst ? " NULLS FIRST" : " NULLS LAST");
+    }
+}
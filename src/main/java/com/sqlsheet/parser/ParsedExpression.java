@@ -0,0 +1,266 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable expression tree of a parsed statement, e.g. a WHERE condition, independent of the
+ * particular parser.
+ *
+ * <p>
+ * The {@link #toString()} form is normalized SQL, equal for equal trees.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class ParsedExpression {
+
+    public enum Operator {
+        /** A sheet column, the value is its name. */
+        COLUMN,
+        /** A constant, the value is a String, Double, Long, Boolean, java.util.Date or null. */
+        LITERAL,
+        /** A JDBC parameter, the value is its zero based index in the statement. */
+        PARAMETER,
+        AND, OR, NOT,
+        EQUALS, NOT_EQUALS, LESS_THAN, LESS_THAN_OR_EQUALS, GREATER_THAN, GREATER_THAN_OR_EQUALS,
+        IS_NULL, IS_NOT_NULL, LIKE, NOT_LIKE,
+        /** The first operand is in the list of the others. */
+        IN, NOT_IN,
+        /** The first operand is between the second and the third, inclusive. */
+        BETWEEN, NOT_BETWEEN,
+        ADD, SUBTRACT, MULTIPLY, DIVIDE, NEGATE,
+        /** An aggregate function, COUNT without operand counts all rows. */
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private final Operator operator;
+    private final Object value;
+    private final List<ParsedExpression> operands;
+    /** The normalized SQL, computed once as it keys the caches of compiled conditions. */
+    private String sql;
+
+    private ParsedExpression(Operator operator, Object value, List<ParsedExpression> operands) {
+        this.operator = operator;
+        this.value = value;
+        this.operands = operands;
+    }
+
+    public static ParsedExpression column(String name) {
+        return new ParsedExpression(Operator.COLUMN, name, Collections.emptyList());
+    }
+
+    public static ParsedExpression literal(Object value) {
+        return new ParsedExpression(Operator.LITERAL, value, Collections.emptyList());
+    }
+
+    public static ParsedExpression parameter(int index) {
+        return new ParsedExpression(Operator.PARAMETER, index, Collections.emptyList());
+    }
+
+    public static ParsedExpression of(Operator operator, ParsedExpression... operands) {
+        if (operator == Operator.COLUMN
+                || operator == Operator.LITERAL
+                || operator == Operator.PARAMETER) {
+            throw new IllegalArgumentException(operator + " has no operands");
+        }
+        return new ParsedExpression(operator, null,
+                Collections.unmodifiableList(new ArrayList<>(Arrays.asList(operands))));
+    }
+
+    public Operator getOperator() {
+        return operator;
+    }
+
+    /**
+     * @return the column name, literal or parameter index of a leaf, {@code null} otherwise
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    public List<ParsedExpression> getOperands() {
+        return operands;
+    }
+
+    /**
+     * @return whether this is an aggregate function
+     */
+    public boolean isAggregate() {
+        return operator.compareTo(Operator.COUNT) >= 0;
+    }
+
+    /**
+     * @return whether this or any operand is an aggregate function
+     */
+    public boolean containsAggregate() {
+        if (isAggregate()) {
+            return true;
+        }
+        for (ParsedExpression operand : operands) {
+            if (operand.containsAggregate()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the distinct aggregate functions of the expression, in order of appearance
+     */
+    public List<ParsedExpression> getAggregates() {
+        List<ParsedExpression> aggregates = new ArrayList<>();
+        collectAggregates(aggregates);
+        return Collections.unmodifiableList(aggregates);
+    }
+
+    private void collectAggregates(List<ParsedExpression> aggregates) {
+        if (isAggregate()) {
+            if (!aggregates.contains(this)) {
+                aggregates.add(this);
+            }
+            return;
+        }
+        for (ParsedExpression operand : operands) {
+            operand.collectAggregates(aggregates);
+        }
+    }
+
+    /**
+     * @return the distinct column names referenced by the expression, in order of appearance
+     */
+    public List<String> getColumns() {
+        List<String> columns = new ArrayList<>();
+        collectColumns(columns);
+        return Collections.unmodifiableList(columns);
+    }
+
+    private void collectColumns(List<String> columns) {
+        if (operator == Operator.COLUMN && !columns.contains(value)) {
+            columns.add((String) value);
+        }
+        for (ParsedExpression operand : operands) {
+            operand.collectColumns(columns);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ParsedExpression)) {
+            return false;
+        }
+        ParsedExpression other = (ParsedExpression) o;
+        return operator == other.operator
+                && Objects.equals(value, other.value)
+                && operands.equals(other.operands);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(operator, value, operands);
+    }
+
+    @Override
+    public String toString() {
+        if (sql == null) {
+            sql = format();
+        }
+        return sql;
+    }
+
+    private String format() {
+        switch (operator) {
+            case COLUMN:
+                return "\"" + value + "\"";
+            case LITERAL:
+                if (value instanceof String) {
+                    return "'" + ((String) value).replace("'", "''") + "'";
+                } else if (value instanceof java.sql.Time) {
+                    return "{t '" + value + "'}";
+                } else if (value instanceof java.util.Date) {
+                    return "{ts '" + new java.sql.Timestamp(((java.util.Date) value).getTime())
+                            + "'}";
+                }
+                return String.valueOf(value).toUpperCase();
+            case PARAMETER:
+                return "?" + ((Integer) value + 1);
+            case NOT:
+                return "NOT " + operands.get(0);
+            case NEGATE:
+                return "-" + operands.get(0);
+            case IS_NULL:
+                return "(" + operands.get(0) + " IS NULL)";
+            case IS_NOT_NULL:
+                return "(" + operands.get(0) + " IS NOT NULL)";
+            case IN:
+            case NOT_IN:
+                StringBuilder in = new StringBuilder("(").append(operands.get(0))
+                        .append(operator == Operator.IN ? " IN (" : " NOT IN (");
+                for (int i = 1; i < operands.size(); i++) {
+                    in.append(i > 1 ? ", " : "").append(operands.get(i));
+                }
+                return in.append("))").toString();
+            case COUNT:
+            case SUM:
+            case MIN:
+            case MAX:
+            case AVG:
+                return operator + "(" + (operands.isEmpty() ? "*" : operands.get(0)) + ")";
+            case BETWEEN:
+            case NOT_BETWEEN:
+                return "(" + operands.get(0)
+                        + (operator == Operator.BETWEEN ? " BETWEEN " : " NOT BETWEEN ")
+                        + operands.get(1) + " AND " + operands.get(2) + ")";
+            default:
+                return "(" + operands.get(0) + " " + symbol(operator) + " " + operands.get(1)
+                        + ")";
+        }
+    }
+
+    private static String symbol(Operator operator) {
+        switch (operator) {
+            case EQUALS:
+                return "=";
+            case NOT_EQUALS:
+                return "<>";
+            case LESS_THAN:
+                return "<";
+            case LESS_THAN_OR_EQUALS:
+                return "<=";
+            case GREATER_THAN:
+                return ">";
+            case GREATER_THAN_OR_EQUALS:
+                return ">=";
+            case ADD:
+                return "+";
+            case SUBTRACT:
+                return "-";
+            case MULTIPLY:
+                return "*";
+            case DIVIDE:
+                return "/";
+            case NOT_LIKE:
+                return "NOT LIKE";
+            default:
+                return operator.name();
+        }
+    }
+}
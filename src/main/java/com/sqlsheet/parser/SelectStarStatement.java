@@ -13,6 +13,9 @@
  */
 package com.sqlsheet.parser;
 
+import java.util.Collections;
+import java.util.List;
+
 /**
  * Handle on a parsed SQL statement of the form SELECT * FROM xxx.
  *
@@ -22,4 +25,61 @@ package com.sqlsheet.parser;
 public interface SelectStarStatement extends ParsedStatement {
 
     String getTable();
+
+    /**
+     * @return the schema qualifying the table, or {@code null}
+     */
+    default String getSchema() {
+        return null;
+    }
+
+    /**
+     * @return the alias qualifying the columns of the table, or else its name, in a statement
+     *         with {@link #getJoins() joins}, {@code null} without joins
+     */
+    default String getAlias() {
+        return null;
+    }
+
+    /**
+     * @return the tables joined to the table, in order, empty if there are none
+     */
+    default List<Join> getJoins() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the WHERE condition rows have to meet, or {@code null}
+     */
+    default ParsedExpression getWhere() {
+        return null;
+    }
+
+    /**
+     * @return the sort keys of the ORDER BY clause, empty if the rows are not sorted
+     */
+    default List<OrderBy> getOrderBy() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the most rows to return, from LIMIT, FETCH FIRST or TOP, or {@code null} for all
+     */
+    default Long getLimit() {
+        return null;
+    }
+
+    /**
+     * @return the number of leading rows to skip
+     */
+    default long getOffset() {
+        return 0;
+    }
+
+    /**
+     * @return whether duplicate rows are removed, for SELECT DISTINCT
+     */
+    default boolean isDistinct() {
+        return false;
+    }
 }
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Handle on a parsed SQL statement of the form SELECT xxx, xxx FROM xxx.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public interface SelectStatement extends SelectStarStatement {
+
+    /**
+     * @return the selected columns of the sheet, in select list order, or for an
+     *         {@link #isAggregate() aggregate} query the distinct columns its items refer to
+     */
+    List<String> getColumns();
+
+    /**
+     * @return the labels of the select list, the alias or else the column name or expression
+     */
+    List<String> getLabels();
+
+    /**
+     * @return the select list, columns or aggregate functions of a column
+     */
+    default List<ParsedExpression> getItems() {
+        List<ParsedExpression> items = new ArrayList<>();
+        for (String column : getColumns()) {
+            items.add(ParsedExpression.column(column));
+        }
+        return items;
+    }
+
+    /**
+     * @return the columns of the GROUP BY clause, empty if the rows are not grouped
+     */
+    default List<String> getGroupBy() {
+        return Collections.emptyList();
+    }
+
+    /**
+     * @return the HAVING condition groups have to meet, or {@code null}
+     */
+    default ParsedExpression getHaving() {
+        return null;
+    }
+
+    /**
+     * @return whether the rows are aggregated into groups, one row for all rows without GROUP BY
+     */
+    default boolean isAggregate() {
+        if (!getGroupBy().isEmpty() || getHaving() != null) {
+            return true;
+        }
+        for (ParsedExpression item : getItems()) {
+            if (item.containsAggregate()) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
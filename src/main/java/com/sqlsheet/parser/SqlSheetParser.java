@@ -13,31 +13,67 @@
  */
 package com.sqlsheet.parser;
 
+import com.sqlsheet.parser.ParsedExpression.Operator;
+import net.sf.jsqlparser.expression.AllValue;
+import net.sf.jsqlparser.expression.BinaryExpression;
+import net.sf.jsqlparser.expression.CastExpression;
+import net.sf.jsqlparser.expression.DateTimeLiteralExpression;
 import net.sf.jsqlparser.expression.DateValue;
 import net.sf.jsqlparser.expression.DoubleValue;
 import net.sf.jsqlparser.expression.Expression;
+import net.sf.jsqlparser.expression.Function;
 import net.sf.jsqlparser.expression.LongValue;
+import net.sf.jsqlparser.expression.NotExpression;
 import net.sf.jsqlparser.expression.NullValue;
+import net.sf.jsqlparser.expression.SignedExpression;
 import net.sf.jsqlparser.expression.StringValue;
 import net.sf.jsqlparser.expression.TimeValue;
 import net.sf.jsqlparser.expression.TimestampValue;
+import net.sf.jsqlparser.expression.operators.arithmetic.Addition;
+import net.sf.jsqlparser.expression.operators.arithmetic.Division;
+import net.sf.jsqlparser.expression.operators.arithmetic.Multiplication;
+import net.sf.jsqlparser.expression.operators.arithmetic.Subtraction;
+import net.sf.jsqlparser.expression.operators.conditional.AndExpression;
+import net.sf.jsqlparser.expression.operators.conditional.OrExpression;
+import net.sf.jsqlparser.expression.operators.relational.Between;
+import net.sf.jsqlparser.expression.operators.relational.EqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ExpressionList;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThan;
+import net.sf.jsqlparser.expression.operators.relational.GreaterThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.InExpression;
+import net.sf.jsqlparser.expression.operators.relational.IsNullExpression;
+import net.sf.jsqlparser.expression.operators.relational.LikeExpression;
+import net.sf.jsqlparser.expression.operators.relational.MinorThan;
+import net.sf.jsqlparser.expression.operators.relational.MinorThanEquals;
+import net.sf.jsqlparser.expression.operators.relational.NotEqualsTo;
+import net.sf.jsqlparser.expression.operators.relational.ParenthesedExpressionList;
 import net.sf.jsqlparser.parser.CCJSqlParserManager;
+import net.sf.jsqlparser.schema.Column;
 import net.sf.jsqlparser.schema.Table;
 import net.sf.jsqlparser.statement.create.table.ColumnDefinition;
 import net.sf.jsqlparser.statement.create.table.CreateTable;
+import net.sf.jsqlparser.statement.delete.Delete;
 import net.sf.jsqlparser.statement.drop.Drop;
 import net.sf.jsqlparser.statement.insert.Insert;
 import net.sf.jsqlparser.statement.select.AllColumns;
+import net.sf.jsqlparser.statement.select.Fetch;
 import net.sf.jsqlparser.statement.select.FromItem;
+import net.sf.jsqlparser.statement.select.GroupByElement;
+import net.sf.jsqlparser.statement.select.Limit;
+import net.sf.jsqlparser.statement.select.OrderByElement;
 import net.sf.jsqlparser.statement.select.PlainSelect;
 import net.sf.jsqlparser.statement.select.SelectItem;
 import net.sf.jsqlparser.statement.select.Values;
+import net.sf.jsqlparser.statement.update.Update;
+import net.sf.jsqlparser.statement.update.UpdateSet;
 
 import java.io.StringReader;
 import java.sql.SQLException;
 import java.sql.SQLFeatureNotSupportedException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * Wrapper around the JSQLParser which does all the real work. This class and the rest of the
@@ -57,16 +93,38 @@ public class SqlSheetParser {
 
     private CCJSqlParserManager parser;
 
+    /** The aliases columns are qualified by while parsing a statement with joins, or null. */
+    private List<String> qualifiers;
+
     // support for workaround until we get a fix for
     // http://sourceforge.net/forum/forum.php?thread_id=1975052&forum_id=360150
     private static String stripUnderscores(String columnName) {
         return columnName.replace('_', ' ');
     }
 
+    /**
+     * Parses a statement, or takes it from the {@link StatementCache} if the same text was parsed
+     * before.
+     *
+     * @param sql the SQL text
+     * @return the immutable parsed statement
+     * @throws SQLException if the statement cannot be parsed or is not supported
+     */
     public ParsedStatement parse(String sql) throws SQLException {
+        StatementCache cache = StatementCache.getInstance();
+        ParsedStatement parsed = cache.get(sql);
+        if (parsed == null) {
+            parsed = parseUncached(sql);
+            cache.put(sql, parsed);
+        }
+        return parsed;
+    }
+
+    private ParsedStatement parseUncached(String sql) throws SQLException {
         if (parser == null) {
             parser = new CCJSqlParserManager();
         }
+        qualifiers = null;
         net.sf.jsqlparser.statement.Statement statement;
         try {
             statement = parser.parse(new StringReader(sql));
@@ -85,34 +143,194 @@ public class SqlSheetParser {
                 throw new SQLFeatureNotSupportedException(
                         "Subselects not supported on Excel sheets.");
             }
-            if (select.getDistinct() != null) {
+            if (select.getDistinct() != null && select.getDistinct().getOnSelectItems() != null) {
                 throw new SQLFeatureNotSupportedException(
-                        "DISTINCT not supported on Excel sheets.");
+                        "DISTINCT ON not supported on Excel sheets.");
             }
+            final boolean distinct = select.getDistinct() != null;
             if (select.getIntoTables() != null) {
                 throw new SQLFeatureNotSupportedException(
                         "SELECT INTO not supported on Excel sheets.");
             }
-            if (select.getHaving() != null) {
-                throw new SQLFeatureNotSupportedException(
-                        "HAVING not supported on Excel sheets.");
+            final String table = prepareTableIdentifier(((Table) from).getName());
+            final String schema = prepareSchemaIdentifier((Table) from);
+            int[] parameterCount = new int[1];
+            final String alias;
+            final List<Join> joins;
+            if (select.getJoins() != null && !select.getJoins().isEmpty()) {
+                alias = prepareAlias((Table) from);
+                qualifiers = new ArrayList<>(Collections.singletonList(alias));
+                List<Join> parsedJoins = new ArrayList<>();
+                for (net.sf.jsqlparser.statement.select.Join join : select.getJoins()) {
+                    parsedJoins.add(toJoin(join, parameterCount));
+                }
+                joins = Collections.unmodifiableList(parsedJoins);
+            } else {
+                alias = null;
+                joins = Collections.emptyList();
             }
-            if (select.getGroupBy() != null) {
-                throw new SQLFeatureNotSupportedException(
-                        "GROUP BY not supported on Excel sheets.");
+            final ParsedExpression where = select.getWhere() != null
+                    ? toExpression(select.getWhere(), parameterCount)
+                    : null;
+            if (where != null && where.containsAggregate()) {
+                throw new SQLException("Aggregate functions are not allowed in WHERE: " + where);
             }
+            final List<String> groupBy = toGroupBy(select);
+            final ParsedExpression having = select.getHaving() != null
+                    ? toExpression(select.getHaving(), parameterCount)
+                    : null;
+            final List<OrderBy> orderBy = toOrderBy(select.getOrderByElements());
+            final Long limit = toLimit(select);
+            final long offset = toOffset(select);
             List<SelectItem<?>> selectItems = select.getSelectItems();
-            if (selectItems == null
-                    || selectItems.size() != 1
-                    || !(selectItems.get(0).getExpression() instanceof AllColumns)) {
-                throw new SQLFeatureNotSupportedException(
-                        "Only 'SELECT *' is supported on Excel sheets");
+            boolean aggregate = !groupBy.isEmpty() || having != null;
+            for (SelectItem<?> item : selectItems) {
+                aggregate |= item.getExpression() instanceof Function;
+            }
+            for (OrderBy key : orderBy) {
+                if (key.getExpression().isAggregate() && !aggregate) {
+                    throw new SQLException("Cannot sort by " + key.getExpression()
+                            + " without aggregating the rows.");
+                }
+            }
+            if (selectItems != null
+                    && selectItems.size() == 1
+                    && selectItems.get(0).getExpression() instanceof AllColumns) {
+                if (aggregate) {
+                    throw new SQLException(
+                            "'*' cannot be selected with GROUP BY or HAVING, select the columns.");
+                }
+                return new SelectStarStatement() {
+                    public String getTable() {
+                        return table;
+                    }
+
+                    public String getSchema() {
+                        return schema;
+                    }
+
+                    public String getAlias() {
+                        return alias;
+                    }
+
+                    public List<Join> getJoins() {
+                        return joins;
+                    }
+
+                    public ParsedExpression getWhere() {
+                        return where;
+                    }
+
+                    public List<OrderBy> getOrderBy() {
+                        return orderBy;
+                    }
+
+                    public Long getLimit() {
+                        return limit;
+                    }
+
+                    public long getOffset() {
+                        return offset;
+                    }
+
+                    public boolean isDistinct() {
+                        return distinct;
+                    }
+                };
+            }
+            final List<ParsedExpression> items = new ArrayList<>();
+            final List<String> columns = new ArrayList<>();
+            final List<String> labels = new ArrayList<>();
+            for (SelectItem<?> item : selectItems) {
+                ParsedExpression expression;
+                String label;
+                if (item.getExpression() instanceof Column) {
+                    String column = columnName((Column) item.getExpression());
+                    if (aggregate && !containsIgnoreCase(groupBy, column)) {
+                        throw new SQLException("Column " + column
+                                + " must appear in GROUP BY or be used in an aggregate function.");
+                    }
+                    expression = ParsedExpression.column(column);
+                    label = prepareColumnIdentifier(
+                            ((Column) item.getExpression()).getColumnName());
+                } else if (item.getExpression() instanceof Function) {
+                    expression = toExpression(item.getExpression(), new int[1]);
+                    label = item.getExpression().toString();
+                } else {
+                    throw new SQLFeatureNotSupportedException(
+                            "Only columns, aggregate functions or '*' can be selected from"
+                                    + " Excel sheets: " + item);
+                }
+                items.add(expression);
+                for (String column : expression.getColumns()) {
+                    if (!aggregate || !columns.contains(column)) {
+                        columns.add(column);
+                    }
+                }
+                labels.add(item.getAlias() != null
+                        ? prepareColumnIdentifier(item.getAlias().getName())
+                        : label);
             }
-            return new SelectStarStatement() {
+            final boolean aggregated = aggregate;
+            return new SelectStatement() {
                 public String getTable() {
-                    Table table = (Table) from;
-                    String tableName = table.getName().replace("\"", "");
-                    return prepareTableIdentifier(tableName);
+                    return table;
+                }
+
+                public String getSchema() {
+                    return schema;
+                }
+
+                public String getAlias() {
+                    return alias;
+                }
+
+                public List<Join> getJoins() {
+                    return joins;
+                }
+
+                public ParsedExpression getWhere() {
+                    return where;
+                }
+
+                public List<OrderBy> getOrderBy() {
+                    return orderBy;
+                }
+
+                public Long getLimit() {
+                    return limit;
+                }
+
+                public long getOffset() {
+                    return offset;
+                }
+
+                public boolean isDistinct() {
+                    return distinct;
+                }
+
+                public List<String> getColumns() {
+                    return Collections.unmodifiableList(columns);
+                }
+
+                public List<String> getLabels() {
+                    return Collections.unmodifiableList(labels);
+                }
+
+                public List<ParsedExpression> getItems() {
+                    return Collections.unmodifiableList(items);
+                }
+
+                public List<String> getGroupBy() {
+                    return groupBy;
+                }
+
+                public ParsedExpression getHaving() {
+                    return having;
+                }
+
+                public boolean isAggregate() {
+                    return aggregated;
                 }
             };
 
@@ -123,6 +341,7 @@ public class SqlSheetParser {
         if (statement instanceof CreateTable) {
             final String table =
                     prepareTableIdentifier(((CreateTable) statement).getTable().getName());
+            final String schema = prepareSchemaIdentifier(((CreateTable) statement).getTable());
             List<ColumnDefinition> cols = ((CreateTable) statement).getColumnDefinitions();
             final List<String> names = new ArrayList<String>();
             final List<String> types = new ArrayList<String>();
@@ -135,12 +354,16 @@ public class SqlSheetParser {
                     return table;
                 }
 
+                public String getSchema() {
+                    return schema;
+                }
+
                 public List<String> getColumns() {
-                    return names;
+                    return Collections.unmodifiableList(names);
                 }
 
                 public List<String> getTypes() {
-                    return types;
+                    return Collections.unmodifiableList(types);
                 }
             };
         } else
@@ -150,6 +373,7 @@ public class SqlSheetParser {
         if (statement instanceof Insert) {
             Insert insert = (Insert) statement;
             final String table = prepareTableIdentifier(insert.getTable().getName());
+            final String schema = prepareSchemaIdentifier(insert.getTable());
             List<net.sf.jsqlparser.schema.Column> cols = insert.getColumns();
             final List<String> names = new ArrayList<>();
             final List<Object> values = new ArrayList<Object>();
@@ -160,8 +384,25 @@ public class SqlSheetParser {
                 throw new SQLFeatureNotSupportedException(
                         "INSERT must have a VALUES clause and sub-selects are not supported with excel sheets");
             }
-            Values valuesClause = insert.getValues();
-            for (Expression exp : valuesClause.getExpressions()) {
+            // VALUES (a, b), (c, d) lists one parenthesized list per row
+            List<Expression> rows = new ArrayList<>();
+            ExpressionList<?> expressions = insert.getValues().getExpressions();
+            if (!expressions.isEmpty() && expressions.get(0) instanceof ExpressionList) {
+                for (Expression row : expressions) {
+                    if (!(row instanceof ExpressionList)
+                            || ((ExpressionList<?>) row).size() != names.size()) {
+                        throw new SQLException("Each row of VALUES must have " + names.size()
+                                + " values: " + row);
+                    }
+                    rows.addAll((ExpressionList<?>) row);
+                }
+            } else if (expressions.size() != names.size()) {
+                throw new SQLException("VALUES must have " + names.size() + " values: "
+                        + expressions);
+            } else {
+                rows.addAll(expressions);
+            }
+            for (Expression exp : rows) {
                 // java.lang.String
                 if (exp instanceof StringValue) {
                     values.add(((StringValue) exp).getValue());
@@ -200,21 +441,120 @@ public class SqlSheetParser {
                     return table;
                 }
 
+                public String getSchema() {
+                    return schema;
+                }
+
                 public List<String> getColumns() {
-                    return names;
+                    return Collections.unmodifiableList(names);
                 }
 
                 public List<Object> getValues() {
-                    return values;
+                    return Collections.unmodifiableList(values);
+                }
+            };
+        } else
+        //
+        // UPDATE
+        //
+        if (statement instanceof Update) {
+            Update update = (Update) statement;
+            if (update.getFromItem() != null
+                    || update.getJoins() != null && !update.getJoins().isEmpty()
+                    || update.getStartJoins() != null && !update.getStartJoins().isEmpty()
+                    || update.getLimit() != null
+                    || update.getOrderByElements() != null) {
+                throw new SQLFeatureNotSupportedException(
+                        "UPDATE with joins, ORDER BY or LIMIT not supported on Excel sheets.");
+            }
+            final String table = prepareTableIdentifier(update.getTable().getName());
+            final String schema = prepareSchemaIdentifier(update.getTable());
+            final List<String> columns = new ArrayList<>();
+            final List<ParsedExpression> values = new ArrayList<>();
+            int[] parameterCount = new int[1];
+            for (UpdateSet set : update.getUpdateSets()) {
+                if (set.getColumns().size() != set.getValues().size()) {
+                    throw new SQLException("Each column of SET needs one value: " + set);
+                }
+                for (int i = 0; i < set.getColumns().size(); i++) {
+                    columns.add(prepareColumnIdentifier(set.getColumn(i).getColumnName()));
+                    values.add(toValue(set.getValue(i), parameterCount));
+                }
+            }
+            final ParsedExpression where = update.getWhere() != null
+                    ? toExpression(update.getWhere(), parameterCount)
+                    : null;
+            if (where != null && where.containsAggregate()) {
+                throw new SQLException("Aggregate functions are not allowed in WHERE: " + where);
+            }
+            return new UpdateStatement() {
+                public String getTable() {
+                    return table;
+                }
+
+                public String getSchema() {
+                    return schema;
+                }
+
+                public List<String> getColumns() {
+                    return Collections.unmodifiableList(columns);
+                }
+
+                public List<ParsedExpression> getValues() {
+                    return Collections.unmodifiableList(values);
+                }
+
+                public ParsedExpression getWhere() {
+                    return where;
+                }
+            };
+        } else
+        //
+        // DELETE
+        //
+        if (statement instanceof Delete) {
+            Delete delete = (Delete) statement;
+            if (delete.getTables() != null && !delete.getTables().isEmpty()
+                    || delete.getJoins() != null && !delete.getJoins().isEmpty()
+                    || delete.getUsingList() != null && !delete.getUsingList().isEmpty()
+                    || delete.getLimit() != null
+                    || delete.getOrderByElements() != null) {
+                throw new SQLFeatureNotSupportedException(
+                        "DELETE with joins, ORDER BY or LIMIT not supported on Excel sheets.");
+            }
+            final String table = prepareTableIdentifier(delete.getTable().getName());
+            final String schema = prepareSchemaIdentifier(delete.getTable());
+            final ParsedExpression where = delete.getWhere() != null
+                    ? toExpression(delete.getWhere(), new int[1])
+                    : null;
+            if (where != null && where.containsAggregate()) {
+                throw new SQLException("Aggregate functions are not allowed in WHERE: " + where);
+            }
+            return new DeleteStatement() {
+                public String getTable() {
+                    return table;
+                }
+
+                public String getSchema() {
+                    return schema;
+                }
+
+                public ParsedExpression getWhere() {
+                    return where;
                 }
             };
         } else if (statement instanceof Drop) {
 
             final String table = prepareTableIdentifier(((Drop) statement).getName().getName());
+            final String schema = prepareSchemaIdentifier(((Drop) statement).getName());
             return new DropTableStatement() {
                 public String getTable() {
                     return table;
                 }
+
+                public String getSchema() {
+                    return schema;
+                }
             };
 
         } else {
@@ -223,12 +563,435 @@ public class SqlSheetParser {
         }
     }
 
+    /**
+     * @return the constant or parameter assigned to a column
+     */
+    private ParsedExpression toValue(Expression expression, int[] parameterCount)
+            throws SQLException {
+        ParsedExpression value = toExpression(expression, parameterCount);
+        if (value.getOperator() == ParsedExpression.Operator.NEGATE
+                && value.getOperands().get(0).getValue() instanceof Double) {
+            return ParsedExpression.literal(-(Double) value.getOperands().get(0).getValue());
+        } else if (value.getOperator() == ParsedExpression.Operator.NEGATE
+                && value.getOperands().get(0).getValue() instanceof Long) {
+            return ParsedExpression.literal(-(Long) value.getOperands().get(0).getValue());
+        } else if (value.getOperator() != ParsedExpression.Operator.LITERAL
+                && value.getOperator() != ParsedExpression.Operator.PARAMETER) {
+            throw new SQLFeatureNotSupportedException(
+                    "Only constants or parameters can be assigned on Excel sheets: " + expression);
+        }
+        return value;
+    }
+
+    private List<String> toGroupBy(PlainSelect select) throws SQLException {
+        GroupByElement groupBy = select.getGroupBy();
+        if (groupBy == null) {
+            return Collections.emptyList();
+        }
+        if (groupBy.getGroupingSets() != null && !groupBy.getGroupingSets().isEmpty()) {
+            throw new SQLFeatureNotSupportedException(
+                    "GROUPING SETS not supported on Excel sheets.");
+        }
+        List<String> columns = new ArrayList<>();
+        for (Object exp : groupBy.getGroupByExpressionList()) {
+            if (!(exp instanceof Column)) {
+                throw new SQLFeatureNotSupportedException(
+                        "Only columns can be grouped by on Excel sheets: " + exp);
+            }
+            columns.add(columnName((Column) exp));
+        }
+        return Collections.unmodifiableList(columns);
+    }
+
+    private static boolean containsIgnoreCase(List<String> names, String name) {
+        for (String n : names) {
+            if (n.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<OrderBy> toOrderBy(List<OrderByElement> elements) throws SQLException {
+        if (elements == null || elements.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<OrderBy> orderBy = new ArrayList<>();
+        for (OrderByElement element : elements) {
+            // an unqualified column of a join is a label of the select list
+            Expression expression = element.getExpression();
+            ParsedExpression key = qualifiers != null && expression instanceof Column
+                    && !isQualified((Column) expression)
+                            ? ParsedExpression.column(
+                                    prepareColumnIdentifier(((Column) expression).getColumnName()))
+                            : toExpression(expression, new int[1]);
+            boolean position = key.getOperator() == Operator.LITERAL
+                    && key.getValue() instanceof Long
+                    && (Long) key.getValue() > 0;
+            if (!position && key.getOperator() != Operator.COLUMN && !key.isAggregate()) {
+                throw new SQLFeatureNotSupportedException(
+                        "Only columns, aggregate functions or positions can be sorted by on"
+                                + " Excel sheets: " + element);
+            }
+            Boolean nullsFirst = element.getNullOrdering() != null
+                    ? element.getNullOrdering() == OrderByElement.NullOrdering.NULLS_FIRST
+                    : null;
+            orderBy.add(new OrderBy(key, element.isAsc(), nullsFirst));
+        }
+        return Collections.unmodifiableList(orderBy);
+    }
+
+    private static Long toLimit(PlainSelect select) throws SQLException {
+        Limit limit = select.getLimit();
+        Fetch fetch = select.getFetch();
+        Expression rowCount = limit != null ? limit.getRowCount() : null;
+        if (rowCount != null && !(rowCount instanceof AllValue)
+                && !(rowCount instanceof NullValue)) {
+            return toCount(rowCount, "LIMIT");
+        } else if (fetch != null) {
+            // FETCH FIRST ROW ONLY
+            return fetch.getExpression() != null
+                    ? toCount(fetch.getExpression(), "FETCH FIRST")
+                    : 1L;
+        } else if (select.getTop() != null) {
+            if (select.getTop().isPercentage() || select.getTop().isWithTies()) {
+                throw new SQLFeatureNotSupportedException(
+                        "TOP PERCENT and WITH TIES not supported on Excel sheets.");
+            }
+            return toCount(select.getTop().getExpression(), "TOP");
+        }
+        return null;
+    }
+
+    private static long toOffset(PlainSelect select) throws SQLException {
+        if (select.getOffset() != null) {
+            return toCount(select.getOffset().getOffset(), "OFFSET");
+        } else if (select.getLimit() != null && select.getLimit().getOffset() != null) {
+            return toCount(select.getLimit().getOffset(), "OFFSET");
+        }
+        return 0;
+    }
+
+    private static long toCount(Expression exp, String clause) throws SQLException {
+        if (!(exp instanceof LongValue)) {
+            throw new SQLFeatureNotSupportedException(
+                    clause + " must be a number on Excel sheets: " + exp);
+        }
+        long count = ((LongValue) exp).getValue();
+        if (count < 0) {
+            throw new SQLException(clause + " must not be negative: " + count);
+        }
+        return count;
+    }
+
+    /**
+     * Converts a condition or value of the WHERE clause.
+     *
+     * @param exp the parsed expression
+     * @param parameterCount the number of JDBC parameters seen so far, numbering them in order of
+     *        appearance
+     * @return the parser independent expression
+     * @throws SQLException if the expression is not supported
+     */
+    @SuppressWarnings("PMD.NPathComplexity")
+    private ParsedExpression toExpression(Expression exp, int[] parameterCount)
+            throws SQLException {
+        if (exp instanceof ParenthesedExpressionList
+                && ((ParenthesedExpressionList<?>) exp).size() == 1) {
+            return toExpression(((ParenthesedExpressionList<?>) exp).get(0), parameterCount);
+        } else if (exp instanceof Column) {
+            String name = ((Column) exp).getColumnName();
+            if ("TRUE".equalsIgnoreCase(name) || "FALSE".equalsIgnoreCase(name)) {
+                return ParsedExpression.literal(Boolean.valueOf(name));
+            }
+            return ParsedExpression.column(columnName((Column) exp));
+        } else if (exp instanceof net.sf.jsqlparser.expression.JdbcParameter) {
+            return ParsedExpression.parameter(parameterCount[0]++);
+        } else if (exp instanceof StringValue) {
+            return ParsedExpression.literal(((StringValue) exp).getValue());
+        } else if (exp instanceof LongValue) {
+            return ParsedExpression.literal(((LongValue) exp).getValue());
+        } else if (exp instanceof DoubleValue) {
+            return ParsedExpression.literal(((DoubleValue) exp).getValue());
+        } else if (exp instanceof DateValue) {
+            return ParsedExpression.literal(((DateValue) exp).getValue());
+        } else if (exp instanceof TimestampValue) {
+            return ParsedExpression.literal(((TimestampValue) exp).getValue());
+        } else if (exp instanceof TimeValue) {
+            return ParsedExpression.literal(((TimeValue) exp).getValue());
+        } else if (exp instanceof DateTimeLiteralExpression) {
+            return ParsedExpression.literal(toDate((DateTimeLiteralExpression) exp));
+        } else if (exp instanceof CastExpression && ((CastExpression) exp).isImplicitCast()
+                && ((CastExpression) exp).getLeftExpression() instanceof StringValue) {
+            // TIME '10:00:00' and the like
+            CastExpression cast = (CastExpression) exp;
+            return ParsedExpression.literal(toDate(cast.getColDataType().getDataType(),
+                    ((StringValue) cast.getLeftExpression()).getValue(), exp));
+        } else if (exp instanceof NullValue) {
+            return ParsedExpression.literal(null);
+        } else if (exp instanceof AndExpression) {
+            return binary(Operator.AND, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof OrExpression) {
+            return binary(Operator.OR, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof NotExpression) {
+            return ParsedExpression.of(Operator.NOT,
+                    toExpression(((NotExpression) exp).getExpression(), parameterCount));
+        } else if (exp instanceof EqualsTo) {
+            return binary(Operator.EQUALS, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof NotEqualsTo) {
+            return binary(Operator.NOT_EQUALS, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof MinorThan) {
+            return binary(Operator.LESS_THAN, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof MinorThanEquals) {
+            return binary(Operator.LESS_THAN_OR_EQUALS, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof GreaterThan) {
+            return binary(Operator.GREATER_THAN, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof GreaterThanEquals) {
+            return binary(Operator.GREATER_THAN_OR_EQUALS, (BinaryExpression) exp,
+                    parameterCount);
+        } else if (exp instanceof Addition) {
+            return binary(Operator.ADD, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof Subtraction) {
+            return binary(Operator.SUBTRACT, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof Multiplication) {
+            return binary(Operator.MULTIPLY, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof Division) {
+            return binary(Operator.DIVIDE, (BinaryExpression) exp, parameterCount);
+        } else if (exp instanceof SignedExpression) {
+            ParsedExpression operand =
+                    toExpression(((SignedExpression) exp).getExpression(), parameterCount);
+            return ((SignedExpression) exp).getSign() == '-'
+                    ? ParsedExpression.of(Operator.NEGATE, operand)
+                    : operand;
+        } else if (exp instanceof IsNullExpression) {
+            IsNullExpression isNull = (IsNullExpression) exp;
+            return ParsedExpression.of(
+                    isNull.isNot() || isNull.isUseNotNull()
+                            ? Operator.IS_NOT_NULL
+                            : Operator.IS_NULL,
+                    toExpression(isNull.getLeftExpression(), parameterCount));
+        } else if (exp instanceof LikeExpression) {
+            LikeExpression like = (LikeExpression) exp;
+            if (like.getLikeKeyWord() != LikeExpression.KeyWord.LIKE
+                    || like.getEscape() != null) {
+                throw new SQLFeatureNotSupportedException(
+                        "Only plain LIKE is supported on Excel sheets: " + exp);
+            }
+            return binary(like.isNot() ? Operator.NOT_LIKE : Operator.LIKE, like,
+                    parameterCount);
+        } else if (exp instanceof InExpression
+                && ((InExpression) exp).getRightExpression() instanceof ExpressionList) {
+            InExpression in = (InExpression) exp;
+            List<ParsedExpression> operands = new ArrayList<>();
+            operands.add(toExpression(in.getLeftExpression(), parameterCount));
+            for (Expression item : (ExpressionList<?>) in.getRightExpression()) {
+                operands.add(toExpression(item, parameterCount));
+            }
+            return ParsedExpression.of(in.isNot() ? Operator.NOT_IN : Operator.IN,
+                    operands.toArray(new ParsedExpression[0]));
+        } else if (exp instanceof Function) {
+            return aggregate((Function) exp, parameterCount);
+        } else if (exp instanceof Between) {
+            Between between = (Between) exp;
+            return ParsedExpression.of(between.isNot() ? Operator.NOT_BETWEEN : Operator.BETWEEN,
+                    toExpression(between.getLeftExpression(), parameterCount),
+                    toExpression(between.getBetweenExpressionStart(), parameterCount),
+                    toExpression(between.getBetweenExpressionEnd(), parameterCount));
+        }
+        throw new SQLFeatureNotSupportedException(
+                "Expression not supported on Excel sheets: " + exp);
+    }
+
+    private ParsedExpression aggregate(Function function, int[] parameterCount)
+            throws SQLException {
+        Operator operator;
+        try {
+            operator = Operator.valueOf(function.getName().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            operator = null;
+        }
+        if (operator == null || operator.compareTo(Operator.COUNT) < 0) {
+            throw new SQLFeatureNotSupportedException(
+                    "Function not supported on Excel sheets: " + function);
+        }
+        if (function.isDistinct() || function.isUnique()) {
+            throw new SQLFeatureNotSupportedException(
+                    "DISTINCT aggregates not supported on Excel sheets: " + function);
+        }
+        ExpressionList<?> parameters = function.getParameters();
+        if (parameters == null || parameters.size() != 1) {
+            throw new SQLException(function.getName() + " takes one argument: " + function);
+        }
+        if (parameters.get(0) instanceof AllColumns) {
+            if (operator != Operator.COUNT) {
+                throw new SQLException("Only COUNT takes '*': " + function);
+            }
+            return ParsedExpression.of(Operator.COUNT);
+        }
+        ParsedExpression operand = toExpression(parameters.get(0), parameterCount);
+        if (operand.getOperator() != Operator.COLUMN) {
+            throw new SQLFeatureNotSupportedException(
+                    "Aggregate functions only take a column on Excel sheets: " + function);
+        }
+        return ParsedExpression.of(operator, operand);
+    }
+
+    private ParsedExpression binary(Operator operator, BinaryExpression exp, int[] parameterCount)
+            throws SQLException {
+        ParsedExpression left = toExpression(exp.getLeftExpression(), parameterCount);
+        return ParsedExpression.of(operator, left,
+                toExpression(exp.getRightExpression(), parameterCount));
+    }
+
+    private static java.util.Date toDate(DateTimeLiteralExpression exp) throws SQLException {
+        return toDate(exp.getType().name(), exp.getValue().replace("'", ""), exp);
+    }
+
+    private static java.util.Date toDate(String type, String value, Expression exp)
+            throws SQLException {
+        try {
+            switch (type.toUpperCase()) {
+                case "DATE":
+                    return java.sql.Date.valueOf(value.trim());
+                case "TIME":
+                    return java.sql.Time.valueOf(value.trim());
+                case "TIMESTAMP":
+                    return java.sql.Timestamp.valueOf(value.trim());
+                default:
+                    throw new SQLFeatureNotSupportedException(
+                            "Not supported on Excel sheets: " + exp);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new SQLException("Cannot parse " + exp, e);
+        }
+    }
+
+    /**
+     * Parses a join and adds its alias to the qualifiers. The equal columns of the joined table
+     * and the tables before it in the ON condition are the keys, the rest of it is kept as the
+     * condition of the join.
+     */
+    private Join toJoin(net.sf.jsqlparser.statement.select.Join join, int[] parameterCount)
+            throws SQLException {
+        if (join.isSimple() || join.isCross() || join.isNatural() || join.isRight()
+                || join.isFull() || join.isSemi() || join.isApply() || join.isStraight()
+                || join.isOuter() && !join.isLeft()
+                || join.getUsingColumns() != null && !join.getUsingColumns().isEmpty()) {
+            throw new SQLFeatureNotSupportedException(
+                    "Only INNER and LEFT joins ON equal columns are supported on Excel sheets: "
+                            + join);
+        }
+        if (!(join.getRightItem() instanceof Table)) {
+            throw new SQLFeatureNotSupportedException(
+                    "Subselects not supported on Excel sheets.");
+        }
+        Table table = (Table) join.getRightItem();
+        String alias = prepareAlias(table);
+        if (containsIgnoreCase(qualifiers, alias)) {
+            throw new SQLException("Table " + alias + " is joined twice, give it another alias.");
+        }
+        qualifiers.add(alias);
+        List<ParsedExpression> conditions = new ArrayList<>();
+        if (join.getOnExpressions() != null) {
+            for (Expression on : join.getOnExpressions()) {
+                splitConjunction(toExpression(on, parameterCount), conditions);
+            }
+        }
+        List<String> leftColumns = new ArrayList<>();
+        List<String> rightColumns = new ArrayList<>();
+        ParsedExpression condition = null;
+        for (ParsedExpression c : conditions) {
+            if (c.getOperator() == Operator.EQUALS
+                    && c.getOperands().get(0).getOperator() == Operator.COLUMN
+                    && c.getOperands().get(1).getOperator() == Operator.COLUMN) {
+                String a = (String) c.getOperands().get(0).getValue();
+                String b = (String) c.getOperands().get(1).getValue();
+                if (isQualifiedBy(b, alias) && !isQualifiedBy(a, alias)) {
+                    leftColumns.add(a);
+                    rightColumns.add(b);
+                    continue;
+                } else if (isQualifiedBy(a, alias) && !isQualifiedBy(b, alias)) {
+                    leftColumns.add(b);
+                    rightColumns.add(a);
+                    continue;
+                }
+            }
+            if (c.containsAggregate()) {
+                throw new SQLException("Aggregate functions are not allowed in ON: " + c);
+            }
+            condition = condition == null ? c : ParsedExpression.of(Operator.AND, condition, c);
+        }
+        if (leftColumns.isEmpty()) {
+            throw new SQLFeatureNotSupportedException("Joining " + alias
+                    + " needs an ON condition with its columns equal to columns of the tables"
+                    + " before it: " + join);
+        }
+        return new Join(join.isLeft() ? Join.Type.LEFT : Join.Type.INNER,
+                prepareSchemaIdentifier(table), prepareTableIdentifier(table.getName()), alias,
+                leftColumns, rightColumns, condition);
+    }
+
+    private static void splitConjunction(ParsedExpression condition,
+            List<ParsedExpression> conditions) {
+        if (condition.getOperator() == Operator.AND) {
+            for (ParsedExpression operand : condition.getOperands()) {
+                splitConjunction(operand, conditions);
+            }
+        } else {
+            conditions.add(condition);
+        }
+    }
+
+    private static boolean isQualifiedBy(String column, String alias) {
+        return column.regionMatches(true, 0, alias + ".", 0, alias.length() + 1);
+    }
+
+    /**
+     * @return the column name, qualified by the alias of its table in a statement with joins
+     * @throws SQLException if the column of a join is not qualified by the alias of a table
+     *         joined so far
+     */
+    private String columnName(Column column) throws SQLException {
+        String name = prepareColumnIdentifier(column.getColumnName());
+        if (qualifiers == null) {
+            return name;
+        }
+        if (!isQualified(column)) {
+            throw new SQLException("Column " + name
+                    + " must be qualified by the alias of its table in a join, one of "
+                    + qualifiers);
+        }
+        String qualifier = truncateQuotes(column.getTable().getName()).trim();
+        for (String alias : qualifiers) {
+            if (alias.equalsIgnoreCase(qualifier)) {
+                return alias + "." + name;
+            }
+        }
+        throw new SQLException("Table " + qualifier + " of column " + name
+                + " is not joined here, the tables are " + qualifiers);
+    }
+
+    private static boolean isQualified(Column column) {
+        return column.getTable() != null && column.getTable().getName() != null;
+    }
+
+    private String prepareAlias(Table table) {
+        return table.getAlias() != null
+                ? truncateQuotes(table.getAlias().getName()).trim()
+                : prepareTableIdentifier(table.getName());
+    }
+
     private String prepareTableIdentifier(String tableName) {
         String newName = truncateQuotes(tableName);
         return newName.substring(0, Math.min(MAX_SENSITIVE_SHEET_NAME_LEN, newName.length()))
                 .trim();
     }
 
+    private String prepareSchemaIdentifier(Table table) {
+        String schemaName = table.getSchemaName();
+        return schemaName != null ? truncateQuotes(schemaName).trim() : null;
+    }
+
     private String prepareColumnIdentifier(String columnName) {
         return truncateQuotes(columnName);
     }
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.parser;
+
+import com.sqlsheet.LruCache;
+
+/**
+ * Driver wide cache of parsed statements by SQL text, shared between all statements and
+ * connections.
+ *
+ * <p>
+ * Parsed statements are immutable, so one instance can serve any number of threads. Eviction
+ * follows the least recently used order and is bounded by {@link #getMaximumSize()}. Statements
+ * failing to parse are not cached. The hit and miss counts help sizing the cache.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class StatementCache extends LruCache<String, ParsedStatement> {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private static final StatementCache INSTANCE = new StatementCache(DEFAULT_MAXIMUM_SIZE);
+
+    StatementCache(int maximumSize) {
+        super(maximumSize);
+    }
+
+    public static StatementCache getInstance() {
+        return INSTANCE;
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.parser;
+
+import java.util.List;
+
+/**
+ * Handle on a parsed SQL statement of the form UPDATE xxx SET xxx = xxx WHERE xxx.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public interface UpdateStatement extends ParsedStatement {
+
+    String getTable();
+
+    /**
+     * @return the schema qualifying the table, or {@code null}
+     */
+    default String getSchema() {
+        return null;
+    }
+
+    /**
+     * @return the columns to set
+     */
+    List<String> getColumns();
+
+    /**
+     * @return the value of each column, a {@link ParsedExpression.Operator#LITERAL LITERAL} or a
+     *         {@link ParsedExpression.Operator#PARAMETER PARAMETER}
+     */
+    List<ParsedExpression> getValues();
+
+    /**
+     * @return the WHERE condition rows have to meet to be updated, or {@code null} for all rows
+     */
+    default ParsedExpression getWhere() {
+        return null;
+    }
+}
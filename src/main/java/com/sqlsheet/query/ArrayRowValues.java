@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+/**
+ * The values of a row flowing between the operators of a query, as {@link CellValues} hold them,
+ * so that conditions compiled by {@link RowFilters} can run on it. One instance is reused for all
+ * rows.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class ArrayRowValues implements CellValues {
+
+    private Object[] row;
+
+    /**
+     * @param row the row to read next
+     * @return this
+     */
+    ArrayRowValues of(Object[] row) {
+        this.row = row;
+        return this;
+    }
+
+    @Override
+    public Object getValue(int column) {
+        return RowFilters.toCellValue(row[column]);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+/**
+ * The cell values of the row a scan is on, as stored in the sheet, before any conversion done by
+ * the JDBC getters.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public interface CellValues {
+
+    /**
+     * @param column the sheet column, relative to the first column of the table
+     * @return a {@link Double} for numbers and dates, which are Excel serial dates, a
+     *         {@link String}, a {@link Boolean}, or {@code null} for a missing, blank or error
+     *         cell
+     */
+    Object getValue(int column);
+
+    /**
+     * Reads a number without boxing it, for comparisons with numeric constants.
+     *
+     * @param column the sheet column, relative to the first column of the table
+     * @return the number or serial date in the cell, or {@link Double#NaN} if the cell holds no
+     *         number
+     */
+    default double getNumber(int column) {
+        Object value = getValue(column);
+        return value instanceof Double ? (Double) value : Double.NaN;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.SQLException;
+
+/**
+ * A scan able to tell how many rows it returns from the structure of the sheet, e.g. its row
+ * index, without reading any cell. Used for {@code COUNT(*)}, and to pick the smaller table of a
+ * join.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public interface CountableRows {
+
+    /**
+     * Counts the rows {@link java.sql.ResultSet#next()} would still return and moves behind them.
+     * Scans falling back to reading the rows, e.g. for a WHERE condition, give the same result.
+     *
+     * @return the number of rows
+     * @throws SQLException if the sheet cannot be read
+     */
+    long countRows() throws SQLException;
+
+    /**
+     * @return the number of rows of the sheet as far as its structure tells, e.g. its dimension,
+     *         regardless of any WHERE condition and without reading anything, or {@code -1} if
+     *         unknown
+     */
+    long estimateRows();
+}
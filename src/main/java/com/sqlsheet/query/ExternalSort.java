@@ -0,0 +1,216 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts any number of rows within a bounded heap.
+ *
+ * <p>
+ * Rows are collected in memory until their estimated size exceeds the budget. The collected rows
+ * are then sorted and written to a {@link SpillFile} as a sorted run. Reading the result merges
+ * all runs and the rows still in memory with a priority queue over the head of each run. More
+ * than {@value #MAX_FAN_IN} runs are first merged into fewer, longer runs, so that the open files
+ * and read buffers stay bounded as well. The sort is stable.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class ExternalSort implements AutoCloseable {
+
+    /** The most runs merged at once. */
+    static final int MAX_FAN_IN = 64;
+
+    private final Comparator<Object[]> order;
+    private final long memory;
+    private final List<Object[]> buffer = new ArrayList<>();
+    private long bufferSize;
+    private List<SpillFile> runs = new ArrayList<>();
+    private int spilledRuns;
+
+    /**
+     * @param order the order of the rows
+     * @param memory the estimated heap in bytes the buffered rows may take
+     */
+    public ExternalSort(Comparator<Object[]> order, long memory) {
+        this.order = order;
+        this.memory = memory;
+    }
+
+    public void add(Object[] row) throws SQLException {
+        buffer.add(row);
+        bufferSize += Rows.estimateSize(row);
+        if (bufferSize > memory) {
+            runs.add(spill(buffer));
+            buffer.clear();
+            bufferSize = 0;
+        }
+    }
+
+    /**
+     * Adds all rows of a source and closes it.
+     */
+    public void addAll(RowSource source) throws SQLException {
+        try (RowSource rows = source) {
+            for (Object[] row = rows.next(); row != null; row = rows.next()) {
+                add(row);
+            }
+        }
+    }
+
+    /**
+     * @return the number of sorted runs written to temporary files so far
+     */
+    public int getSpilledRuns() {
+        return spilledRuns;
+    }
+
+    private SpillFile spill(List<Object[]> rows) throws SQLException {
+        rows.sort(order);
+        SpillFile run = SpillFile.create();
+        for (Object[] row : rows) {
+            run.write(row);
+        }
+        run.finish();
+        spilledRuns++;
+        return run;
+    }
+
+    /**
+     * Ends adding rows.
+     *
+     * @return the rows added, in order
+     */
+    public RowSource sort() throws SQLException {
+        buffer.sort(order);
+        if (runs.isEmpty()) {
+            return iterate(new ArrayList<>(buffer));
+        }
+        while (runs.size() > MAX_FAN_IN) {
+            List<SpillFile> merged = new ArrayList<>();
+            for (int i = 0; i < runs.size(); i += MAX_FAN_IN) {
+                List<RowSource> group = new ArrayList<>();
+                for (SpillFile run : runs.subList(i, Math.min(runs.size(), i + MAX_FAN_IN))) {
+                    group.add(run.read());
+                }
+                SpillFile run = SpillFile.create();
+                try (RowSource rows = merge(group)) {
+                    for (Object[] row = rows.next(); row != null; row = rows.next()) {
+                        run.write(row);
+                    }
+                }
+                run.finish();
+                spilledRuns++;
+                merged.add(run);
+            }
+            runs = merged;
+        }
+        List<RowSource> sources = new ArrayList<>();
+        for (SpillFile run : runs) {
+            sources.add(run.read());
+        }
+        runs.clear();
+        sources.add(iterate(new ArrayList<>(buffer)));
+        buffer.clear();
+        return merge(sources);
+    }
+
+    private static RowSource iterate(List<Object[]> rows) {
+        Iterator<Object[]> it = rows.iterator();
+        return new RowSource() {
+            @Override
+            public Object[] next() {
+                return it.hasNext() ? it.next() : null;
+            }
+
+            @Override
+            public void close() {
+                rows.clear();
+            }
+        };
+    }
+
+    private RowSource merge(List<RowSource> sources) throws SQLException {
+        PriorityQueue<Cursor> heads = new PriorityQueue<>(Math.max(1, sources.size()),
+                (a, b) -> {
+                    int c = order.compare(a.row, b.row);
+                    return c != 0 ? c : Integer.compare(a.index, b.index);
+                });
+        for (int i = 0; i < sources.size(); i++) {
+            Cursor cursor = new Cursor(sources.get(i), i);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return new RowSource() {
+            @Override
+            public Object[] next() throws SQLException {
+                Cursor head = heads.poll();
+                if (head == null) {
+                    return null;
+                }
+                Object[] row = head.row;
+                if (head.advance()) {
+                    heads.add(head);
+                }
+                return row;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                for (RowSource source : sources) {
+                    source.close();
+                }
+                heads.clear();
+            }
+        };
+    }
+
+    private static final class Cursor {
+        private final RowSource source;
+        private final int index;
+        private Object[] row;
+
+        Cursor(RowSource source, int index) {
+            this.source = source;
+            this.index = index;
+        }
+
+        boolean advance() throws SQLException {
+            row = source.next();
+            if (row == null) {
+                source.close();
+                return false;
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Deletes the runs not handed out by {@link #sort()}.
+     */
+    @Override
+    public void close() {
+        for (SpillFile run : runs) {
+            run.delete();
+        }
+        runs.clear();
+        buffer.clear();
+    }
+}
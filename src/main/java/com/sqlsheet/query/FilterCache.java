@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import com.sqlsheet.LruCache;
+
+/**
+ * Driver wide cache of the conditions compiled by {@link RowFilters}, by their normalized SQL, so
+ * that repeated queries with the same WHERE, ON or HAVING condition skip compiling it.
+ *
+ * <p>
+ * A compiled condition holds no column positions or parameter values, so one instance serves any
+ * table and any number of threads. Eviction follows the least recently used order and is bounded
+ * by {@link #getMaximumSize()}. Conditions failing to compile are not cached.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class FilterCache extends LruCache<String, RowFilters.CompiledCondition> {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private static final FilterCache INSTANCE = new FilterCache(DEFAULT_MAXIMUM_SIZE);
+
+    FilterCache(int maximumSize) {
+        super(maximumSize);
+    }
+
+    public static FilterCache getInstance() {
+        return INSTANCE;
+    }
+}
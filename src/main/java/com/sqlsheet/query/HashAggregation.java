@@ -0,0 +1,319 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import com.sqlsheet.parser.ParsedExpression.Operator;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Groups rows by key columns and computes COUNT, SUM, MIN, MAX and AVG for each group in a single
+ * pass, for {@code GROUP BY}.
+ *
+ * <p>
+ * Groups are found through an open addressing hash table of {@code int} slots with linear
+ * probing, holding the group index, and the accumulators are primitive {@code long} and
+ * {@code double} arrays indexed by group, so adding a row boxes nothing but its key. Keys equal
+ * as {@link Rows#compareValues(Object, Object)} has it share a group, nulls included. All groups
+ * are held on the heap, groups are returned in the order they are first seen. Without key columns
+ * there is a single group, even for no rows at all.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class HashAggregation {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int[] keyColumns;
+    private final Operator[] functions;
+    private final int[] inputs;
+
+    /** The group index plus one of each slot, {@code 0} for an empty slot. */
+    private int[] slots = new int[INITIAL_CAPACITY * 2];
+    private int[] hashes = new int[INITIAL_CAPACITY];
+    private final List<Object[]> keys = new ArrayList<>();
+    /** Per function and group the rows counted, summed or compared. */
+    private final long[][] counts;
+    /** Per function and group the sum, or the least or greatest number. */
+    private final double[][] numbers;
+    /** Per function and group the least or greatest value not a number, for MIN and MAX. */
+    private final Object[][] others;
+
+    /**
+     * @param keyColumns the positions of the key columns in the rows
+     * @param functions the aggregate functions
+     * @param inputs the position of the operand of each function in the rows, {@code -1} for
+     *        {@code COUNT(*)}
+     */
+    public HashAggregation(int[] keyColumns, Operator[] functions, int[] inputs) {
+        if (functions.length != inputs.length) {
+            throw new IllegalArgumentException("Functions and inputs differ in number");
+        }
+        for (Operator function : functions) {
+            if (function.compareTo(Operator.COUNT) < 0) {
+                throw new IllegalArgumentException("Not an aggregate function: " + function);
+            }
+        }
+        this.keyColumns = keyColumns.clone();
+        this.functions = functions.clone();
+        this.inputs = inputs.clone();
+        this.counts = new long[functions.length][INITIAL_CAPACITY];
+        this.numbers = new double[functions.length][INITIAL_CAPACITY];
+        this.others = new Object[functions.length][];
+        for (int f = 0; f < functions.length; f++) {
+            if (functions[f] == Operator.MIN || functions[f] == Operator.MAX) {
+                others[f] = new Object[INITIAL_CAPACITY];
+            }
+        }
+        if (keyColumns.length == 0) {
+            keys.add(new Object[0]);
+        }
+    }
+
+    /**
+     * @return the number of groups
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Adds all rows of a source and closes it.
+     *
+     * @param rows the rows
+     * @throws SQLException if a row cannot be read or a value cannot be summed
+     */
+    public void addAll(RowSource rows) throws SQLException {
+        try (RowSource source = rows) {
+            for (Object[] row = source.next(); row != null; row = source.next()) {
+                add(row);
+            }
+        }
+    }
+
+    /**
+     * Adds rows counted by someone else, e.g. from the structure of the sheet. Only a single group
+     * of {@code COUNT(*)} functions does not need the values of the rows.
+     *
+     * @param count the number of rows
+     * @throws IllegalStateException if there are key columns or other functions
+     */
+    public void addRows(long count) {
+        if (keyColumns.length > 0) {
+            throw new IllegalStateException("Rows without values have no group");
+        }
+        for (int f = 0; f < functions.length; f++) {
+            if (inputs[f] >= 0) {
+                throw new IllegalStateException(functions[f] + " needs the values of the rows");
+            }
+        }
+        for (int f = 0; f < functions.length; f++) {
+            counts[f][0] += count;
+        }
+    }
+
+    /**
+     * @param row the row
+     * @throws SQLException if a value of SUM or AVG is not a number
+     */
+    public void add(Object[] row) throws SQLException {
+        int group = keyColumns.length == 0 ? 0 : findOrCreateGroup(row);
+        for (int f = 0; f < functions.length; f++) {
+            Object value = inputs[f] < 0 ? null : row[inputs[f]];
+            switch (functions[f]) {
+                case COUNT:
+                    if (inputs[f] < 0 || value != null) {
+                        counts[f][group]++;
+                    }
+                    break;
+                case SUM:
+                case AVG:
+                    if (value != null) {
+                        numbers[f][group] += toDouble(functions[f], value);
+                        counts[f][group]++;
+                    }
+                    break;
+                default:
+                    if (value instanceof Number) {
+                        double d = ((Number) value).doubleValue();
+                        if (counts[f][group]++ == 0
+                                || (functions[f] == Operator.MIN
+                                        ? Double.compare(d, numbers[f][group]) < 0
+                                        : Double.compare(d, numbers[f][group]) > 0)) {
+                            numbers[f][group] = d;
+                        }
+                    } else if (value != null) {
+                        Object current = others[f][group];
+                        if (current == null
+                                || (functions[f] == Operator.MIN
+                                        ? Rows.compareValues(value, current) < 0
+                                        : Rows.compareValues(value, current) > 0)) {
+                            others[f][group] = value;
+                        }
+                    }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * @return the groups, each row holding the key columns followed by the function results: a
+     *         {@code Long} for COUNT, a {@code Double} for SUM and AVG and the least or greatest
+     *         value for MIN and MAX, {@code null} if no value was aggregated
+     */
+    public RowSource result() {
+        return new RowSource() {
+            private int group;
+
+            @Override
+            public Object[] next() {
+                if (group >= keys.size()) {
+                    return null;
+                }
+                Object[] key = keys.get(group);
+                Object[] row = Arrays.copyOf(key, key.length + functions.length);
+                for (int f = 0; f < functions.length; f++) {
+                    row[key.length + f] = result(f, group);
+                }
+                group++;
+                return row;
+            }
+
+            @Override
+            public void close() {
+                group = keys.size();
+            }
+        };
+    }
+
+    private Object result(int f, int group) {
+        long count = counts[f][group];
+        switch (functions[f]) {
+            case COUNT:
+                return count;
+            case SUM:
+                return count > 0 ? numbers[f][group] : null;
+            case AVG:
+                return count > 0 ? numbers[f][group] / count : null;
+            case MIN:
+                // numbers are the least values of all
+                return count > 0 ? (Object) numbers[f][group] : others[f][group];
+            default:
+                return others[f][group] != null || count == 0
+                        ? others[f][group]
+                        : (Object) numbers[f][group];
+        }
+    }
+
+    private static double toDouble(Operator function, Object value) throws SQLException {
+        if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof String) {
+            try {
+                return Double.parseDouble(((String) value).trim());
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+        }
+        throw new SQLException("Cannot compute " + function + " of '" + value
+                + "', it is not a number.");
+    }
+
+    private int findOrCreateGroup(Object[] row) {
+        int hash = hash(row);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int group = slots[slot] - 1;
+            if (group < 0) {
+                group = keys.size();
+                Object[] key = new Object[keyColumns.length];
+                for (int k = 0; k < key.length; k++) {
+                    key[k] = row[keyColumns[k]];
+                }
+                if (group == hashes.length) {
+                    grow();
+                }
+                keys.add(key);
+                hashes[group] = hash;
+                if (keys.size() * 2 > slots.length) {
+                    rehash(slots.length * 2);
+                } else {
+                    slots[slot] = group + 1;
+                }
+                return group;
+            }
+            if (hashes[group] == hash && sameKey(keys.get(group), row)) {
+                return group;
+            }
+        }
+    }
+
+    private boolean sameKey(Object[] key, Object[] row) {
+        for (int k = 0; k < key.length; k++) {
+            Object a = key[k];
+            Object b = row[keyColumns[k]];
+            if (a == null || b == null ? a != b : Rows.compareValues(a, b) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int hash(Object[] row) {
+        int hash = 1;
+        for (int column : keyColumns) {
+            hash = 31 * hash + hashValue(row[column]);
+        }
+        // spreads the high bits to the low ones the mask keeps
+        return hash ^ (hash >>> 16);
+    }
+
+    private static int hashValue(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof Number) {
+            return Double.hashCode(((Number) value).doubleValue());
+        } else if (value instanceof java.util.Date) {
+            return Long.hashCode(((java.util.Date) value).getTime());
+        }
+        return value.hashCode();
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int group = 0; group < keys.size(); group++) {
+            int slot = hashes[group] & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = group + 1;
+        }
+    }
+
+    private void grow() {
+        int capacity = hashes.length * 2;
+        hashes = Arrays.copyOf(hashes, capacity);
+        for (int f = 0; f < functions.length; f++) {
+            counts[f] = Arrays.copyOf(counts[f], capacity);
+            numbers[f] = Arrays.copyOf(numbers[f], capacity);
+            if (others[f] != null) {
+                others[f] = Arrays.copyOf(others[f], capacity);
+            }
+        }
+    }
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Removes duplicate rows, for SELECT DISTINCT.
+ *
+ * <p>
+ * Rows stream through: each row is returned the first time it is seen and then remembered in a
+ * hash set of primitive 64 bit fingerprints over all its values, with the row itself kept only to
+ * verify equal fingerprints value by value, so a collision never drops a row. Values equal as
+ * {@link Rows#compareValues(Object, Object)} has it are duplicates, and so are two nulls.
+ *
+ * <p>
+ * If the rows seen exceed the memory budget, the set stops growing: rows it holds are still
+ * dropped, all others are split by their fingerprint into {@value #PARTITIONS} partitions written
+ * to {@link SpillFile}s. Once the source is exhausted the set is released and each partition is
+ * de-duplicated on its own, partitioned again if it is still too large. The rows of the partitions
+ * follow the rows returned while streaming, in the order of the partitions.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class HashDistinct implements RowSource {
+
+    private static final int PARTITION_BITS = 4;
+    static final int PARTITIONS = 1 << PARTITION_BITS;
+    /** Partitioning deeper does not split rows sharing a fingerprint, they are held anyway. */
+    static final int MAX_DEPTH = 4;
+    /** Rough heap cost of the hash set entries of a row. */
+    private static final long ENTRY_BYTES = 32;
+    private static final int INITIAL_CAPACITY = 16;
+    private static final long NULL_HASH = 0x6a09e667f3bcc908L;
+    private static final long TRUE_HASH = 0xbb67ae8584caa73bL;
+    private static final long FALSE_HASH = 0x3c6ef372fe94f82bL;
+    private static final long DATE_HASH = 0xa54ff53a5f1d36f1L;
+
+    private final RowSource source;
+    private final long memory;
+    private final int depth;
+    /** The partitions written by this operator and the operators of its partitions. */
+    private final int[] spilledPartitions;
+
+    private List<Object[]> rows = new ArrayList<>();
+    private long size;
+    /** The hash set, the row index plus one of each slot, {@code 0} for an empty slot. */
+    private int[] slots = new int[INITIAL_CAPACITY];
+    /** Per row its fingerprint. */
+    private long[] fingerprints = new long[INITIAL_CAPACITY];
+    private SpillFile[] partitions;
+    private int partition = -1;
+    private RowSource current;
+    private boolean exhausted;
+
+    /**
+     * @param source the rows to remove the duplicates of, owned by the operator from now on
+     * @param memory the estimated heap in bytes the rows seen may take
+     */
+    public HashDistinct(RowSource source, long memory) {
+        this(source, memory, 0, new int[1]);
+    }
+
+    private HashDistinct(RowSource source, long memory, int depth, int[] spilledPartitions) {
+        this.source = source;
+        this.memory = memory;
+        this.depth = depth;
+        this.spilledPartitions = spilledPartitions;
+    }
+
+    /**
+     * @return the number of partitions written to temporary files so far
+     */
+    public int getSpilledPartitions() {
+        return spilledPartitions[0];
+    }
+
+    @Override
+    public Object[] next() throws SQLException {
+        while (!exhausted) {
+            Object[] row = source.next();
+            if (row == null) {
+                exhausted = true;
+                source.close();
+                release();
+                break;
+            }
+            long fingerprint = fingerprint(row);
+            if (partitions != null) {
+                if (!contains(row, fingerprint)) {
+                    partitions[partition(fingerprint)].write(row);
+                }
+            } else if (!contains(row, fingerprint)) {
+                add(row, fingerprint);
+                return row;
+            }
+        }
+        while (partitions != null) {
+            if (current != null) {
+                Object[] row = current.next();
+                if (row != null) {
+                    return row;
+                }
+                current.close();
+                current = null;
+            }
+            if (++partition == PARTITIONS) {
+                partitions = null;
+                break;
+            }
+            SpillFile file = partitions[partition];
+            partitions[partition] = null;
+            current = new HashDistinct(file.read(), memory, depth + 1, spilledPartitions);
+        }
+        return null;
+    }
+
+    private void add(Object[] row, long fingerprint) throws SQLException {
+        int index = rows.size();
+        rows.add(row);
+        if (index == fingerprints.length) {
+            fingerprints = Arrays.copyOf(fingerprints, index * 2);
+        }
+        fingerprints[index] = fingerprint;
+        if (rows.size() * 2 > slots.length) {
+            rehash(slots.length * 2);
+        } else {
+            insert(index);
+        }
+        size += Rows.estimateSize(row) + ENTRY_BYTES;
+        if (size > memory && depth < MAX_DEPTH) {
+            partitions = new SpillFile[PARTITIONS];
+            try {
+                for (int i = 0; i < PARTITIONS; i++) {
+                    partitions[i] = SpillFile.create();
+                }
+            } catch (SQLException e) {
+                delete();
+                throw e;
+            }
+            spilledPartitions[0] += PARTITIONS;
+        }
+    }
+
+    private boolean contains(Object[] row, long fingerprint) {
+        int mask = slots.length - 1;
+        for (int slot = (int) fingerprint & mask;; slot = (slot + 1) & mask) {
+            int index = slots[slot] - 1;
+            if (index < 0) {
+                return false;
+            }
+            if (fingerprints[index] == fingerprint && sameRow(rows.get(index), row)) {
+                return true;
+            }
+        }
+    }
+
+    private void insert(int index) {
+        int mask = slots.length - 1;
+        int slot = (int) fingerprints[index] & mask;
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        slots[slot] = index + 1;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        for (int index = 0; index < rows.size(); index++) {
+            insert(index);
+        }
+    }
+
+    private static boolean sameRow(Object[] a, Object[] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == null || b[i] == null
+                    ? a[i] != b[i]
+                    : Rows.compareValues(a[i], b[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the partition of a row, by bits of its fingerprint differing with the depth, so that
+     *         the rows of a partition are split again one level deeper
+     */
+    private int partition(long fingerprint) {
+        return (int) (fingerprint >>> (Long.SIZE - PARTITION_BITS * (depth + 1)))
+                & (PARTITIONS - 1);
+    }
+
+    /**
+     * @return a hash of all values of the row, equal for rows with equal values
+     */
+    static long fingerprint(Object[] row) {
+        long hash = row.length;
+        for (Object value : row) {
+            hash = (hash ^ hashValue(value)) * 0x9e3779b97f4a7c15L;
+            hash = Long.rotateLeft(hash, 27);
+        }
+        // the finalizer of MurmurHash3, so that all bits depend on all values
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        return hash ^ hash >>> 33;
+    }
+
+    private static long hashValue(Object value) {
+        if (value == null) {
+            return NULL_HASH;
+        } else if (value instanceof Number) {
+            return Double.doubleToLongBits(((Number) value).doubleValue());
+        } else if (value instanceof java.util.Date) {
+            return ((java.util.Date) value).getTime() ^ DATE_HASH;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE_HASH : FALSE_HASH;
+        }
+        // FNV-1a, wider than String.hashCode() to keep fingerprints of strings apart
+        String string = value.toString();
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < string.length(); i++) {
+            hash = (hash ^ string.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Drops the hash set, which holds none of the rows of the partitions.
+     */
+    private void release() throws SQLException {
+        rows = new ArrayList<>();
+        slots = null;
+        fingerprints = null;
+        if (partitions != null) {
+            for (SpillFile file : partitions) {
+                // releases the file handles until the partitions are read
+                file.finish();
+            }
+        }
+    }
+
+    private void delete() {
+        if (partitions != null) {
+            for (int i = 0; i < partitions.length; i++) {
+                if (partitions[i] != null) {
+                    partitions[i].delete();
+                    partitions[i] = null;
+                }
+            }
+            partitions = null;
+        }
+    }
+
+    /**
+     * Closes the source and the partition being read and deletes the partitions not read yet.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            if (current != null) {
+                current.close();
+                current = null;
+            }
+            source.close();
+        } finally {
+            delete();
+            rows = new ArrayList<>();
+            slots = null;
+            fingerprints = null;
+        }
+    }
+}
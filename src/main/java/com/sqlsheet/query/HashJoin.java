@@ -0,0 +1,484 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Joins rows on equal key columns, for INNER and LEFT JOIN.
+ *
+ * <p>
+ * The rows of the build side, the smaller table, are held in a hash table, then the rows of the
+ * probe side stream past it, each followed by the values of every build row with equal keys. Keys
+ * are encoded as primitive {@code long} values, numbers by their bits and other values by their
+ * code in a dictionary of the key column, so the table holds no boxed keys and a probe value
+ * missing from the dictionary is known not to match without probing. Keys equal as
+ * {@link Rows#compareValues(Object, Object)} has it match, null keys match nothing.
+ *
+ * <p>
+ * If the build rows exceed the memory budget, they and then the probe rows are split by the hash
+ * of their keys into {@value #PARTITIONS} partitions written to {@link SpillFile}s, and each pair
+ * of partitions is joined on its own, partitioned again if it is still too large. The joined rows
+ * then follow the partitions rather than the order of the probe rows.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class HashJoin implements AutoCloseable {
+
+    private static final int PARTITION_BITS = 4;
+    static final int PARTITIONS = 1 << PARTITION_BITS;
+    /** Partitioning deeper does not split a key repeated beyond the budget, it is held anyway. */
+    static final int MAX_DEPTH = 4;
+    /** Rough heap cost of the hash table entries of a build row. */
+    private static final long ENTRY_BYTES = 24;
+    /** Dictionary codes are NaNs with the sign bit, which doubleToLongBits never returns. */
+    private static final long DICTIONARY = 0xfff8000000000000L;
+
+    private final int[] buildKeys;
+    private final int[] probeKeys;
+    private final int buildWidth;
+    private final boolean outer;
+    private final RowFilter condition;
+    private final long memory;
+    private final int depth;
+    /** The partitions written by this join and the joins of its partitions. */
+    private final int[] spilledPartitions;
+
+    private List<Object[]> rows = new ArrayList<>();
+    private long size;
+    private SpillFile[] buildPartitions;
+    private SpillFile[] probePartitions;
+
+    /** The dictionary of each key column, {@code null} while it holds numbers only. */
+    private List<Map<Object, Integer>> dictionaries;
+    /** The hash table, the group index plus one of each slot, {@code 0} for an empty slot. */
+    private int[] slots;
+    /** Per group of equal keys its encoded key. */
+    private long[] keys;
+    private int[] hashes;
+    /** Per group the first build row. */
+    private int[] first;
+    /** Per build row the next one of its group, or {@code -1}. */
+    private int[] next;
+    private int groups;
+    private boolean probed;
+
+    /**
+     * @param buildKeys the positions of the key columns in the build rows
+     * @param probeKeys the positions of the equal key columns in the probe rows
+     * @param buildWidth the number of values of the build rows
+     * @param outer whether probe rows without a match are joined to nulls, for a LEFT JOIN
+     * @param condition the condition matching rows have to meet as well, evaluated on the joined
+     *        row, or {@code null}
+     * @param memory the estimated heap in bytes the build rows may take
+     */
+    public HashJoin(int[] buildKeys, int[] probeKeys, int buildWidth, boolean outer,
+            RowFilter condition, long memory) {
+        this(buildKeys, probeKeys, buildWidth, outer, condition, memory, 0, new int[1]);
+    }
+
+    private HashJoin(int[] buildKeys, int[] probeKeys, int buildWidth, boolean outer,
+            RowFilter condition, long memory, int depth, int[] spilledPartitions) {
+        if (buildKeys.length == 0 || buildKeys.length != probeKeys.length) {
+            throw new IllegalArgumentException("Key columns missing or differing in number");
+        }
+        this.buildKeys = buildKeys.clone();
+        this.probeKeys = probeKeys.clone();
+        this.buildWidth = buildWidth;
+        this.outer = outer;
+        this.condition = condition;
+        this.memory = memory;
+        this.depth = depth;
+        this.spilledPartitions = spilledPartitions;
+    }
+
+    /**
+     * @param row a row of the build side
+     * @throws SQLException if a temporary file cannot be written
+     */
+    public void add(Object[] row) throws SQLException {
+        if (probed) {
+            throw new IllegalStateException("Rows are probed already");
+        }
+        if (hasNullKey(row, buildKeys)) {
+            // matches nothing
+            return;
+        }
+        if (buildPartitions != null) {
+            buildPartitions[partition(row, buildKeys)].write(row);
+            return;
+        }
+        rows.add(row);
+        size += Rows.estimateSize(row) + ENTRY_BYTES;
+        if (size > memory && depth < MAX_DEPTH) {
+            spill();
+        }
+    }
+
+    /**
+     * Adds all rows of a source of the build side and closes it.
+     */
+    public void addAll(RowSource source) throws SQLException {
+        try (RowSource build = source) {
+            for (Object[] row = build.next(); row != null; row = build.next()) {
+                add(row);
+            }
+        }
+    }
+
+    /**
+     * @return the number of partitions written to temporary files so far
+     */
+    public int getSpilledPartitions() {
+        return spilledPartitions[0];
+    }
+
+    private void spill() throws SQLException {
+        buildPartitions = createPartitions();
+        for (Object[] row : rows) {
+            buildPartitions[partition(row, buildKeys)].write(row);
+        }
+        rows = new ArrayList<>();
+        size = 0;
+        spilledPartitions[0] += PARTITIONS;
+    }
+
+    private static SpillFile[] createPartitions() throws SQLException {
+        SpillFile[] partitions = new SpillFile[PARTITIONS];
+        try {
+            for (int i = 0; i < partitions.length; i++) {
+                partitions[i] = SpillFile.create();
+            }
+        } catch (SQLException e) {
+            delete(partitions);
+            throw e;
+        }
+        return partitions;
+    }
+
+    /**
+     * Ends adding rows. The join owns the probe rows from now on and is closed with the joined
+     * rows.
+     *
+     * @param source the rows of the probe side
+     * @return each probe row followed by the values of each matching build row
+     * @throws SQLException if the rows cannot be read or a temporary file cannot be written
+     */
+    public RowSource probe(RowSource source) throws SQLException {
+        probed = true;
+        try {
+            if (buildPartitions != null) {
+                return probePartitions(source);
+            }
+            index();
+        } catch (SQLException | RuntimeException e) {
+            source.close();
+            close();
+            throw e;
+        }
+        ArrayRowValues values = new ArrayRowValues();
+        long[] key = new long[probeKeys.length];
+        return new RowSource() {
+            private Object[] probeRow;
+            private int match = -1;
+            private boolean matched;
+            private boolean done;
+
+            @Override
+            public Object[] next() throws SQLException {
+                while (!done) {
+                    while (match >= 0) {
+                        Object[] joined = concat(probeRow, rows.get(match));
+                        match = next[match];
+                        if (condition == null || condition.accept(values.of(joined))) {
+                            matched = true;
+                            return joined;
+                        }
+                    }
+                    if (probeRow != null && outer && !matched) {
+                        Object[] joined = concat(probeRow, null);
+                        probeRow = null;
+                        return joined;
+                    }
+                    probeRow = source.next();
+                    if (probeRow == null) {
+                        done = true;
+                    } else {
+                        matched = false;
+                        match = find(probeRow, key);
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                source.close();
+                HashJoin.this.close();
+            }
+        };
+    }
+
+    private RowSource probePartitions(RowSource source) throws SQLException {
+        probePartitions = createPartitions();
+        try (RowSource probe = source) {
+            for (Object[] row = probe.next(); row != null; row = probe.next()) {
+                if (!hasNullKey(row, probeKeys)) {
+                    probePartitions[partition(row, probeKeys)].write(row);
+                } else if (outer) {
+                    probePartitions[0].write(row);
+                }
+            }
+        }
+        for (int i = 0; i < PARTITIONS; i++) {
+            // releases the file handles until the partitions are joined
+            buildPartitions[i].finish();
+            probePartitions[i].finish();
+        }
+        return new RowSource() {
+            private int partition = -1;
+            private RowSource joined;
+
+            @Override
+            public Object[] next() throws SQLException {
+                while (true) {
+                    if (joined != null) {
+                        Object[] row = joined.next();
+                        if (row != null) {
+                            return row;
+                        }
+                        joined.close();
+                        joined = null;
+                    }
+                    if (++partition == PARTITIONS) {
+                        return null;
+                    }
+                    SpillFile build = buildPartitions[partition];
+                    SpillFile probe = probePartitions[partition];
+                    buildPartitions[partition] = null;
+                    probePartitions[partition] = null;
+                    HashJoin join = new HashJoin(buildKeys, probeKeys, buildWidth, outer,
+                            condition, memory, depth + 1, spilledPartitions);
+                    try {
+                        join.addAll(build.read());
+                    } catch (SQLException | RuntimeException e) {
+                        probe.delete();
+                        join.close();
+                        throw e;
+                    }
+                    joined = join.probe(probe.read());
+                }
+            }
+
+            @Override
+            public void close() throws SQLException {
+                if (joined != null) {
+                    joined.close();
+                    joined = null;
+                }
+                HashJoin.this.close();
+            }
+        };
+    }
+
+    /**
+     * Builds the hash table over the rows added.
+     */
+    private void index() {
+        int count = rows.size();
+        int capacity = 16;
+        while (capacity < count * 2) {
+            capacity <<= 1;
+        }
+        dictionaries = new ArrayList<>(Collections.nCopies(buildKeys.length, null));
+        slots = new int[capacity];
+        keys = new long[count * buildKeys.length];
+        hashes = new int[count];
+        first = new int[count];
+        next = new int[count];
+        long[] key = new long[buildKeys.length];
+        // backwards, so that the rows of a group are listed in the order they were added
+        for (int row = count - 1; row >= 0; row--) {
+            encode(rows.get(row), buildKeys, true, key);
+            int group = findGroup(key, true);
+            next[row] = first[group];
+            first[group] = row;
+        }
+    }
+
+    /**
+     * @return the first build row matching the probe row, or {@code -1}
+     */
+    private int find(Object[] probeRow, long[] key) {
+        if (!encode(probeRow, probeKeys, false, key)) {
+            return -1;
+        }
+        int group = findGroup(key, false);
+        return group >= 0 ? first[group] : -1;
+    }
+
+    /**
+     * @return whether the key is encoded, {@code false} if it is null or a value is not in the
+     *         dictionary
+     */
+    private boolean encode(Object[] row, int[] positions, boolean add, long[] key) {
+        for (int k = 0; k < positions.length; k++) {
+            Object value = row[positions[k]];
+            if (value == null) {
+                return false;
+            } else if (value instanceof Number) {
+                key[k] = Double.doubleToLongBits(((Number) value).doubleValue());
+                continue;
+            } else if (value instanceof java.util.Date) {
+                value = ((java.util.Date) value).getTime();
+            }
+            Map<Object, Integer> dictionary = dictionaries.get(k);
+            if (dictionary == null) {
+                if (!add) {
+                    return false;
+                }
+                dictionary = new HashMap<>();
+                dictionaries.set(k, dictionary);
+            }
+            Integer code = dictionary.get(value);
+            if (code == null) {
+                if (!add) {
+                    return false;
+                }
+                code = dictionary.size();
+                dictionary.put(value, code);
+            }
+            key[k] = DICTIONARY | code;
+        }
+        return true;
+    }
+
+    private int findGroup(long[] key, boolean add) {
+        int width = key.length;
+        int hash = 1;
+        for (long k : key) {
+            hash = 31 * hash + Long.hashCode(k);
+        }
+        hash = mix(hash);
+        int mask = slots.length - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+            int group = slots[slot] - 1;
+            if (group < 0) {
+                if (!add) {
+                    return -1;
+                }
+                group = groups++;
+                System.arraycopy(key, 0, keys, group * width, width);
+                hashes[group] = hash;
+                first[group] = -1;
+                slots[slot] = group + 1;
+                return group;
+            }
+            if (hashes[group] == hash && sameKey(group, key)) {
+                return group;
+            }
+        }
+    }
+
+    private boolean sameKey(int group, long[] key) {
+        int offset = group * key.length;
+        for (int k = 0; k < key.length; k++) {
+            if (keys[offset + k] != key[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the partition of a row, by a hash of its key values differing with the depth, so
+     *         that the rows of a partition are split again one level deeper
+     */
+    private int partition(Object[] row, int[] positions) {
+        int hash = 1;
+        for (int position : positions) {
+            Object value = row[position];
+            if (value instanceof Number) {
+                hash = 31 * hash + Double.hashCode(((Number) value).doubleValue());
+            } else if (value instanceof java.util.Date) {
+                hash = 31 * hash + Long.hashCode(((java.util.Date) value).getTime());
+            } else {
+                hash = 31 * hash + value.hashCode();
+            }
+        }
+        return mix(hash + depth * 0x9e3779b9) >>> (Integer.SIZE - PARTITION_BITS);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, so that all bits of the hash depend on all bits of the key.
+     */
+    private static int mix(int hash) {
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        return hash ^ hash >>> 16;
+    }
+
+    private static boolean hasNullKey(Object[] row, int[] positions) {
+        for (int position : positions) {
+            if (row[position] == null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object[] concat(Object[] probeRow, Object[] buildRow) {
+        Object[] joined = new Object[probeRow.length + buildWidth];
+        System.arraycopy(probeRow, 0, joined, 0, probeRow.length);
+        if (buildRow != null) {
+            System.arraycopy(buildRow, 0, joined, probeRow.length,
+                    Math.min(buildWidth, buildRow.length));
+        }
+        return joined;
+    }
+
+    private static void delete(SpillFile[] partitions) {
+        if (partitions != null) {
+            for (int i = 0; i < partitions.length; i++) {
+                if (partitions[i] != null) {
+                    partitions[i].delete();
+                    partitions[i] = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the partitions not joined yet and drops the build rows.
+     */
+    @Override
+    public void close() {
+        delete(buildPartitions);
+        delete(probePartitions);
+        rows = new ArrayList<>();
+        slots = null;
+        keys = null;
+        hashes = null;
+        first = null;
+        next = null;
+        dictionaries = null;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.lang.invoke.MethodHandle;
+import java.sql.SQLException;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * A condition compiled by {@link RowFilters} with the columns of a table resolved, and a
+ * preallocated slot for the value of each JDBC parameter. Executing a prepared statement again
+ * only {@link #bind(List) binds} the new values, without compiling or resolving anything.
+ *
+ * <p>
+ * Binding replaces the values the filter tests rows with, so it must not happen while a scan
+ * uses the filter.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class PreparedFilter implements RowFilter {
+
+    private final MethodHandle condition;
+    private final BitSet parameters;
+    private final BitSet patterns;
+    private final Object[] values;
+
+    /**
+     * @param condition the truth value of a row, from the row and the parameter slots
+     * @param parameters the indexes of the parameters the condition uses
+     * @param patterns the indexes of the parameters used as LIKE patterns
+     */
+    PreparedFilter(MethodHandle condition, BitSet parameters, BitSet patterns) {
+        this.condition = condition;
+        this.parameters = parameters;
+        this.patterns = patterns;
+        this.values = new Object[parameters.length()];
+    }
+
+    /**
+     * Converts the values of the parameters to the representation of {@link CellValues}, and
+     * compiles LIKE patterns, into the slots of the filter.
+     *
+     * @param parameters the values of the JDBC parameters, may be {@code null} without parameters
+     * @return this
+     * @throws SQLException if the value of a parameter of the condition is missing
+     */
+    public PreparedFilter bind(List<Object> parameters) throws SQLException {
+        for (int i = this.parameters.nextSetBit(0); i >= 0;
+                i = this.parameters.nextSetBit(i + 1)) {
+            if (parameters == null || i >= parameters.size()) {
+                throw new SQLException("No value specified for parameter " + (i + 1));
+            }
+            Object value = RowFilters.toCellValue(parameters.get(i));
+            if (patterns.get(i)) {
+                value = value instanceof String ? RowFilters.likePattern((String) value) : null;
+            }
+            values[i] = value;
+        }
+        return this;
+    }
+
+    @Override
+    public boolean accept(CellValues row) {
+        try {
+            return (int) condition.invokeExact(row, values) == RowFilters.TRUE;
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
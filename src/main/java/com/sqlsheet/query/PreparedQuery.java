@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * A SELECT statement resolved by {@link QueryExecutor#prepare}: its sheets, the positions of its
+ * columns, of its sort, group and join keys, and its conditions compiled into
+ * {@link PreparedFilter}s. Executing it again only binds the values of the JDBC parameters and
+ * opens the scans of the sheets, without resolving any name.
+ *
+ * <p>
+ * The positions hold until the sheets are reloaded or modified, after which the statement has to
+ * be prepared again.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+@FunctionalInterface
+public interface PreparedQuery {
+
+    /**
+     * @param parameters the values of the JDBC parameters, or {@code null} if there are none
+     * @return the result set of the query
+     * @throws SQLException if the query cannot be executed, or the value of a parameter is
+     *         missing
+     */
+    ResultSet execute(List<Object> parameters) throws SQLException;
+}
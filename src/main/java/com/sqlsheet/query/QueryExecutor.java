@@ -0,0 +1,882 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import com.sqlsheet.XlsResultSetMetaData;
+import com.sqlsheet.parser.Join;
+import com.sqlsheet.parser.OrderBy;
+import com.sqlsheet.parser.ParsedExpression;
+import com.sqlsheet.parser.ParsedExpression.Operator;
+import com.sqlsheet.parser.SelectStarStatement;
+import com.sqlsheet.parser.SelectStatement;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Executes a SELECT statement by stacking the operators it needs on top of the scan of its sheet,
+ * which already applies the WHERE condition. Statements needing no operator get the result set of
+ * the scan itself.
+ *
+ * <p>
+ * ORDER BY sorts all rows with an {@link ExternalSort}, unless a LIMIT asks for the first rows
+ * only, which a {@link TopN} keeps in a single pass. Without ORDER BY, a LIMIT or the maximum rows
+ * of the statement are passed on to the scan, which stops parsing the sheet once they are read.
+ *
+ * <p>
+ * GROUP BY and aggregate functions read only the grouped and aggregated columns into a
+ * {@link HashAggregation}, then filter its groups by the HAVING condition, sort and limit them. A
+ * plain {@code COUNT(*)} asks {@link CountableRows} scans for their number of rows instead.
+ *
+ * <p>
+ * Joined tables are read by a {@link HashJoin} each, streaming the rows of the table before or the
+ * rows joined so far past the rows of the joined table. The WHERE condition is split into the
+ * parts on a single table, applied by its scan unless the table is the right side of a LEFT
+ * JOIN, and the rest filtering the joined rows. All other operators run on the joined rows as on
+ * the rows of a single table.
+ *
+ * <p>
+ * DISTINCT removes duplicates of the selected values with a {@link HashDistinct} before sorting,
+ * which streams the first occurrence of each row, so a LIMIT without ORDER BY stops reading once
+ * enough distinct rows are found.
+ *
+ * <p>
+ * {@link #prepare} resolves all names of a statement once into a {@link PreparedQuery}, which a
+ * prepared statement executes again with other parameter values.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class QueryExecutor {
+
+    /**
+     * Resolves the sheets a statement selects from, read by the
+     * {@link com.sqlsheet.XlsResultSet} or {@link com.sqlsheet.stream.XlsStreamResultSet} of the
+     * connection.
+     */
+    @FunctionalInterface
+    public interface TableScan {
+
+        /**
+         * @param schema the schema qualifying the table, or {@code null}
+         * @param table the table
+         * @param where the condition on the columns of the table the rows have to meet, or
+         *        {@code null}
+         * @param columns the sheet columns to read, or {@code null} for all of them
+         * @param labels the labels of these columns
+         * @return the scan of the rows of the sheet meeting the WHERE condition
+         * @throws SQLException if the sheet cannot be found, or the condition refers to a missing
+         *         column
+         */
+        Scan prepare(String schema, String table, ParsedExpression where, List<String> columns,
+                List<String> labels) throws SQLException;
+    }
+
+    /**
+     * The rows a query reads, of its table or of its joined tables, opened again on every
+     * execution.
+     */
+    @FunctionalInterface
+    public interface Scan {
+
+        /**
+         * @param parameters the values of the JDBC parameters, or {@code null} if there are none
+         * @param limit the most rows to read, after which the scan stops parsing the sheet, or
+         *        {@code null} for all of them
+         * @return the rows meeting the WHERE condition
+         * @throws SQLException if the sheet cannot be read, or the value of a parameter is missing
+         */
+        ResultSet open(List<Object> parameters, Long limit) throws SQLException;
+    }
+
+    private QueryExecutor() {}
+
+    /**
+     * @param statement the statement executing the query
+     * @param select the parsed query
+     * @param parameters the values of its JDBC parameters, or {@code null} if it has none
+     * @param settings the settings of the connection
+     * @param tables the scans of the sheets
+     * @return the result set of the query
+     * @throws SQLException if the query cannot be executed
+     */
+    public static ResultSet select(Statement statement, SelectStarStatement select,
+            List<Object> parameters, QuerySettings settings, TableScan tables)
+            throws SQLException {
+        return prepare(statement, select, settings, tables).execute(parameters);
+    }
+
+    /**
+     * Resolves a query against the sheets it reads, to execute it any number of times until the
+     * sheets are reloaded or modified.
+     *
+     * @param statement the statement executing the query
+     * @param select the parsed query
+     * @param settings the settings of the connection
+     * @param tables the scans of the sheets
+     * @return the query to bind the parameters of and execute
+     * @throws SQLException if a table or column is missing, or the query is not supported
+     */
+    public static PreparedQuery prepare(Statement statement, SelectStarStatement select,
+            QuerySettings settings, TableScan tables) throws SQLException {
+        if (select instanceof SelectStatement && ((SelectStatement) select).isAggregate()) {
+            return new Aggregation(statement, (SelectStatement) select, settings, tables);
+        }
+        return new Selection(statement, select, settings, tables);
+    }
+
+    /**
+     * @return the LIMIT of the query, lowered to the maximum rows of the statement
+     */
+    private static Long limitOf(Statement statement, SelectStarStatement select)
+            throws SQLException {
+        Long limit = select.getLimit();
+        if (statement.getMaxRows() > 0) {
+            limit = Math.min(limit != null ? limit : Long.MAX_VALUE, statement.getMaxRows());
+        }
+        return limit;
+    }
+
+    /**
+     * @return the rows of the table of the query, or of its joined tables
+     */
+    private static Scan from(Statement statement, SelectStarStatement select,
+            QuerySettings settings, TableScan tables, List<String> columns, List<String> labels)
+            throws SQLException {
+        if (select.getJoins().isEmpty()) {
+            return tables.prepare(select.getSchema(), select.getTable(), select.getWhere(),
+                    columns, labels);
+        }
+        return new JoinedScan(statement, select, settings, tables, columns, labels);
+    }
+
+    /**
+     * A query without aggregate functions. Its sort keys are resolved against the columns of the
+     * scan on the first execution.
+     */
+    private static final class Selection implements PreparedQuery {
+
+        private final Statement statement;
+        private final SelectStarStatement select;
+        private final QuerySettings settings;
+        /** The selected columns followed by the sort keys not selected, or {@code null}. */
+        private final List<String> columns;
+        private final int selected;
+        private final Scan from;
+        private QueryResultSetMetaData metadata;
+        private Comparator<Object[]> order;
+
+        Selection(Statement statement, SelectStarStatement select, QuerySettings settings,
+                TableScan tables) throws SQLException {
+            this.statement = statement;
+            this.select = select;
+            this.settings = settings;
+            List<String> labels = null;
+            if (select instanceof SelectStatement) {
+                columns = new ArrayList<>(((SelectStatement) select).getColumns());
+                labels = new ArrayList<>(((SelectStatement) select).getLabels());
+                selected = columns.size();
+                // sort keys not selected are read as hidden trailing columns
+                for (OrderBy key : select.getOrderBy()) {
+                    String name = columnOf(key);
+                    if (name != null && indexOf(labels, name) < 0
+                            && indexOf(columns, name) < 0) {
+                        if (select.isDistinct()) {
+                            throw new SQLException("ORDER BY column " + name
+                                    + " must be selected with DISTINCT.");
+                        }
+                        columns.add(name);
+                        labels.add(name);
+                    }
+                }
+            } else {
+                columns = null;
+                selected = 0;
+            }
+            from = from(statement, select, settings, tables, columns, labels);
+        }
+
+        @Override
+        public ResultSet execute(List<Object> parameters) throws SQLException {
+            Long limit = limitOf(statement, select);
+            List<OrderBy> orderBy = select.getOrderBy();
+            long offset = select.getOffset();
+            boolean distinct = select.isDistinct();
+            if (orderBy.isEmpty() && offset == 0 && !distinct) {
+                return from.open(parameters, limit);
+            }
+            // without ORDER BY the scan stops after the rows skipped and returned
+            ResultSet source = from.open(parameters,
+                    orderBy.isEmpty() && limit != null && !distinct ? count(limit, offset) : null);
+            try {
+                if (metadata == null) {
+                    resolveMetadata(source.getMetaData());
+                }
+                RowSource rows = new ResultSetRowSource(source);
+                if (distinct) {
+                    rows = new HashDistinct(rows, settings.getMemory());
+                }
+                if (order != null) {
+                    rows = sort(rows, order, limit, offset, settings);
+                }
+                return new QueryResultSet(statement, metadata, Rows.limit(rows, offset, limit));
+            } catch (SQLException | RuntimeException e) {
+                source.close();
+                throw e;
+            }
+        }
+
+        private void resolveMetadata(ResultSetMetaData source) throws SQLException {
+            int count = columns != null ? selected : source.getColumnCount();
+            List<OrderBy> orderBy = select.getOrderBy();
+            if (!orderBy.isEmpty()) {
+                int[] keys = new int[orderBy.size()];
+                for (int i = 0; i < keys.length; i++) {
+                    keys[i] = resolve(orderBy.get(i), source, count, columns);
+                }
+                order = order(orderBy, keys);
+            }
+            metadata = QueryResultSetMetaData.of(source, count);
+        }
+    }
+
+    /**
+     * A query aggregating the rows into groups, one row per group. Only the grouped and aggregated
+     * columns are read.
+     */
+    private static final class Aggregation implements PreparedQuery {
+
+        private final Statement statement;
+        private final SelectStatement select;
+        private final QuerySettings settings;
+        private final List<String> columns = new ArrayList<>();
+        private final List<ParsedExpression> aggregates = new ArrayList<>();
+        private final int[] keyColumns;
+        private final Operator[] functions;
+        private final int[] inputs;
+        /** The HAVING condition on the group rows, or {@code null}. */
+        private final PreparedFilter having;
+        /** The positions in the group rows of the selected items, followed by hidden sort keys. */
+        private final int[] projection;
+        private final List<String> names = new ArrayList<>();
+        private final Comparator<Object[]> order;
+        private final Scan from;
+        private QueryResultSetMetaData metadata;
+
+        Aggregation(Statement statement, SelectStatement select, QuerySettings settings,
+                TableScan tables) throws SQLException {
+            this.statement = statement;
+            this.select = select;
+            this.settings = settings;
+            List<String> groupBy = select.getGroupBy();
+            List<ParsedExpression> items = select.getItems();
+            List<String> labels = select.getLabels();
+            List<OrderBy> orderBy = select.getOrderBy();
+            List<ParsedExpression> expressions = new ArrayList<>(items);
+            if (select.getHaving() != null) {
+                expressions.add(select.getHaving());
+            }
+            for (OrderBy key : orderBy) {
+                expressions.add(key.getExpression());
+            }
+            for (ParsedExpression expression : expressions) {
+                for (ParsedExpression aggregate : expression.getAggregates()) {
+                    if (!aggregates.contains(aggregate)) {
+                        aggregates.add(aggregate);
+                    }
+                }
+            }
+            for (String name : groupBy) {
+                if (indexOf(columns, name) < 0) {
+                    columns.add(name);
+                }
+            }
+            for (ParsedExpression aggregate : aggregates) {
+                for (String name : aggregate.getColumns()) {
+                    if (indexOf(columns, name) < 0) {
+                        columns.add(name);
+                    }
+                }
+            }
+            keyColumns = new int[groupBy.size()];
+            for (int i = 0; i < keyColumns.length; i++) {
+                keyColumns[i] = indexOf(columns, groupBy.get(i));
+            }
+            functions = new Operator[aggregates.size()];
+            inputs = new int[functions.length];
+            for (int i = 0; i < functions.length; i++) {
+                functions[i] = aggregates.get(i).getOperator();
+                List<String> operand = aggregates.get(i).getColumns();
+                inputs[i] = operand.isEmpty() ? -1 : indexOf(columns, operand.get(0));
+            }
+
+            // groups are rows of the grouped columns followed by the aggregates
+            List<String> groupNames = new ArrayList<>(groupBy);
+            for (ParsedExpression aggregate : aggregates) {
+                groupNames.add(aggregate.toString());
+            }
+            having = select.getHaving() != null
+                    ? RowFilters.prepare(replaceAggregates(select.getHaving()), groupNames, null)
+                    : null;
+
+            List<Integer> positions = new ArrayList<>();
+            for (int i = 0; i < items.size(); i++) {
+                ParsedExpression item = items.get(i);
+                if (item.isAggregate()) {
+                    positions.add(groupBy.size() + aggregates.indexOf(item));
+                    names.add(labels.get(i));
+                } else {
+                    String name = (String) item.getValue();
+                    positions.add(indexOf(groupBy, name));
+                    names.add(name);
+                }
+            }
+            int[] keys = new int[orderBy.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = resolve(orderBy.get(i), items, labels, groupBy, aggregates, positions);
+            }
+            if (select.isDistinct() && positions.size() > items.size()) {
+                throw new SQLException("ORDER BY keys must be selected with DISTINCT: " + orderBy);
+            }
+            projection = positions.stream().mapToInt(Integer::intValue).toArray();
+            order = orderBy.isEmpty() ? null : order(orderBy, keys);
+            from = from(statement, select, settings, tables, columns, columns);
+        }
+
+        @Override
+        public ResultSet execute(List<Object> parameters) throws SQLException {
+            Long limit = limitOf(statement, select);
+            ResultSet source = from.open(parameters, null);
+            try {
+                if (metadata == null) {
+                    resolveMetadata(source.getMetaData());
+                }
+                HashAggregation aggregation = new HashAggregation(keyColumns, functions, inputs);
+                if (columns.isEmpty() && source instanceof CountableRows) {
+                    // COUNT(*) alone, the scan may know the number of rows without reading them
+                    aggregation.addRows(((CountableRows) source).countRows());
+                    source.close();
+                } else {
+                    aggregation.addAll(new ResultSetRowSource(source));
+                }
+                RowSource rows = aggregation.result();
+                if (having != null) {
+                    rows = Rows.filter(rows, having.bind(parameters));
+                }
+                rows = Rows.project(rows, projection);
+                if (select.isDistinct()) {
+                    rows = new HashDistinct(rows, settings.getMemory());
+                }
+                if (order != null) {
+                    rows = sort(rows, order, limit, select.getOffset(), settings);
+                }
+                return new QueryResultSet(statement, metadata,
+                        Rows.limit(rows, select.getOffset(), limit));
+            } catch (SQLException | RuntimeException e) {
+                source.close();
+                throw e;
+            }
+        }
+
+        private void resolveMetadata(ResultSetMetaData source) throws SQLException {
+            List<ParsedExpression> items = select.getItems();
+            List<Integer> types = new ArrayList<>();
+            for (ParsedExpression item : items) {
+                types.add(item.isAggregate()
+                        ? typeOf(item, source, columns)
+                        : source.getColumnType(indexOf(columns, (String) item.getValue()) + 1));
+            }
+            metadata = new QueryResultSetMetaData(select.getLabels(), names, types);
+        }
+    }
+
+    /**
+     * The rows of joined tables, one {@link HashJoin} per JOIN. The columns and join keys of each
+     * table are resolved once, the types of the columns on the first execution.
+     */
+    private static final class JoinedScan implements Scan {
+
+        private final Statement statement;
+        private final List<Join> joins;
+        private final QuerySettings settings;
+        private final Scan[] scans;
+        /** The number of columns read of each table. */
+        private final int[] widths;
+        private final int[][] leftKeys;
+        private final int[][] rightKeys;
+        private final PreparedFilter[] conditions;
+        /**
+         * The condition of the first join on the joined rows followed by the rows of the first
+         * table, if the first table may be built instead, or {@code null}.
+         */
+        private final PreparedFilter swappedCondition;
+        /** The columns putting the rows joined with the first table built back in order. */
+        private final int[] swappedOrder;
+        private final PreparedFilter residual;
+        private final List<String> resultNames;
+        private final List<String> resultLabels = new ArrayList<>();
+        private final int[] projection;
+        private QueryResultSetMetaData metadata;
+
+        /**
+         * @param columns the qualified columns to return, or {@code null} for all columns of all
+         *        tables
+         * @param labels the labels of these columns
+         */
+        JoinedScan(Statement statement, SelectStarStatement select, QuerySettings settings,
+                TableScan tables, List<String> columns, List<String> labels) throws SQLException {
+            this.statement = statement;
+            this.joins = select.getJoins();
+            this.settings = settings;
+            List<String> aliases = new ArrayList<>();
+            aliases.add(select.getAlias());
+            for (Join join : joins) {
+                aliases.add(join.getAlias());
+            }
+            int count = aliases.size();
+
+            // conditions on a single table are applied by its scan, unless it may be null
+            // extended
+            ParsedExpression[] wheres = new ParsedExpression[count];
+            ParsedExpression rest = null;
+            List<ParsedExpression> split = new ArrayList<>();
+            if (select.getWhere() != null) {
+                splitConjunction(select.getWhere(), split);
+            }
+            for (ParsedExpression condition : split) {
+                Set<Integer> referenced = new TreeSet<>();
+                for (String column : condition.getColumns()) {
+                    referenced.add(tableOf(aliases, column));
+                }
+                int table = referenced.size() == 1 ? referenced.iterator().next() : -1;
+                if (table >= 0
+                        && (table == 0 || joins.get(table - 1).getType() == Join.Type.INNER)) {
+                    wheres[table] = and(wheres[table], unqualify(condition, aliases.get(table)));
+                } else {
+                    rest = and(rest, condition);
+                }
+            }
+
+            // the qualified columns to read of each table, all of them for SELECT *
+            List<List<String>> reads = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                reads.add(new ArrayList<>());
+            }
+            List<String> needed = new ArrayList<>();
+            if (columns != null) {
+                needed.addAll(columns);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    String schema = i == 0 ? select.getSchema() : joins.get(i - 1).getSchema();
+                    String table = i == 0 ? select.getTable() : joins.get(i - 1).getTable();
+                    try (ResultSet header =
+                            tables.prepare(schema, table, null, null, null).open(null, 0L)) {
+                        ResultSetMetaData metadata = header.getMetaData();
+                        for (int c = 1; c <= metadata.getColumnCount(); c++) {
+                            needed.add(aliases.get(i) + "." + metadata.getColumnName(c));
+                        }
+                    }
+                }
+            }
+            int selected = needed.size();
+            for (Join join : joins) {
+                needed.addAll(join.getLeftColumns());
+                needed.addAll(join.getRightColumns());
+                if (join.getCondition() != null) {
+                    needed.addAll(join.getCondition().getColumns());
+                }
+            }
+            if (rest != null) {
+                needed.addAll(rest.getColumns());
+            }
+            for (String column : needed) {
+                List<String> read = reads.get(tableOf(aliases, column));
+                if (indexOf(read, column) < 0) {
+                    read.add(column);
+                }
+            }
+
+            scans = new Scan[count];
+            widths = new int[count];
+            for (int i = 0; i < count; i++) {
+                String schema = i == 0 ? select.getSchema() : joins.get(i - 1).getSchema();
+                String table = i == 0 ? select.getTable() : joins.get(i - 1).getTable();
+                scans[i] = prepare(tables, schema, table, wheres[i], aliases.get(i),
+                        reads.get(i));
+                widths[i] = reads.get(i).size();
+            }
+            leftKeys = new int[joins.size()][];
+            rightKeys = new int[joins.size()][];
+            conditions = new PreparedFilter[joins.size()];
+            PreparedFilter swapped = null;
+            int[] swappedColumns = null;
+            List<String> names = new ArrayList<>(reads.get(0));
+            for (int i = 1; i < count; i++) {
+                Join join = joins.get(i - 1);
+                List<String> read = reads.get(i);
+                List<String> joinedNames = new ArrayList<>(names);
+                joinedNames.addAll(read);
+                leftKeys[i - 1] =
+                        XlsResultSetMetaData.resolveColumns(names, join.getLeftColumns());
+                rightKeys[i - 1] =
+                        XlsResultSetMetaData.resolveColumns(read, join.getRightColumns());
+                conditions[i - 1] = prepare(join.getCondition(), joinedNames);
+                if (i == 1 && join.getType() == Join.Type.INNER) {
+                    List<String> swappedNames = new ArrayList<>(read);
+                    swappedNames.addAll(names);
+                    swapped = prepare(join.getCondition(), swappedNames);
+                    swappedColumns = new int[joinedNames.size()];
+                    for (int c = 0; c < swappedColumns.length; c++) {
+                        swappedColumns[c] =
+                                c < names.size() ? read.size() + c : c - names.size();
+                    }
+                }
+                names = joinedNames;
+            }
+            swappedCondition = swapped;
+            swappedOrder = swappedColumns;
+            residual = prepare(rest, names);
+            resultNames = new ArrayList<>(needed.subList(0, selected));
+            projection = XlsResultSetMetaData.resolveColumns(names, resultNames);
+            for (int i = 0; i < projection.length; i++) {
+                String name = resultNames.get(i);
+                resultLabels.add(labels != null
+                        ? labels.get(i)
+                        : name.substring(aliases.get(tableOf(aliases, name)).length() + 1));
+            }
+        }
+
+        @Override
+        public ResultSet open(List<Object> parameters, Long limit) throws SQLException {
+            List<AutoCloseable> open = new ArrayList<>();
+            try {
+                ResultSet first = scans[0].open(parameters, null);
+                open.add(first);
+                List<Integer> types = metadata == null ? typesOf(first.getMetaData()) : null;
+                RowSource rows = new ResultSetRowSource(first);
+                for (int i = 1; i < scans.length; i++) {
+                    Join join = joins.get(i - 1);
+                    ResultSet joined = scans[i].open(parameters, null);
+                    open.add(joined);
+                    if (types != null) {
+                        types.addAll(typesOf(joined.getMetaData()));
+                    }
+                    HashJoin hashJoin;
+                    if (i == 1 && swappedOrder != null && smaller(first, joined)) {
+                        // the first table is built instead, the joined rows then put back in
+                        // order
+                        hashJoin = new HashJoin(leftKeys[0], rightKeys[0], widths[0], false,
+                                bind(swappedCondition, parameters), settings.getMemory());
+                        open.add(hashJoin);
+                        hashJoin.addAll(rows);
+                        rows = Rows.project(hashJoin.probe(new ResultSetRowSource(joined)),
+                                swappedOrder);
+                    } else {
+                        hashJoin = new HashJoin(rightKeys[i - 1], leftKeys[i - 1], widths[i],
+                                join.getType() == Join.Type.LEFT,
+                                bind(conditions[i - 1], parameters), settings.getMemory());
+                        open.add(hashJoin);
+                        hashJoin.addAll(new ResultSetRowSource(joined));
+                        rows = hashJoin.probe(rows);
+                    }
+                    open.add(rows);
+                }
+                if (residual != null) {
+                    rows = Rows.filter(rows, residual.bind(parameters));
+                }
+                if (metadata == null) {
+                    List<Integer> resultTypes = new ArrayList<>();
+                    for (int column : projection) {
+                        resultTypes.add(types.get(column));
+                    }
+                    metadata = new QueryResultSetMetaData(resultLabels, resultNames, resultTypes);
+                }
+                return new QueryResultSet(statement, metadata,
+                        Rows.limit(Rows.project(rows, projection), 0, limit));
+            } catch (SQLException | RuntimeException e) {
+                for (AutoCloseable closeable : open) {
+                    try {
+                        closeable.close();
+                    } catch (Exception suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Resolves the scan of a joined table, labelling its columns with their qualified names so
+     * that each table of the join gets a scan of its own, even the same sheet joined twice.
+     */
+    private static Scan prepare(TableScan tables, String schema, String table,
+            ParsedExpression where, String alias, List<String> qualified) throws SQLException {
+        List<String> columns = new ArrayList<>();
+        for (String column : qualified) {
+            columns.add(column.substring(alias.length() + 1));
+        }
+        return tables.prepare(schema, table, where, columns, qualified);
+    }
+
+    /**
+     * @return whether both tables tell their size and the first one is smaller
+     */
+    private static boolean smaller(ResultSet first, ResultSet second) {
+        if (!(first instanceof CountableRows) || !(second instanceof CountableRows)) {
+            return false;
+        }
+        long a = ((CountableRows) first).estimateRows();
+        long b = ((CountableRows) second).estimateRows();
+        return a >= 0 && b >= 0 && a < b;
+    }
+
+    private static PreparedFilter prepare(ParsedExpression condition, List<String> names)
+            throws SQLException {
+        return condition != null ? RowFilters.prepare(condition, names, null) : null;
+    }
+
+    private static RowFilter bind(PreparedFilter filter, List<Object> parameters)
+            throws SQLException {
+        return filter != null ? filter.bind(parameters) : null;
+    }
+
+    private static List<Integer> typesOf(ResultSetMetaData metadata) throws SQLException {
+        List<Integer> types = new ArrayList<>();
+        for (int i = 1; i <= metadata.getColumnCount(); i++) {
+            types.add(metadata.getColumnType(i));
+        }
+        return types;
+    }
+
+    /**
+     * @return the index of the table of a qualified column
+     */
+    private static int tableOf(List<String> aliases, String column) throws SQLException {
+        for (int i = 0; i < aliases.size(); i++) {
+            String alias = aliases.get(i);
+            if (column.regionMatches(true, 0, alias + ".", 0, alias.length() + 1)) {
+                return i;
+            }
+        }
+        throw new SQLException("Column " + column + " is not qualified by one of " + aliases);
+    }
+
+    private static void splitConjunction(ParsedExpression condition,
+            List<ParsedExpression> conditions) {
+        if (condition.getOperator() == Operator.AND) {
+            for (ParsedExpression operand : condition.getOperands()) {
+                splitConjunction(operand, conditions);
+            }
+        } else {
+            conditions.add(condition);
+        }
+    }
+
+    private static ParsedExpression and(ParsedExpression a, ParsedExpression b) {
+        return a == null ? b : ParsedExpression.of(Operator.AND, a, b);
+    }
+
+    /**
+     * @return the condition on the columns of a single table, with their names unqualified
+     */
+    private static ParsedExpression unqualify(ParsedExpression expression, String alias) {
+        if (expression.getOperator() == Operator.COLUMN) {
+            return ParsedExpression.column(
+                    ((String) expression.getValue()).substring(alias.length() + 1));
+        }
+        List<ParsedExpression> operands = expression.getOperands();
+        if (operands.isEmpty()) {
+            return expression;
+        }
+        ParsedExpression[] replaced = new ParsedExpression[operands.size()];
+        for (int i = 0; i < replaced.length; i++) {
+            replaced[i] = unqualify(operands.get(i), alias);
+        }
+        return ParsedExpression.of(expression.getOperator(), replaced);
+    }
+
+    private static Comparator<Object[]> order(List<OrderBy> orderBy, int[] keys) {
+        boolean[] ascending = new boolean[keys.length];
+        boolean[] nullsFirst = new boolean[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            ascending[i] = orderBy.get(i).isAscending();
+            nullsFirst[i] = orderBy.get(i).isNullsFirst();
+        }
+        return Rows.comparator(keys, ascending, nullsFirst);
+    }
+
+    /**
+     * Sorts all rows, or keeps the first ones only if the statement has a limit.
+     */
+    private static RowSource sort(RowSource rows, Comparator<Object[]> order, Long limit,
+            long offset, QuerySettings settings) throws SQLException {
+        if (limit != null) {
+            try (TopN top = new TopN(order, count(limit, offset), settings.getMemory())) {
+                top.addAll(rows);
+                return top.sort();
+            }
+        }
+        try (ExternalSort sort = new ExternalSort(order, settings.getMemory())) {
+            sort.addAll(rows);
+            return sort.sort();
+        }
+    }
+
+    /**
+     * @return the number of rows skipped and returned, saturated on overflow
+     */
+    private static long count(long limit, long offset) {
+        long count = limit + offset;
+        return count < 0 ? Long.MAX_VALUE : count;
+    }
+
+    private static String columnOf(OrderBy key) {
+        ParsedExpression expression = key.getExpression();
+        return expression.getOperator() == ParsedExpression.Operator.COLUMN
+                ? (String) expression.getValue()
+                : null;
+    }
+
+    /**
+     * @return the zero based position of the sort key in the rows
+     */
+    private static int resolve(OrderBy key, ResultSetMetaData metadata, int selected,
+            List<String> columns) throws SQLException {
+        int position = key.getPosition();
+        if (position > 0) {
+            if (position > selected) {
+                throw new SQLException("ORDER BY position " + position
+                        + " is not in the select list of " + selected + " columns.");
+            }
+            return position - 1;
+        }
+        String name = columnOf(key);
+        List<String> labels = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (int i = 1; i <= metadata.getColumnCount(); i++) {
+            labels.add(metadata.getColumnLabel(i));
+            names.add(metadata.getColumnName(i));
+        }
+        int index = indexOf(labels, name);
+        if (index < 0) {
+            index = indexOf(names, name);
+        }
+        if (index < 0 && columns != null) {
+            index = indexOf(columns, name);
+        }
+        if (index < 0) {
+            throw new SQLException("ORDER BY column " + name + " not found. Available Columns are "
+                    + labels.subList(0, selected));
+        }
+        return index;
+    }
+
+    /**
+     * @param projection the positions in the group rows of the selected items, extended by the
+     *        sort key if it is not selected
+     * @return the zero based position of the sort key in the projected rows
+     */
+    private static int resolve(OrderBy key, List<ParsedExpression> items, List<String> labels,
+            List<String> groupBy, List<ParsedExpression> aggregates, List<Integer> projection)
+            throws SQLException {
+        int position = key.getPosition();
+        if (position > 0) {
+            if (position > items.size()) {
+                throw new SQLException("ORDER BY position " + position
+                        + " is not in the select list of " + items.size() + " columns.");
+            }
+            return position - 1;
+        }
+        ParsedExpression expression = key.getExpression();
+        int group;
+        if (expression.isAggregate()) {
+            int index = items.indexOf(expression);
+            if (index >= 0) {
+                return index;
+            }
+            group = groupBy.size() + aggregates.indexOf(expression);
+        } else {
+            String name = columnOf(key);
+            int index = indexOf(labels, name);
+            if (index >= 0) {
+                return index;
+            }
+            group = indexOf(groupBy, name);
+            if (group < 0) {
+                throw new SQLException("ORDER BY column " + name
+                        + " is neither selected nor grouped by. Available Columns are " + labels);
+            }
+        }
+        int index = projection.indexOf(group);
+        if (index < 0) {
+            index = projection.size();
+            projection.add(group);
+        }
+        return index;
+    }
+
+    /**
+     * @return the SQL type of the result of an aggregate function
+     */
+    private static int typeOf(ParsedExpression aggregate, ResultSetMetaData metadata,
+            List<String> columns) throws SQLException {
+        switch (aggregate.getOperator()) {
+            case COUNT:
+                return Types.BIGINT;
+            case SUM:
+            case AVG:
+                return Types.DOUBLE;
+            default:
+                return metadata.getColumnType(
+                        indexOf(columns, aggregate.getColumns().get(0)) + 1);
+        }
+    }
+
+    /**
+     * @return the condition with each aggregate function replaced by the column of its result,
+     *         named after the function
+     */
+    private static ParsedExpression replaceAggregates(ParsedExpression expression) {
+        if (expression.isAggregate()) {
+            return ParsedExpression.column(expression.toString());
+        }
+        List<ParsedExpression> operands = expression.getOperands();
+        if (operands.isEmpty()) {
+            return expression;
+        }
+        ParsedExpression[] replaced = new ParsedExpression[operands.size()];
+        for (int i = 0; i < replaced.length; i++) {
+            replaced[i] = replaceAggregates(operands.get(i));
+        }
+        return ParsedExpression.of(expression.getOperator(), replaced);
+    }
+
+    private static int indexOf(List<String> names, String name) {
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(name)
+                    || names.get(i).equalsIgnoreCase(name.replace('_', ' '))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
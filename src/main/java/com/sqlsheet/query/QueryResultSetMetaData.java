@@ -0,0 +1,217 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import com.sqlsheet.XlsResultSetMetaData;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Metadata of a {@link QueryResultSet}, holding the label, name and type of each column.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public class QueryResultSetMetaData implements ResultSetMetaData {
+
+    private final List<String> labels;
+    private final List<String> names;
+    private final List<Integer> types;
+
+    public QueryResultSetMetaData(List<String> labels, List<String> names, List<Integer> types) {
+        if (labels.size() != names.size() || labels.size() != types.size()) {
+            throw new IllegalArgumentException("Columns differ in number");
+        }
+        this.labels = Collections.unmodifiableList(new ArrayList<>(labels));
+        this.names = Collections.unmodifiableList(new ArrayList<>(names));
+        this.types = Collections.unmodifiableList(new ArrayList<>(types));
+    }
+
+    /**
+     * @param metadata the metadata of the result set the rows are read from
+     * @param columnCount the number of leading columns to keep
+     * @return the metadata of these columns
+     */
+    public static QueryResultSetMetaData of(ResultSetMetaData metadata, int columnCount)
+            throws SQLException {
+        List<String> labels = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        List<Integer> types = new ArrayList<>();
+        for (int i = 1; i <= columnCount; i++) {
+            labels.add(metadata.getColumnLabel(i));
+            names.add(metadata.getColumnName(i));
+            types.add(metadata.getColumnType(i));
+        }
+        return new QueryResultSetMetaData(labels, names, types);
+    }
+
+    /**
+     * @param label a column label or name, ignoring case
+     * @return the one based index of the column, or {@code 0} if there is none
+     */
+    int findColumn(String label) {
+        for (int i = 0; i < labels.size(); i++) {
+            if (labels.get(i).equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        for (int i = 0; i < names.size(); i++) {
+            if (names.get(i).equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    private void check(int column) throws SQLException {
+        if (column < 1 || column > labels.size()) {
+            throw new SQLException("Column " + column + " does not exist, there are "
+                    + labels.size() + " columns.");
+        }
+    }
+
+    @Override
+    public int getColumnCount() {
+        return labels.size();
+    }
+
+    @Override
+    public String getColumnLabel(int column) throws SQLException {
+        check(column);
+        return labels.get(column - 1);
+    }
+
+    @Override
+    public String getColumnName(int column) throws SQLException {
+        check(column);
+        return names.get(column - 1);
+    }
+
+    @Override
+    public int getColumnType(int column) throws SQLException {
+        check(column);
+        return types.get(column - 1);
+    }
+
+    @Override
+    public String getColumnTypeName(int column) throws SQLException {
+        int type = getColumnType(column);
+        String name = XlsResultSetMetaData.COLUMN_TYPE_NAMES.get(type);
+        if (name != null) {
+            return name;
+        }
+        return type == Types.BIGINT ? "BIGINT" : type == Types.BOOLEAN ? "BOOLEAN" : "OTHER";
+    }
+
+    @Override
+    public String getColumnClassName(int column) throws SQLException {
+        int type = getColumnType(column);
+        String name = XlsResultSetMetaData.COLUMN_TYPE_CLASSES.get(type);
+        if (name != null) {
+            return name;
+        }
+        return type == Types.BIGINT
+                ? "java.lang.Long.class"
+                : type == Types.BOOLEAN ? "java.lang.Boolean.class" : "java.lang.Object.class";
+    }
+
+    @Override
+    public boolean isAutoIncrement(int column) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isCaseSensitive(int column) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isSearchable(int column) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isCurrency(int column) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public int isNullable(int column) throws SQLException {
+        return columnNullableUnknown;
+    }
+
+    @Override
+    public boolean isSigned(int column) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public int getColumnDisplaySize(int column) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public String getSchemaName(int column) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public int getPrecision(int column) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public int getScale(int column) throws SQLException {
+        return 0;
+    }
+
+    @Override
+    public String getTableName(int column) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public String getCatalogName(int column) throws SQLException {
+        return null;
+    }
+
+    @Override
+    public boolean isReadOnly(int column) throws SQLException {
+        return true;
+    }
+
+    @Override
+    public boolean isWritable(int column) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isDefinitelyWritable(int column) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return false;
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        return null;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import com.sqlsheet.XlsDriver;
+
+import java.util.Properties;
+
+/**
+ * Settings of the operators executing a query on top of the rows of a sheet, read from the
+ * connection properties.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class QuerySettings {
+
+    public static final long DEFAULT_MEMORY = 64L * 1024 * 1024;
+
+    private final long memory;
+
+    public QuerySettings(Properties info) {
+        Object value = info != null ? info.get(XlsDriver.QUERY_MEMORY) : null;
+        this.memory = value != null ? Long.parseLong(value.toString().trim()) : DEFAULT_MEMORY;
+        if (memory <= 0) {
+            throw new IllegalArgumentException(XlsDriver.QUERY_MEMORY + " must be positive: "
+                    + memory);
+        }
+    }
+
+    /**
+     * @return the estimated heap in bytes the rows held by one operator may take before it spills
+     *         them to temporary files
+     */
+    public long getMemory() {
+        return memory;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads the rows of a result set, e.g. a {@code XlsResultSet} or {@code XlsStreamResultSet}, as
+ * the input of the query operators.
+ *
+ * <p>
+ * Cells not matching the type profiled for their column are read as text.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class ResultSetRowSource implements RowSource {
+
+    private final ResultSet resultSet;
+    private final int columnCount;
+
+    public ResultSetRowSource(ResultSet resultSet) throws SQLException {
+        this.resultSet = resultSet;
+        this.columnCount = resultSet.getMetaData().getColumnCount();
+    }
+
+    @Override
+    public Object[] next() throws SQLException {
+        if (!resultSet.next()) {
+            return null;
+        }
+        Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            try {
+                row[i] = resultSet.getObject(i + 1);
+            } catch (SQLException e) {
+                row[i] = resultSet.getString(i + 1);
+            }
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        resultSet.close();
+    }
+}
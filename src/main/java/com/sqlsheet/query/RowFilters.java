@@ -0,0 +1,630 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import com.sqlsheet.XlsResultSetMetaData;
+import com.sqlsheet.parser.ParsedExpression;
+import com.sqlsheet.parser.ParsedExpression.Operator;
+import org.apache.poi.ss.usermodel.DateUtil;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles WHERE conditions into {@link RowFilter}s.
+ *
+ * <p>
+ * A condition is compiled once into a tree of method handles, which the JIT inlines like
+ * generated code, and kept in the {@link FilterCache} by its normalized SQL. The handles read
+ * columns and parameters from slots, so the same compiled condition serves any table and any
+ * parameter values: compiling a filter only resolves the column names into a
+ * {@link PreparedFilter}, which converts the parameters to the representation of
+ * {@link CellValues} when they are bound. Literals are converted once, at compile time, and a
+ * column compared with a numeric literal is read as a primitive double.
+ *
+ * <p>
+ * Evaluating a row therefore only reads the cells the condition refers to, and dates are compared
+ * as Excel serial numbers without converting any cell. Comparisons with a blank cell are unknown,
+ * as comparisons with SQL NULL, so rows with blank cells only pass conditions like
+ * {@code IS NULL}. A text cell compared with a number or a boolean is read as one if it can be.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class RowFilters {
+
+    /*
+     * Truth values of the three-valued logic, ordered so that AND is the minimum and OR the
+     * maximum.
+     */
+    private static final int FALSE = 0;
+    private static final int UNKNOWN = 1;
+    static final int TRUE = 2;
+
+    /** The order of two values that cannot be compared. */
+    private static final int UNORDERED = Integer.MIN_VALUE;
+
+    /* The orders a comparison accepts. */
+    private static final int LESS = 1;
+    private static final int EQUAL = 2;
+    private static final int GREATER = 4;
+
+    /** A value of the row, reading columns and parameters from their slots. */
+    private static final MethodType VALUE =
+            MethodType.methodType(Object.class, CellValues.class, int[].class, Object[].class);
+    /** A truth value of the row, reading columns and parameters from their slots. */
+    private static final MethodType CONDITION = VALUE.changeReturnType(int.class);
+
+    private static final MethodHandle COLUMN =
+            find("column", Object.class, CellValues.class, int[].class, int.class);
+    private static final MethodHandle PARAMETER =
+            find("parameter", Object.class, Object[].class, int.class);
+    private static final MethodHandle COMPARE = find("compare", int.class, Object.class,
+            Object.class);
+    private static final MethodHandle COMPARE_NUMBER =
+            find("compareNumber", int.class, Object.class, double.class);
+    private static final MethodHandle COMPARE_COLUMN = find("compareColumn", int.class,
+            CellValues.class, int[].class, int.class, double.class);
+    private static final MethodHandle TRUTH = find("truth", int.class, int.class, int.class);
+    private static final MethodHandle IS_NULL = find("isNull", int.class, Object.class);
+    private static final MethodHandle IS_NOT_NULL = find("isNotNull", int.class, Object.class);
+    private static final MethodHandle TO_BOOLEAN = find("toBoolean", int.class, Object.class);
+    private static final MethodHandle NOT = find("not", int.class, int.class);
+    private static final MethodHandle MIN = find("min", int.class, int.class, int.class);
+    private static final MethodHandle MAX = find("max", int.class, int.class, int.class);
+    private static final MethodHandle EQUALS = find("equals", boolean.class, int.class, int.class);
+    private static final MethodHandle IN = find("in", int.class, Object.class, Object[].class);
+    private static final MethodHandle BETWEEN =
+            find("between", int.class, Object.class, Object.class, Object.class);
+    private static final MethodHandle LIKE = find("like", int.class, Object.class, Object.class);
+    private static final MethodHandle NEGATE = find("negate", Object.class, Object.class);
+    private static final MethodHandle ADD = find("add", Object.class, Object.class, Object.class);
+    private static final MethodHandle SUBTRACT =
+            find("subtract", Object.class, Object.class, Object.class);
+    private static final MethodHandle MULTIPLY =
+            find("multiply", Object.class, Object.class, Object.class);
+    private static final MethodHandle DIVIDE =
+            find("divide", Object.class, Object.class, Object.class);
+
+    private final List<String> columns = new ArrayList<>();
+    private final BitSet parameters = new BitSet();
+    private final BitSet patterns = new BitSet();
+
+    private RowFilters() {
+    }
+
+    /**
+     * @param where the condition
+     * @param names the names of the columns the condition may refer to
+     * @param sheetColumns the sheet column of each name, relative to the first column of the
+     *        table, or {@code null} if it is the position of the name
+     * @param parameters the values of the JDBC parameters, may be {@code null} without parameters
+     * @return the filter accepting the rows the condition is true for
+     * @throws SQLException if a column or a parameter value is missing, or the condition is not
+     *         supported
+     */
+    public static RowFilter compile(ParsedExpression where, List<String> names,
+            int[] sheetColumns, List<Object> parameters) throws SQLException {
+        return prepare(where, names, sheetColumns).bind(parameters);
+    }
+
+    /**
+     * Compiles a condition for the columns of a table, leaving its parameters to be bound.
+     *
+     * @param where the condition
+     * @param names the names of the columns the condition may refer to
+     * @param sheetColumns the sheet column of each name, relative to the first column of the
+     *        table, or {@code null} if it is the position of the name
+     * @return the filter to bind the parameters of
+     * @throws SQLException if a column is missing, or the condition is not supported
+     */
+    public static PreparedFilter prepare(ParsedExpression where, List<String> names,
+            int[] sheetColumns) throws SQLException {
+        return compile(where).prepare(names, sheetColumns);
+    }
+
+    /**
+     * @param where the condition
+     * @return the compiled condition, from the {@link FilterCache} if it was compiled before
+     * @throws SQLException if the condition is not supported
+     */
+    static CompiledCondition compile(ParsedExpression where) throws SQLException {
+        FilterCache cache = FilterCache.getInstance();
+        String key = where.toString();
+        CompiledCondition compiled = cache.get(key);
+        if (compiled == null) {
+            RowFilters compiler = new RowFilters();
+            compiled = new CompiledCondition(compiler.condition(where), compiler.columns,
+                    compiler.parameters, compiler.patterns);
+            cache.put(key, compiled);
+        }
+        return compiled;
+    }
+
+    /**
+     * A condition compiled independently of the columns of a table and of parameter values.
+     */
+    static final class CompiledCondition {
+
+        private final MethodHandle condition;
+        private final List<String> columns;
+        private final BitSet parameters;
+        private final BitSet patterns;
+
+        private CompiledCondition(MethodHandle condition, List<String> columns,
+                BitSet parameters, BitSet patterns) {
+            this.condition = condition;
+            this.columns = Collections.unmodifiableList(new ArrayList<>(columns));
+            this.parameters = (BitSet) parameters.clone();
+            this.patterns = (BitSet) patterns.clone();
+        }
+
+        /**
+         * @return the distinct column names the condition refers to, in the order of their slots
+         */
+        List<String> getColumns() {
+            return columns;
+        }
+
+        /**
+         * Binds the columns of a table to the slots of the condition.
+         *
+         * @see RowFilters#prepare(ParsedExpression, List, int[])
+         */
+        PreparedFilter prepare(List<String> names, int[] sheetColumns) throws SQLException {
+            int[] slots = XlsResultSetMetaData.resolveColumns(names, columns);
+            if (sheetColumns != null) {
+                for (int i = 0; i < slots.length; i++) {
+                    slots[i] = sheetColumns[slots[i]];
+                }
+            }
+            return new PreparedFilter(MethodHandles.insertArguments(condition, 1, slots),
+                    (BitSet) parameters.clone(), (BitSet) patterns.clone());
+        }
+    }
+
+    @SuppressWarnings("PMD.NPathComplexity")
+    private MethodHandle condition(ParsedExpression exp) throws SQLException {
+        List<ParsedExpression> operands = exp.getOperands();
+        switch (exp.getOperator()) {
+            case AND:
+                return shortCircuit(condition(operands.get(0)), condition(operands.get(1)),
+                        FALSE, MIN);
+            case OR:
+                return shortCircuit(condition(operands.get(0)), condition(operands.get(1)),
+                        TRUE, MAX);
+            case NOT:
+                return apply(NOT, condition(operands.get(0)));
+            case EQUALS:
+            case NOT_EQUALS:
+            case LESS_THAN:
+            case LESS_THAN_OR_EQUALS:
+            case GREATER_THAN:
+            case GREATER_THAN_OR_EQUALS:
+                return comparison(exp.getOperator(), operands.get(0), operands.get(1));
+            case IS_NULL:
+                return apply(IS_NULL, value(operands.get(0)));
+            case IS_NOT_NULL:
+                return apply(IS_NOT_NULL, value(operands.get(0)));
+            case LIKE:
+                return like(operands.get(0), operands.get(1));
+            case NOT_LIKE:
+                return apply(NOT, like(operands.get(0), operands.get(1)));
+            case IN:
+                return in(operands);
+            case NOT_IN:
+                return apply(NOT, in(operands));
+            case BETWEEN:
+                return between(operands);
+            case NOT_BETWEEN:
+                return apply(NOT, between(operands));
+            case COLUMN:
+            case LITERAL:
+            case PARAMETER:
+                return apply(TO_BOOLEAN, value(exp));
+            default:
+                throw new SQLFeatureNotSupportedException("Not a condition: " + exp);
+        }
+    }
+
+    private MethodHandle value(ParsedExpression exp) throws SQLException {
+        List<ParsedExpression> operands = exp.getOperands();
+        switch (exp.getOperator()) {
+            case COLUMN:
+                return MethodHandles.dropArguments(
+                        MethodHandles.insertArguments(COLUMN, 2, slot(exp)), 2, Object[].class);
+            case LITERAL:
+                return constant(toCellValue(exp.getValue()));
+            case PARAMETER: {
+                int index = (Integer) exp.getValue();
+                parameters.set(index);
+                return MethodHandles.dropArguments(MethodHandles.insertArguments(PARAMETER, 1,
+                        index), 0, CellValues.class, int[].class);
+            }
+            case NEGATE:
+                return apply(NEGATE, value(operands.get(0)));
+            case ADD:
+                return apply(ADD, value(operands.get(0)), value(operands.get(1)));
+            case SUBTRACT:
+                return apply(SUBTRACT, value(operands.get(0)), value(operands.get(1)));
+            case MULTIPLY:
+                return apply(MULTIPLY, value(operands.get(0)), value(operands.get(1)));
+            case DIVIDE:
+                return apply(DIVIDE, value(operands.get(0)), value(operands.get(1)));
+            default:
+                throw new SQLFeatureNotSupportedException("Not a value: " + exp);
+        }
+    }
+
+    private int slot(ParsedExpression column) {
+        String name = (String) column.getValue();
+        int slot = columns.indexOf(name);
+        if (slot < 0) {
+            slot = columns.size();
+            columns.add(name);
+        }
+        return slot;
+    }
+
+    private MethodHandle comparison(Operator operator, ParsedExpression left,
+            ParsedExpression right) throws SQLException {
+        int accepted = accepted(operator);
+        if (isNumber(left) && !isNumber(right)) {
+            // mirrored, so that the numeric literal is on the right
+            ParsedExpression swap = left;
+            left = right;
+            right = swap;
+            accepted = (accepted & EQUAL) | ((accepted & LESS) << 2) | ((accepted & GREATER) >> 2);
+        }
+        MethodHandle truth = MethodHandles.insertArguments(TRUTH, 1, accepted);
+        if (!isNumber(right)) {
+            return apply(truth, apply(COMPARE, value(left), value(right)));
+        }
+        double number = (Double) toCellValue(right.getValue());
+        if (left.getOperator() == Operator.COLUMN) {
+            // read without boxing the cell value
+            MethodHandle compare = MethodHandles.insertArguments(COMPARE_COLUMN, 2, slot(left),
+                    number);
+            return MethodHandles.filterReturnValue(
+                    MethodHandles.dropArguments(compare, 2, Object[].class), truth);
+        }
+        return apply(truth, apply(MethodHandles.insertArguments(COMPARE_NUMBER, 1, number),
+                value(left)));
+    }
+
+    private static boolean isNumber(ParsedExpression exp) {
+        return exp.getOperator() == Operator.LITERAL
+                && toCellValue(exp.getValue()) instanceof Double;
+    }
+
+    private static int accepted(Operator operator) {
+        switch (operator) {
+            case EQUALS:
+                return EQUAL;
+            case NOT_EQUALS:
+                return LESS | GREATER;
+            case LESS_THAN:
+                return LESS;
+            case LESS_THAN_OR_EQUALS:
+                return LESS | EQUAL;
+            case GREATER_THAN:
+                return GREATER;
+            default:
+                return GREATER | EQUAL;
+        }
+    }
+
+    private MethodHandle in(List<ParsedExpression> operands) throws SQLException {
+        MethodHandle[] values = new MethodHandle[operands.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = value(operands.get(i));
+        }
+        return apply(IN.asCollector(Object[].class, values.length - 1), values);
+    }
+
+    private MethodHandle between(List<ParsedExpression> operands) throws SQLException {
+        return apply(BETWEEN, value(operands.get(0)), value(operands.get(1)),
+                value(operands.get(2)));
+    }
+
+    private MethodHandle like(ParsedExpression operand, ParsedExpression pattern)
+            throws SQLException {
+        MethodHandle patternValue;
+        if (pattern.getOperator() == Operator.LITERAL) {
+            Object constant = toCellValue(pattern.getValue());
+            patternValue = constant(constant instanceof String
+                    ? likePattern((String) constant)
+                    : null);
+        } else {
+            if (pattern.getOperator() == Operator.PARAMETER) {
+                // compiled when the parameter is bound
+                patterns.set((Integer) pattern.getValue());
+            }
+            patternValue = value(pattern);
+        }
+        return apply(LIKE, value(operand), patternValue);
+    }
+
+    private static MethodHandle constant(Object value) {
+        return MethodHandles.dropArguments(MethodHandles.constant(Object.class, value), 0,
+                VALUE.parameterList());
+    }
+
+    /**
+     * @param function a function of as many arguments as there are operands
+     * @param operands values or conditions of the row
+     * @return the function of the operands, a value or condition of the row
+     */
+    private static MethodHandle apply(MethodHandle function, MethodHandle... operands) {
+        MethodHandle applied = function;
+        for (int i = operands.length - 1; i >= 0; i--) {
+            applied = MethodHandles.collectArguments(applied, i, operands[i]);
+        }
+        int[] reorder = new int[operands.length * VALUE.parameterCount()];
+        for (int i = 0; i < reorder.length; i++) {
+            reorder[i] = i % VALUE.parameterCount();
+        }
+        return MethodHandles.permuteArguments(applied,
+                VALUE.changeReturnType(function.type().returnType()), reorder);
+    }
+
+    /**
+     * @return the condition evaluating {@code right} only if {@code left} is not {@code stop}
+     */
+    private static MethodHandle shortCircuit(MethodHandle left, MethodHandle right, int stop,
+            MethodHandle merge) {
+        // (left, row, columns, parameters)
+        MethodHandle merged = MethodHandles.collectArguments(merge, 1, right);
+        MethodHandle stopped = MethodHandles.dropArguments(
+                MethodHandles.constant(int.class, stop), 0, merged.type().parameterList());
+        MethodHandle test = MethodHandles.dropArguments(
+                MethodHandles.insertArguments(EQUALS, 1, stop), 1, VALUE.parameterList());
+        return MethodHandles.foldArguments(
+                MethodHandles.guardWithTest(test, stopped, merged), left);
+    }
+
+    private static MethodHandle find(String name, Class<?> type, Class<?>... parameterTypes) {
+        try {
+            return MethodHandles.lookup().findStatic(RowFilters.class, name,
+                    MethodType.methodType(type, parameterTypes));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Object column(CellValues row, int[] columns, int slot) {
+        return row.getValue(columns[slot]);
+    }
+
+    private static Object parameter(Object[] parameters, int index) {
+        return parameters[index];
+    }
+
+    private static int compareColumn(CellValues row, int[] columns, int slot, double number) {
+        double value = row.getNumber(columns[slot]);
+        return Double.isNaN(value)
+                ? compareNumber(row.getValue(columns[slot]), number)
+                : Double.compare(value, number);
+    }
+
+    private static int compareNumber(Object a, double number) {
+        if (a instanceof Double) {
+            return Double.compare((Double) a, number);
+        } else if (a instanceof String) {
+            try {
+                return Double.compare(Double.parseDouble(((String) a).trim()), number);
+            } catch (NumberFormatException e) {
+                return UNORDERED;
+            }
+        }
+        return UNORDERED;
+    }
+
+    private static int truth(int order, int accepted) {
+        if (order == UNORDERED) {
+            return UNKNOWN;
+        }
+        int found = order < 0 ? LESS : order == 0 ? EQUAL : GREATER;
+        return (accepted & found) != 0 ? TRUE : FALSE;
+    }
+
+    private static int isNull(Object v) {
+        return v == null ? TRUE : FALSE;
+    }
+
+    private static int isNotNull(Object v) {
+        return v != null ? TRUE : FALSE;
+    }
+
+    private static int not(int a) {
+        return TRUE - a;
+    }
+
+    private static int min(int a, int b) {
+        return Math.min(a, b);
+    }
+
+    private static int max(int a, int b) {
+        return Math.max(a, b);
+    }
+
+    private static boolean equals(int a, int b) {
+        return a == b;
+    }
+
+    private static int in(Object v, Object[] items) {
+        if (v == null) {
+            return UNKNOWN;
+        }
+        int result = FALSE;
+        for (Object item : items) {
+            int c = compare(v, item);
+            if (c == UNORDERED) {
+                result = UNKNOWN;
+            } else if (c == 0) {
+                return TRUE;
+            }
+        }
+        return result;
+    }
+
+    private static int between(Object v, Object low, Object high) {
+        return Math.min(truth(compare(v, low), GREATER | EQUAL),
+                truth(compare(v, high), LESS | EQUAL));
+    }
+
+    /**
+     * @param pattern a {@link Pattern} compiled before, or the text of one read from the row
+     */
+    private static int like(Object v, Object pattern) {
+        if (!(v instanceof String)) {
+            return UNKNOWN;
+        } else if (pattern instanceof Pattern) {
+            return ((Pattern) pattern).matcher((String) v).matches() ? TRUE : FALSE;
+        } else if (pattern instanceof String) {
+            return likePattern((String) pattern).matcher((String) v).matches() ? TRUE : FALSE;
+        }
+        return UNKNOWN;
+    }
+
+    private static Object negate(Object v) {
+        return v instanceof Double ? -(Double) v : null;
+    }
+
+    private static Object add(Object l, Object r) {
+        return l instanceof Double && r instanceof Double ? (Double) l + (Double) r : null;
+    }
+
+    private static Object subtract(Object l, Object r) {
+        return l instanceof Double && r instanceof Double ? (Double) l - (Double) r : null;
+    }
+
+    private static Object multiply(Object l, Object r) {
+        return l instanceof Double && r instanceof Double ? (Double) l * (Double) r : null;
+    }
+
+    private static Object divide(Object l, Object r) {
+        return l instanceof Double && r instanceof Double && (Double) r != 0
+                ? (Double) l / (Double) r
+                : null;
+    }
+
+    private static int toBoolean(Object v) {
+        Boolean b = v instanceof Boolean
+                ? (Boolean) v
+                : v instanceof String ? parseBoolean((String) v) : null;
+        return b == null ? UNKNOWN : b ? TRUE : FALSE;
+    }
+
+    private static Boolean parseBoolean(String s) {
+        if ("TRUE".equalsIgnoreCase(s.trim())) {
+            return Boolean.TRUE;
+        }
+        return "FALSE".equalsIgnoreCase(s.trim()) ? Boolean.FALSE : null;
+    }
+
+    /**
+     * @return the order of two cell values, or {@link #UNORDERED} if unknown
+     */
+    static int compare(Object a, Object b) {
+        if (a == null || b == null) {
+            return UNORDERED;
+        } else if (a instanceof Double && b instanceof Double) {
+            return Double.compare((Double) a, (Double) b);
+        } else if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b);
+        } else if (a instanceof Boolean && b instanceof Boolean) {
+            return Boolean.compare((Boolean) a, (Boolean) b);
+        } else if (a instanceof String) {
+            Object converted = convert((String) a, b);
+            return converted != null ? compare(converted, b) : UNORDERED;
+        } else if (b instanceof String) {
+            Object converted = convert((String) b, a);
+            return converted != null ? compare(a, converted) : UNORDERED;
+        }
+        return UNORDERED;
+    }
+
+    private static Object convert(String s, Object like) {
+        if (like instanceof Double) {
+            try {
+                return Double.valueOf(s.trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return like instanceof Boolean ? parseBoolean(s) : null;
+    }
+
+    /**
+     * @param value a literal or parameter value
+     * @return the value as {@link CellValues} holds it
+     */
+    static Object toCellValue(Object value) {
+        if (value == null || value instanceof Double || value instanceof String
+                || value instanceof Boolean) {
+            return value;
+        } else if (value instanceof Number) {
+            return ((Number) value).doubleValue();
+        } else if (value instanceof java.sql.Time) {
+            return dayFraction(((java.sql.Time) value).toLocalTime());
+        } else if (value instanceof java.time.LocalTime) {
+            return dayFraction((java.time.LocalTime) value);
+        } else if (value instanceof java.util.Date) {
+            return DateUtil.getExcelDate((java.util.Date) value);
+        } else if (value instanceof java.time.LocalDate) {
+            return DateUtil.getExcelDate((java.time.LocalDate) value);
+        } else if (value instanceof java.time.LocalDateTime) {
+            return DateUtil.getExcelDate((java.time.LocalDateTime) value);
+        } else if (value instanceof char[]) {
+            return new String((char[]) value);
+        }
+        return value.toString();
+    }
+
+    /**
+     * A time of day is stored as the fraction of the day, without the date of 1970 a
+     * {@link java.sql.Time} carries.
+     */
+    private static double dayFraction(java.time.LocalTime time) {
+        return time.toNanoOfDay() / (DateUtil.SECONDS_PER_DAY * 1e9);
+    }
+
+    static Pattern likePattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        for (char c : like.toCharArray()) {
+            if (c == '%' || c == '_') {
+                if (literal.length() > 0) {
+                    regex.append(Pattern.quote(literal.toString()));
+                    literal.setLength(0);
+                }
+                regex.append(c == '%' ? ".*" : ".");
+            } else {
+                literal.append(c);
+            }
+        }
+        if (literal.length() > 0) {
+            regex.append(Pattern.quote(literal.toString()));
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+}
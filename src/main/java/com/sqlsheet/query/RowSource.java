@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.SQLException;
+
+/**
+ * Forward only source of rows flowing between the operators of a query. A row is an array of
+ * values, each a {@code Double}, {@code Long}, {@code String}, {@code Boolean},
+ * {@code java.util.Date} or {@code null}. Rows may carry more values than the query selects.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public interface RowSource extends AutoCloseable {
+
+    /**
+     * @return the next row, or {@code null} at the end
+     * @throws SQLException if the row cannot be read
+     */
+    Object[] next() throws SQLException;
+
+    /**
+     * Releases the rows not read and whatever holds them, e.g. temporary files.
+     */
+    @Override
+    void close() throws SQLException;
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.SQLException;
+import java.util.Comparator;
+
+/**
+ * Ordering and sizing of the rows of a {@link RowSource}.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class Rows {
+
+    /** Rough heap cost of a row array and its entry in a list. */
+    static final long ROW_BYTES = 32;
+    /** Rough heap cost of a boxed number or date. */
+    static final long VALUE_BYTES = 24;
+    /** Rough heap cost of a string besides its characters. */
+    static final long STRING_BYTES = 48;
+
+    private Rows() {}
+
+    /**
+     * Orders non null values of any type: numbers by value, then dates, strings and booleans,
+     * values of different types by that rank.
+     *
+     * @return a negative number, zero or a positive number as the first value is less than, equal
+     *         to or greater than the second
+     */
+    public static int compareValues(Object a, Object b) {
+        int rank = rank(a);
+        int difference = rank - rank(b);
+        if (difference != 0) {
+            return difference;
+        }
+        switch (rank) {
+            case 0:
+                if (a instanceof Long && b instanceof Long) {
+                    return Long.compare((Long) a, (Long) b);
+                }
+                return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+            case 1:
+                return Long.compare(((java.util.Date) a).getTime(),
+                        ((java.util.Date) b).getTime());
+            case 2:
+                return ((String) a).compareTo((String) b);
+            default:
+                return Boolean.compare((Boolean) a, (Boolean) b);
+        }
+    }
+
+    private static int rank(Object value) {
+        if (value instanceof Number) {
+            return 0;
+        } else if (value instanceof java.util.Date) {
+            return 1;
+        } else if (value instanceof String) {
+            return 2;
+        }
+        return 3;
+    }
+
+    /**
+     * @param columns the zero based positions of the sort keys in the row
+     * @param ascending the direction of each key
+     * @param nullsFirst whether nulls come before the values of each key
+     * @return the comparator of the rows
+     */
+    public static Comparator<Object[]> comparator(int[] columns, boolean[] ascending,
+            boolean[] nullsFirst) {
+        int[] keys = columns.clone();
+        boolean[] asc = ascending.clone();
+        boolean[] first = nullsFirst.clone();
+        return (a, b) -> {
+            for (int i = 0; i < keys.length; i++) {
+                Object x = a[keys[i]];
+                Object y = b[keys[i]];
+                int c;
+                if (x == null || y == null) {
+                    if (x == y) {
+                        continue;
+                    }
+                    c = x == null == first[i] ? -1 : 1;
+                } else {
+                    c = compareValues(x, y);
+                    if (!asc[i]) {
+                        c = -c;
+                    }
+                }
+                if (c != 0) {
+                    return c;
+                }
+            }
+            return 0;
+        };
+    }
+
+    /**
+     * @param source the rows
+     * @param offset the number of leading rows to skip
+     * @param limit the most rows to return after them, or {@code null} for all
+     * @return the rows from the offset on, up to the limit
+     */
+    public static RowSource limit(RowSource source, long offset, Long limit) {
+        if (offset == 0 && limit == null) {
+            return source;
+        }
+        return new RowSource() {
+            private long skipped;
+            private long returned;
+
+            @Override
+            public Object[] next() throws SQLException {
+                for (; skipped < offset; skipped++) {
+                    if (source.next() == null) {
+                        return null;
+                    }
+                }
+                if (limit != null && returned >= limit) {
+                    return null;
+                }
+                Object[] row = source.next();
+                if (row != null) {
+                    returned++;
+                }
+                return row;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                source.close();
+            }
+        };
+    }
+
+    /**
+     * @param source the rows
+     * @param filter the condition, evaluated on the values of each row
+     * @return the rows the condition is true for
+     */
+    public static RowSource filter(RowSource source, RowFilter filter) {
+        ArrayRowValues values = new ArrayRowValues();
+        return new RowSource() {
+            @Override
+            public Object[] next() throws SQLException {
+                Object[] row = source.next();
+                while (row != null && !filter.accept(values.of(row))) {
+                    row = source.next();
+                }
+                return row;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                source.close();
+            }
+        };
+    }
+
+    /**
+     * @param source the rows
+     * @param columns the positions of the values to keep, in their new order
+     * @return rows of these values
+     */
+    public static RowSource project(RowSource source, int[] columns) {
+        int[] positions = columns.clone();
+        return new RowSource() {
+            @Override
+            public Object[] next() throws SQLException {
+                Object[] row = source.next();
+                if (row == null) {
+                    return null;
+                }
+                Object[] projected = new Object[positions.length];
+                for (int i = 0; i < positions.length; i++) {
+                    projected[i] = row[positions[i]];
+                }
+                return projected;
+            }
+
+            @Override
+            public void close() throws SQLException {
+                source.close();
+            }
+        };
+    }
+
+    /**
+     * @return the estimated heap the row takes
+     */
+    public static long estimateSize(Object[] row) {
+        long size = ROW_BYTES + 8L * row.length;
+        for (Object value : row) {
+            if (value instanceof String) {
+                size += STRING_BYTES + ((String) value).length();
+            } else if (value != null && !(value instanceof Boolean)) {
+                size += VALUE_BYTES;
+            }
+        }
+        return size;
+    }
+}
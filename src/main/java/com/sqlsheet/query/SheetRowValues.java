@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Row;
+
+/**
+ * The cell values of a POI row, of an in-memory or a streamed sheet. One instance is reused for
+ * all rows of a scan.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class SheetRowValues implements CellValues {
+
+    private final int firstColumn;
+    private final FormulaEvaluator evaluator;
+    private Row row;
+
+    /**
+     * @param firstColumn the first sheet column of the table
+     * @param evaluator evaluates formula cells, or {@code null} to use their cached result
+     */
+    public SheetRowValues(int firstColumn, FormulaEvaluator evaluator) {
+        this.firstColumn = firstColumn;
+        this.evaluator = evaluator;
+    }
+
+    /**
+     * @param row the row to read next, may be {@code null}
+     * @return this
+     */
+    public SheetRowValues of(Row row) {
+        this.row = row;
+        return this;
+    }
+
+    @Override
+    public Object getValue(int column) {
+        Cell cell = row != null ? row.getCell(firstColumn + column) : null;
+        switch (typeOf(cell)) {
+            case NUMERIC:
+                return cell.getNumericCellValue();
+            case STRING:
+                return cell.getStringCellValue();
+            case BOOLEAN:
+                return cell.getBooleanCellValue();
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public double getNumber(int column) {
+        Cell cell = row != null ? row.getCell(firstColumn + column) : null;
+        return typeOf(cell) == CellType.NUMERIC ? cell.getNumericCellValue() : Double.NaN;
+    }
+
+    private CellType typeOf(Cell cell) {
+        if (cell == null) {
+            return CellType.BLANK;
+        }
+        CellType type = cell.getCellType();
+        if (type == CellType.FORMULA) {
+            type = evaluator != null
+                    ? evaluator.evaluateFormulaCell(cell)
+                    : cell.getCachedFormulaResultType();
+        }
+        return type;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Temporary file holding rows an operator could not keep on the heap, written once and read back
+ * once. Each value is stored as a one byte type tag followed by its binary form, so numbers and
+ * dates take no more than eight bytes and strings their UTF-8 length. The file is deleted when its
+ * reader is closed.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class SpillFile {
+
+    private static final int BUFFER_SIZE = 65536;
+    private static final byte NULL = 0;
+    private static final byte DOUBLE = 1;
+    private static final byte LONG = 2;
+    private static final byte STRING = 3;
+    private static final byte TRUE = 4;
+    private static final byte FALSE = 5;
+    private static final byte DATE = 6;
+    private static final byte TIMESTAMP = 7;
+    private static final byte TIME = 8;
+    private static final byte UTIL_DATE = 9;
+
+    private final Path path;
+    private DataOutputStream out;
+    private long rowCount;
+
+    private SpillFile(Path path, DataOutputStream out) {
+        this.path = path;
+        this.out = out;
+    }
+
+    static SpillFile create() throws SQLException {
+        try {
+            Path path = Files.createTempFile("sqlsheet-", ".spill");
+            return new SpillFile(path, new DataOutputStream(
+                    new BufferedOutputStream(Files.newOutputStream(path), BUFFER_SIZE)));
+        } catch (IOException e) {
+            throw new SQLException("Cannot create a temporary file: " + e.getMessage(), e);
+        }
+    }
+
+    long getRowCount() {
+        return rowCount;
+    }
+
+    void write(Object[] row) throws SQLException {
+        try {
+            out.writeInt(row.length);
+            for (Object value : row) {
+                writeValue(value);
+            }
+            rowCount++;
+        } catch (IOException e) {
+            delete();
+            throw new SQLException("Cannot write " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private void writeValue(Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof java.sql.Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((java.sql.Timestamp) value).getTime());
+            out.writeInt(((java.sql.Timestamp) value).getNanos());
+        } else if (value instanceof java.util.Date) {
+            out.writeByte(value instanceof java.sql.Date
+                    ? DATE
+                    : value instanceof java.sql.Time ? TIME : UTIL_DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (value instanceof Number) {
+            out.writeByte(DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            out.writeByte(STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Ends writing, releasing the file handle until the rows are read.
+     */
+    void finish() throws SQLException {
+        if (out != null) {
+            try {
+                out.close();
+                out = null;
+            } catch (IOException e) {
+                delete();
+                throw new SQLException("Cannot write " + path + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Ends writing.
+     *
+     * @return the rows in the order they were written, deleting the file when closed
+     */
+    RowSource read() throws SQLException {
+        finish();
+        DataInputStream in;
+        try {
+            in = new DataInputStream(
+                    new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE));
+        } catch (IOException e) {
+            delete();
+            throw new SQLException("Cannot read " + path + ": " + e.getMessage(), e);
+        }
+        return new RowSource() {
+            private long remaining = rowCount;
+            private boolean closed;
+
+            @Override
+            public Object[] next() throws SQLException {
+                if (remaining == 0) {
+                    return null;
+                }
+                try {
+                    Object[] row = new Object[in.readInt()];
+                    for (int i = 0; i < row.length; i++) {
+                        row[i] = readValue(in);
+                    }
+                    remaining--;
+                    return row;
+                } catch (IOException e) {
+                    close();
+                    throw new SQLException("Cannot read " + path + ": " + e.getMessage(), e);
+                }
+            }
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    try {
+                        in.close();
+                    } catch (IOException e) {
+                        // deleted below anyway
+                    }
+                    delete();
+                }
+            }
+        };
+    }
+
+    private static Object readValue(DataInputStream in) throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case DOUBLE:
+                return in.readDouble();
+            case LONG:
+                return in.readLong();
+            case STRING:
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case DATE:
+                return new java.sql.Date(in.readLong());
+            case TIMESTAMP:
+                java.sql.Timestamp timestamp = new java.sql.Timestamp(in.readLong());
+                timestamp.setNanos(in.readInt());
+                return timestamp;
+            case TIME:
+                return new java.sql.Time(in.readLong());
+            case UTIL_DATE:
+                return new java.util.Date(in.readLong());
+            default:
+                throw new IOException("Corrupt temporary file, unknown tag " + tag);
+        }
+    }
+
+    /**
+     * Deletes the file, whether it was read or not.
+     */
+    void delete() {
+        try {
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            path.toFile().deleteOnExit();
+        }
+    }
+}
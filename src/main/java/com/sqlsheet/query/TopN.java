@@ -0,0 +1,157 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.query;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the first rows of an order in a single pass, for {@code ORDER BY ... LIMIT n}.
+ *
+ * <p>
+ * A bounded priority queue holds the best rows seen so far with the worst of them on top, so each
+ * further row is either dropped after one comparison or replaces that worst row. The heap thus
+ * holds at most {@code n} rows however many rows are added. Should these rows exceed the memory
+ * budget, e.g. for a large {@code n}, the operator falls back to an {@link ExternalSort}. Like the
+ * latter it is stable.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+public final class TopN implements AutoCloseable {
+
+    private final Comparator<Object[]> order;
+    private final long count;
+    private final long memory;
+    private final PriorityQueue<Entry> heap;
+    private long heapSize;
+    private long added;
+    private ExternalSort sort;
+
+    /**
+     * @param order the order of the rows
+     * @param count the number of rows to keep
+     * @param memory the estimated heap in bytes the kept rows may take
+     */
+    public TopN(Comparator<Object[]> order, long count, long memory) {
+        this.order = order;
+        this.count = count;
+        this.memory = memory;
+        Comparator<Entry> entries = (a, b) -> {
+            int c = order.compare(a.row, b.row);
+            return c != 0 ? c : Long.compare(a.sequence, b.sequence);
+        };
+        this.heap = new PriorityQueue<>((int) Math.max(1, Math.min(count + 1, 1024)),
+                entries.reversed());
+    }
+
+    public void add(Object[] row) throws SQLException {
+        if (sort != null) {
+            sort.add(row);
+            return;
+        }
+        if (count == 0) {
+            return;
+        }
+        Entry entry = new Entry(row, added++);
+        if (heap.size() < count) {
+            heap.add(entry);
+            heapSize += Rows.estimateSize(row);
+            if (heapSize > memory) {
+                spill();
+            }
+        } else if (order.compare(row, heap.peek().row) < 0) {
+            // ties keep the row added first
+            heapSize -= Rows.estimateSize(heap.poll().row);
+            heap.add(entry);
+            heapSize += Rows.estimateSize(row);
+        }
+    }
+
+    private void spill() throws SQLException {
+        List<Entry> entries = new ArrayList<>(heap);
+        entries.sort(Comparator.comparingLong(e -> e.sequence));
+        heap.clear();
+        sort = new ExternalSort(order, memory);
+        for (Entry entry : entries) {
+            sort.add(entry.row);
+        }
+    }
+
+    /**
+     * Adds all rows of a source and closes it.
+     */
+    public void addAll(RowSource source) throws SQLException {
+        try (RowSource rows = source) {
+            for (Object[] row = rows.next(); row != null; row = rows.next()) {
+                add(row);
+            }
+        }
+    }
+
+    /**
+     * @return whether the rows were too large for the heap and are sorted externally
+     */
+    public boolean isSpilled() {
+        return sort != null;
+    }
+
+    /**
+     * Ends adding rows.
+     *
+     * @return the first rows, in order
+     */
+    public RowSource sort() throws SQLException {
+        if (sort != null) {
+            return Rows.limit(sort.sort(), 0, count);
+        }
+        Object[][] rows = new Object[heap.size()][];
+        for (int i = rows.length - 1; i >= 0; i--) {
+            rows[i] = heap.poll().row;
+        }
+        return new RowSource() {
+            private int next;
+
+            @Override
+            public Object[] next() {
+                return next < rows.length ? rows[next++] : null;
+            }
+
+            @Override
+            public void close() {
+                next = rows.length;
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        heap.clear();
+        if (sort != null) {
+            sort.close();
+        }
+    }
+
+    private static final class Entry {
+        private final Object[] row;
+        private final long sequence;
+
+        Entry(Object[] row, long sequence) {
+            this.row = row;
+            this.sequence = sequence;
+        }
+    }
+}
@@ -13,11 +13,16 @@
  */
 package com.sqlsheet.stream;
 
+import com.sqlsheet.parser.ParsedExpression;
+import com.sqlsheet.query.CellValues;
+import com.sqlsheet.query.RowFilter;
+import com.sqlsheet.query.RowFilters;
 import org.apache.poi.ss.usermodel.DateUtil;
 
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -30,6 +35,12 @@ public abstract class AbstractXlsSheetIterator
 
     private URL fileName;
     private String sheetName;
+    private BitSet selectedColumns;
+    private ParsedExpression where;
+    private List<Object> parameters;
+    private RowFilter filter;
+    private SQLException filterFailure;
+    private final HolderValues holderValues = new HolderValues();
     private List<CellValueHolder> columns = new ArrayList<>();
     private Map<Long, List<CellValueHolder>> rowValues = new HashMap<>();
 
@@ -43,9 +54,43 @@ public abstract class AbstractXlsSheetIterator
      * @throws SQLException if any problem
      */
     public AbstractXlsSheetIterator(URL filename, String sheetName) throws SQLException {
+        this(filename, sheetName, null);
+    }
+
+    /**
+     * @param filename The file to postConstruct
+     * @param sheetName The sheet name
+     * @param selectedColumns the zero based sheet columns to read, or {@code null} for all. Cells
+     *        of other columns are skipped without decoding their value, and the columns and row
+     *        values only hold the selected ones, in sheet order.
+     * @throws SQLException if any problem
+     */
+    public AbstractXlsSheetIterator(URL filename, String sheetName, BitSet selectedColumns)
+            throws SQLException {
+        this(filename, sheetName, selectedColumns, null, null);
+    }
+
+    /**
+     * @param filename The file to postConstruct
+     * @param sheetName The sheet name
+     * @param selectedColumns the zero based sheet columns to read, or {@code null} for all
+     * @param where a condition on the selected columns rows have to meet, or {@code null}. Rows
+     *        are checked as soon as they are read, the others are dropped before being queued.
+     * @param parameters the values of the JDBC parameters of the condition
+     * @throws SQLException if any problem
+     */
+    public AbstractXlsSheetIterator(URL filename, String sheetName, BitSet selectedColumns,
+            ParsedExpression where, List<Object> parameters) throws SQLException {
         this.setFileName(filename);
         this.setSheetName(sheetName);
+        this.selectedColumns = selectedColumns;
+        this.where = where;
+        this.parameters = parameters;
         postConstruct();
+        if (filterFailure != null) {
+            onClose();
+            throw filterFailure;
+        }
     }
 
     protected abstract void postConstruct() throws SQLException;
@@ -82,6 +127,37 @@ public abstract class AbstractXlsSheetIterator
         return getRowValues().get(getCurrentIteratorRowIndex());
     }
 
+    /**
+     * Ends the row being read. The header row compiles the condition, a data row it rejects is
+     * dropped and the next row takes its index.
+     */
+    protected void endRow() {
+        Long index = getCurrentSheetRowIndex();
+        if (index == 0L) {
+            compileFilter();
+        } else if (filter != null
+                && !filter.accept(holderValues.of(getRowValues().get(index)))) {
+            getRowValues().remove(index);
+            return;
+        }
+        setCurrentSheetRowIndex(index + 1);
+    }
+
+    private void compileFilter() {
+        if (where == null) {
+            return;
+        }
+        List<String> names = new ArrayList<>();
+        for (CellValueHolder column : getColumns()) {
+            names.add(column.stringValue != null ? column.stringValue : "");
+        }
+        try {
+            filter = RowFilters.compile(where, names, null, parameters);
+        } catch (SQLException e) {
+            filterFailure = e;
+        }
+    }
+
     void addCurrentRowValue(CellValueHolder cellValue) {
         getRowValues().computeIfAbsent(getCurrentSheetRowIndex(), k -> new ArrayList<>());
         getRowValues().get(getCurrentSheetRowIndex()).add(cellValue);
@@ -117,6 +193,14 @@ public abstract class AbstractXlsSheetIterator
         return null;
     }
 
+    /**
+     * @param column a zero based sheet column, or -1 for anything not in a column
+     * @return whether cells of the column are read
+     */
+    protected boolean isSelected(int column) {
+        return selectedColumns == null || column < 0 || selectedColumns.get(column);
+    }
+
     protected URL getFileName() {
         return fileName;
     }
@@ -165,6 +249,32 @@ public abstract class AbstractXlsSheetIterator
         this.currentIteratorRowIndex = currentIteratorRowIndex;
     }
 
+    /**
+     * The cell values of a row of holders, in which blank cells are empty strings.
+     */
+    private static final class HolderValues implements CellValues {
+        private List<CellValueHolder> row;
+
+        HolderValues of(List<CellValueHolder> row) {
+            this.row = row;
+            return this;
+        }
+
+        @Override
+        public Object getValue(int column) {
+            if (row == null || column >= row.size()) {
+                return null;
+            }
+            CellValueHolder holder = row.get(column);
+            if (holder.doubleValue != null) {
+                return holder.doubleValue;
+            }
+            return holder.stringValue != null && !holder.stringValue.isEmpty()
+                    ? holder.stringValue
+                    : null;
+        }
+    }
+
     static class CellValueHolder {
         String stringValue;
         Double doubleValue;
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.stream;
+
+import com.github.pjfanning.xlsx.SharedStringsImplementationType;
+import com.github.pjfanning.xlsx.StreamingReader;
+import com.sqlsheet.XlsDriver;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings of the {@link StreamingReader} behind a {@link XlsStreamConnection}.
+ *
+ * <p>
+ * The row cache of a streaming workbook is fixed when it is opened. In adaptive mode the row cache
+ * is therefore sized at open time from the consumer throughput measured by earlier result sets
+ * over the same file: the cache holds about {@link #TARGET_BUFFERED_MILLIS} milliseconds worth of
+ * rows, bounded by the configured row cache size and {@value XlsDriver#MAX_ROW_CACHE_SIZE}.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class StreamingSettings {
+
+    static final int DEFAULT_ROW_CACHE_SIZE = 100;
+    static final int DEFAULT_BUFFER_SIZE = 4096;
+    static final int DEFAULT_MAX_ROW_CACHE_SIZE = 10_000;
+    static final long TARGET_BUFFERED_MILLIS = 250;
+    /** Result sets reading fewer rows say little about the consumer. */
+    static final int MIN_MEASURED_ROWS = 1000;
+
+    /** Smoothed rows per second, by file. */
+    private static final Map<String, Double> THROUGHPUT = new ConcurrentHashMap<>();
+
+    private final String key;
+    private final int rowCacheSize;
+    private final int bufferSize;
+    private final SharedStringsImplementationType sharedStrings;
+    private final boolean avoidTempFiles;
+    private final boolean adaptive;
+    private final int maxRowCacheSize;
+
+    StreamingSettings(String key, Properties info) {
+        this.key = key;
+        this.rowCacheSize = getInt(info, XlsDriver.ROW_CACHE_SIZE, DEFAULT_ROW_CACHE_SIZE);
+        this.bufferSize = getInt(info, XlsDriver.BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+        Object sharedStringsValue = info.get(XlsDriver.SHARED_STRINGS);
+        this.sharedStrings = sharedStringsValue != null
+                ? SharedStringsImplementationType.valueOf(
+                        sharedStringsValue.toString().trim().toUpperCase(Locale.ROOT))
+                : null;
+        this.avoidTempFiles =
+                Boolean.parseBoolean(String.valueOf(info.get(XlsDriver.AVOID_TEMP_FILES)));
+        this.adaptive =
+                Boolean.parseBoolean(String.valueOf(info.get(XlsDriver.ADAPTIVE_ROW_CACHE)));
+        this.maxRowCacheSize = Math.max(rowCacheSize,
+                getInt(info, XlsDriver.MAX_ROW_CACHE_SIZE, DEFAULT_MAX_ROW_CACHE_SIZE));
+    }
+
+    private static int getInt(Properties info, String key, int defaultValue) {
+        Object value = info.get(key);
+        return value != null ? Integer.parseInt(value.toString()) : defaultValue;
+    }
+
+    /**
+     * @return a builder configured with these settings
+     */
+    StreamingReader.Builder builder() {
+        StreamingReader.Builder builder = StreamingReader
+                .builder()
+                .rowCacheSize(getEffectiveRowCacheSize())
+                .bufferSize(bufferSize)
+                .setAvoidTempFiles(avoidTempFiles);
+        if (sharedStrings != null) {
+            builder.setSharedStringsImplementationType(sharedStrings);
+        }
+        return builder;
+    }
+
+    /**
+     * @return the row cache size to open the next workbook with
+     */
+    int getEffectiveRowCacheSize() {
+        if (!adaptive) {
+            return rowCacheSize;
+        }
+        Double rowsPerSecond = THROUGHPUT.get(key);
+        if (rowsPerSecond == null) {
+            return rowCacheSize;
+        }
+        long target = (long) (rowsPerSecond * TARGET_BUFFERED_MILLIS / 1000);
+        return (int) Math.max(rowCacheSize, Math.min(maxRowCacheSize, target));
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Records how fast a result set was consumed.
+     *
+     * @param rows the rows read
+     * @param nanos the time between the first and the last row
+     */
+    void recordThroughput(long rows, long nanos) {
+        if (!adaptive || rows < MIN_MEASURED_ROWS || nanos <= 0) {
+            return;
+        }
+        double rowsPerSecond = rows * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+        THROUGHPUT.merge(key, rowsPerSecond, (previous, current) -> (previous + current) / 2);
+    }
+
+    static void clearThroughput() {
+        THROUGHPUT.clear();
+    }
+}
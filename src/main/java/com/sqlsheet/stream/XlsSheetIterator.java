@@ -13,6 +13,7 @@
  */
 package com.sqlsheet.stream;
 
+import com.sqlsheet.parser.ParsedExpression;
 import org.apache.commons.io.IOUtils;
 import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder;
 import org.apache.poi.hssf.eventusermodel.EventWorkbookBuilder.SheetRecordCollectingListener;
@@ -28,6 +29,7 @@ import org.apache.poi.hssf.record.BOFRecord;
 import org.apache.poi.hssf.record.BlankRecord;
 import org.apache.poi.hssf.record.BoolErrRecord;
 import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
 import org.apache.poi.hssf.record.FormulaRecord;
 import org.apache.poi.hssf.record.LabelRecord;
 import org.apache.poi.hssf.record.LabelSSTRecord;
@@ -45,6 +47,7 @@ import java.io.IOException;
 import java.net.URL;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -89,6 +92,16 @@ public class XlsSheetIterator extends AbstractXlsSheetIterator implements HSSFLi
         super(filename, sheetName);
     }
 
+    public XlsSheetIterator(URL filename, String sheetName, BitSet selectedColumns)
+            throws SQLException {
+        super(filename, sheetName, selectedColumns);
+    }
+
+    public XlsSheetIterator(URL filename, String sheetName, BitSet selectedColumns,
+            ParsedExpression where, List<Object> parameters) throws SQLException {
+        super(filename, sheetName, selectedColumns, where, parameters);
+    }
+
     /**
      * Initiates the processing - position stream to the right sheet - extracts columns - extracts
      * first row
@@ -166,6 +179,10 @@ public class XlsSheetIterator extends AbstractXlsSheetIterator implements HSSFLi
      */
     @SuppressWarnings("PMD.NPathComplexity")
     public void processRecord(Record record) {
+        if (inRequiredSheet && !isSelected(columnOf(record))) {
+            // neither decoded nor a pending formula string
+            return;
+        }
         int thisRow = -1;
         int thisColumn = -1;
         CellValueHolder thisCellValue = new CellValueHolder();
@@ -334,8 +351,26 @@ public class XlsSheetIterator extends AbstractXlsSheetIterator implements HSSFLi
             // We're onto a new row
             lastColumnNumber = -1;
             // End the row
-            setCurrentSheetRowIndex(getCurrentSheetRowIndex() + 1);
+            if (inRequiredSheet) {
+                endRow();
+            } else {
+                setCurrentSheetRowIndex(getCurrentSheetRowIndex() + 1);
+            }
+        }
+    }
+
+    /**
+     * @return the column of a cell record, or -1 for other records
+     */
+    private static int columnOf(Record record) {
+        if (record instanceof CellValueRecordInterface) {
+            return ((CellValueRecordInterface) record).getColumn();
+        } else if (record instanceof MissingCellDummyRecord) {
+            return ((MissingCellDummyRecord) record).getColumn();
+        } else if (record instanceof NoteRecord) {
+            return ((NoteRecord) record).getColumn();
         }
+        return -1;
     }
 
     @Override
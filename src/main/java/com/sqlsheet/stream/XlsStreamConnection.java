@@ -14,12 +14,16 @@
 package com.sqlsheet.stream;
 
 import com.github.pjfanning.xlsx.StreamingReader;
+import com.sqlsheet.MemoryBudget;
 import com.sqlsheet.XlsDriver;
+import com.sqlsheet.query.QuerySettings;
 import org.apache.commons.io.IOUtils;
 import org.apache.poi.ss.usermodel.Workbook;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
 import java.net.URL;
 import java.sql.Array;
 import java.sql.Blob;
@@ -56,25 +60,75 @@ public class XlsStreamConnection implements Connection {
     public URL xlsFile;
     public Workbook workbook = null;
     public Properties info;
+    private final StreamingSettings settings;
+    private final QuerySettings querySettings;
+    private final int rowCacheSize;
     private boolean closed;
 
     public XlsStreamConnection(URL xlsFile, Properties info) throws IOException {
         this.xlsFile = xlsFile;
         this.info = info;
 
-        org.apache.poi.openxml4j.util.ZipInputStreamZipEntrySource
-                .setThresholdBytesForTempFiles(16384); // 16KB
-        org.apache.poi.openxml4j.opc.ZipPackage.setUseTempFilePackageParts(true);
+        settings = new StreamingSettings(xlsFile.toString(), info);
+        querySettings = new QuerySettings(info);
+        StreamingReader.Builder builder = settings.builder();
+        rowCacheSize = builder.getRowCacheSize();
+        File localFile = toLocalFile(xlsFile);
+        MemoryBudget budget = MemoryBudget.streaming(info);
+        if (localFile != null) {
+            // read the zip in place instead of copying the stream into a temp file first
+            workbook = budget.open(() -> builder.open(localFile));
+        } else {
+            workbook = budget.open(() -> {
+                try (InputStream is = xlsFile.openStream()) {
+                    return builder.open(is);
+                }
+            });
+        }
+    }
 
-        try (InputStream is = xlsFile.openStream()) {
-            workbook = StreamingReader
-                    .builder()
-                    .rowCacheSize(100)
-                    .bufferSize(4096)
-                    .open(is);
+    /**
+     * @return the workbook file if it is local, {@code null} otherwise
+     */
+    File getLocalFile() {
+        return toLocalFile(xlsFile);
+    }
+
+    private static File toLocalFile(URL url) {
+        if (!"file".equalsIgnoreCase(url.getProtocol())) {
+            return null;
+        }
+        try {
+            File file = new File(url.toURI());
+            return file.isFile() ? file : null;
+        } catch (URISyntaxException | IllegalArgumentException ex) {
+            return null;
         }
     }
 
+    /**
+     * @return the estimated number of bytes held by the streaming reader, see
+     *         {@link MemoryBudget}
+     */
+    public long getEstimatedMemory() {
+        return MemoryBudget.estimateStreaming(rowCacheSize, settings.getBufferSize());
+    }
+
+    /**
+     * @return the number of rows the streaming reader keeps in memory
+     */
+    public int getRowCacheSize() {
+        return rowCacheSize;
+    }
+
+    StreamingSettings getStreamingSettings() {
+        return settings;
+    }
+
+    QuerySettings getQuerySettings() {
+        return querySettings;
+    }
+
     public int getInt(String key, int defaultValue) {
         Object value = info.get(key);
         if (value == null) {
@@ -317,13 +371,14 @@ public class XlsStreamConnection implements Connection {
     }
 
     public <T> T unwrap(Class<T> iface) throws SQLException {
-        nyi();
-        return null;
+        if (iface.isInstance(this)) {
+            return iface.cast(this);
+        }
+        throw new SQLException("Not a wrapper for " + iface.getName());
     }
 
     public boolean isWrapperFor(Class<?> iface) throws SQLException {
-        nyi();
-        return false;
+        return iface.isInstance(this);
     }
 
     public String getSchema() throws SQLException {
@@ -15,8 +15,6 @@ package com.sqlsheet.stream;
 
 import com.sqlsheet.parser.ParsedStatement;
 import com.sqlsheet.parser.SelectStarStatement;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -41,7 +39,6 @@ import java.sql.Time;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -54,26 +51,15 @@ public class XlsStreamPreparedStatement extends XlsStreamStatement implements Pr
     private final ParsedStatement statement;
     private final List<Object> parameters = new ArrayList<>();
     private boolean closeOnCompletion;
+    private ResultSet resultSet;
 
-    private final XlsStreamingResultSetMetaData metadata;
-    Iterator<Row> iterator;
-
+    /**
+     * The rows are only streamed once the statement is executed, with its parameters bound.
+     */
     public XlsStreamPreparedStatement(XlsStreamConnection conn, String sql, int firstSheetRowOffset,
             int firstSheetColOffset) throws SQLException {
         super(conn);
         this.statement = super.parse(sql);
-
-        if (this.statement instanceof SelectStarStatement) {
-            String tableName = ((SelectStarStatement) this.statement).getTable();
-            Sheet sheet = conn.workbook.getSheet(tableName);
-            this.iterator = sheet.rowIterator();
-            metadata = new XlsStreamingResultSetMetaData(sheet, null, firstSheetRowOffset,
-                    firstSheetColOffset);
-
-        } else {
-            iterator = null;
-            metadata = null;
-        }
     }
 
     public void addBatch() throws SQLException {
@@ -104,7 +90,8 @@ public class XlsStreamPreparedStatement extends XlsStreamStatement implements Pr
             throw new IllegalStateException("null statement");
         }
         if (statement instanceof SelectStarStatement) {
-            return super.doSelect((SelectStarStatement) statement);
+            resultSet = super.doSelect((SelectStarStatement) statement, parameters);
+            return resultSet;
         }
         throw new SQLFeatureNotSupportedException(
                 "Execute Query Exception: " + statement.getClass().getName());
@@ -278,8 +265,11 @@ public class XlsStreamPreparedStatement extends XlsStreamStatement implements Pr
         nyi();
     }
 
+    /**
+     * @return the metadata of the last result set, or {@code null} before the first execution
+     */
     public ResultSetMetaData getMetaData() throws SQLException {
-        return metadata;
+        return resultSet != null ? resultSet.getMetaData() : null;
     }
 
     public ParameterMetaData getParameterMetaData() throws SQLException {
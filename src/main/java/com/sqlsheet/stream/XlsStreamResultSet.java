@@ -14,12 +14,21 @@
 package com.sqlsheet.stream;
 
 import com.sqlsheet.XlsResultSetMetaData;
+import com.sqlsheet.parser.ParsedExpression;
+import com.sqlsheet.query.CountableRows;
+import com.sqlsheet.query.RowFilter;
+import com.sqlsheet.query.RowFilters;
+import com.sqlsheet.query.SheetRowValues;
+import org.apache.commons.io.IOUtils;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.math.BigDecimal;
@@ -43,8 +52,12 @@ import java.sql.Timestamp;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static com.sqlsheet.XlsResultSet.CTX_NN_15_EVEN;
 import static com.sqlsheet.XlsResultSet.wrapped;
@@ -54,34 +67,140 @@ import static com.sqlsheet.XlsResultSet.wrapped;
  *
  * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
  */
-public class XlsStreamResultSet implements ResultSet {
+public class XlsStreamResultSet implements ResultSet, CountableRows {
+
+    private static final Logger LOGGER = Logger.getLogger(XlsStreamResultSet.class.getName());
 
     protected Statement statement;
+    StreamingSettings settings;
+    /** The local file of the workbook, or {@code null}, for {@link #countRows()}. */
+    File source;
+    private final String sheetName;
+    private final int firstSheetRowOffset;
+    /** The last row of the dimension of the sheet, {@code -1} without one. */
+    private final int lastSheetRow;
     private final XlsStreamingResultSetMetaData metadata;
     private final int firstSheetColOffset;
     Iterator<Row> iterator;
     Row row = null;
     int rowNum = 0;
+    /** The sheet column of each JDBC column, relative to the first one, or {@code null}. */
+    int[] sheetColumns;
+    private RowFilter filter;
+    private SheetRowValues rowValues;
+    private Long limit;
+    private long firstRowNanos;
+    private long lastRowNanos;
     private boolean closed;
 
     public XlsStreamResultSet(Sheet sheet,
             int firstSheetRowOffset, int firstSheetColOffset)
             throws SQLException {
-
+        this(sheet, firstSheetRowOffset, firstSheetColOffset, null, null);
+    }
+
+    /**
+     * Creates a result set over some columns of a sheet only. Other columns are neither profiled
+     * by the metadata nor read.
+     *
+     * @param columns the selected columns, or {@code null} for all of them
+     * @param labels the labels of the selected columns
+     */
+    public XlsStreamResultSet(Sheet sheet, int firstSheetRowOffset, int firstSheetColOffset,
+            List<String> columns, List<String> labels) throws SQLException {
+
+        this.sheetName = sheet.getSheetName();
+        this.firstSheetRowOffset = firstSheetRowOffset;
+        this.lastSheetRow = sheet.getLastRowNum();
         this.firstSheetColOffset = firstSheetColOffset;
         this.iterator = sheet.rowIterator();
         metadata = new XlsStreamingResultSetMetaData(sheet, this, firstSheetRowOffset,
-                firstSheetColOffset);
+                firstSheetColOffset, columns, labels);
 
-        // re-init after we iterated behind the header row
+        // re-init after we iterated behind the header row and the row profiled by the metadata
+        releaseIterator();
         this.iterator = sheet.rowIterator();
+        rowNum = 0;
         for (int i = 0; i < firstSheetRowOffset; i++) {
             row = iterator.next();
         }
     }
 
+    /**
+     * Restricts the rows to those meeting a WHERE condition, which {@link #next()} checks on the
+     * cell values as they are streamed, before any of them is converted for the getters.
+     *
+     * @param where the condition, or {@code null} for all rows
+     * @param parameters the values of the JDBC parameters of the condition
+     * @throws SQLException if the condition refers to a missing column or parameter
+     */
+    public void setWhere(ParsedExpression where, List<Object> parameters) throws SQLException {
+        filter = where != null
+                ? RowFilters.compile(where, metadata.sheetColumnNames,
+                        metadata.sheetColumnPositions, parameters)
+                : null;
+        rowValues = new SheetRowValues(firstSheetColOffset, null);
+    }
+
+    /**
+     * Ends the rows {@link #next()} returns after a number of them, e.g. for a LIMIT. Reaching it
+     * stops parsing the sheet and releases its reader right away, rather than when the result set
+     * is closed.
+     *
+     * @param limit the most rows to return, or {@code null} for all
+     */
+    public void setLimit(Long limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * Closes the reader of the sheet, the rows not read yet are skipped.
+     */
+    private void releaseIterator() {
+        if (iterator instanceof Closeable) {
+            IOUtils.closeQuietly((Closeable) iterator);
+        }
+        iterator = Collections.emptyIterator();
+    }
+
+    /**
+     * Without a WHERE condition or limit, counts the {@code row} elements of a local file with
+     * {@link XlsxRowCount}, which never decodes a cell. The {@code dimension} of the sheet is no
+     * answer, as the rows without an element in it are not streamed. Otherwise, or if the file
+     * cannot be read that way, the rows are counted by {@link #next()}.
+     */
+    public long countRows() throws SQLException {
+        if (filter == null && limit == null && rowNum == 0 && source != null) {
+            try {
+                long elements = XlsxRowCount.count(source, sheetName);
+                if (elements >= 0) {
+                    long rows = Math.max(0, elements - firstSheetRowOffset);
+                    releaseIterator();
+                    row = null;
+                    return rows;
+                }
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Counting the rows of " + sheetName + " by reading them", e);
+            }
+        }
+        long rows = 0;
+        while (next()) {
+            rows++;
+        }
+        return rows;
+    }
+
+    @Override
+    public long estimateRows() {
+        return lastSheetRow >= 0 ? Math.max(0, lastSheetRow - firstSheetRowOffset + 1) : -1;
+    }
+
     protected Cell getCell(int columnIndex) {
-        return row != null ? row.getCell((short) (columnIndex + firstSheetColOffset - 1)) : null;
+        if (row == null) {
+            return null;
+        }
+        int sheetColumn = sheetColumns != null ? sheetColumns[columnIndex - 1] : columnIndex - 1;
+        return row.getCell(sheetColumn + firstSheetColOffset);
     }
 
     private short getSheetColumnNamed(String name) throws SQLException {
@@ -627,13 +746,24 @@ public class XlsStreamResultSet implements ResultSet {
     }
 
     public boolean next() throws SQLException {
-        if (iterator.hasNext()) {
+        if (limit != null && rowNum >= limit) {
+            releaseIterator();
+            row = null;
+            return false;
+        }
+        while (iterator.hasNext()) {
             row = iterator.next();
+            if (filter != null && !filter.accept(rowValues.of(row))) {
+                continue;
+            }
             rowNum++;
+            lastRowNanos = System.nanoTime();
+            if (rowNum == 1) {
+                firstRowNanos = lastRowNanos;
+            }
             return true;
-        } else {
-            return false;
         }
+        return false;
     }
 
     public boolean previous() throws SQLException {
@@ -667,8 +797,13 @@ public class XlsStreamResultSet implements ResultSet {
             return;
         }
         closed = true;
+        if (settings != null) {
+            settings.recordThroughput(rowNum, lastRowNanos - firstRowNanos);
+            settings = null;
+        }
 
         // help the GC by nulling all objects
+        releaseIterator();
         iterator = null;
         row = null;
 
@@ -14,9 +14,11 @@
 package com.sqlsheet.stream;
 
 import com.sqlsheet.XlsDriver;
+import com.sqlsheet.parser.ParsedExpression;
 import com.sqlsheet.parser.ParsedStatement;
 import com.sqlsheet.parser.SelectStarStatement;
 import com.sqlsheet.parser.SqlSheetParser;
+import com.sqlsheet.query.QueryExecutor;
 import org.apache.poi.ss.usermodel.Sheet;
 
 import java.sql.Connection;
@@ -26,6 +28,7 @@ import java.sql.SQLFeatureNotSupportedException;
 import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static com.sqlsheet.XlsStatement.DEFAULT_FIRST_COL;
@@ -44,6 +47,7 @@ public class XlsStreamStatement implements Statement {
     private SqlSheetParser parser;
     private boolean closeOneCompletion = false;
     private boolean closed;
+    private int maxRows;
 
     public XlsStreamStatement(XlsStreamConnection c) {
         if (c == null) {
@@ -60,10 +64,14 @@ public class XlsStreamStatement implements Statement {
         if (closed) {
             return;
         }
+        closed = true;
+
+        // the result sets handed out close with the statement
+        for (XlsStreamResultSet rs : sheet2rs.values()) {
+            rs.close();
+        }
         sheet2rs.clear();
         parser = null;
-
-        closed = true;
     }
 
     public boolean execute(String sql) throws SQLException {
@@ -101,14 +109,39 @@ public class XlsStreamStatement implements Statement {
     }
 
     protected ResultSet doSelect(SelectStarStatement sss) throws SQLException {
-        XlsStreamResultSet out = findOrCreateResultSetFor(sss.getTable());
-        out.statement = this;
-        return out;
-    }
-
-    private XlsStreamResultSet findOrCreateResultSetFor(String tableName) throws SQLException {
+        return doSelect(sss, null);
+    }
+
+    /**
+     * @param sss the statement
+     * @param parameters the values of its JDBC parameters, or {@code null} if it has none
+     * @return the result set
+     * @throws SQLException if the statement cannot be executed
+     */
+    protected ResultSet doSelect(SelectStarStatement sss, List<Object> parameters)
+            throws SQLException {
+        return QueryExecutor.select(this, sss, parameters, connection.getQuerySettings(),
+                (schema, table, where, columns, labels) -> (values, limit) -> {
+                    // each execution parses the sheet again, so nothing is resolved before
+                    XlsStreamResultSet out = findOrCreateResultSetFor(table, columns, labels,
+                            where, values);
+                    out.setLimit(limit);
+                    out.statement = this;
+                    return out;
+                });
+    }
+
+    private XlsStreamResultSet findOrCreateResultSetFor(String tableName, List<String> columns,
+            List<String> labels, ParsedExpression where, List<Object> parameters)
+            throws SQLException {
         String sanitizedTableName = tableName.trim().toUpperCase();
-        XlsStreamResultSet rs = sheet2rs.get(sanitizedTableName);
+        String key = columns != null
+                ? sanitizedTableName + " " + columns + " AS " + labels
+                : sanitizedTableName;
+        if (where != null) {
+            key += " WHERE " + where + " " + parameters;
+        }
+        XlsStreamResultSet rs = sheet2rs.get(key);
         if (rs != null && !rs.isClosed()) {
             return rs;
         }
@@ -116,9 +149,14 @@ public class XlsStreamStatement implements Statement {
         XlsStreamResultSet out = new XlsStreamResultSet(
                 sheet,
                 connection.getInt(XlsDriver.HEADLINE, DEFAULT_HEADLINE),
-                connection.getInt(XlsDriver.FIRST_COL, DEFAULT_FIRST_COL));
+                connection.getInt(XlsDriver.FIRST_COL, DEFAULT_FIRST_COL),
+                columns,
+                labels);
+        out.setWhere(where, parameters);
         out.statement = this;
-        sheet2rs.put(sanitizedTableName, out);
+        out.settings = connection.getStreamingSettings();
+        out.source = connection.getLocalFile();
+        sheet2rs.put(key, out);
         return out;
     }
 
@@ -140,12 +178,17 @@ public class XlsStreamStatement implements Statement {
     }
 
     public int getMaxRows() throws SQLException {
-        nyi();
-        return -1;
+        return maxRows;
     }
 
-    public void setMaxRows(int p0) throws SQLException {
-        nyi();
+    /**
+     * Rows beyond the maximum are not read from the sheet.
+     */
+    public void setMaxRows(int max) throws SQLException {
+        if (max < 0) {
+            throw new SQLException("Negative maximum rows: " + max);
+        }
+        maxRows = max;
     }
 
     public int getQueryTimeout() throws SQLException {
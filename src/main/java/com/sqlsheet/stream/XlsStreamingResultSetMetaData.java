@@ -13,6 +13,7 @@
  */
 package com.sqlsheet.stream;
 
+import com.sqlsheet.XlsResultSetMetaData;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
 import org.apache.poi.ss.usermodel.DataFormatter;
@@ -52,14 +53,29 @@ public class XlsStreamingResultSetMetaData implements ResultSetMetaData {
 
     private final DataFormatter formatter;
     protected List<String> columnNames;
+    /** The names of all named columns of the sheet, selected or not. */
+    List<String> sheetColumnNames;
+    /** The sheet column of each of the {@link #sheetColumnNames}, relative to the first one. */
+    int[] sheetColumnPositions;
 
     Map<Integer, Integer> columnTypeMap = new HashMap<>();
 
-    @SuppressWarnings("PMD.NPathComplexity")
     public XlsStreamingResultSetMetaData(
             Sheet sheet, XlsStreamResultSet resultset, int firstSheetRowOffset,
             int firstSheetColOffset)
             throws SQLException {
+        this(sheet, resultset, firstSheetRowOffset, firstSheetColOffset, null, null);
+    }
+
+    /**
+     * @param columns the selected columns, or {@code null} for all of them
+     * @param labels the labels of the selected columns
+     */
+    @SuppressWarnings("PMD.NPathComplexity")
+    XlsStreamingResultSetMetaData(
+            Sheet sheet, XlsStreamResultSet resultset, int firstSheetRowOffset,
+            int firstSheetColOffset, List<String> columns, List<String> labels)
+            throws SQLException {
 
         if (sheet == null) {
             throw new IllegalArgumentException();
@@ -73,6 +89,7 @@ public class XlsStreamingResultSetMetaData implements ResultSetMetaData {
         }
         formatter = new DataFormatter();
         columnNames = new ArrayList<String>();
+        List<Integer> positions = new ArrayList<>();
         for (short c = (short) firstSheetColOffset; c < resultset.row.getLastCellNum(); c++) {
             Cell cell = resultset.row.getCell(c);
             String columnName = formatter.formatCellValue(cell);
@@ -85,7 +102,19 @@ public class XlsStreamingResultSetMetaData implements ResultSetMetaData {
                 }
 
                 columnNames.add(columnName);
+                positions.add(c - firstSheetColOffset);
+            }
+        }
+        sheetColumnNames = columnNames;
+        sheetColumnPositions = positions.stream().mapToInt(Integer::intValue).toArray();
+        if (columns != null) {
+            // only the selected columns are profiled and read
+            int[] selected = XlsResultSetMetaData.resolveColumns(columnNames, columns);
+            resultset.sheetColumns = new int[selected.length];
+            for (int i = 0; i < selected.length; i++) {
+                resultset.sheetColumns[i] = sheetColumnPositions[selected[i]];
             }
+            columnNames = new ArrayList<>(labels);
         }
 
         // A double map to back the relation between the column Id and the count of type
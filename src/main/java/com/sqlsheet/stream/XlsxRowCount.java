@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 pcal.net
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.sqlsheet.stream;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Counts the {@code row} elements of a sheet of an xlsx file with a cursor over the raw XML,
+ * skipping the cells without decoding them or resolving shared strings and styles.
+ *
+ * <p>
+ * The {@code dimension} element alone cannot answer this: it covers empty rows, which have no
+ * element and which the streaming reader skips, so all row elements are counted.
+ *
+ * @author <a href='http://code.google.com/p/sqlsheet'>sqlsheet</a>
+ */
+final class XlsxRowCount {
+
+    private XlsxRowCount() {}
+
+    /**
+     * @param file the xlsx file
+     * @param sheetName the name of the sheet, ignoring case
+     * @return the number of rows of the sheet, or {@code -1} if there is no such sheet
+     * @throws IOException if the file could not be read
+     */
+    static long count(File file, String sheetName) throws IOException {
+        OPCPackage xlsxPackage;
+        try {
+            xlsxPackage = OPCPackage.open(file, PackageAccess.READ);
+        } catch (OpenXML4JException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        try {
+            XSSFReader.SheetIterator sheets =
+                    (XSSFReader.SheetIterator) new XSSFReader(xlsxPackage).getSheetsData();
+            while (sheets.hasNext()) {
+                try (InputStream in = sheets.next()) {
+                    if (sheets.getSheetName().equalsIgnoreCase(sheetName)) {
+                        return countRows(in);
+                    }
+                }
+            }
+            return -1;
+        } catch (OpenXML4JException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            // a package opened for reading is reverted, closing would try to save it
+            xlsxPackage.revert();
+        }
+    }
+
+    private static long countRows(InputStream in) throws IOException {
+        try {
+            XMLStreamReader reader = XMLHelper.newXMLInputFactory().createXMLStreamReader(in);
+            try {
+                long rows = 0;
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "row".equals(reader.getLocalName())) {
+                        rows++;
+                    }
+                }
+                return rows;
+            } finally {
+                reader.close();
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+}
@@ -13,6 +13,7 @@
  */
 package com.sqlsheet.stream;
 
+import com.sqlsheet.parser.ParsedExpression;
 import org.apache.commons.io.IOUtils;
 import org.apache.poi.openxml4j.opc.OPCPackage;
 import org.apache.poi.openxml4j.opc.PackageAccess;
@@ -38,8 +39,10 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 import java.net.URL;
 import java.sql.SQLException;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -60,6 +63,16 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
         super(filename, sheetName);
     }
 
+    public XlsxSheetIterator(URL filename, String sheetName, BitSet selectedColumns)
+            throws SQLException {
+        super(filename, sheetName, selectedColumns);
+    }
+
+    public XlsxSheetIterator(URL filename, String sheetName, BitSet selectedColumns,
+            ParsedExpression where, List<Object> parameters) throws SQLException {
+        super(filename, sheetName, selectedColumns, where, parameters);
+    }
+
     @Override
     protected void postConstruct() throws SQLException {
         try {
@@ -187,6 +200,8 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
         private short formatIndex;
         private String formatString;
         private int thisColumn;
+        // Set when the current cell is in a column which is not selected
+        private boolean skipCell;
         // The last column printed to the output stream
         private int lastColumnNumber;
 
@@ -214,6 +229,9 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
                 attributes.put(attr.getName().getLocalPart(), attr.getValue());
             }
 
+            if (skipCell && !"c".equals(startElement.getName().getLocalPart())) {
+                return;
+            }
             if ("inlineStr".equals(startElement.getName().getLocalPart())
                     || "v".equals(startElement.getName().getLocalPart())
                     || "is".equals(startElement.getName().getLocalPart())) {
@@ -231,6 +249,10 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
                     }
                 }
                 thisColumn = nameToColumn(r.substring(0, firstDigit));
+                skipCell = !isSelected(thisColumn);
+                if (skipCell) {
+                    return;
+                }
 
                 // Set up defaults.
                 this.nextDataType = XssfDataType.NUMBER;
@@ -263,6 +285,12 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
         }
 
         public void endElement(EndElement endElement) {
+            if (skipCell && !"row".equals(endElement.getName().getLocalPart())) {
+                if ("c".equals(endElement.getName().getLocalPart())) {
+                    skipCell = false;
+                }
+                return;
+            }
             CellValueHolder thisCellValue = new CellValueHolder();
             // String thisStr = null;
             // v => contents of a cell
@@ -329,6 +357,9 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
                 // Emit commas for any fields that were missing on this row
                 // Fill empty columns if required
                 for (int i = lastColumnNumber + 1; i < thisColumn; ++i) {
+                    if (!isSelected(i)) {
+                        continue;
+                    }
                     // output.print(',');
                     if (getCurrentSheetRowIndex() == 0) {
                         getColumns().add(new CellValueHolder());
@@ -353,7 +384,7 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
             } else if ("row".equals(endElement.getName().getLocalPart())) {
                 // We're onto a new row
                 lastColumnNumber = -1;
-                setCurrentSheetRowIndex(getCurrentSheetRowIndex() + 1);
+                endRow();
             }
         }
 
@@ -362,7 +393,7 @@ public class XlsxSheetIterator extends AbstractXlsSheetIterator {
          * for inlineStr also.
          */
         public void characters(char[] ch) {
-            if (vIsOpen) {
+            if (vIsOpen && !skipCell) {
                 value.append(ch);
             }
         }
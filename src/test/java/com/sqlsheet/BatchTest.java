@@ -0,0 +1,164 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class BatchTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private String emptyWorkbook(String options) throws Exception {
+        return "jdbc:xls:" + TestSheets.emptyWorkbook(directory, "batch.xlsx").toUri() + options;
+    }
+
+    private static void createTable(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE Orders (Id INT, Product VARCHAR(20), Day DATE)");
+        }
+    }
+
+    private static List<String> select(String url, String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url + "&readStreaming=true")) {
+            return TestSheets.select(connection, sql);
+        }
+    }
+
+    @Test
+    public void testPreparedBatch() throws Exception {
+        for (String options : Arrays.asList("?", "?writeStreaming=true")) {
+            String url = emptyWorkbook(options);
+            int count = 5000;
+            try (Connection connection = DriverManager.getConnection(url)) {
+                // a streaming workbook sees the rows written through it only
+                createTable(connection);
+                PreparedStatement prepared = connection.prepareStatement(
+                        "INSERT INTO Orders (Id, Product, Day) VALUES (?, ?, ?)");
+                Assertions.assertTrue(connection.getMetaData().supportsBatchUpdates()
+                        || options.contains("writeStreaming"));
+                Assertions.assertArrayEquals(new int[0], prepared.executeBatch());
+                for (int i = 1; i <= count; i++) {
+                    prepared.setInt(1, i);
+                    prepared.setString(2, "Product" + i % 7);
+                    prepared.setDate(3, java.sql.Date.valueOf("2024-01-" + (10 + i % 20)));
+                    prepared.addBatch();
+                }
+                int[] counts = prepared.executeBatch();
+                Assertions.assertEquals(count, counts.length);
+                Assertions.assertTrue(Arrays.stream(counts).allMatch(c -> c == 1));
+                XlsStatement statement = prepared.unwrap(XlsStatement.class);
+                Assertions.assertEquals(count, statement.getLastBatchRows());
+                Assertions.assertTrue(statement.getLastBatchRowsPerSecond() > 0);
+                // the batch is cleared
+                Assertions.assertArrayEquals(new int[0], prepared.executeBatch());
+                Assertions.assertThrows(SQLException.class,
+                        () -> prepared.addBatch("INSERT INTO Orders (Id) VALUES (1)"));
+                prepared.close();
+            }
+            List<String> rows = select(url, "SELECT Id, Product, Day FROM Orders");
+            Assertions.assertEquals(count, rows.size(), options);
+            Assertions.assertEquals("1|Product1|2024-01-11", rows.get(0));
+            Assertions.assertEquals(count + "|Product" + count % 7 + "|2024-01-"
+                    + (10 + count % 20), rows.get(count - 1));
+        }
+    }
+
+    @Test
+    public void testPreparedBatchColumnList() throws Exception {
+        for (String options : Arrays.asList("?", "?writeStreaming=true")) {
+            String url = emptyWorkbook(options);
+            try (Connection connection = DriverManager.getConnection(url)) {
+                createTable(connection);
+                try (PreparedStatement prepared = connection
+                        .prepareStatement("INSERT INTO Orders (Product, Id) VALUES (?, ?)")) {
+                    for (int i = 1; i <= 3; i++) {
+                        prepared.setString(1, "Product" + i);
+                        prepared.setInt(2, i);
+                        prepared.addBatch();
+                    }
+                    Assertions.assertArrayEquals(new int[] {1, 1, 1}, prepared.executeBatch());
+                }
+            }
+            Assertions.assertEquals(
+                    Arrays.asList("1|Product1|null", "2|Product2|null", "3|Product3|null"),
+                    select(url, "SELECT Id, Product, Day FROM Orders"), options);
+        }
+    }
+
+    @Test
+    public void testStatementBatch() throws Exception {
+        String url = emptyWorkbook("?");
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            createTable(connection);
+            statement.addBatch("INSERT INTO Orders (Id, Product, Day) VALUES (1, 'a', NULL)");
+            statement.addBatch("INSERT INTO Orders (Id, Product, Day) VALUES"
+                    + " (2, 'b', NULL), (3, 'c', NULL)");
+            statement.addBatch("CREATE TABLE Returns (Id INT)");
+            Assertions.assertArrayEquals(new int[] {1, 2, 0}, statement.executeBatch());
+            Assertions.assertEquals(3, statement.unwrap(XlsStatement.class).getLastBatchRows());
+
+            // a query is rejected before any statement of the batch runs
+            statement.addBatch("INSERT INTO Orders (Id, Product, Day) VALUES (9, 'i', NULL)");
+            statement.addBatch("SELECT Id FROM Orders");
+            BatchUpdateException query =
+                    Assertions.assertThrows(BatchUpdateException.class, statement::executeBatch);
+            Assertions.assertArrayEquals(new int[0], query.getUpdateCounts());
+
+            statement.addBatch("INSERT INTO Orders (Id, Product, Day) VALUES (4, 'd', NULL)");
+            statement.addBatch("INSERT INTO Missing (Id) VALUES (5)");
+            statement.addBatch("INSERT INTO Orders (Id, Product, Day) VALUES (6, 'f', NULL)");
+            BatchUpdateException e =
+                    Assertions.assertThrows(BatchUpdateException.class, statement::executeBatch);
+            Assertions.assertArrayEquals(new int[] {1}, e.getUpdateCounts());
+
+            statement.addBatch("INSERT INTO Orders (Id, Product, Day) VALUES (7, 'g', NULL)");
+            statement.clearBatch();
+            Assertions.assertArrayEquals(new int[0], statement.executeBatch());
+        }
+        Assertions.assertEquals(Arrays.asList("1|a|null", "2|b|null", "3|c|null", "4|d|null"),
+                select(url, "SELECT Id, Product, Day FROM Orders"));
+    }
+
+    @Test
+    public void testPreparedBatchFailure() throws Exception {
+        String url = emptyWorkbook("?");
+        String tooLong = String.join("", Collections.nCopies(40000, "x"));
+        try (Connection connection = DriverManager.getConnection(url)) {
+            createTable(connection);
+            for (String sql : Arrays.asList(
+                    "INSERT INTO Orders (Id, Product) VALUES (?, ?)",
+                    "UPDATE Orders SET Id = ?, Product = ?")) {
+                try (PreparedStatement prepared = connection.prepareStatement(sql)) {
+                    prepared.setInt(1, 1);
+                    prepared.setString(2, "a");
+                    prepared.addBatch();
+                    prepared.setInt(1, 2);
+                    prepared.setString(2, tooLong);
+                    prepared.addBatch();
+                    BatchUpdateException e = Assertions.assertThrows(
+                            BatchUpdateException.class, prepared::executeBatch, sql);
+                    Assertions.assertInstanceOf(IllegalArgumentException.class, e.getCause());
+                }
+            }
+        }
+    }
+}
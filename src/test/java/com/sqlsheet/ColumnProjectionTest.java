@@ -0,0 +1,59 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+
+public class ColumnProjectionTest {
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx", "jdbc:xls:classpath:/test.xls",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testSelectColumns(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement();
+                ResultSet resultSet =
+                        statement.executeQuery("SELECT RCol3, rcol1 AS ID FROM \"2009\"")) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            Assertions.assertEquals(2, metaData.getColumnCount());
+            Assertions.assertEquals("RCol3", metaData.getColumnName(1));
+            Assertions.assertEquals("ID", metaData.getColumnName(2));
+            Assertions.assertEquals(Types.DATE, metaData.getColumnType(1));
+            Assertions.assertEquals(Types.DOUBLE, metaData.getColumnType(2));
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertEquals("2010-04-27", resultSet.getDate(1).toString());
+            Assertions.assertEquals(11, resultSet.getInt("id"));
+            Assertions.assertEquals(11, resultSet.getInt(2));
+            int count = 1;
+            while (resultSet.next()) {
+                count++;
+            }
+            Assertions.assertEquals(3, count);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testUnknownColumn(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT RCol1, MISSING FROM \"2009\""));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class CountTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private static long count(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            Assertions.assertTrue(resultSet.next());
+            long count = resultSet.getLong(1);
+            Assertions.assertFalse(resultSet.next());
+            return count;
+        }
+    }
+
+    private static long rows(Statement statement, String sql) throws SQLException {
+        long rows = 0;
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            while (resultSet.next()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Header, five rows of which the third has no cells, a missing row and two more rows.
+     */
+    private Path writeWorkbook() throws Exception {
+        Path path = directory.resolve("count.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+                OutputStream out = Files.newOutputStream(path)) {
+            Sheet sheet = workbook.createSheet("ROWS");
+            sheet.createRow(0).createCell(0).setCellValue("N");
+            for (int i = 1; i <= 8; i++) {
+                if (i == 3) {
+                    sheet.createRow(i);
+                } else if (i != 6) {
+                    sheet.createRow(i).createCell(0).setCellValue(i);
+                }
+            }
+            workbook.write(out);
+        }
+        return path;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx", "jdbc:xls:classpath:/test.xls",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testCount(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(3, count(statement, "SELECT COUNT(*) FROM \"2009\""));
+            Assertions.assertEquals(2,
+                    count(statement, "SELECT COUNT(*) FROM \"2009\" WHERE RCol1 > 12"));
+            Assertions.assertEquals(0,
+                    count(statement, "SELECT COUNT(*) FROM \"2009\" WHERE RCol1 > 100"));
+            Assertions.assertEquals(3, count(statement, "SELECT COUNT(RCol2) FROM \"2009\""));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "?readStreaming=true"})
+    public void testCountEqualsScan(String options) throws Exception {
+        Path path = writeWorkbook();
+        String url = "jdbc:xls:" + path.toUri() + options;
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            long rows = rows(statement, "SELECT * FROM ROWS");
+            Assertions.assertEquals(rows, count(statement, "SELECT COUNT(*) FROM ROWS"));
+            Assertions.assertEquals(rows - 1,
+                    count(statement, "SELECT COUNT(*) FROM ROWS WHERE N IS NOT NULL"));
+        }
+        try (Connection connection = DriverManager.getConnection(url
+                + (options.isEmpty() ? "?" : "&") + XlsDriver.HEADLINE + "=3");
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(rows(statement, "SELECT * FROM ROWS"),
+                    count(statement, "SELECT COUNT(*) FROM ROWS"));
+        }
+    }
+
+    @Test
+    public void testGapEndsInMemoryRows() throws Exception {
+        Path path = writeWorkbook();
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(5, count(statement, "SELECT COUNT(*) FROM ROWS"));
+        }
+        try (Connection connection = DriverManager.getConnection(
+                "jdbc:xls:" + path.toUri() + "?readStreaming=true");
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(7, count(statement, "SELECT COUNT(*) FROM ROWS"));
+        }
+    }
+}
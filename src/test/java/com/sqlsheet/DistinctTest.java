@@ -0,0 +1,133 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.sqlsheet.TestSheets.select;
+
+public class DistinctTest {
+
+    private static final int CONTACTS = 3000;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    /** City of a contact, blank for every 50th. */
+    private static String cityOf(int contact) {
+        return contact % 50 == 0 ? null : "City" + (char) ('A' + contact % 26);
+    }
+
+    private static String kindOf(int contact) {
+        return contact % 3 == 0 ? "company" : "person";
+    }
+
+    private static int scoreOf(int contact) {
+        return contact % 4;
+    }
+
+    private Path write() throws Exception {
+        return TestSheets.writeWorkbook(directory, "contacts.xlsx", workbook -> {
+            Sheet sheet = workbook.createSheet("Contacts");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("City");
+            header.createCell(1).setCellValue("Kind");
+            header.createCell(2).setCellValue("Score");
+            for (int i = 1; i <= CONTACTS; i++) {
+                Row row = sheet.createRow(i);
+                if (cityOf(i) != null) {
+                    row.createCell(0).setCellValue(cityOf(i));
+                }
+                row.createCell(1).setCellValue(kindOf(i));
+                row.createCell(2).setCellValue(scoreOf(i));
+            }
+        });
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "?readStreaming=true", "?queryMemory=2000",
+            "?readStreaming=true&queryMemory=2000"})
+    public void testDistinct(String options) throws Exception {
+        String url = "jdbc:xls:" + write().toUri() + options;
+        Set<String> cities = new HashSet<>();
+        Set<String> cityKinds = new HashSet<>();
+        Set<String> all = new HashSet<>();
+        for (int i = 1; i <= CONTACTS; i++) {
+            cities.add(String.valueOf(cityOf(i)));
+            cityKinds.add(cityOf(i) + "|" + kindOf(i));
+            all.add(cityOf(i) + "|" + kindOf(i) + "|" + scoreOf(i));
+        }
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            List<String> rows = select(statement, "SELECT DISTINCT City FROM Contacts");
+            Assertions.assertEquals(cities.size(), rows.size());
+            Assertions.assertEquals(cities, new HashSet<>(rows));
+
+            rows = select(statement, "SELECT DISTINCT City, Kind FROM Contacts");
+            Assertions.assertEquals(cityKinds.size(), rows.size());
+            Assertions.assertEquals(cityKinds, new HashSet<>(rows));
+
+            rows = select(statement, "SELECT DISTINCT * FROM Contacts");
+            Assertions.assertEquals(all.size(), rows.size());
+
+            TreeSet<String> sorted = new TreeSet<>(cities);
+            sorted.remove("null");
+            Assertions.assertEquals(
+                    new ArrayList<>(sorted.descendingSet()).subList(0, 3), select(statement,
+                            "SELECT DISTINCT City FROM Contacts WHERE City IS NOT NULL"
+                                    + " ORDER BY City DESC LIMIT 3"));
+
+            // the limit applies to the distinct rows
+            rows = select(statement, "SELECT DISTINCT Kind FROM Contacts LIMIT 5");
+            Assertions.assertEquals(new HashSet<>(Arrays.asList("company", "person")),
+                    new HashSet<>(rows));
+            Assertions.assertEquals(2, rows.size());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "?readStreaming=true"})
+    public void testDistinctAggregate(String options) throws Exception {
+        String url = "jdbc:xls:" + write().toUri() + options;
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 1; i <= CONTACTS; i++) {
+            counts.merge(String.valueOf(cityOf(i)), 1, Integer::sum);
+        }
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            List<String> expected = new ArrayList<>();
+            for (int count : new TreeSet<>(counts.values())) {
+                expected.add(String.valueOf(count));
+            }
+            Assertions.assertEquals(expected, select(statement,
+                    "SELECT DISTINCT COUNT(*) FROM Contacts GROUP BY City ORDER BY 1"));
+            Assertions.assertThrows(SQLException.class, () -> select(statement,
+                    "SELECT DISTINCT COUNT(*) FROM Contacts GROUP BY City ORDER BY City"));
+            Assertions.assertThrows(SQLException.class, () -> select(statement,
+                    "SELECT DISTINCT Kind FROM Contacts ORDER BY City"));
+        }
+    }
+}
@@ -1,9 +1,17 @@
 package com.sqlsheet;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
-
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -16,6 +24,9 @@ import java.util.Date;
 
 public class DriverTest {
 
+    @TempDir
+    Path directory;
+
     @BeforeAll
     public static void loadDriverClass() throws ClassNotFoundException {
         Class.forName("com.sqlsheet.XlsDriver");
@@ -92,6 +103,53 @@ public class DriverTest {
         processBaseStreamingResultset(conn, "SELECT * FROM SHEET1");
     }
 
+    @Test
+    public void testXlsReadOnlySheetFromLocalFile() throws Exception {
+        Path file = copyResource("/test.xls");
+        try (Connection conn = DriverManager.getConnection(
+                "jdbc:xls:" + file.toUri() + "?readOnly=true")) {
+            processBaseResultset(conn, "SELECT * FROM SHEET1");
+            assertOpen(file);
+        }
+    }
+
+    @Test
+    public void testXlsxReadOnlySheetFromLocalFile() throws Exception {
+        Path file = copyResource("/test.xlsx");
+        try (Connection conn = DriverManager.getConnection(
+                "jdbc:xls:" + file.toUri() + "?readOnly=true")) {
+            processBaseResultset(conn, "SELECT * FROM \"2009\"");
+            assertOpen(file);
+        }
+    }
+
+    private Path copyResource(String resource) throws IOException {
+        Path file = directory.resolve(resource.substring(1));
+        try (InputStream in = DriverTest.class.getResourceAsStream(resource)) {
+            Files.copy(in, file);
+        }
+        return file.toRealPath();
+    }
+
+    /**
+     * A workbook opened from its file keeps the file open, one read from a stream does not.
+     */
+    private static void assertOpen(Path file) throws IOException {
+        Path descriptors = Paths.get("/proc/self/fd");
+        Assumptions.assumeTrue(Files.isDirectory(descriptors), "Open files cannot be listed.");
+        boolean open = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(descriptors)) {
+            for (Path descriptor : stream) {
+                try {
+                    open |= file.equals(Files.readSymbolicLink(descriptor));
+                } catch (IOException e) {
+                    // closed since listed
+                }
+            }
+        }
+        Assertions.assertTrue(open, file + " is not open.");
+    }
+
     @Test
     public void testBugNo7() throws Exception {
         Connection conn = DriverManager
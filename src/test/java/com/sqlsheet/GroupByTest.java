@@ -0,0 +1,132 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static com.sqlsheet.TestSheets.rows;
+import static com.sqlsheet.TestSheets.select;
+
+public class GroupByTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx", "jdbc:xls:classpath:/test.xls",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testAggregates(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            Assertions.assertEquals(Arrays.asList("3|39|11|Tom2|13"), select(connection,
+                    "SELECT COUNT(*), SUM(RCol1), MIN(RCol1), MAX(RCol2), AVG(RCol1)"
+                            + " FROM \"2009\""));
+            Assertions.assertEquals(Arrays.asList("0|null|null"), select(connection,
+                    "SELECT COUNT(RCol1), SUM(RCol1), MAX(RCol3) FROM \"2009\" WHERE RCol1 > 20"));
+            Assertions.assertEquals(Arrays.asList("Sergei2|1", "Tom2|1"), select(connection,
+                    "SELECT RCol2, COUNT(*) FROM \"2009\" WHERE RCol1 > 12 GROUP BY RCol2"
+                            + " ORDER BY 1"));
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery(
+                            "SELECT COUNT(*), MIN(RCol3) AS first FROM \"2009\"")) {
+                ResultSetMetaData metadata = resultSet.getMetaData();
+                Assertions.assertEquals("COUNT(*)", metadata.getColumnLabel(1));
+                Assertions.assertEquals(Types.BIGINT, metadata.getColumnType(1));
+                Assertions.assertEquals("first", metadata.getColumnLabel(2));
+                Assertions.assertEquals(Types.DATE, metadata.getColumnType(2));
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals(3L, resultSet.getObject(1));
+                Assertions.assertEquals("1900-01-02", resultSet.getDate("first").toString());
+                Assertions.assertFalse(resultSet.next());
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testErrors(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT RCol2, COUNT(*) FROM \"2009\""));
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT SUM(RCol2) FROM \"2009\""));
+            Assertions.assertThrows(SQLException.class, () -> statement.executeQuery(
+                    "SELECT RCol2 FROM \"2009\" GROUP BY RCol2 ORDER BY RCol1"));
+            Assertions.assertThrows(SQLException.class, () -> statement.executeQuery(
+                    "SELECT RCol2 FROM \"2009\" GROUP BY RCol2 HAVING RCol1 > 1"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testGroupBy(boolean readStreaming) throws Exception {
+        Path path = TestSheets.writeWorkbook(directory, "groups.xlsx", workbook -> {
+            Sheet sheet = workbook.createSheet("DATA");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("CITY");
+            header.createCell(1).setCellValue("AMOUNT");
+            for (int i = 1; i <= 1000; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue("city" + i % 4);
+                if (i % 10 != 0) {
+                    row.createCell(1).setCellValue(i);
+                }
+            }
+        });
+        Properties info = new Properties();
+        info.setProperty(XlsDriver.READ_STREAMING, Boolean.toString(readStreaming));
+        try (Connection connection =
+                DriverManager.getConnection("jdbc:xls:" + path.toUri(), info)) {
+            Assertions.assertEquals(
+                    Arrays.asList("city1|250|250|124750|1|997|499",
+                            "city2|250|200|100000|2|998|500",
+                            "city3|250|250|125250|3|999|501",
+                            "city0|250|200|100000|4|996|500"),
+                    select(connection, "SELECT CITY, COUNT(*), COUNT(AMOUNT), SUM(AMOUNT),"
+                            + " MIN(AMOUNT), MAX(AMOUNT), AVG(AMOUNT) FROM DATA GROUP BY CITY"));
+            Assertions.assertEquals(Arrays.asList("city3|125250", "city1|124750"),
+                    select(connection, "SELECT CITY, SUM(AMOUNT) AS total FROM DATA"
+                            + " GROUP BY CITY ORDER BY total DESC LIMIT 2"));
+            Assertions.assertEquals(Arrays.asList("city0", "city1", "city2", "city3"),
+                    select(connection, "SELECT CITY FROM DATA GROUP BY CITY ORDER BY CITY"));
+            Assertions.assertEquals(Arrays.asList("996", "999"),
+                    select(connection, "SELECT MAX(AMOUNT) FROM DATA GROUP BY CITY"
+                            + " ORDER BY MIN(AMOUNT) DESC LIMIT 2"));
+            Assertions.assertEquals(Arrays.asList("city3|25"), select(connection,
+                    "SELECT CITY, COUNT(*) FROM DATA WHERE AMOUNT > 900 GROUP BY CITY"
+                            + " HAVING MAX(AMOUNT) = 999"));
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "SELECT CITY FROM DATA GROUP BY CITY HAVING COUNT(AMOUNT) < ?"
+                            + " OR CITY = ? ORDER BY 1")) {
+                statement.setInt(1, 250);
+                statement.setString(2, "city3");
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    Assertions.assertEquals(Arrays.asList("city0", "city2", "city3"),
+                            rows(resultSet));
+                }
+            }
+        }
+    }
+}
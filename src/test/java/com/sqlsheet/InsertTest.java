@@ -0,0 +1,144 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.sqlsheet.TestSheets.select;
+
+public class InsertTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private static String values(int first, int count) {
+        StringBuilder values = new StringBuilder();
+        for (int i = first; i < first + count; i++) {
+            values.append(i > first ? ", " : "").append("(").append(i).append(", 'Row")
+                    .append(i).append("')");
+        }
+        return values.toString();
+    }
+
+    @Test
+    public void testMultiRowValues() throws Exception {
+        String url = "jdbc:xls:" + TestSheets.emptyWorkbook(directory, "insert.xlsx").toUri();
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE People (Id INT, Name VARCHAR(20), Born DATE)");
+            Assertions.assertEquals(3, statement.executeUpdate(
+                    "INSERT INTO People (Id, Name, Born) VALUES (1, 'Ann', {d '1970-01-02'}),"
+                            + " (2, NULL, NULL), (3, 'Cid', {d '1999-12-31'})"));
+            Assertions.assertEquals(1, statement.executeUpdate(
+                    "INSERT INTO People (Id, Name, Born) VALUES (4, 'Dee', NULL)"));
+            try (PreparedStatement prepared = connection.prepareStatement(
+                    "INSERT INTO People (Id, Name, Born) VALUES (?, ?, NULL), (?, 'Fay', NULL)")) {
+                prepared.setInt(1, 5);
+                prepared.setString(2, "Eve");
+                prepared.setInt(3, 6);
+                Assertions.assertEquals(2, prepared.executeUpdate());
+            }
+            Assertions.assertThrows(SQLException.class, () -> statement.executeUpdate(
+                    "INSERT INTO People (Id, Name, Born) VALUES (7, 'Gus'), (8, 'Hal', NULL)"));
+        }
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(
+                    Arrays.asList("1|Ann|1970-01-02", "2|null|null", "3|Cid|1999-12-31",
+                            "4|Dee|null", "5|Eve|null", "6|Fay|null"),
+                    select(statement, "SELECT Id, Name, Born FROM People"));
+        }
+    }
+
+    @Test
+    public void testColumnList() throws Exception {
+        String url = "jdbc:xls:" + TestSheets.emptyWorkbook(directory, "columns.xlsx").toUri();
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE People (Id INT, Name VARCHAR(20), Born DATE)");
+            Assertions.assertEquals(2, statement.executeUpdate(
+                    "INSERT INTO People (Name, Id) VALUES ('Ann', 1), ('Bob', 2)"));
+            Assertions.assertEquals(1, statement.executeUpdate(
+                    "INSERT INTO People (Born) VALUES ({d '1970-01-02'})"));
+            Assertions.assertThrows(SQLException.class, () -> statement
+                    .executeUpdate("INSERT INTO People (Id, Missing) VALUES (3, 'Cid')"));
+        }
+        try (Connection connection = DriverManager.getConnection(url)) {
+            Assertions.assertEquals(
+                    Arrays.asList("1|Ann|null", "2|Bob|null", "null|null|1970-01-02"),
+                    select(connection, "SELECT Id, Name, Born FROM People"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"offset.xlsx", "offset.xls"})
+    public void testFirstColumn(String name) throws Exception {
+        Path path = TestSheets.writeWorkbook(directory, name, workbook -> {
+            Sheet sheet = workbook.createSheet("People");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Note");
+            header.createCell(1).setCellValue("Id");
+            header.createCell(2).setCellValue("Name");
+            header.createCell(3).setCellValue("Born");
+            sheet.createRow(1).createCell(0).setCellValue("kept");
+        });
+        String url = "jdbc:xls:" + path.toUri() + "?firstColumn=1";
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(2, statement.executeUpdate(
+                    "INSERT INTO People (Name, Id) VALUES ('Ann', 1), ('Bob', 2)"));
+        }
+        try (Connection connection = DriverManager.getConnection(url)) {
+            Assertions.assertEquals(Arrays.asList("1|Ann|null", "2|Bob|null"),
+                    select(connection, "SELECT Id, Name, Born FROM People"));
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri())) {
+            Assertions.assertEquals(Arrays.asList("kept", "null"),
+                    select(connection, "SELECT Note FROM People"));
+        }
+    }
+
+    @Test
+    public void testWriteStreaming() throws Exception {
+        Path path = TestSheets.emptyWorkbook(directory, "stream.xlsx");
+        int rows = 0;
+        try (Connection connection = DriverManager
+                .getConnection("jdbc:xls:" + path.toUri() + "?writeStreaming=true");
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE Log (Id INT, Message VARCHAR(20))");
+            // beyond the window of rows the streaming workbook keeps in memory
+            for (int i = 0; i < 3; i++) {
+                rows += statement.executeUpdate(
+                        "INSERT INTO Log (Id, Message) VALUES " + values(rows + 1, 1500));
+            }
+        }
+        Assertions.assertEquals(4500, rows);
+        try (Connection connection = DriverManager
+                .getConnection("jdbc:xls:" + path.toUri() + "?readStreaming=true");
+                Statement statement = connection.createStatement()) {
+            List<String> read = select(statement, "SELECT Id, Message FROM Log");
+            Assertions.assertEquals(rows, read.size());
+            Assertions.assertEquals("1|Row1", read.get(0));
+            Assertions.assertEquals("4500|Row4500", read.get(rows - 1));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.sqlsheet.TestSheets.select;
+
+public class JoinTest {
+
+    private static final int TRANSACTIONS = 2000;
+    private static final int CUSTOMERS = 50;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    /** Customer of a transaction, null for every 40th, beyond the customers for every 7th. */
+    private static Integer customerOf(int transaction) {
+        return transaction % 40 == 0 ? null
+                : transaction % 7 == 0 ? CUSTOMERS + transaction % 5 + 1
+                        : transaction % CUSTOMERS + 1;
+    }
+
+    private static double amountOf(int transaction) {
+        return transaction % 97;
+    }
+
+    private static String regionOf(int customer) {
+        return customer % 2 == 0 ? "north" : "south";
+    }
+
+    private static void writeTransactions(Workbook workbook) {
+        Sheet sheet = workbook.createSheet("Transactions");
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("Id");
+        header.createCell(1).setCellValue("Customer");
+        header.createCell(2).setCellValue("Amount");
+        for (int i = 1; i <= TRANSACTIONS; i++) {
+            Row row = sheet.createRow(i);
+            row.createCell(0).setCellValue(i);
+            if (customerOf(i) != null) {
+                row.createCell(1).setCellValue(customerOf(i));
+            }
+            row.createCell(2).setCellValue(amountOf(i));
+        }
+    }
+
+    private static void writeCustomers(Workbook workbook) {
+        Sheet sheet = workbook.createSheet("Customers");
+        Row header = sheet.createRow(0);
+        header.createCell(0).setCellValue("Id");
+        header.createCell(1).setCellValue("Name");
+        header.createCell(2).setCellValue("Region");
+        for (int i = 1; i <= CUSTOMERS; i++) {
+            Row row = sheet.createRow(i);
+            row.createCell(0).setCellValue(i);
+            row.createCell(1).setCellValue("Customer" + i);
+            row.createCell(2).setCellValue(regionOf(i));
+        }
+    }
+
+    private Path write(String name, boolean transactions, boolean customers) throws Exception {
+        return TestSheets.writeWorkbook(directory, name, workbook -> {
+            if (transactions) {
+                writeTransactions(workbook);
+            }
+            if (customers) {
+                writeCustomers(workbook);
+            }
+        });
+    }
+
+    private static List<String> expectedJoin(boolean left, double minAmount) {
+        List<String> rows = new ArrayList<>();
+        for (int i = 1; i <= TRANSACTIONS; i++) {
+            Integer customer = customerOf(i);
+            if (amountOf(i) > minAmount) {
+                if (customer != null && customer <= CUSTOMERS) {
+                    rows.add(i + "|Customer" + customer);
+                } else if (left) {
+                    rows.add(i + "|null");
+                }
+            }
+        }
+        return rows;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "?readStreaming=true", "?queryMemory=2000",
+            "?readStreaming=true&queryMemory=2000"})
+    public void testJoin(String options) throws Exception {
+        String url = "jdbc:xls:" + write("shop.xlsx", true, true).toUri() + options;
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(expectedJoin(false, 50), select(statement,
+                    "SELECT t.Id, c.Name FROM Transactions t JOIN Customers c"
+                            + " ON c.Id = t.Customer WHERE t.Amount > 50 ORDER BY t.Id"));
+            Assertions.assertEquals(expectedJoin(true, -1), select(statement,
+                    "SELECT t.Id, c.Name FROM Transactions t LEFT JOIN Customers c"
+                            + " ON t.Customer = c.Id ORDER BY t.Id"));
+            // the smaller table is built, whichever comes first
+            Assertions.assertEquals(expectedJoin(false, 50), select(statement,
+                    "SELECT t.Id, c.Name FROM Customers c JOIN Transactions t"
+                            + " ON c.Id = t.Customer WHERE t.Amount > 50 ORDER BY 1"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "?readStreaming=true"})
+    public void testWhereOnJoinedTable(String options) throws Exception {
+        String url = "jdbc:xls:" + write("shop.xlsx", true, true).toUri() + options;
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            int north = 0;
+            int unmatched = 0;
+            for (int i = 1; i <= TRANSACTIONS; i++) {
+                Integer customer = customerOf(i);
+                if (customer == null || customer > CUSTOMERS) {
+                    unmatched++;
+                } else if ("north".equals(regionOf(customer))) {
+                    north++;
+                }
+            }
+            Assertions.assertEquals(Arrays.asList(String.valueOf(north)), select(statement,
+                    "SELECT COUNT(*) FROM Transactions t LEFT JOIN Customers c"
+                            + " ON t.Customer = c.Id WHERE c.Region = 'north'"));
+            Assertions.assertEquals(Arrays.asList(String.valueOf(unmatched)), select(statement,
+                    "SELECT COUNT(*) FROM Transactions t LEFT JOIN Customers c"
+                            + " ON t.Customer = c.Id WHERE c.Id IS NULL"));
+            Assertions.assertEquals(Arrays.asList(String.valueOf(TRANSACTIONS)), select(statement,
+                    "SELECT COUNT(*) FROM Transactions t LEFT JOIN Customers c"
+                            + " ON t.Customer = c.Id AND c.Region = 'north'"));
+            try (PreparedStatement prepared = connection.prepareStatement(
+                    "SELECT c.Name FROM Customers c JOIN Customers d ON d.Id = c.Id"
+                            + " AND d.Region = ? WHERE c.Id < ? ORDER BY c.Id")) {
+                prepared.setString(1, "south");
+                prepared.setInt(2, 6);
+                List<String> names = new ArrayList<>();
+                try (ResultSet resultSet = prepared.executeQuery()) {
+                    while (resultSet.next()) {
+                        names.add(resultSet.getString("Name"));
+                    }
+                }
+                Assertions.assertEquals(Arrays.asList("Customer1", "Customer3", "Customer5"),
+                        names);
+            }
+        }
+    }
+
+    @Test
+    public void testAggregateAndSelectStar() throws Exception {
+        String url = "jdbc:xls:" + write("shop.xlsx", true, true).toUri();
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            long[] counts = new long[2];
+            double[] sums = new double[2];
+            for (int i = 1; i <= TRANSACTIONS; i++) {
+                Integer customer = customerOf(i);
+                if (customer != null && customer <= CUSTOMERS) {
+                    int region = "north".equals(regionOf(customer)) ? 0 : 1;
+                    counts[region]++;
+                    sums[region] += amountOf(i);
+                }
+            }
+            Assertions.assertEquals(
+                    Arrays.asList("north|" + counts[0] + "|" + (long) sums[0],
+                            "south|" + counts[1] + "|" + (long) sums[1]),
+                    select(statement, "SELECT c.Region, COUNT(*), SUM(t.Amount)"
+                            + " FROM Transactions t JOIN Customers c ON c.Id = t.Customer"
+                            + " GROUP BY c.Region ORDER BY c.Region"));
+
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM Customers a"
+                    + " JOIN Customers b ON b.Id = a.Id ORDER BY b.Id DESC LIMIT 2")) {
+                ResultSetMetaData metadata = resultSet.getMetaData();
+                Assertions.assertEquals(6, metadata.getColumnCount());
+                Assertions.assertEquals("Name", metadata.getColumnLabel(5));
+                Assertions.assertEquals("b.Name", metadata.getColumnName(5));
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals("Customer50", resultSet.getString(2));
+                Assertions.assertEquals("Customer50", resultSet.getString(5));
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals(49, resultSet.getInt(4));
+                Assertions.assertFalse(resultSet.next());
+            }
+        }
+    }
+
+    @Test
+    public void testAcrossWorkbooks() throws Exception {
+        write("sales.xlsx", true, false);
+        write("crm.xlsx", false, true);
+        try (Connection connection = DriverManager.getConnection(
+                "jdbc:xls:" + directory.toUri() + "?maxResidentWorkbooks=1");
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(expectedJoin(false, 50), select(statement,
+                    "SELECT t.Id, c.Name FROM sales.Transactions t JOIN crm.Customers c"
+                            + " ON c.Id = t.Customer WHERE t.Amount > 50 ORDER BY t.Id"));
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+public class LazyConnectTest {
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @Test
+    public void testWorkbookOpenedByFirstStatement() throws SQLException {
+        try (Connection connection =
+                DriverManager.getConnection("jdbc:xls:classpath:/test.xlsx?lazyConnect=true")) {
+            XlsConnection xlsConnection = (XlsConnection) connection;
+            Assertions.assertTrue(connection.isValid(0));
+            try (ResultSet schemas = connection.getMetaData().getSchemas()) {
+                Assertions.assertTrue(schemas.next());
+                Assertions.assertEquals("test", schemas.getString("TABLE_SCHEM"));
+            }
+            Assertions.assertNull(xlsConnection.workbook);
+
+            try (Statement statement = connection.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT * FROM SHEET1")) {
+                Assertions.assertTrue(resultSet.next());
+            }
+            Assertions.assertNotNull(xlsConnection.workbook);
+        }
+    }
+
+    @Test
+    public void testPrefetchedReadOnlyConnection() throws SQLException {
+        String url = "jdbc:xls:classpath:/test.xlsx?prefetch=true&readOnly=true";
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM SHEET1")) {
+                Assertions.assertTrue(resultSet.next());
+            }
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeUpdate("CREATE TABLE LAZY_TEST(COL1 INT)"));
+        }
+        // closing before the prefetch is used must not fail
+        DriverManager.getConnection(url).close();
+    }
+}
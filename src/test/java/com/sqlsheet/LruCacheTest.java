@@ -0,0 +1,68 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class LruCacheTest {
+
+    private static final class Recording extends LruCache<String, String> {
+        private final List<String> evicted = new ArrayList<>();
+
+        Recording(int maximumSize) {
+            super(maximumSize);
+        }
+
+        @Override
+        protected void evicted(String value) {
+            evicted.add(value);
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        Recording cache = new Recording(2);
+        Assertions.assertTrue(cache.put("a", "A"));
+        cache.put("b", "B");
+        Assertions.assertEquals("A", cache.get("a"));
+        cache.put("c", "C");
+        Assertions.assertEquals(Collections.singletonList("B"), cache.evicted);
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+
+        cache.put("a", "A2");
+        cache.setMaximumSize(1);
+        Assertions.assertEquals(Arrays.asList("B", "A", "C"), cache.evicted);
+        Assertions.assertEquals(1, cache.size());
+
+        cache.clear();
+        Assertions.assertEquals(Arrays.asList("B", "A", "C", "A2"), cache.evicted);
+        Assertions.assertEquals(0, cache.getHitCount());
+    }
+
+    @Test
+    void removeAndEvictIf() {
+        Recording cache = new Recording(4);
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.put("c", "C");
+        Assertions.assertFalse(cache.remove("a", "B"));
+        Assertions.assertTrue(cache.remove("a", "A"));
+        cache.evictIf("B"::equals);
+        Assertions.assertEquals(Collections.singletonList("B"), cache.evicted);
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    @Test
+    void disabled() {
+        Recording cache = new Recording(0);
+        Assertions.assertFalse(cache.put("a", "A"));
+        Assertions.assertEquals(0, cache.size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> cache.setMaximumSize(-1));
+    }
+}
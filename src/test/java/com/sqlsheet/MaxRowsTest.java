@@ -0,0 +1,79 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import static com.sqlsheet.TestSheets.KATHY;
+import static com.sqlsheet.TestSheets.SERGEI;
+import static com.sqlsheet.TestSheets.TOM;
+import static com.sqlsheet.TestSheets.select;
+
+public class MaxRowsTest {
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx", "jdbc:xls:classpath:/test.xls",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testMaxRows(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(0, statement.getMaxRows());
+            statement.setMaxRows(2);
+            Assertions.assertEquals(2, statement.getMaxRows());
+            Assertions.assertEquals(Arrays.asList(KATHY, SERGEI),
+                    select(statement, "SELECT * FROM \"2009\""));
+            Assertions.assertEquals(Arrays.asList("Sergei2", "Tom2"),
+                    select(statement, "SELECT RCol2 FROM \"2009\" WHERE RCol1 > 12"));
+            Assertions.assertEquals(Arrays.asList("15"),
+                    select(statement, "SELECT RCol1 FROM \"2009\" LIMIT 1 OFFSET 1"));
+            Assertions.assertEquals(Arrays.asList("15", "13"),
+                    select(statement, "SELECT RCol1 FROM \"2009\" OFFSET 1"));
+            Assertions.assertEquals(Arrays.asList("15", "13"),
+                    select(statement, "SELECT RCol1 FROM \"2009\" ORDER BY 1 DESC"));
+            Assertions.assertEquals(Arrays.asList("Kathy2", "Sergei2"),
+                    select(statement, "SELECT RCol2 FROM \"2009\" GROUP BY RCol2 ORDER BY 1"));
+            statement.setMaxRows(0);
+            Assertions.assertEquals(Arrays.asList(KATHY, SERGEI, TOM),
+                    select(statement, "SELECT * FROM \"2009\""));
+            Assertions.assertThrows(SQLException.class, () -> statement.setMaxRows(-1));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testLimitWithoutOrder(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(Arrays.asList(KATHY),
+                    select(statement, "SELECT * FROM \"2009\" LIMIT 1"));
+            Assertions.assertEquals(Arrays.asList(),
+                    select(statement, "SELECT * FROM \"2009\" LIMIT 0"));
+            Assertions.assertEquals(Arrays.asList(KATHY, SERGEI, TOM),
+                    select(statement, "SELECT * FROM \"2009\""));
+            try (PreparedStatement prepared = connection.prepareStatement(
+                    "SELECT RCol2 FROM \"2009\" WHERE RCol1 < ? LIMIT 1")) {
+                prepared.setInt(1, 14);
+                try (ResultSet resultSet = prepared.executeQuery()) {
+                    Assertions.assertTrue(resultSet.next());
+                    Assertions.assertEquals("Kathy2", resultSet.getString(1));
+                    Assertions.assertFalse(resultSet.next());
+                }
+            }
+        }
+    }
+}
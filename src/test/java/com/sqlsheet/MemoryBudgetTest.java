@@ -0,0 +1,76 @@
+package com.sqlsheet;
+
+import com.sqlsheet.stream.XlsStreamConnection;
+import org.apache.poi.openxml4j.opc.ZipPackage;
+import org.apache.poi.openxml4j.util.ZipInputStreamZipEntrySource;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+
+public class MemoryBudgetTest {
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @Test
+    public void testSettingsDoNotLeakIntoOtherConnections() throws SQLException {
+        int threshold = ZipInputStreamZipEntrySource.getThresholdBytesForTempFiles();
+        boolean tempFileParts = ZipPackage.useTempFilePackageParts();
+
+        try (Connection connection =
+                DriverManager.getConnection("jdbc:xls:classpath:/test.xlsx?readStreaming=true")) {
+            Assertions.assertTrue(
+                    connection.unwrap(XlsStreamConnection.class).getEstimatedMemory() > 0);
+        }
+        try (Connection connection = DriverManager
+                .getConnection("jdbc:xls:classpath:/test.xls?tempFileThreshold=1024")) {
+            Assertions.assertTrue(
+                    connection.unwrap(XlsConnection.class).getEstimatedMemory() > 0);
+        }
+
+        Assertions.assertEquals(threshold,
+                ZipInputStreamZipEntrySource.getThresholdBytesForTempFiles());
+        Assertions.assertEquals(tempFileParts, ZipPackage.useTempFilePackageParts());
+    }
+
+    @Test
+    public void testWorkbookExceedingBudgetIsRejected() {
+        SQLException exception = Assertions.assertThrows(SQLException.class,
+                () -> DriverManager.getConnection(
+                        "jdbc:xls:classpath:/test.xlsx?readOnly=true&maxWorkbookMemory=1"));
+        Assertions.assertTrue(exception.getMessage().contains(XlsDriver.MAX_WORKBOOK_MEMORY));
+    }
+
+    @Test
+    public void testCachedWorkbookIsEstimatedOnce() throws IOException {
+        WorkbookCache cache = new WorkbookCache(1);
+        WorkbookCache.Entry entry = cache.acquire("file:/estimated.xlsx", 1L, 10L, () -> {
+            XSSFWorkbook workbook = new XSSFWorkbook();
+            workbook.createSheet("DATA").createRow(0).createCell(0).setCellValue(1);
+            return workbook;
+        });
+        long estimate = MemoryBudget.estimate(entry.getWorkbook());
+        Assertions.assertEquals(estimate, entry.getEstimatedMemory());
+
+        // a cache hit compares the estimate taken when the workbook was loaded
+        Sheet sheet = entry.getWorkbook().getSheet("DATA");
+        for (int i = 1; i < 100; i++) {
+            sheet.createRow(i).createCell(0).setCellValue(i);
+        }
+        Assertions.assertEquals(estimate, entry.getEstimatedMemory());
+        Properties info = new Properties();
+        info.setProperty(XlsDriver.MAX_WORKBOOK_MEMORY, Long.toString(estimate));
+        MemoryBudget.inMemory(info).verify(entry.getEstimatedMemory());
+        cache.release(entry);
+    }
+}
@@ -0,0 +1,145 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Properties;
+
+import static com.sqlsheet.TestSheets.KATHY;
+import static com.sqlsheet.TestSheets.SERGEI;
+import static com.sqlsheet.TestSheets.TOM;
+import static com.sqlsheet.TestSheets.select;
+
+public class OrderByTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx", "jdbc:xls:classpath:/test.xls",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testOrderBy(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            Assertions.assertEquals(Arrays.asList(KATHY, TOM, SERGEI),
+                    select(connection, "SELECT * FROM \"2009\" ORDER BY RCol1"));
+            Assertions.assertEquals(Arrays.asList("Tom2", "Sergei2", "Kathy2"),
+                    select(connection, "SELECT RCol2 FROM \"2009\" ORDER BY 1 DESC"));
+            Assertions.assertEquals(Arrays.asList("Sergei2", "Tom2", "Kathy2"),
+                    select(connection, "SELECT RCol2 AS name FROM \"2009\" ORDER BY RCol3"));
+            Assertions.assertEquals(Arrays.asList("Tom2", "Sergei2"),
+                    select(connection,
+                            "SELECT RCol2 n FROM \"2009\" WHERE RCol1 > 12 ORDER BY n DESC"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx", "jdbc:xls:classpath:/test.xls",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testLimit(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            Assertions.assertEquals(Arrays.asList(SERGEI, TOM),
+                    select(connection, "SELECT * FROM \"2009\" ORDER BY RCol1 DESC LIMIT 2"));
+            Assertions.assertEquals(Arrays.asList("13"), select(connection,
+                    "SELECT RCol1 FROM \"2009\" ORDER BY RCol1 LIMIT 1 OFFSET 1"));
+            Assertions.assertEquals(Arrays.asList("11"), select(connection,
+                    "SELECT RCol1 FROM \"2009\" ORDER BY RCol3 DESC FETCH FIRST 1 ROWS ONLY"));
+            Assertions.assertEquals(Arrays.asList("11"), select(connection,
+                    "SELECT RCol1 FROM \"2009\" ORDER BY RCol3 DESC FETCH FIRST ROW ONLY"));
+            Assertions.assertEquals(Arrays.asList("11", "13", "15"),
+                    select(connection, "SELECT RCol1 FROM \"2009\" ORDER BY 1 LIMIT ALL"));
+            Assertions.assertEquals(Arrays.asList("11", "13", "15"),
+                    select(connection, "SELECT RCol1 FROM \"2009\" ORDER BY 1 LIMIT 10"));
+            Assertions.assertEquals(Arrays.asList(),
+                    select(connection, "SELECT RCol1 FROM \"2009\" ORDER BY 1 LIMIT 0"));
+            Assertions.assertEquals(Arrays.asList("15", "13"),
+                    select(connection, "SELECT RCol1 FROM \"2009\" LIMIT 5 OFFSET 1"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testResultSet(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery(
+                        "SELECT RCol2, RCol1 AS num FROM \"2009\" ORDER BY RCol3 DESC")) {
+            Assertions.assertEquals(2, resultSet.getMetaData().getColumnCount());
+            Assertions.assertEquals("num", resultSet.getMetaData().getColumnLabel(2));
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertEquals("Kathy2", resultSet.getString("rcol2"));
+            Assertions.assertEquals(11, resultSet.getInt("num"));
+            Assertions.assertEquals(11d, resultSet.getObject(2));
+            Assertions.assertEquals(1, resultSet.getRow());
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertFalse(resultSet.next());
+            Assertions.assertThrows(SQLException.class, () -> resultSet.getString(3));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testErrors(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT * FROM \"2009\" ORDER BY MISSING"));
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT RCol1 FROM \"2009\" ORDER BY 2"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testSpilled(boolean readStreaming) throws Exception {
+        int count = 5000;
+        Path path = TestSheets.writeWorkbook(directory, "sort.xlsx", workbook -> {
+            Sheet sheet = workbook.createSheet("DATA");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("ID");
+            header.createCell(1).setCellValue("NAME");
+            for (int i = 1; i <= count; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue((i * 7919) % count);
+                row.createCell(1).setCellValue("name" + i);
+            }
+        });
+        Properties info = new Properties();
+        info.setProperty(XlsDriver.QUERY_MEMORY, "10000");
+        info.setProperty(XlsDriver.READ_STREAMING, Boolean.toString(readStreaming));
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri(), info);
+                Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet =
+                    statement.executeQuery("SELECT ID FROM DATA ORDER BY ID DESC")) {
+                for (int i = count - 1; i >= 0; i--) {
+                    Assertions.assertTrue(resultSet.next());
+                    Assertions.assertEquals(i, resultSet.getInt(1));
+                }
+                Assertions.assertFalse(resultSet.next());
+            }
+            Assertions.assertEquals(Arrays.asList("4999", "4998", "4997"), select(connection,
+                    "SELECT ID FROM DATA ORDER BY ID DESC LIMIT 3"));
+            Assertions.assertEquals(Arrays.asList("7|name3753", "8|name1432"), select(connection,
+                    "SELECT ID, NAME FROM DATA ORDER BY ID LIMIT 2 OFFSET 7"));
+        }
+    }
+}
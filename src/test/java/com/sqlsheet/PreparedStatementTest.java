@@ -0,0 +1,171 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class PreparedStatementTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private Connection connect() throws Exception {
+        Path path = directory.resolve("prepared.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+                OutputStream out = Files.newOutputStream(path)) {
+            Sheet sheet = workbook.createSheet("Items");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Id");
+            header.createCell(1).setCellValue("Name");
+            for (int i = 1; i <= 10; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellValue("item" + i);
+            }
+            workbook.write(out);
+        }
+        return DriverManager.getConnection("jdbc:xls:" + path.toUri());
+    }
+
+    private static List<String> names(PreparedStatement statement, Object... parameters)
+            throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        List<String> names = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                names.add(resultSet.getString("Name"));
+            }
+        }
+        return names;
+    }
+
+    private static ResultSetMetaData metadata(PreparedStatement statement) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.getMetaData();
+        }
+    }
+
+    @Test
+    public void testExecutedAgain() throws Exception {
+        try (Connection connection = connect();
+                PreparedStatement select = connection
+                        .prepareStatement("SELECT * FROM Items WHERE Id > ? AND Name LIKE ?")) {
+            Assertions.assertEquals(Arrays.asList("item9", "item10"), names(select, 8, "item%"));
+            Assertions.assertEquals(Arrays.asList("item10"), names(select, 1, "%0"));
+            Assertions.assertEquals(Arrays.asList("item3"), names(select, 2, "_tem3"));
+            // the sheet, its metadata and the condition were resolved by the first execution
+            Assertions.assertSame(metadata(select), metadata(select));
+
+            select.clearParameters();
+            select.setInt(1, 1);
+            Assertions.assertThrows(SQLException.class, select::executeQuery);
+        }
+    }
+
+    private static List<String> firstColumn(PreparedStatement statement, Object... parameters)
+            throws SQLException {
+        for (int i = 0; i < parameters.length; i++) {
+            statement.setObject(i + 1, parameters[i]);
+        }
+        List<String> values = new ArrayList<>();
+        try (ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                values.add(resultSet.getString(1));
+            }
+        }
+        return values;
+    }
+
+    @Test
+    public void testQueryResolvedOnce() throws Exception {
+        try (Connection connection = connect();
+                PreparedStatement sorted = connection.prepareStatement(
+                        "SELECT Name FROM Items WHERE Id > ? ORDER BY Id DESC LIMIT 2");
+                PreparedStatement grouped = connection.prepareStatement(
+                        "SELECT Name, COUNT(*) FROM Items WHERE Id <= ? GROUP BY Name"
+                                + " HAVING COUNT(*) > ? ORDER BY Name");
+                PreparedStatement joined = connection.prepareStatement(
+                        "SELECT a.Name FROM Items a JOIN Items b ON a.Id = b.Id"
+                                + " WHERE b.Id > ? ORDER BY a.Id")) {
+            Assertions.assertEquals(Arrays.asList("item10", "item9"), firstColumn(sorted, 0));
+            Assertions.assertEquals(Arrays.asList("item10", "item9"), firstColumn(sorted, 8));
+            Assertions.assertEquals(Arrays.asList(), firstColumn(sorted, 10));
+            Assertions.assertEquals(Arrays.asList("item1", "item2", "item3"),
+                    firstColumn(grouped, 3, 0));
+            Assertions.assertEquals(Arrays.asList(), firstColumn(grouped, 3, 1));
+            Assertions.assertEquals(Arrays.asList("item9", "item10"), firstColumn(joined, 8));
+            Assertions.assertEquals(Arrays.asList("item10"), firstColumn(joined, 9));
+
+            // the columns and keys were resolved by the first execution only
+            for (PreparedStatement select : Arrays.asList(sorted, grouped, joined)) {
+                Assertions.assertSame(metadata(select), metadata(select));
+            }
+            ResultSetMetaData before = metadata(sorted);
+            try (PreparedStatement insert = connection
+                    .prepareStatement("INSERT INTO Items (Id, Name) VALUES (11, 'new11')")) {
+                insert.executeUpdate();
+            }
+            Assertions.assertEquals(Arrays.asList("new11", "item10"), firstColumn(sorted, 0));
+            Assertions.assertNotSame(before, metadata(sorted));
+            Assertions.assertEquals(Arrays.asList("item10", "new11"), firstColumn(joined, 9));
+        }
+    }
+
+    @Test
+    public void testModifiedSheet() throws Exception {
+        try (Connection connection = connect();
+                PreparedStatement select = connection
+                        .prepareStatement("SELECT * FROM Items WHERE Id >= ?");
+                PreparedStatement insert = connection
+                        .prepareStatement("INSERT INTO Items (Id, Name) VALUES (?, ?)");
+                PreparedStatement update = connection
+                        .prepareStatement("UPDATE Items SET Name = ? WHERE Id = ?")) {
+            Assertions.assertEquals(Arrays.asList("item10"), names(select, 10));
+            ResultSetMetaData before = metadata(select);
+            for (int i = 11; i <= 13; i++) {
+                insert.setInt(1, i);
+                insert.setString(2, "new" + i);
+                Assertions.assertEquals(1, insert.executeUpdate());
+            }
+            Assertions.assertEquals(Arrays.asList("item10", "new11", "new12", "new13"),
+                    names(select, 10));
+            Assertions.assertNotSame(before, metadata(select));
+
+            for (int i = 11; i <= 12; i++) {
+                update.setString(1, "updated" + i);
+                update.setInt(2, i);
+                Assertions.assertEquals(1, update.executeUpdate());
+            }
+            Assertions.assertEquals(Arrays.asList("updated11", "updated12", "new13"),
+                    names(select, 11));
+
+            insert.clearParameters();
+            insert.setInt(1, 14);
+            Assertions.assertThrows(SQLException.class, insert::executeUpdate);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.sqlsheet;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Workbook fixtures and query helpers shared by the tests.
+ */
+public final class TestSheets {
+
+    /**
+     * The rows of the sheet 2009 of test.xls and test.xlsx, as read by {@link #rows(ResultSet)}.
+     */
+    public static final String KATHY = "11|Kathy2|2010-04-27";
+    public static final String SERGEI = "15|Sergei2|1900-01-02";
+    public static final String TOM = "13|Tom2|1988-07-09";
+
+    /**
+     * Fills a workbook before it is written.
+     */
+    public interface Content {
+        void write(Workbook workbook) throws Exception;
+    }
+
+    private TestSheets() {}
+
+    /**
+     * @param directory the directory to write to, usually a {@code @TempDir}
+     * @param name the file name, an xls workbook is written if it ends with {@code .xls}, an xlsx
+     *        workbook otherwise
+     * @param content creates the sheets
+     * @return the written file
+     */
+    public static Path writeWorkbook(Path directory, String name, Content content)
+            throws Exception {
+        Path path = directory.resolve(name);
+        try (Workbook workbook = name.endsWith(".xls") ? new HSSFWorkbook() : new XSSFWorkbook();
+                OutputStream out = Files.newOutputStream(path)) {
+            content.write(workbook);
+            workbook.write(out);
+        }
+        return path;
+    }
+
+    public static Path emptyWorkbook(Path directory, String name) throws Exception {
+        return writeWorkbook(directory, name, workbook -> {
+        });
+    }
+
+    /**
+     * @param resultSet the rows to read, positioned before the first one
+     * @return each row as its column values separated by {@code |}
+     */
+    public static List<String> rows(ResultSet resultSet) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        int columns = resultSet.getMetaData().getColumnCount();
+        while (resultSet.next()) {
+            StringBuilder row = new StringBuilder();
+            for (int i = 1; i <= columns; i++) {
+                row.append(i > 1 ? "|" : "").append(resultSet.getString(i));
+            }
+            rows.add(row.toString());
+        }
+        return rows;
+    }
+
+    public static List<String> select(Statement statement, String sql) throws SQLException {
+        try (ResultSet resultSet = statement.executeQuery(sql)) {
+            return rows(resultSet);
+        }
+    }
+
+    public static List<String> select(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            return select(statement, sql);
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.FormulaEvaluator;
+import org.apache.poi.ss.usermodel.Name;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.ss.usermodel.WorkbookFactory;
+import org.apache.poi.ss.util.CellRangeAddress;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.sqlsheet.TestSheets.select;
+
+public class UpdateDeleteTest {
+
+    private static final int PEOPLE = 20;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private static void writePeople(Workbook workbook) {
+        for (String table : new String[] {"People", "Archive"}) {
+            Sheet sheet = workbook.createSheet(table);
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Id");
+            header.createCell(1).setCellValue("Name");
+            header.createCell(2).setCellValue("Amount");
+            for (int i = 1; i <= PEOPLE; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellValue("Person" + i);
+                row.createCell(2).setCellValue(i * 10);
+            }
+        }
+    }
+
+    private Path write(String name) throws Exception {
+        return TestSheets.writeWorkbook(directory, name, UpdateDeleteTest::writePeople);
+    }
+
+    private static List<String> expected(List<Integer> ids) {
+        List<String> rows = new ArrayList<>();
+        for (int id : ids) {
+            rows.add(id + "|" + (id > 15 ? "Gone" : "Person" + id) + "|"
+                    + (id == 4 ? 1 : id == 5 ? -2 : id > 15 ? 0 : id * 10));
+        }
+        return rows;
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"people.xlsx", "people.xls"})
+    public void testUpdateAndDelete(String name) throws Exception {
+        Path path = write(name);
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 1; i <= PEOPLE; i++) {
+            ids.add(i);
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(5, statement.executeUpdate(
+                    "UPDATE People SET Name = 'Gone', Amount = 0 WHERE Id > 15"));
+            Assertions.assertEquals(0, statement.executeUpdate(
+                    "UPDATE People SET Name = 'Nobody' WHERE Id > 100"));
+            try (PreparedStatement prepared = connection
+                    .prepareStatement("UPDATE People SET Amount = ? WHERE Id = ?")) {
+                prepared.setInt(1, 1);
+                prepared.setInt(2, 4);
+                prepared.addBatch();
+                prepared.setInt(1, -2);
+                prepared.setInt(2, 5);
+                prepared.addBatch();
+                Assertions.assertArrayEquals(new int[] {1, 1}, prepared.executeBatch());
+            }
+            Assertions.assertEquals(expected(ids), select(statement,
+                    "SELECT Id, Name, Amount FROM People"));
+
+            // runs of rows deleted at the start, in the middle and at the end
+            Assertions.assertEquals(8, statement.executeUpdate(
+                    "DELETE FROM People WHERE Id IN (1, 2, 7, 8, 9, 12, 19, 20)"));
+            ids.removeAll(Arrays.asList(1, 2, 7, 8, 9, 12, 19, 20));
+            Assertions.assertEquals(expected(ids), select(statement,
+                    "SELECT Id, Name, Amount FROM People"));
+            try (PreparedStatement prepared = connection
+                    .prepareStatement("DELETE FROM People WHERE Name = ?")) {
+                prepared.setString(1, "Gone");
+                Assertions.assertEquals(3, prepared.executeUpdate());
+            }
+            ids.removeAll(Arrays.asList(16, 17, 18));
+            Assertions.assertEquals(0, statement.executeUpdate("DELETE FROM People WHERE Id = 1"));
+            Assertions.assertFalse(statement.execute("DELETE FROM Archive"));
+            Assertions.assertEquals(Collections.emptyList(), select(statement,
+                    "SELECT Id, Name, Amount FROM Archive"));
+
+            Assertions.assertThrows(SQLException.class, () -> statement.executeUpdate(
+                    "UPDATE People SET Missing = 1"));
+            Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                    () -> statement.executeUpdate("UPDATE People SET Amount = Amount + 1"));
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(expected(ids), select(statement,
+                    "SELECT Id, Name, Amount FROM People"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"people.xlsx", "people.xls"})
+    public void testDeleteRow(String name) throws Exception {
+        Path path = write(name);
+        List<String> kept = new ArrayList<>();
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            try (Statement deleting = connection.createStatement();
+                    ResultSet resultSet = deleting.executeQuery("SELECT * FROM People")) {
+                Assertions.assertThrows(SQLException.class, resultSet::deleteRow);
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("Id");
+                    if (id % 2 == 0 || id == 1) {
+                        resultSet.deleteRow();
+                    } else {
+                        kept.add(id + "|Person" + id + "|" + id * 10);
+                    }
+                }
+            }
+            Assertions.assertEquals(9, kept.size());
+            Assertions.assertEquals(kept, select(statement, "SELECT Id, Name, Amount FROM People"));
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(kept, select(statement, "SELECT Id, Name, Amount FROM People"));
+        }
+    }
+
+    @Test
+    public void testOnlyModifiedSheetSaved() throws Exception {
+        Path path = write("people.xlsx");
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("DELETE FROM Archive WHERE Id < 3");
+            Assertions.assertEquals(Collections.singleton("Archive"),
+                    connection.unwrap(XlsConnection.class).getChanges().getModifiedSheets());
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(PEOPLE, select(statement,
+                    "SELECT Id, Name, Amount FROM People").size());
+            List<String> archive = select(statement, "SELECT Id, Name, Amount FROM Archive");
+            Assertions.assertEquals(PEOPLE - 2, archive.size());
+            Assertions.assertEquals("3|Person3|30", archive.get(0));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"people.xlsx", "people.xls"})
+    public void testInsertAfterDelete(String name) throws Exception {
+        Path path = write(name);
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO People (Id, Name, Amount) VALUES (21, 'A', 1)");
+            Assertions.assertEquals(10, statement.executeUpdate(
+                    "DELETE FROM People WHERE Id > 10 AND Id < 21"));
+            statement.executeUpdate("INSERT INTO People (Id, Name, Amount) VALUES (22, 'B', 2)");
+            List<String> rows = select(statement, "SELECT Id, Name, Amount FROM People");
+            Assertions.assertEquals(12, rows.size());
+            Assertions.assertEquals(Arrays.asList("21|A|1", "22|B|2"), rows.subList(10, 12));
+        }
+    }
+
+    @Test
+    public void testDeleteShiftsFormulasOfOtherSheets() throws Exception {
+        Path path = TestSheets.writeWorkbook(directory, "people.xlsx", workbook -> {
+            writePeople(workbook);
+            workbook.getSheet("Archive").getRow(1).createCell(3).setCellFormula("People!C6");
+        });
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(1, statement.executeUpdate("DELETE FROM People WHERE Id = 1"));
+        }
+        try (InputStream in = Files.newInputStream(path);
+                XSSFWorkbook workbook = new XSSFWorkbook(in)) {
+            Assertions.assertEquals("People!C5",
+                    workbook.getSheet("Archive").getRow(1).getCell(3).getCellFormula());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"people.xlsx", "people.xls"})
+    public void testDeleteInterleavedRowsWithFormulas(String name) throws Exception {
+        Path path = TestSheets.writeWorkbook(directory, name, workbook -> {
+            writePeople(workbook);
+            Sheet people = workbook.getSheet("People");
+            people.getRow(0).createCell(3).setCellValue("Double");
+            for (int i = 1; i <= PEOPLE; i++) {
+                people.getRow(i).createCell(3).setCellFormula("C" + (i + 1) + "*2");
+            }
+            people.getRow(1).createCell(4).setCellFormula("SUM(C2:C21)");
+            Sheet archive = workbook.getSheet("Archive");
+            archive.getRow(1).createCell(3).setCellFormula("People!C6");
+            archive.getRow(2).createCell(3).setCellFormula("People!C5");
+            Name total = workbook.createName();
+            total.setNameName("Total");
+            total.setRefersToFormula("People!$C$2:$C$21");
+        });
+        List<Integer> ids = new ArrayList<>();
+        List<String> rows = new ArrayList<>();
+        for (int i = 1; i <= PEOPLE; i += 2) {
+            ids.add(i);
+            rows.add(i + "|Person" + i + "|" + i * 10 + "|" + i * 20.0);
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(PEOPLE / 2, statement.executeUpdate(
+                    "DELETE FROM People WHERE Id IN (2, 4, 6, 8, 10, 12, 14, 16, 18, 20)"));
+            Assertions.assertEquals(rows, select(statement,
+                    "SELECT Id, Name, Amount, Double FROM People"));
+        }
+        try (InputStream in = Files.newInputStream(path);
+                Workbook workbook = WorkbookFactory.create(in)) {
+            Sheet people = workbook.getSheet("People");
+            Assertions.assertEquals(PEOPLE / 2, people.getLastRowNum());
+            for (int i = 1; i <= PEOPLE / 2; i++) {
+                Row row = people.getRow(i);
+                Assertions.assertEquals(ids.get(i - 1), (int) row.getCell(0).getNumericCellValue());
+                Assertions.assertEquals("C" + (i + 1) + "*2", row.getCell(3).getCellFormula());
+            }
+            Assertions.assertEquals("SUM(C2:C11)", people.getRow(1).getCell(4).getCellFormula());
+            Sheet archive = workbook.getSheet("Archive");
+            Assertions.assertEquals("People!C4", archive.getRow(1).getCell(3).getCellFormula());
+            // xls files drop the sheet name of deleted references
+            Assertions.assertTrue(
+                    archive.getRow(2).getCell(3).getCellFormula().endsWith("#REF!"));
+            Assertions.assertEquals("People!$C$2:$C$11",
+                    workbook.getName("Total").getRefersToFormula());
+
+            FormulaEvaluator evaluator = workbook.getCreationHelper().createFormulaEvaluator();
+            Assertions.assertEquals(380.0,
+                    evaluator.evaluate(people.getRow(10).getCell(3)).getNumberValue());
+            Assertions.assertEquals(1000.0,
+                    evaluator.evaluate(people.getRow(1).getCell(4)).getNumberValue());
+            Assertions.assertEquals(50.0,
+                    evaluator.evaluate(archive.getRow(1).getCell(3)).getNumberValue());
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"people.xlsx", "people.xls"})
+    public void testDeleteInterleavedRowsWithMergedRegion(String name) throws Exception {
+        Path path = TestSheets.writeWorkbook(directory, name, workbook -> {
+            writePeople(workbook);
+            workbook.getSheet("People").addMergedRegion(CellRangeAddress.valueOf("D10:E11"));
+        });
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(3, statement.executeUpdate(
+                    "DELETE FROM People WHERE Id IN (2, 5, 12)"));
+            Assertions.assertEquals(Arrays.asList("1", "3", "4", "6", "7", "8", "9", "10", "11"),
+                    select(statement, "SELECT Id FROM People WHERE Id < 12"));
+        }
+        try (InputStream in = Files.newInputStream(path);
+                Workbook workbook = WorkbookFactory.create(in)) {
+            Assertions.assertEquals("D8:E9",
+                    workbook.getSheet("People").getMergedRegion(0).formatAsString());
+        }
+    }
+
+    @Test
+    public void testWriteStreaming() throws Exception {
+        Path path = TestSheets.emptyWorkbook(directory, "stream.xlsx");
+        try (Connection connection = DriverManager
+                .getConnection("jdbc:xls:" + path.toUri() + "?writeStreaming=true");
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE Log (Id INT)");
+            statement.executeUpdate("INSERT INTO Log (Id) VALUES (1)");
+            Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                    () -> statement.executeUpdate("DELETE FROM Log"));
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.sqlsheet.TestSheets.rows;
+
+public class WhereClauseTest {
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private static List<String> select(Connection connection, String where) throws SQLException {
+        return TestSheets.select(connection, "SELECT RCol2 FROM \"2009\" WHERE " + where);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx", "jdbc:xls:classpath:/test.xls",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testConditions(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            Assertions.assertEquals(Arrays.asList("Sergei2", "Tom2"),
+                    select(connection, "RCol1 > 12"));
+            Assertions.assertEquals(Arrays.asList("Kathy2", "Tom2"),
+                    select(connection, "RCol2 LIKE 'K%' OR RCol1 = 13"));
+            Assertions.assertEquals(Arrays.asList("Sergei2", "Tom2"),
+                    select(connection, "RCol3 < {d '1989-01-01'}"));
+            Assertions.assertEquals(Arrays.asList("Tom2"),
+                    select(connection, "RCol1 BETWEEN 12 AND 14 AND RCol2 IS NOT NULL"));
+            Assertions.assertEquals(Arrays.asList("Kathy2"),
+                    select(connection, "rcol1 IN (11, 15) AND NOT RCol2 = 'Sergei2'"));
+            Assertions.assertEquals(Arrays.asList("Kathy2", "Sergei2", "Tom2"),
+                    select(connection, "RCol1 * 2 - 1 >= 21"));
+            Assertions.assertEquals(Arrays.asList(),
+                    select(connection, "RCol2 IS NULL"));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testUnselectedColumn(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement
+                        .executeQuery("SELECT RCol2 FROM \"2009\" WHERE RCol1 = 15")) {
+            Assertions.assertEquals(1, resultSet.getMetaData().getColumnCount());
+            Assertions.assertEquals(Arrays.asList("Sergei2"), rows(resultSet));
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testParameters(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT RCol2 FROM \"2009\" WHERE RCol1 >= ? AND RCol2 <> ?")) {
+            statement.setInt(1, 13);
+            statement.setString(2, "Tom2");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assertions.assertEquals(Arrays.asList("Sergei2"), rows(resultSet));
+            }
+            statement.setInt(1, 11);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                Assertions.assertEquals(Arrays.asList("Kathy2", "Sergei2"), rows(resultSet));
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"jdbc:xls:classpath:/test.xlsx",
+            "jdbc:xls:classpath:/test.xlsx?readStreaming=true"})
+    public void testErrors(String url) throws Exception {
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT * FROM \"2009\" WHERE MISSING = 1"));
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT * FROM \"2009\" WHERE RCol1 = ?"));
+        }
+    }
+}
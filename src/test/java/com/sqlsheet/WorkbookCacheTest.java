@@ -0,0 +1,187 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class WorkbookCacheTest {
+
+    private static final int FORMULA_ROWS = 200;
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @Test
+    public void testReadOnlyConnectionsShareWorkbook() throws SQLException {
+        String url = "jdbc:xls:classpath:/test.xlsx?readOnly=true";
+        try (Connection first = DriverManager.getConnection(url);
+                Connection second = DriverManager.getConnection(url)) {
+            Assertions.assertSame(
+                    ((XlsConnection) first).getWorkBook(),
+                    ((XlsConnection) second).getWorkBook());
+
+            try (Statement statement = second.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT * FROM SHEET1")) {
+                Assertions.assertTrue(resultSet.next());
+            }
+        }
+    }
+
+    @Test
+    public void testReadOnlyConnectionKnowsLocation() throws SQLException {
+        try (Connection connection =
+                DriverManager.getConnection("jdbc:xls:classpath:/test.xlsx?readOnly=true");
+                ResultSet schemas = connection.getMetaData().getSchemas()) {
+            Assertions.assertTrue(schemas.next());
+            Assertions.assertEquals("test", schemas.getString("TABLE_SCHEM"));
+        }
+    }
+
+    @Test
+    public void testCacheSizeIsDriverWide() throws SQLException {
+        WorkbookCache cache = WorkbookCache.getInstance();
+        int maximumSize = cache.getMaximumSize();
+        try (Connection connection = DriverManager.getConnection(
+                "jdbc:xls:classpath:/test.xlsx?readOnly=true&workbookCacheSize=0")) {
+            XlsConnection xlsConnection = connection.unwrap(XlsConnection.class);
+            xlsConnection.getWorkBook();
+            // the cache stays in use, only its size is ignored
+            Assertions.assertTrue(xlsConnection.isSharedWorkbook());
+            Assertions.assertEquals(maximumSize, cache.getMaximumSize());
+        }
+        try {
+            XlsDriver.setWorkbookCacheSize(maximumSize + 1);
+            Assertions.assertEquals(maximumSize + 1, cache.getMaximumSize());
+        } finally {
+            XlsDriver.setWorkbookCacheSize(maximumSize);
+        }
+    }
+
+    @Test
+    public void testReadOnlyConnectionRejectsModification() throws SQLException {
+        try (Connection connection =
+                DriverManager.getConnection("jdbc:xls:classpath:/test.xlsx?readOnly=true");
+                Statement statement = connection.createStatement()) {
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeUpdate("CREATE TABLE SHARED_TEST(COL1 INT)"));
+        }
+    }
+
+    /**
+     * Writes a sheet whose column B doubles column A by formula, with the results cached in the
+     * file. The cached result of the last row is wrong on purpose.
+     */
+    private Path writeFormulas() throws Exception {
+        return TestSheets.writeWorkbook(directory, "formulas.xlsx", workbook -> {
+            Sheet sheet = workbook.createSheet("DATA");
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("VALUE");
+            header.createCell(1).setCellValue("TWICE");
+            for (int i = 1; i <= FORMULA_ROWS; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+                row.createCell(1).setCellFormula("A" + (i + 1) + "*2");
+            }
+            workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+            sheet.getRow(FORMULA_ROWS).getCell(1).setCellValue(-1);
+        });
+    }
+
+    @Test
+    public void testConcurrentFormulaReads() throws Exception {
+        String url = "jdbc:xls:" + writeFormulas().toUri() + "?readOnly=true";
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Integer>> reads = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                reads.add(executor.submit(() -> {
+                    int rows = 0;
+                    try (Connection connection = DriverManager.getConnection(url);
+                            Statement statement = connection.createStatement();
+                            ResultSet resultSet = statement.executeQuery(
+                                    "SELECT VALUE, TWICE FROM DATA WHERE TWICE > 10")) {
+                        while (resultSet.next()) {
+                            Assertions.assertEquals(resultSet.getInt(1) * 2, resultSet.getInt(2));
+                            rows++;
+                        }
+                    }
+                    return rows;
+                }));
+            }
+            for (Future<Integer> read : reads) {
+                Assertions.assertEquals(FORMULA_ROWS - 6, read.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSharedWorkbookKeepsCachedFormulaResults() throws Exception {
+        Path path = writeFormulas();
+        String sql = "SELECT TWICE FROM DATA WHERE VALUE = " + FORMULA_ROWS;
+        try (Connection shared = DriverManager.getConnection(
+                "jdbc:xls:" + path.toUri() + "?readOnly=true")) {
+            Assertions.assertEquals(List.of("-1.0"), TestSheets.select(shared, sql));
+            Assertions.assertEquals(-1, ((XlsConnection) shared).getWorkBook().getSheet("DATA")
+                    .getRow(FORMULA_ROWS).getCell(1).getNumericCellValue());
+        }
+        try (Connection own = DriverManager.getConnection("jdbc:xls:" + path.toUri())) {
+            Assertions.assertEquals(List.of(String.valueOf(FORMULA_ROWS * 2d)),
+                    TestSheets.select(own, sql));
+        }
+    }
+
+    @Test
+    public void testEvictionWaitsForRelease() throws IOException {
+        WorkbookCache cache = new WorkbookCache(1);
+        AtomicInteger loads = new AtomicInteger();
+        WorkbookCache.Loader loader = () -> {
+            loads.incrementAndGet();
+            return new XSSFWorkbook();
+        };
+
+        WorkbookCache.Entry first = cache.acquire("file:/a.xlsx", 1L, 10L, loader);
+        WorkbookCache.Entry again = cache.acquire("file:/a.xlsx", 1L, 10L, loader);
+        Assertions.assertSame(first, again);
+        Assertions.assertEquals(1, loads.get());
+
+        // a different file pushes the first one out, but it stays usable while referenced
+        WorkbookCache.Entry other = cache.acquire("file:/b.xlsx", 1L, 10L, loader);
+        Assertions.assertEquals(1, cache.size());
+        Workbook workbook = first.getWorkbook();
+        Assertions.assertNotNull(workbook.createSheet("still open"));
+        cache.release(first);
+        cache.release(again);
+        cache.release(other);
+
+        // a modified file is parsed again
+        cache.acquire("file:/b.xlsx", 2L, 10L, loader);
+        Assertions.assertEquals(3, loads.get());
+        Assertions.assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,107 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+public class WorkbookSaverTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private Path copyTestWorkbook() throws Exception {
+        Path path = directory.resolve("saved.xlsx");
+        Files.copy(getClass().getResourceAsStream("/test.xlsx"), path);
+        return path;
+    }
+
+    private void assertSaved(Path path) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertEquals(1, files.count(), "temporary file left behind");
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM SAVED")) {
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertEquals("value", resultSet.getString("NAME"));
+        }
+    }
+
+    private static void addSheet(Connection connection) throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("CREATE TABLE SAVED (NAME VARCHAR)");
+            statement.executeUpdate("INSERT INTO SAVED (NAME) VALUES ('value')");
+        }
+    }
+
+    @Test
+    public void testSaveOnClose() throws Exception {
+        Path path = copyTestWorkbook();
+        Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+        addSheet(connection);
+        connection.close();
+        Assertions.assertNull(connection.unwrap(XlsConnection.class).getSaveFuture());
+        assertSaved(path);
+    }
+
+    @Test
+    public void testKeepsPermissions() throws Exception {
+        Path path = copyTestWorkbook();
+        Assumptions.assumeTrue(Files.getFileStore(path)
+                .supportsFileAttributeView(PosixFileAttributeView.class));
+        Set<PosixFilePermission> permissions = PosixFilePermissions.fromString("rw-rw-r--");
+        Files.setPosixFilePermissions(path, permissions);
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri())) {
+            addSheet(connection);
+        }
+        assertSaved(path);
+        Assertions.assertEquals(permissions, Files.getPosixFilePermissions(path));
+    }
+
+    @Test
+    public void testAsyncSave() throws Exception {
+        Path path = copyTestWorkbook();
+        Connection connection =
+                DriverManager.getConnection("jdbc:xls:" + path.toUri() + "?asyncSave=true");
+        addSheet(connection);
+        connection.close();
+        Assertions.assertTrue(connection.isClosed());
+        CompletableFuture<Void> saved = connection.unwrap(XlsConnection.class).getSaveFuture();
+        Assertions.assertNotNull(saved);
+        saved.get(30, TimeUnit.SECONDS);
+        assertSaved(path);
+    }
+
+    @Test
+    public void testCloseAsync() throws Exception {
+        Path path = copyTestWorkbook();
+        XlsConnection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri())
+                .unwrap(XlsConnection.class);
+        addSheet(connection);
+        CompletableFuture<Void> saved = connection.closeAsync();
+        Assertions.assertSame(saved, connection.closeAsync());
+        saved.get(30, TimeUnit.SECONDS);
+        assertSaved(path);
+    }
+}
@@ -0,0 +1,106 @@
+package com.sqlsheet;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+public class WorkbookWatcherTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private void writeWorkbook(Path path, String value) throws Exception {
+        Path temp = Files.createTempFile(directory, "tmp", ".xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+                OutputStream out = Files.newOutputStream(temp)) {
+            Sheet sheet = workbook.createSheet("SHEET1");
+            sheet.createRow(0).createCell(0).setCellValue("NAME");
+            Row row = sheet.createRow(1);
+            row.createCell(0).setCellValue(value);
+            workbook.write(out);
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String firstName(Statement statement) throws Exception {
+        try (ResultSet resultSet = statement.executeQuery("SELECT * FROM SHEET1")) {
+            Assertions.assertTrue(resultSet.next());
+            return resultSet.getString("NAME");
+        }
+    }
+
+    @Test
+    public void testReloadOnChange() throws Exception {
+        Path path = directory.resolve("watched.xlsx");
+        writeWorkbook(path, "before");
+        String url = "jdbc:xls:" + path.toUri() + "?watch=true&readOnly=true";
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            XlsConnection xlsConnection = connection.unwrap(XlsConnection.class);
+            Assertions.assertEquals("before", firstName(statement));
+
+            // touching the file keeps the workbook
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+            Thread.sleep(200);
+            Assertions.assertEquals("before", firstName(statement));
+            Assertions.assertEquals(0, xlsConnection.getGeneration());
+
+            writeWorkbook(path, "after");
+            String name = firstName(statement);
+            for (int i = 0; i < 100 && name.equals("before"); i++) {
+                Thread.sleep(100);
+                name = firstName(statement);
+            }
+            Assertions.assertEquals("after", name);
+            Assertions.assertEquals(1, xlsConnection.getGeneration());
+        }
+    }
+
+    @Test
+    public void testReloadKeepsWorkbookOfOpenResultSets() throws Exception {
+        Path path = directory.resolve("watched.xlsx");
+        writeWorkbook(path, "before");
+        String url = "jdbc:xls:" + path.toUri() + "?watch=true&readOnly=true";
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement reading = connection.createStatement();
+                Statement statement = connection.createStatement()) {
+            XlsConnection xlsConnection = connection.unwrap(XlsConnection.class);
+            ResultSet open = reading.executeQuery("SELECT * FROM SHEET1");
+
+            writeWorkbook(path, "after");
+            String name = firstName(statement);
+            for (int i = 0; i < 100 && name.equals("before"); i++) {
+                Thread.sleep(100);
+                name = firstName(statement);
+            }
+            Assertions.assertEquals("after", name);
+            Assertions.assertEquals(1, xlsConnection.getRetiredWorkbookCount());
+
+            // the result set still reads the workbook it was opened on
+            Assertions.assertTrue(open.next());
+            Assertions.assertEquals("before", open.getString("NAME"));
+            open.close();
+            Assertions.assertEquals(0, xlsConnection.getRetiredWorkbookCount());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.StatementEvent;
+import javax.sql.StatementEventListener;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XlsDataSourceTest {
+
+    @Test
+    public void testConnectionsAreReused() throws SQLException {
+        XlsDataSource dataSource = new XlsDataSource("jdbc:xls:classpath:/test.xlsx");
+        try {
+            Connection first = dataSource.getConnection();
+            Connection second = dataSource.getConnection();
+            Assertions.assertSame(
+                    first.unwrap(XlsConnection.class).getWorkBook(),
+                    second.unwrap(XlsConnection.class).getWorkBook());
+            XlsConnection physical = first.unwrap(XlsConnection.class);
+
+            first.close();
+            Assertions.assertTrue(first.isClosed());
+            Assertions.assertThrows(SQLException.class, first::createStatement);
+            Assertions.assertEquals(1, dataSource.getIdleCount());
+
+            try (Connection third = dataSource.getConnection();
+                    Statement statement = third.createStatement();
+                    ResultSet resultSet = statement.executeQuery("SELECT * FROM SHEET1")) {
+                Assertions.assertSame(physical, third.unwrap(XlsConnection.class));
+                Assertions.assertEquals(0, dataSource.getIdleCount());
+                Assertions.assertTrue(resultSet.next());
+            }
+            second.close();
+            Assertions.assertEquals(2, dataSource.getIdleCount());
+        } finally {
+            dataSource.close();
+        }
+        Assertions.assertEquals(0, dataSource.getIdleCount());
+    }
+
+    @Test
+    public void testPoolIsBounded() throws SQLException {
+        XlsDataSource dataSource = new XlsDataSource("jdbc:xls:classpath:/test.xlsx");
+        dataSource.setMaxPoolSize(1);
+        try {
+            Connection first = dataSource.getConnection();
+            Connection second = dataSource.getConnection();
+            XlsConnection physical = second.unwrap(XlsConnection.class);
+            first.close();
+            second.close();
+            Assertions.assertEquals(1, dataSource.getIdleCount());
+            Assertions.assertTrue(physical.isClosed());
+
+            dataSource.setIdleTimeout(0);
+            try (Connection third = dataSource.getConnection()) {
+                Assertions.assertEquals(0, dataSource.getIdleCount());
+                Assertions.assertFalse(third.isClosed());
+            }
+        } finally {
+            dataSource.close();
+        }
+    }
+
+    @Test
+    public void testStatementsCloseWithLogicalConnection() throws SQLException {
+        XlsPooledConnection pooled = new XlsPooledConnection(
+                DriverManager.getConnection("jdbc:xls:classpath:/test.xlsx"));
+        List<String> events = new ArrayList<>();
+        pooled.addStatementEventListener(new StatementEventListener() {
+            @Override
+            public void statementClosed(StatementEvent event) {
+                events.add("closed");
+            }
+
+            @Override
+            public void statementErrorOccurred(StatementEvent event) {
+                events.add("error " + event.getSQLException().getMessage());
+            }
+        });
+        try {
+            Connection connection = pooled.getConnection();
+            Statement statement = connection.createStatement();
+            ResultSet resultSet = statement.executeQuery("SELECT * FROM SHEET1");
+            PreparedStatement prepared =
+                    connection.prepareStatement("SELECT * FROM SHEET1 WHERE COL1 = ?");
+            Assertions.assertSame(connection, statement.getConnection());
+            Assertions.assertSame(connection, prepared.getConnection());
+            Assertions.assertSame(statement, resultSet.getStatement());
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertThrows(SQLException.class, prepared::executeQuery);
+            Assertions.assertEquals(1, events.size());
+
+            connection.close();
+            Assertions.assertTrue(statement.isClosed());
+            Assertions.assertTrue(resultSet.isClosed());
+            Assertions.assertTrue(prepared.isClosed());
+            Assertions.assertEquals("closed", events.get(1));
+            Assertions.assertFalse(pooled.getConnection().isClosed());
+        } finally {
+            pooled.close();
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.sqlsheet;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+public class XlsDirectoryConnectionTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private String copyWorkbooks() throws Exception {
+        for (String[] copy : new String[][] {{"test.xlsx", "alpha.xlsx"}, {"test.xls", "beta.xls"},
+                {"test.xlsx", "~$alpha.xlsx"}}) {
+            try (InputStream in = getClass().getResourceAsStream("/" + copy[0])) {
+                Files.copy(in, directory.resolve(copy[1]));
+            }
+        }
+        Files.writeString(directory.resolve("notes.txt"), "not a workbook");
+        return "jdbc:xls:" + directory.toUri();
+    }
+
+    @Test
+    public void testMetaDataWithoutParsing() throws Exception {
+        try (Connection connection = DriverManager.getConnection(copyWorkbooks())) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            List<String> schemas = new ArrayList<>();
+            try (ResultSet resultSet = metaData.getSchemas()) {
+                while (resultSet.next()) {
+                    schemas.add(resultSet.getString("TABLE_SCHEM"));
+                }
+            }
+            Assertions.assertEquals(List.of("alpha", "beta"), schemas);
+
+            List<String> tables = new ArrayList<>();
+            try (ResultSet resultSet = metaData.getTables(null, "beta", "%", null)) {
+                while (resultSet.next()) {
+                    Assertions.assertEquals("beta", resultSet.getString("TABLE_SCHEM"));
+                    tables.add(resultSet.getString("TABLE_NAME"));
+                }
+            }
+            Assertions.assertTrue(tables.contains("2009"));
+            Assertions.assertEquals(0,
+                    connection.unwrap(XlsDirectoryConnection.class).getResidentWorkbookCount());
+        }
+    }
+
+    @Test
+    public void testQueryBySchema() throws Exception {
+        String url = copyWorkbooks() + "?maxResidentWorkbooks=1";
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement()) {
+            XlsDirectoryConnection directoryConnection =
+                    connection.unwrap(XlsDirectoryConnection.class);
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM alpha.sheet1")) {
+                Assertions.assertTrue(resultSet.next());
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM beta.\"2009\"")) {
+                Assertions.assertTrue(resultSet.next());
+            }
+            Assertions.assertEquals(1, directoryConnection.getResidentWorkbookCount());
+
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT * FROM sheet1"));
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeQuery("SELECT * FROM gamma.sheet1"));
+            Assertions.assertThrows(SQLException.class,
+                    () -> statement.executeUpdate("CREATE TABLE alpha.t2(COL1 INT)"));
+
+            connection.setSchema("alpha");
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM sheet1")) {
+                Assertions.assertTrue(resultSet.next());
+            }
+        }
+    }
+}
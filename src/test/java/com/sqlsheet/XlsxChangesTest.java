@@ -0,0 +1,195 @@
+package com.sqlsheet;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+public class XlsxChangesTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    public static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    private Path writeWorkbook() throws Exception {
+        Path path = directory.resolve("changes.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+                OutputStream out = Files.newOutputStream(path)) {
+            for (String name : Arrays.asList("FIRST", "SECOND", "THIRD")) {
+                Sheet sheet = workbook.createSheet(name);
+                sheet.createRow(0).createCell(0).setCellValue("NAME");
+                for (int i = 1; i <= 100; i++) {
+                    Row row = sheet.createRow(i);
+                    row.createCell(0).setCellValue(name + i);
+                }
+            }
+            workbook.write(out);
+        }
+        return path;
+    }
+
+    private static Map<String, byte[]> rawEntries(Path path) throws Exception {
+        Map<String, byte[]> entries = new HashMap<>();
+        try (ZipFile zip = ZipFile.builder().setPath(path).get()) {
+            for (Enumeration<ZipArchiveEntry> e = zip.getEntries(); e.hasMoreElements();) {
+                ZipArchiveEntry entry = e.nextElement();
+                try (InputStream in = zip.getRawInputStream(entry)) {
+                    entries.put(entry.getName(), IOUtils.toByteArray(in));
+                }
+            }
+        }
+        return entries;
+    }
+
+    private static int count(Connection connection, String table) throws Exception {
+        int count = 0;
+        try (Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM " + table)) {
+            while (resultSet.next()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testCopiesUnchangedParts() throws Exception {
+        Path path = writeWorkbook();
+        Map<String, byte[]> before = rawEntries(path);
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO SECOND (NAME) VALUES ('added')");
+            statement.executeUpdate("INSERT INTO SECOND (NAME) VALUES ('another')");
+            Assertions.assertEquals(Collections.singleton("SECOND"),
+                    connection.unwrap(XlsConnection.class).getChanges().getModifiedSheets());
+        }
+        Map<String, byte[]> after = rawEntries(path);
+        Assertions.assertEquals(before.keySet(), after.keySet());
+        Assertions.assertArrayEquals(before.get("xl/worksheets/sheet1.xml"),
+                after.get("xl/worksheets/sheet1.xml"));
+        Assertions.assertArrayEquals(before.get("xl/worksheets/sheet3.xml"),
+                after.get("xl/worksheets/sheet3.xml"));
+        Assertions.assertArrayEquals(before.get("xl/workbook.xml"), after.get("xl/workbook.xml"));
+        Assertions.assertFalse(Arrays.equals(before.get("xl/worksheets/sheet2.xml"),
+                after.get("xl/worksheets/sheet2.xml")));
+
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri())) {
+            Assertions.assertEquals(100, count(connection, "FIRST"));
+            Assertions.assertEquals(102, count(connection, "SECOND"));
+            Assertions.assertEquals(100, count(connection, "THIRD"));
+        }
+    }
+
+    @Test
+    public void testDeleteKeepsOtherSheets() throws Exception {
+        Path path = writeWorkbook();
+        Map<String, byte[]> before = rawEntries(path);
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            Assertions.assertEquals(2, statement.executeUpdate(
+                    "DELETE FROM SECOND WHERE NAME = 'SECOND10' OR NAME = 'SECOND50'"));
+            XlsxChanges changes = connection.unwrap(XlsConnection.class).getChanges();
+            Assertions.assertEquals(Collections.singleton("SECOND"), changes.getModifiedSheets());
+            Assertions.assertFalse(changes.isStructureModified());
+        }
+        Map<String, byte[]> after = rawEntries(path);
+        Assertions.assertEquals(before.keySet(), after.keySet());
+        Assertions.assertArrayEquals(before.get("xl/worksheets/sheet1.xml"),
+                after.get("xl/worksheets/sheet1.xml"));
+        Assertions.assertArrayEquals(before.get("xl/worksheets/sheet3.xml"),
+                after.get("xl/worksheets/sheet3.xml"));
+        Assertions.assertArrayEquals(before.get("xl/workbook.xml"), after.get("xl/workbook.xml"));
+
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM SECOND")) {
+            for (int i = 1; i <= 100; i++) {
+                if (i != 10 && i != 50) {
+                    Assertions.assertTrue(resultSet.next());
+                    Assertions.assertEquals("SECOND" + i, resultSet.getString("NAME"));
+                }
+            }
+            Assertions.assertFalse(resultSet.next());
+        }
+    }
+
+    @Test
+    public void testFullWriteOnStructuralChange() throws Exception {
+        Path path = writeWorkbook();
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO FIRST (NAME) VALUES ('added')");
+            statement.execute("DROP TABLE THIRD");
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri())) {
+            Assertions.assertEquals(101, count(connection, "FIRST"));
+            Assertions.assertEquals(100, count(connection, "SECOND"));
+            Assertions.assertEquals(Arrays.asList("FIRST", "SECOND"),
+                    connection.unwrap(XlsConnection.class).getTableNames(null));
+        }
+    }
+
+    @Test
+    public void testFullWriteWhenFileChanged() throws Exception {
+        Path path = writeWorkbook();
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO FIRST (NAME) VALUES ('added')");
+            Files.write(path, new byte[0]);
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri())) {
+            Assertions.assertEquals(101, count(connection, "FIRST"));
+            Assertions.assertEquals(100, count(connection, "THIRD"));
+        }
+    }
+
+    @Test
+    public void testTypedUpdaterMarksSheetModified() throws Exception {
+        Path path = writeWorkbook();
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO FIRST (NAME) VALUES ('added')");
+            try (ResultSet resultSet = statement.executeQuery("SELECT * FROM THIRD")) {
+                Assertions.assertTrue(resultSet.next());
+                resultSet.updateString(1, "changed");
+                Assertions.assertTrue(resultSet.next());
+                resultSet.updateInt("NAME", 42);
+            }
+            Assertions.assertEquals(new HashSet<>(Arrays.asList("FIRST", "THIRD")),
+                    connection.unwrap(XlsConnection.class).getChanges().getModifiedSheets());
+        }
+        try (Connection connection = DriverManager.getConnection("jdbc:xls:" + path.toUri());
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM THIRD")) {
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertEquals("changed", resultSet.getString(1));
+            Assertions.assertTrue(resultSet.next());
+            Assertions.assertEquals(42, resultSet.getInt(1));
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.sqlsheet.parser;
 
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Arrays;
 
 class SqlSheetParserTest {
 
@@ -12,4 +15,163 @@ class SqlSheetParserTest {
         SqlSheetParser parser = new SqlSheetParser();
         parser.parse(sqlString);
     }
+
+    @Test
+    void where() throws SQLException {
+        SqlSheetParser parser = new SqlSheetParser();
+        ParsedExpression where = ((SelectStarStatement) parser
+                .parse("SELECT * FROM t WHERE (a > 1 OR \"b\" LIKE 'x%') AND NOT c IN (?, -2.5)"))
+                .getWhere();
+        Assertions.assertEquals(
+                "(((\"a\" > 1) OR (\"b\" LIKE 'x%')) AND NOT (\"c\" IN (?1, -2.5)))",
+                where.toString());
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), where.getColumns());
+        Assertions.assertEquals(where, ((SelectStarStatement) parser
+                .parse("SELECT * FROM t WHERE (a>1 OR b LIKE 'x%') AND NOT c IN (?,-2.5)"))
+                .getWhere());
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT * FROM t WHERE a = UPPER(b)"));
+    }
+
+    @Test
+    void orderBy() throws SQLException {
+        SqlSheetParser parser = new SqlSheetParser();
+        SelectStarStatement select = (SelectStarStatement) parser
+                .parse("SELECT a, b FROM t ORDER BY \"a\" DESC, 2, c NULLS FIRST");
+        Assertions.assertEquals(
+                "[\"a\" DESC NULLS FIRST, 2 ASC NULLS LAST, \"c\" ASC NULLS FIRST]",
+                select.getOrderBy().toString());
+        Assertions.assertEquals(2, select.getOrderBy().get(1).getPosition());
+        Assertions.assertTrue(((SelectStarStatement) parser.parse("SELECT * FROM t"))
+                .getOrderBy().isEmpty());
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT * FROM t ORDER BY a + 1"));
+    }
+
+    @Test
+    void groupBy() throws SQLException {
+        SqlSheetParser parser = new SqlSheetParser();
+        SelectStatement select = (SelectStatement) parser.parse("SELECT a, COUNT(*), SUM(b) AS s"
+                + " FROM t GROUP BY a HAVING MAX(c) > ? AND COUNT(*) > 1 ORDER BY SUM(b) DESC");
+        Assertions.assertTrue(select.isAggregate());
+        Assertions.assertEquals("[\"a\", COUNT(*), SUM(\"b\")]", select.getItems().toString());
+        Assertions.assertEquals(Arrays.asList("a", "COUNT(*)", "s"), select.getLabels());
+        Assertions.assertEquals(Arrays.asList("a", "b"), select.getColumns());
+        Assertions.assertEquals(Arrays.asList("a"), select.getGroupBy());
+        Assertions.assertEquals("((MAX(\"c\") > ?1) AND (COUNT(*) > 1))",
+                select.getHaving().toString());
+        Assertions.assertEquals("[MAX(\"c\"), COUNT(*)]",
+                select.getHaving().getAggregates().toString());
+        Assertions.assertEquals("SUM(\"b\") DESC NULLS FIRST",
+                select.getOrderBy().get(0).toString());
+        Assertions.assertTrue(((SelectStatement) parser.parse("SELECT MIN(a) FROM t"))
+                .isAggregate());
+        Assertions.assertFalse(((SelectStatement) parser.parse("SELECT a FROM t"))
+                .isAggregate());
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("SELECT a, b, COUNT(*) FROM t GROUP BY a"));
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("SELECT * FROM t GROUP BY a"));
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("SELECT a FROM t WHERE COUNT(*) > 1"));
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("SELECT a FROM t ORDER BY COUNT(*)"));
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT COUNT(DISTINCT a) FROM t"));
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT SUM(a + 1) FROM t"));
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT UPPER(a) FROM t"));
+        Assertions.assertThrows(SQLException.class, () -> parser.parse("SELECT SUM(*) FROM t"));
+    }
+
+    @Test
+    void insertRows() throws SQLException {
+        SqlSheetParser parser = new SqlSheetParser();
+        InsertIntoStatement insert = (InsertIntoStatement) parser
+                .parse("INSERT INTO t (a, b) VALUES (1, 'x'), (2, ?), (NULL, 'z')");
+        Assertions.assertEquals(6, insert.getValues().size());
+        Assertions.assertEquals(3, insert.getRows().size());
+        Assertions.assertEquals(Arrays.asList(2L, JdbcParameter.INSTANCE),
+                insert.getRows().get(1));
+        Assertions.assertEquals(1, ((InsertIntoStatement) parser
+                .parse("INSERT INTO t (a, b) VALUES (1, 'x')")).getRows().size());
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("INSERT INTO t (a, b) VALUES (1, 'x'), (2)"));
+    }
+
+    @Test
+    void updateAndDelete() throws SQLException {
+        SqlSheetParser parser = new SqlSheetParser();
+        UpdateStatement update = (UpdateStatement) parser
+                .parse("UPDATE s.t SET a = ?, b = 'x', c = -2 WHERE d = ? AND e IS NULL");
+        Assertions.assertEquals("s", update.getSchema());
+        Assertions.assertEquals("t", update.getTable());
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), update.getColumns());
+        Assertions.assertEquals(Arrays.asList(ParsedExpression.parameter(0),
+                ParsedExpression.literal("x"), ParsedExpression.literal(-2L)),
+                update.getValues());
+        Assertions.assertEquals("((\"d\" = ?2) AND (\"e\" IS NULL))",
+                update.getWhere().toString());
+        Assertions.assertNull(((UpdateStatement) parser.parse("UPDATE t SET a = 1")).getWhere());
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("UPDATE t SET a = b"));
+
+        DeleteStatement delete = (DeleteStatement) parser.parse("DELETE FROM t WHERE a < ?");
+        Assertions.assertEquals("t", delete.getTable());
+        Assertions.assertEquals("(\"a\" < ?1)", delete.getWhere().toString());
+        Assertions.assertNull(((DeleteStatement) parser.parse("DELETE FROM t")).getWhere());
+    }
+
+    @Test
+    void distinct() throws SQLException {
+        SqlSheetParser parser = new SqlSheetParser();
+        Assertions.assertTrue(((SelectStatement) parser.parse("SELECT DISTINCT a, b FROM t"))
+                .isDistinct());
+        Assertions.assertTrue(((SelectStarStatement) parser.parse("SELECT DISTINCT * FROM t"))
+                .isDistinct());
+        Assertions.assertFalse(((SelectStatement) parser.parse("SELECT a FROM t")).isDistinct());
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT DISTINCT ON (a) a, b FROM t"));
+    }
+
+    @Test
+    void join() throws SQLException {
+        SqlSheetParser parser = new SqlSheetParser();
+        SelectStatement select = (SelectStatement) parser.parse("SELECT t.Amount, c.Name AS n"
+                + " FROM Transactions t JOIN crm.Customers c ON c.Id = t.Customer AND c.Age > ?"
+                + " LEFT OUTER JOIN Regions ON Regions.Code = c.Region"
+                + " WHERE t.Amount > ? ORDER BY n, t.Amount");
+        Assertions.assertEquals("t", select.getAlias());
+        Assertions.assertEquals(Arrays.asList("t.Amount", "c.Name"), select.getColumns());
+        Assertions.assertEquals(Arrays.asList("Amount", "n"), select.getLabels());
+        Join customers = select.getJoins().get(0);
+        Assertions.assertEquals(Join.Type.INNER, customers.getType());
+        Assertions.assertEquals("crm", customers.getSchema());
+        Assertions.assertEquals("Customers", customers.getTable());
+        Assertions.assertEquals(Arrays.asList("t.Customer"), customers.getLeftColumns());
+        Assertions.assertEquals(Arrays.asList("c.Id"), customers.getRightColumns());
+        Assertions.assertEquals("(\"c.Age\" > ?1)", customers.getCondition().toString());
+        Join regions = select.getJoins().get(1);
+        Assertions.assertEquals(Join.Type.LEFT, regions.getType());
+        Assertions.assertEquals("Regions", regions.getAlias());
+        Assertions.assertNull(regions.getCondition());
+        Assertions.assertEquals("(\"t.Amount\" > ?2)", select.getWhere().toString());
+        Assertions.assertEquals("[\"n\" ASC NULLS LAST, \"t.Amount\" ASC NULLS LAST]",
+                select.getOrderBy().toString());
+        Assertions.assertTrue(((SelectStarStatement) parser.parse("SELECT * FROM t"))
+                .getJoins().isEmpty());
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("SELECT Amount FROM t JOIN c ON c.Id = t.Customer"));
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("SELECT t.a FROM t JOIN c ON c.Id = x.Customer"));
+        Assertions.assertThrows(SQLException.class,
+                () -> parser.parse("SELECT t.a FROM t JOIN t ON t.Id = t.Customer"));
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT t.a FROM t JOIN c ON c.Id > t.Customer"));
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT t.a FROM t RIGHT JOIN c ON c.Id = t.Customer"));
+        Assertions.assertThrows(SQLFeatureNotSupportedException.class,
+                () -> parser.parse("SELECT t.a FROM t, c WHERE c.Id = t.Customer"));
+    }
 }
@@ -0,0 +1,74 @@
+package com.sqlsheet.parser;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+
+class StatementCacheTest {
+
+    private final StatementCache cache = StatementCache.getInstance();
+
+    @BeforeEach
+    void clear() {
+        cache.clear();
+    }
+
+    @AfterEach
+    void reset() {
+        cache.setMaximumSize(StatementCache.DEFAULT_MAXIMUM_SIZE);
+        cache.clear();
+    }
+
+    @Test
+    void sharedAcrossParsers() throws SQLException {
+        ParsedStatement first = new SqlSheetParser().parse("SELECT * FROM \"Orders\"");
+        ParsedStatement second = new SqlSheetParser().parse("SELECT * FROM \"Orders\"");
+        Assertions.assertSame(first, second);
+        Assertions.assertEquals("Orders", ((SelectStarStatement) second).getTable());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void leastRecentlyUsedEvicted() throws SQLException {
+        cache.setMaximumSize(2);
+        SqlSheetParser parser = new SqlSheetParser();
+        ParsedStatement a = parser.parse("SELECT * FROM A");
+        parser.parse("SELECT * FROM B");
+        parser.parse("SELECT * FROM A");
+        parser.parse("SELECT * FROM C");
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertSame(a, parser.parse("SELECT * FROM A"));
+        Assertions.assertEquals(2, cache.getHitCount());
+        parser.parse("SELECT * FROM B");
+        Assertions.assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    void disabled() throws SQLException {
+        cache.setMaximumSize(0);
+        SqlSheetParser parser = new SqlSheetParser();
+        Assertions.assertNotSame(parser.parse("SELECT * FROM A"), parser.parse("SELECT * FROM A"));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void failuresNotCached() {
+        SqlSheetParser parser = new SqlSheetParser();
+        Assertions.assertThrows(SQLException.class, () -> parser.parse("SELECT a + 1 FROM B"));
+        Assertions.assertThrows(SQLException.class, () -> parser.parse("SELECT a + 1 FROM B"));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void immutable() throws SQLException {
+        InsertIntoStatement insert = (InsertIntoStatement) new SqlSheetParser()
+                .parse("INSERT INTO T (A, B) VALUES ('x', ?)");
+        List<Object> values = insert.getValues();
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> values.set(0, "y"));
+    }
+}
@@ -0,0 +1,95 @@
+package com.sqlsheet.query;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+class ExternalSortTest {
+
+    private static final Comparator<Object[]> ORDER = Rows.comparator(new int[] {0, 1},
+            new boolean[] {true, false}, new boolean[] {false, true});
+
+    private static List<Object[]> rows(int count) {
+        Random random = new Random(42);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Object key = random.nextInt(10) == 0 ? null : (double) random.nextInt(100);
+            Object second;
+            switch (random.nextInt(4)) {
+                case 0:
+                    second = null;
+                    break;
+                case 1:
+                    second = "s" + random.nextInt(50) + "é";
+                    break;
+                case 2:
+                    second = new java.sql.Date(random.nextInt(1000) * 86_400_000L);
+                    break;
+                default:
+                    second = random.nextBoolean();
+            }
+            rows.add(new Object[] {key, second, (long) i});
+        }
+        return rows;
+    }
+
+    private static List<Object[]> sort(List<Object[]> rows, long memory, int[] spilledRuns)
+            throws SQLException {
+        List<Object[]> sorted = new ArrayList<>();
+        try (ExternalSort sort = new ExternalSort(ORDER, memory)) {
+            for (Object[] row : rows) {
+                sort.add(row);
+            }
+            try (RowSource source = sort.sort()) {
+                for (Object[] row = source.next(); row != null; row = source.next()) {
+                    sorted.add(row);
+                }
+            }
+            spilledRuns[0] = sort.getSpilledRuns();
+        }
+        return sorted;
+    }
+
+    private static void assertSameRows(List<Object[]> expected, List<Object[]> actual) {
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertArrayEquals(expected.get(i), actual.get(i), "row " + i);
+        }
+    }
+
+    @Test
+    void inMemory() throws SQLException {
+        List<Object[]> rows = rows(1000);
+        List<Object[]> expected = new ArrayList<>(rows);
+        expected.sort(ORDER);
+        int[] spilledRuns = new int[1];
+        assertSameRows(expected, sort(rows, QuerySettings.DEFAULT_MEMORY, spilledRuns));
+        Assertions.assertEquals(0, spilledRuns[0]);
+    }
+
+    @Test
+    void spilledAndMergedInPasses() throws SQLException {
+        List<Object[]> rows = rows(20_000);
+        List<Object[]> expected = new ArrayList<>(rows);
+        expected.sort(ORDER);
+        int[] spilledRuns = new int[1];
+        // a few rows per run, so that more than MAX_FAN_IN runs are merged in two passes
+        assertSameRows(expected, sort(rows, 5_000, spilledRuns));
+        Assertions.assertTrue(spilledRuns[0] > ExternalSort.MAX_FAN_IN, "" + spilledRuns[0]);
+    }
+
+    @Test
+    void nullsAndMixedTypes() {
+        Assertions.assertTrue(Rows.compareValues(2d, 10d) < 0);
+        Assertions.assertTrue(Rows.compareValues(3L, 2.5d) > 0);
+        Assertions.assertTrue(Rows.compareValues(99d, "1") < 0);
+        Assertions.assertTrue(Rows.compareValues("b", "a") > 0);
+        Assertions.assertTrue(ORDER.compare(new Object[] {1d, null}, new Object[] {null, 1d}) < 0);
+        Assertions.assertTrue(ORDER.compare(new Object[] {1d, null}, new Object[] {1d, "x"}) < 0);
+    }
+}
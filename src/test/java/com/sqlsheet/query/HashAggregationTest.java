@@ -0,0 +1,125 @@
+package com.sqlsheet.query;
+
+import com.sqlsheet.parser.ParsedExpression.Operator;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+class HashAggregationTest {
+
+    private static final Operator[] FUNCTIONS =
+            {Operator.COUNT, Operator.COUNT, Operator.SUM, Operator.MIN, Operator.MAX,
+                    Operator.AVG};
+    private static final int[] INPUTS = {-1, 1, 1, 1, 1, 1};
+
+    private static List<Object[]> result(HashAggregation aggregation) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        try (RowSource source = aggregation.result()) {
+            for (Object[] row = source.next(); row != null; row = source.next()) {
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void manyGroups() throws SQLException {
+        Random random = new Random(3);
+        HashAggregation aggregation = new HashAggregation(new int[] {0}, FUNCTIONS, INPUTS);
+        Map<Object, List<Double>> expected = new LinkedHashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            Object key = random.nextInt(50) == 0 ? null : "key" + random.nextInt(3000);
+            Double value = random.nextInt(10) == 0 ? null : (double) random.nextInt(1000);
+            aggregation.add(new Object[] {key, value});
+            expected.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        Assertions.assertEquals(expected.size(), aggregation.size());
+        List<Object[]> rows = result(aggregation);
+        Assertions.assertEquals(new ArrayList<>(expected.keySet()),
+                rows.stream().map(row -> row[0]).collect(java.util.stream.Collectors.toList()));
+        for (Object[] row : rows) {
+            List<Double> values = expected.get(row[0]);
+            long count = values.stream().filter(v -> v != null).count();
+            double sum = values.stream().filter(v -> v != null).mapToDouble(v -> v).sum();
+            Assertions.assertEquals((long) values.size(), row[1]);
+            Assertions.assertEquals(count, row[2]);
+            Assertions.assertEquals(count > 0 ? sum : null, row[3]);
+            Assertions.assertEquals(values.stream().filter(v -> v != null)
+                    .min(Double::compare).orElse(null), row[4]);
+            Assertions.assertEquals(values.stream().filter(v -> v != null)
+                    .max(Double::compare).orElse(null), row[5]);
+            Assertions.assertEquals(count > 0 ? sum / count : null, row[6]);
+        }
+    }
+
+    @Test
+    void keysEqualAcrossNumberTypes() throws SQLException {
+        HashAggregation aggregation = new HashAggregation(new int[] {0, 1},
+                new Operator[] {Operator.COUNT}, new int[] {-1});
+        aggregation.add(new Object[] {1L, null});
+        aggregation.add(new Object[] {1d, null});
+        aggregation.add(new Object[] {"1", null});
+        aggregation.add(new Object[] {1d, "a"});
+        List<Object[]> rows = result(aggregation);
+        Assertions.assertEquals(3, rows.size());
+        Assertions.assertArrayEquals(new Object[] {1L, null, 2L}, rows.get(0));
+        Assertions.assertArrayEquals(new Object[] {"1", null, 1L}, rows.get(1));
+        Assertions.assertArrayEquals(new Object[] {1d, "a", 1L}, rows.get(2));
+    }
+
+    @Test
+    void minAndMaxOfAnyType() throws SQLException {
+        HashAggregation aggregation = new HashAggregation(new int[0],
+                new Operator[] {Operator.MIN, Operator.MAX, Operator.MIN, Operator.MAX},
+                new int[] {0, 0, 1, 1});
+        aggregation.add(new Object[] {"b", new Timestamp(2000)});
+        aggregation.add(new Object[] {3d, new Timestamp(1000)});
+        aggregation.add(new Object[] {"a", null});
+        aggregation.add(new Object[] {-1d, new Timestamp(3000)});
+        Assertions.assertArrayEquals(
+                new Object[] {-1d, "b", new Timestamp(1000), new Timestamp(3000)},
+                result(aggregation).get(0));
+    }
+
+    @Test
+    void singleGroupWithoutRows() throws SQLException {
+        HashAggregation aggregation = new HashAggregation(new int[0], FUNCTIONS, INPUTS);
+        Assertions.assertEquals(1, aggregation.size());
+        Assertions.assertArrayEquals(new Object[] {0L, 0L, null, null, null, null},
+                result(aggregation).get(0));
+    }
+
+    @Test
+    void sumOfText() throws SQLException {
+        HashAggregation aggregation = new HashAggregation(new int[0],
+                new Operator[] {Operator.SUM}, new int[] {0});
+        aggregation.add(new Object[] {" 2.5 "});
+        aggregation.add(new Object[] {4d});
+        Assertions.assertEquals(Arrays.asList(6.5),
+                Arrays.asList(result(aggregation).get(0)));
+        Assertions.assertThrows(SQLException.class, () -> aggregation.add(new Object[] {"x"}));
+    }
+
+    @Test
+    void rowsCountedElsewhere() throws SQLException {
+        HashAggregation aggregation = new HashAggregation(new int[0],
+                new Operator[] {Operator.COUNT, Operator.COUNT}, new int[] {-1, -1});
+        aggregation.addRows(40);
+        aggregation.add(new Object[0]);
+        Assertions.assertEquals(Arrays.asList(41L, 41L),
+                Arrays.asList(result(aggregation).get(0)));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> new HashAggregation(new int[] {0}, new Operator[] {Operator.COUNT},
+                        new int[] {-1}).addRows(1));
+        Assertions.assertThrows(IllegalStateException.class,
+                () -> new HashAggregation(new int[0], FUNCTIONS, INPUTS).addRows(1));
+    }
+}
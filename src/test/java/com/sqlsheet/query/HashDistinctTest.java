@@ -0,0 +1,123 @@
+package com.sqlsheet.query;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+class HashDistinctTest {
+
+    private static RowSource source(List<Object[]> rows, boolean[] closed) {
+        Iterator<Object[]> it = rows.iterator();
+        return new RowSource() {
+            @Override
+            public Object[] next() {
+                return it.hasNext() ? it.next() : null;
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+    }
+
+    private static List<String> distinct(HashDistinct distinct) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (RowSource source = distinct) {
+            for (Object[] row = source.next(); row != null; row = source.next()) {
+                rows.add(Arrays.toString(row));
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    void firstOccurrencesInOrder() throws SQLException {
+        Timestamp day = Timestamp.valueOf("2010-04-27 00:00:00");
+        List<Object[]> rows = Arrays.asList(new Object[] {"a", 1.0}, new Object[] {"b", null},
+                new Object[] {"a", 1L}, new Object[] {"b", null}, new Object[] {null, null},
+                new Object[] {"a", "1"}, new Object[] {null, null}, new Object[] {"A", 1.0},
+                new Object[] {day, true}, new Object[] {new java.util.Date(day.getTime()), true},
+                new Object[] {day, false});
+        boolean[] closed = new boolean[1];
+        HashDistinct distinct = new HashDistinct(source(rows, closed), 1 << 20);
+        Assertions.assertEquals(Arrays.asList("[a, 1.0]", "[b, null]", "[null, null]", "[a, 1]",
+                "[A, 1.0]", "[" + day + ", true]", "[" + day + ", false]"), distinct(distinct));
+        Assertions.assertTrue(closed[0]);
+        Assertions.assertEquals(0, distinct.getSpilledPartitions());
+    }
+
+    @Test
+    void streams() throws SQLException {
+        // the first rows are returned before the source is exhausted
+        RowSource endless = new RowSource() {
+            private long i;
+
+            @Override
+            public Object[] next() {
+                return new Object[] {i++ % 3};
+            }
+
+            @Override
+            public void close() {}
+        };
+        try (RowSource distinct = new HashDistinct(endless, 1 << 20)) {
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertNotNull(distinct.next());
+            }
+        }
+    }
+
+    @Test
+    void spills() throws SQLException {
+        Random random = new Random(7);
+        List<Object[]> rows = new ArrayList<>();
+        Set<String> expected = new LinkedHashSet<>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000);
+            Object[] row = {(double) key, "value" + key % 70, key % 11 == 0 ? null : key % 3};
+            rows.add(row);
+            expected.add(Arrays.toString(new Object[] {row[0], row[1],
+                    row[2] == null ? null : ((Integer) row[2]).doubleValue()}));
+        }
+        boolean[] closed = new boolean[1];
+        HashDistinct distinct = new HashDistinct(source(rows, closed), 20000);
+        List<String> actual = new ArrayList<>();
+        for (String row : distinct(distinct)) {
+            // rows read back from a partition hold their numbers as doubles
+            actual.add(row.replaceAll(", (\\d)]", ", $1.0]"));
+        }
+        Assertions.assertTrue(distinct.getSpilledPartitions() > 0);
+        Assertions.assertTrue(closed[0]);
+        Assertions.assertEquals(expected.size(), actual.size());
+        Assertions.assertEquals(expected, new LinkedHashSet<>(actual));
+    }
+
+    @Test
+    void repeatedRowsBeyondTheBudget() throws SQLException {
+        List<Object[]> rows = new ArrayList<>(Collections.nCopies(5000, new Object[] {"same"}));
+        rows.add(new Object[] {"other"});
+        HashDistinct distinct = new HashDistinct(source(rows, new boolean[1]), 0);
+        Assertions.assertEquals(Arrays.asList("[same]", "[other]"), distinct(distinct));
+    }
+
+    @Test
+    void fingerprints() {
+        Assertions.assertEquals(HashDistinct.fingerprint(new Object[] {1L, "x", null}),
+                HashDistinct.fingerprint(new Object[] {1.0, "x", null}));
+        Assertions.assertNotEquals(HashDistinct.fingerprint(new Object[] {"x", null}),
+                HashDistinct.fingerprint(new Object[] {null, "x"}));
+        Assertions.assertNotEquals(HashDistinct.fingerprint(new Object[] {"Aa"}),
+                HashDistinct.fingerprint(new Object[] {"BB"}));
+    }
+}
@@ -0,0 +1,126 @@
+package com.sqlsheet.query;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+class HashJoinTest {
+
+    private static RowSource source(List<Object[]> rows) {
+        Iterator<Object[]> it = rows.iterator();
+        return new RowSource() {
+            @Override
+            public Object[] next() {
+                return it.hasNext() ? it.next() : null;
+            }
+
+            @Override
+            public void close() {}
+        };
+    }
+
+    private static List<String> join(HashJoin join, List<Object[]> build, List<Object[]> probe)
+            throws SQLException {
+        join.addAll(source(build));
+        List<String> rows = new ArrayList<>();
+        try (RowSource joined = join.probe(source(probe))) {
+            for (Object[] row = joined.next(); row != null; row = joined.next()) {
+                rows.add(Arrays.toString(row));
+            }
+        }
+        return rows;
+    }
+
+    private static List<Object[]> rows(Object[]... rows) {
+        return Arrays.asList(rows);
+    }
+
+    @Test
+    void innerAndLeft() throws SQLException {
+        List<Object[]> customers = rows(new Object[] {1.0, "Ann"}, new Object[] {2.0, "Bob"},
+                new Object[] {2.0, "Bea"}, new Object[] {null, "Nobody"},
+                new Object[] {"4", "Text"});
+        List<Object[]> orders = rows(new Object[] {"o1", 2.0}, new Object[] {"o2", 3.0},
+                new Object[] {"o3", 1L}, new Object[] {"o4", null}, new Object[] {"o5", "4"},
+                new Object[] {"o6", 4.0});
+        Assertions.assertEquals(
+                Arrays.asList("[o1, 2.0, 2.0, Bob]", "[o1, 2.0, 2.0, Bea]", "[o3, 1, 1.0, Ann]",
+                        "[o5, 4, 4, Text]"),
+                join(new HashJoin(new int[] {0}, new int[] {1}, 2, false, null, 1 << 20),
+                        customers, orders));
+        Assertions.assertEquals(
+                Arrays.asList("[o1, 2.0, 2.0, Bob]", "[o1, 2.0, 2.0, Bea]", "[o2, 3.0, null, null]",
+                        "[o3, 1, 1.0, Ann]", "[o4, null, null, null]", "[o5, 4, 4, Text]",
+                        "[o6, 4.0, null, null]"),
+                join(new HashJoin(new int[] {0}, new int[] {1}, 2, true, null, 1 << 20),
+                        customers, orders));
+    }
+
+    @Test
+    void compositeKeysAndCondition() throws SQLException {
+        Timestamp day = Timestamp.valueOf("2010-04-27 00:00:00");
+        List<Object[]> build = rows(new Object[] {"a", new java.util.Date(day.getTime()), 1.0},
+                new Object[] {"a", day, 5.0}, new Object[] {"b", day, 9.0});
+        List<Object[]> probe = rows(new Object[] {"a", new java.sql.Date(day.getTime())},
+                new Object[] {"b", new java.util.Date(0)}, new Object[] {"c", day});
+        // joined rows are [key, date, key, date, value], keep values above 2
+        RowFilter above = values -> ((Double) values.getValue(4)) > 2;
+        Assertions.assertEquals(1, join(new HashJoin(new int[] {0, 1}, new int[] {0, 1}, 3,
+                false, above, 1 << 20), build, probe).size());
+        Assertions.assertEquals(3, join(new HashJoin(new int[] {0, 1}, new int[] {0, 1}, 3,
+                true, above, 1 << 20), build, probe).size());
+        Assertions.assertEquals(2, join(new HashJoin(new int[] {0, 1}, new int[] {0, 1}, 3,
+                false, null, 1 << 20), build, probe).size());
+    }
+
+    @Test
+    void spilledPartitions() throws SQLException {
+        Random random = new Random(5);
+        List<Object[]> build = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            build.add(new Object[] {random.nextInt(10) == 0 ? "key" + i % 300 : (double) (i % 2000),
+                    "build" + i});
+        }
+        List<Object[]> probe = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2500);
+            probe.add(new Object[] {"probe" + i, random.nextInt(20) == 0 ? null
+                    : random.nextBoolean() ? (Object) (double) key : "key" + key});
+        }
+        for (boolean outer : new boolean[] {false, true}) {
+            List<String> expected = join(
+                    new HashJoin(new int[] {0}, new int[] {1}, 2, outer, null, 1L << 30),
+                    build, probe);
+            HashJoin spilling = new HashJoin(new int[] {0}, new int[] {1}, 2, outer, null, 20000);
+            List<String> actual = join(spilling, build, probe);
+            Assertions.assertTrue(spilling.getSpilledPartitions() > HashJoin.PARTITIONS);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            Assertions.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void repeatedKeyBeyondMemory() throws SQLException {
+        List<Object[]> build = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            build.add(new Object[] {"same", (double) i});
+        }
+        HashJoin join = new HashJoin(new int[] {0}, new int[] {0}, 2, false, null, 1000);
+        List<String> rows = join(join, build, rows(new Object[] {"same"}, new Object[] {"other"}));
+        Assertions.assertEquals(1000, rows.size());
+        Assertions.assertEquals(HashJoin.PARTITIONS * HashJoin.MAX_DEPTH,
+                join.getSpilledPartitions());
+        Assertions.assertEquals(build.stream().map(row -> "[same, same, " + row[1] + "]")
+                .collect(Collectors.toList()), rows);
+    }
+}
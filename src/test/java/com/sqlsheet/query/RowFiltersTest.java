@@ -0,0 +1,162 @@
+package com.sqlsheet.query;
+
+import com.sqlsheet.parser.ParsedExpression;
+import com.sqlsheet.parser.SelectStarStatement;
+import com.sqlsheet.parser.SqlSheetParser;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+class RowFiltersTest {
+
+    private static final List<String> NAMES = Arrays.asList("a", "b", "c");
+
+    private static final Object[][] ROWS = {
+            {1.0, "x1", Boolean.TRUE},
+            {2.0, "y2", Boolean.FALSE},
+            {3.0, null, null},
+            {null, "x4", Boolean.TRUE},
+            {"5", "z5", "true"},
+            {"text", "x6", Boolean.FALSE},
+    };
+
+    private final FilterCache cache = FilterCache.getInstance();
+
+    @BeforeEach
+    void clear() {
+        cache.clear();
+    }
+
+    @AfterEach
+    void reset() {
+        cache.setMaximumSize(FilterCache.DEFAULT_MAXIMUM_SIZE);
+        cache.clear();
+    }
+
+    private static ParsedExpression where(String condition) throws SQLException {
+        return ((SelectStarStatement) new SqlSheetParser()
+                .parse("SELECT * FROM t WHERE " + condition)).getWhere();
+    }
+
+    /**
+     * @return the positions of the rows the condition accepts
+     */
+    private static List<Integer> accepted(String condition, Object... parameters)
+            throws SQLException {
+        RowFilter filter = RowFilters.compile(where(condition), NAMES, null,
+                Arrays.asList(parameters));
+        List<Integer> accepted = new ArrayList<>();
+        for (int i = 0; i < ROWS.length; i++) {
+            Object[] row = ROWS[i];
+            if (filter.accept(column -> row[column])) {
+                accepted.add(i);
+            }
+        }
+        return accepted;
+    }
+
+    @Test
+    void comparisons() throws SQLException {
+        Assertions.assertEquals(Arrays.asList(1, 2, 4), accepted("a > 1"));
+        Assertions.assertEquals(Arrays.asList(1, 2, 4), accepted("1 < a"));
+        Assertions.assertEquals(Arrays.asList(0, 1), accepted("3 > a"));
+        Assertions.assertEquals(Arrays.asList(0, 2, 4), accepted("a <> 2"));
+        Assertions.assertEquals(Arrays.asList(4), accepted("a = 5"));
+        Assertions.assertEquals(Arrays.asList(2), accepted("-a = -3"));
+        Assertions.assertEquals(Arrays.asList(1), accepted("a * 2 = ?", 4));
+        Assertions.assertEquals(Arrays.asList(1, 2), accepted("a BETWEEN 2 AND ?", 3.0));
+        Assertions.assertEquals(Arrays.asList(0, 3, 5), accepted("b < 'y'"));
+        Assertions.assertEquals(Arrays.asList(0, 3, 4), accepted("c = TRUE"));
+    }
+
+    @Test
+    void threeValuedLogic() throws SQLException {
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 4), accepted("NOT (b LIKE 'x%' AND a > 5)"));
+        Assertions.assertEquals(Arrays.asList(1), accepted("NOT (b LIKE 'x%' OR a > 2)"));
+        Assertions.assertEquals(Arrays.asList(0, 1, 2, 3, 4), accepted("a > 0 OR b = 'x4'"));
+        Assertions.assertEquals(Arrays.asList(0, 3, 4), accepted("c"));
+        Assertions.assertEquals(Arrays.asList(1, 5), accepted("NOT c"));
+        Assertions.assertEquals(Arrays.asList(2), accepted("b IS NULL AND c IS NULL"));
+        Assertions.assertEquals(Arrays.asList(2, 4), accepted("a NOT IN (1, 2)"));
+        Assertions.assertEquals(Collections.emptyList(), accepted("a NOT IN (1, NULL)"));
+        Assertions.assertEquals(Arrays.asList(0, 1), accepted("a IN (1, NULL, 2)"));
+    }
+
+    @Test
+    void like() throws SQLException {
+        Assertions.assertEquals(Arrays.asList(0, 3, 5), accepted("b LIKE 'x_'"));
+        Assertions.assertEquals(Arrays.asList(1, 4), accepted("b NOT LIKE ?", "x%"));
+        Assertions.assertEquals(Collections.emptyList(), accepted("b LIKE ?", 1));
+        Assertions.assertEquals(Arrays.asList(0, 1, 3, 4, 5), accepted("b LIKE b"));
+    }
+
+    @Test
+    void compiledOnce() throws SQLException {
+        Assertions.assertEquals(Arrays.asList(0), accepted("a = ? AND b LIKE ?", 1, "x%"));
+        Assertions.assertEquals(Arrays.asList(3), accepted("a IS NULL AND b LIKE ?", "x%"));
+        Assertions.assertEquals(Arrays.asList(5), accepted("a = ? AND b LIKE ?", "text", "x%"));
+        Assertions.assertEquals(Collections.emptyList(),
+                accepted("a = ? AND b LIKE ?", 2, "x%"));
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(2, cache.getHitCount());
+
+        // the same condition on other columns
+        Object[] row = {"x1", 1.0};
+        RowFilter filter = RowFilters.compile(where("a = ? AND b LIKE ?"), Arrays.asList("B", "A"),
+                null, Arrays.asList(1, "x%"));
+        Assertions.assertTrue(filter.accept(column -> row[column]));
+        filter = RowFilters.compile(where("a = ? AND b LIKE ?"), Arrays.asList("B", "A"),
+                new int[] {1, 0}, Arrays.asList(1, "x%"));
+        Assertions.assertFalse(filter.accept(column -> row[column]));
+        Assertions.assertEquals(4, cache.getHitCount());
+    }
+
+    @Test
+    void timeOfDay() throws SQLException, IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook()) {
+            CellStyle style = workbook.createCellStyle();
+            style.setDataFormat(workbook.createDataFormat().getFormat("hh:mm:ss"));
+            Row row = workbook.createSheet().createRow(0);
+            row.createCell(0).setCellValue(DateUtil.convertTime("10:00:00"));
+            row.getCell(0).setCellStyle(style);
+            SheetRowValues values = new SheetRowValues(0, null).of(row);
+            List<String> names = Collections.singletonList("t");
+
+            Assertions.assertTrue(RowFilters.compile(where("t = TIME '10:00:00'"), names, null,
+                    Collections.emptyList()).accept(values));
+            Assertions.assertTrue(RowFilters.compile(where("t = ?"), names, null,
+                    Collections.singletonList(Time.valueOf("10:00:00"))).accept(values));
+            Assertions.assertTrue(RowFilters.compile(where("t BETWEEN ? AND ?"), names, null,
+                    Arrays.asList(LocalTime.of(9, 30), LocalTime.of(10, 30))).accept(values));
+            Assertions.assertFalse(RowFilters.compile(where("t > {t '10:00:00'}"), names, null,
+                    Collections.emptyList()).accept(values));
+        }
+    }
+
+    @Test
+    void errors() throws SQLException {
+        // columns and parameters are missing when binding the compiled condition
+        Assertions.assertThrows(SQLException.class, () -> accepted("d = 1"));
+        Assertions.assertThrows(SQLException.class, () -> accepted("a = ? OR b = ?", 1));
+        Assertions.assertThrows(SQLException.class, () -> accepted("a + 1"));
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(Arrays.asList(0, 1), accepted("a = ? OR b = ?", 1, "y2"));
+        cache.setMaximumSize(0);
+        Assertions.assertEquals(Arrays.asList(0), accepted("a = 1"));
+        Assertions.assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,72 @@
+package com.sqlsheet.query;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+class TopNTest {
+
+    private static final Comparator<Object[]> ORDER =
+            Rows.comparator(new int[] {0}, new boolean[] {false}, new boolean[] {false});
+
+    private static List<Object[]> rows(int count) {
+        Random random = new Random(7);
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rows.add(new Object[] {random.nextInt(20) == 0 ? null : (double) random.nextInt(500),
+                    "row" + i});
+        }
+        return rows;
+    }
+
+    private static List<Object[]> top(List<Object[]> rows, long count, long memory,
+            boolean[] spilled) throws SQLException {
+        List<Object[]> result = new ArrayList<>();
+        try (TopN top = new TopN(ORDER, count, memory)) {
+            for (Object[] row : rows) {
+                top.add(row);
+            }
+            spilled[0] = top.isSpilled();
+            try (RowSource source = top.sort()) {
+                for (Object[] row = source.next(); row != null; row = source.next()) {
+                    result.add(row);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void assertFirstRows(List<Object[]> rows, int count, List<Object[]> actual) {
+        List<Object[]> expected = new ArrayList<>(rows);
+        expected.sort(ORDER);
+        expected = expected.subList(0, Math.min(count, expected.size()));
+        Assertions.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assertions.assertArrayEquals(expected.get(i), actual.get(i), "row " + i);
+        }
+    }
+
+    @Test
+    void firstRowsStable() throws SQLException {
+        List<Object[]> rows = rows(10_000);
+        boolean[] spilled = new boolean[1];
+        for (int count : new int[] {0, 1, 50, 10_000, 20_000}) {
+            assertFirstRows(rows, count,
+                    top(rows, count, QuerySettings.DEFAULT_MEMORY, spilled));
+            Assertions.assertFalse(spilled[0]);
+        }
+    }
+
+    @Test
+    void spilledWhenRowsExceedMemory() throws SQLException {
+        List<Object[]> rows = rows(10_000);
+        boolean[] spilled = new boolean[1];
+        assertFirstRows(rows, 5000, top(rows, 5000, 20_000, spilled));
+        Assertions.assertTrue(spilled[0]);
+    }
+}
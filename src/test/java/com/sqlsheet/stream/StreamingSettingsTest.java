@@ -0,0 +1,74 @@
+package com.sqlsheet.stream;
+
+import com.github.pjfanning.xlsx.SharedStringsImplementationType;
+import com.github.pjfanning.xlsx.StreamingReader;
+import com.sqlsheet.XlsDriver;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+public class StreamingSettingsTest {
+
+    @AfterEach
+    public void clearThroughput() {
+        StreamingSettings.clearThroughput();
+    }
+
+    @Test
+    public void testPropertiesConfigureReader() {
+        Properties info = new Properties();
+        info.setProperty(XlsDriver.ROW_CACHE_SIZE, "500");
+        info.setProperty(XlsDriver.BUFFER_SIZE, "8192");
+        info.setProperty(XlsDriver.SHARED_STRINGS, "temp_file_backed");
+        info.setProperty(XlsDriver.AVOID_TEMP_FILES, "true");
+
+        StreamingReader.Builder builder = new StreamingSettings("file:/a.xlsx", info).builder();
+        Assertions.assertEquals(500, builder.getRowCacheSize());
+        Assertions.assertEquals(8192, builder.getBufferSize());
+        Assertions.assertEquals(SharedStringsImplementationType.TEMP_FILE_BACKED,
+                builder.getSharedStringsImplementationType());
+        Assertions.assertTrue(builder.avoidTempFiles());
+    }
+
+    @Test
+    public void testAdaptiveRowCacheFollowsThroughput() {
+        Properties info = new Properties();
+        info.setProperty(XlsDriver.ADAPTIVE_ROW_CACHE, "true");
+        info.setProperty(XlsDriver.MAX_ROW_CACHE_SIZE, "2000");
+        StreamingSettings settings = new StreamingSettings("file:/a.xlsx", info);
+        Assertions.assertEquals(100, settings.getEffectiveRowCacheSize());
+
+        // too few rows to judge the consumer
+        settings.recordThroughput(10, TimeUnit.MILLISECONDS.toNanos(1));
+        Assertions.assertEquals(100, settings.getEffectiveRowCacheSize());
+
+        // 4000 rows per second fill 1000 rows in 250ms
+        settings.recordThroughput(4000, TimeUnit.SECONDS.toNanos(1));
+        Assertions.assertEquals(1000, settings.getEffectiveRowCacheSize());
+
+        settings.recordThroughput(1_000_000, TimeUnit.SECONDS.toNanos(1));
+        Assertions.assertEquals(2000, settings.getEffectiveRowCacheSize());
+        Assertions.assertEquals(100,
+                new StreamingSettings("file:/b.xlsx", info).getEffectiveRowCacheSize());
+    }
+
+    @Test
+    public void testConnectionUsesRowCacheSize() throws Exception {
+        Class.forName("com.sqlsheet.XlsDriver");
+        String url = "jdbc:xls:classpath:/test.xlsx?readStreaming=true&rowCacheSize=7";
+        try (Connection connection = DriverManager.getConnection(url);
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT * FROM SHEET1")) {
+            Assertions.assertEquals(7,
+                    connection.unwrap(XlsStreamConnection.class).getRowCacheSize());
+            Assertions.assertTrue(resultSet.next());
+        }
+    }
+}
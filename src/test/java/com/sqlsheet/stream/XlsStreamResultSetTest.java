@@ -0,0 +1,58 @@
+package com.sqlsheet.stream;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.Closeable;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+class XlsStreamResultSetTest {
+
+    @TempDir
+    Path directory;
+
+    @BeforeAll
+    static void loadDriverClass() throws ClassNotFoundException {
+        Class.forName("com.sqlsheet.XlsDriver");
+    }
+
+    @Test
+    void limitReleasesReader() throws Exception {
+        Path path = directory.resolve("limit.xlsx");
+        try (XSSFWorkbook workbook = new XSSFWorkbook();
+                OutputStream out = Files.newOutputStream(path)) {
+            Sheet sheet = workbook.createSheet("DATA");
+            sheet.createRow(0).createCell(0).setCellValue("ID");
+            for (int i = 1; i <= 1000; i++) {
+                Row row = sheet.createRow(i);
+                row.createCell(0).setCellValue(i);
+            }
+            workbook.write(out);
+        }
+        try (Connection connection = DriverManager.getConnection(
+                "jdbc:xls:" + path.toUri() + "?readStreaming=true");
+                Statement statement = connection.createStatement();
+                ResultSet resultSet = statement.executeQuery("SELECT ID FROM DATA LIMIT 3")) {
+            XlsStreamResultSet scan = (XlsStreamResultSet) resultSet;
+            Assertions.assertTrue(scan.iterator instanceof Closeable);
+            for (int i = 1; i <= 3; i++) {
+                Assertions.assertTrue(resultSet.next());
+                Assertions.assertEquals(i, resultSet.getInt(1));
+            }
+            Assertions.assertFalse(resultSet.next());
+            Assertions.assertFalse(scan.iterator instanceof Closeable);
+            Assertions.assertFalse(resultSet.next());
+        }
+    }
+}
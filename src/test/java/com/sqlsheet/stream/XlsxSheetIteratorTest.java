@@ -1,8 +1,13 @@
 package com.sqlsheet.stream;
 
+import com.sqlsheet.parser.ParsedExpression;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -62,4 +67,36 @@ public class XlsxSheetIteratorTest {
         Assertions.assertEquals(1, counter);
     }
 
+    @Test
+    public void testSelectedColumns() throws Exception {
+        BitSet selected = new BitSet();
+        selected.set(0);
+        selected.set(2);
+        XlsxSheetIterator xlsSheet =
+                new XlsxSheetIterator(getClass().getResource("/test.xlsx"), "2009", selected);
+        Assertions.assertEquals(2, xlsSheet.getColumns().size());
+        Assertions.assertEquals("RCol3", xlsSheet.getColumns().get(1).stringValue);
+        long counter = 0L;
+        for (List<XlsSheetIterator.CellValueHolder> rowValues : xlsSheet) {
+            Assertions.assertEquals(2, rowValues.size());
+            Assertions.assertNotNull(rowValues.get(0).doubleValue);
+            Assertions.assertNotNull(rowValues.get(1).dateValue);
+            counter++;
+        }
+        Assertions.assertEquals(3L, counter);
+    }
+
+    @Test
+    public void testWhere() throws Exception {
+        XlsxSheetIterator xlsSheet = new XlsxSheetIterator(
+                getClass().getResource("/test.xlsx"), "2009", null,
+                ParsedExpression.of(ParsedExpression.Operator.GREATER_THAN,
+                        ParsedExpression.column("RCol1"), ParsedExpression.parameter(0)),
+                Collections.singletonList(12));
+        List<String> names = new ArrayList<>();
+        for (List<XlsSheetIterator.CellValueHolder> rowValues : xlsSheet) {
+            names.add(rowValues.get(1).stringValue);
+        }
+        Assertions.assertEquals(Arrays.asList("Sergei2", "Tom2"), names);
+    }
 }